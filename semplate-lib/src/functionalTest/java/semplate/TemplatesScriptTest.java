@@ -0,0 +1,150 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Builds an application with <code>semplate-templates.gradle</code> applied and uses the generated renderer class.
+ * <p>
+ * The path of the script and the classpath of the semplate library are passed by the build in the system properties
+ * <code>semplate.templatesScript</code> and <code>semplate.classpath</code>.
+ */
+class TemplatesScriptTest {
+
+	private static final String DATA_CLASS = String.join("\n",
+			"package example;",
+			"",
+			"import semplate.annotations.Templatable;",
+			"import semplate.annotations.TemplateField;",
+			"",
+			"@Templatable",
+			"public class Works {",
+			"\t@TemplateField",
+			"\tprivate String title;",
+			"",
+			"\tpublic Works(String title) {",
+			"\t\tthis.title = title;",
+			"\t}",
+			"",
+			"\tpublic String getTitle() {",
+			"\t\treturn title;",
+			"\t}",
+			"}",
+			"");
+
+	@TempDir
+	Path projectDirectory;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		StringBuilder classpath = new StringBuilder();
+		for (String path: System.getProperty("semplate.classpath").split(File.pathSeparator)) {
+			classpath.append(classpath.length() == 0 ? "" : ", ").append(groovyString(path));
+		}
+
+		Files.writeString(projectDirectory.resolve("settings.gradle"), "rootProject.name = 'example'\n");
+		Files.writeString(projectDirectory.resolve("build.gradle"), String.join("\n",
+				"plugins {",
+				"    id 'java'",
+				"}",
+				"",
+				"dependencies {",
+				"    implementation files(" + classpath + ")",
+				"}",
+				"",
+				"apply from: " + groovyString(System.getProperty("semplate.templatesScript")),
+				"",
+				"semplateTemplates {",
+				"    template 'src/main/templates/works_template.md', 'example.Works', 'example.WorksRenderer'",
+				"}",
+				""));
+
+		Path sourceDirectory = Files.createDirectories(projectDirectory.resolve("src/main/java/example"));
+		Files.writeString(sourceDirectory.resolve("Works.java"), DATA_CLASS);
+		Files.createDirectories(projectDirectory.resolve("src/main/templates"));
+	}
+
+	@Test
+	void testRendererInJar() throws Exception {
+		// The template is read as UTF-8, whatever the default charset of the build is
+		writeTemplate("# {{title}} \u00fcber Plato", StandardCharsets.UTF_8);
+
+		BuildResult result = runner("jar").build();
+		assertEquals(TaskOutcome.SUCCESS, result.task(":compileTemplates").getOutcome());
+
+		Path jar = projectDirectory.resolve("build/libs/example.jar");
+		assertTrue(Files.exists(jar));
+
+		List<URL> urls = new ArrayList<>();
+		urls.add(jar.toUri().toURL());
+		for (String path: System.getProperty("semplate.classpath").split(File.pathSeparator)) {
+			urls.add(Path.of(path).toUri().toURL());
+		}
+
+		// The renderer class is in the jar and does not need the template file
+		Files.delete(projectDirectory.resolve("src/main/templates/works_template.md"));
+		try (URLClassLoader classLoader = new URLClassLoader(urls.toArray(new URL[0]), null)) {
+			Class<?> dataClass = classLoader.loadClass("example.Works");
+			Object works = dataClass.getConstructor(String.class).newInstance("The Works");
+
+			StringWriter writer = new StringWriter();
+			classLoader.loadClass("example.WorksRenderer").getMethod("write", dataClass, Writer.class).invoke(null, works, writer);
+
+			assertTrue(writer.toString().contains("# The Works \u00fcber Plato"), writer.toString());
+		}
+	}
+
+	@Test
+	void testCharset() throws Exception {
+		writeTemplate("# {{title}} \u00fcber Plato", StandardCharsets.ISO_8859_1);
+		assertTrue(runner("compileTemplates").buildAndFail().getOutput().contains("Cannot read template file"));
+
+		Files.writeString(projectDirectory.resolve("build.gradle"), "semplateTemplates.charset = 'ISO-8859-1'\n", StandardOpenOption.APPEND);
+		runner("compileTemplates").build();
+
+		String source = Files.readString(projectDirectory.resolve("build/generated/sources/templates/java/example/WorksRenderer.java"));
+		assertTrue(source.contains(" \\u00fcber Plato"), source);
+	}
+
+	@Test
+	void testFieldMismatch() throws Exception {
+		writeTemplate("# {{titel}}", StandardCharsets.UTF_8);
+
+		BuildResult result = runner("jar").buildAndFail();
+
+		assertEquals(TaskOutcome.FAILED, result.task(":compileTemplates").getOutcome());
+		assertTrue(result.getOutput().contains("the field {{titel}} does not match a field of example.Works"), result.getOutput());
+	}
+
+	private void writeTemplate(String line, Charset charset) throws Exception {
+		Files.writeString(projectDirectory.resolve("src/main/templates/works_template.md"),
+				          "<!--{@template.comment}}-->\n\n" + line + "\n", charset);
+	}
+
+	private GradleRunner runner(String task) {
+		return GradleRunner.create().withProjectDir(projectDirectory.toFile()).withArguments(task);
+	}
+
+	private static String groovyString(String text) {
+		return "'" + text.replace("\\", "\\\\").replace("'", "\\'") + "'";
+	}
+
+}
@@ -0,0 +1,83 @@
+package semplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares lexing the semantic lines of a markdown file with the {@link SemanticLexer} against finding the
+ * field specifications and directives with the regular expressions in {@link Patterns}.
+ *
+ * @author Andrew Doble
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+	@Param({"10", "1000"})
+	public int numberLines;
+
+	private List<String> lines;
+
+	@Setup
+	public void setUp() {
+		lines = new ArrayList<>(numberLines);
+		lines.add("<!--{@template.comment}}-->");
+		lines.add("<!--{@template.delimiter.pair:\"[]\"}}-->");
+		lines.add("<!--{@list-template=\"* [{{references.*.title}}] ({{references.*.link}})\"}}-->");
+		for (int i = lines.size(); i < numberLines; i++) {
+			lines.add(i % 2 == 0 ? "<!--{{references." + i + ".title:pattern=\"[%s]\"}}{{references." + i + ".link:pattern=\"(%s)\"}}-->"
+					             : "* [Dialogue " + i + "] (https://en.wikisource.org/wiki/Dialogue_" + i + ")");
+		}
+	}
+
+	@Benchmark
+	public int lexer() {
+		int tokens = 0;
+		for (String line: lines) {
+			if (SemanticLexer.isSemanticLine(line)) {
+				tokens += SemanticLexer.fieldSpecs(line).size();
+			}
+			if (SemanticLexer.containsDirective(line, "template.delimiter")) {
+				tokens++;
+			}
+		}
+		return tokens;
+	}
+
+	@Benchmark
+	public int patterns() {
+		int tokens = 0;
+		for (String line: lines) {
+			if (line.contains("{{") && line.contains("}}")) {
+				Matcher matcher = Patterns.FIELD_SPEC_PATTERN.matcher(line);
+				while (matcher.find()) {
+					FieldSpec.of(matcher.group("field"), new Delimiter().start(matcher.group("start")).end(matcher.group("end")));
+					tokens++;
+				}
+			}
+			if (Patterns.DELIMITER_DIRECTIVE_PATTERN.matcher(line).find()) {
+				tokens++;
+			}
+		}
+		return tokens;
+	}
+
+}
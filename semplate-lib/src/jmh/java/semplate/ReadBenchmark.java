@@ -0,0 +1,113 @@
+package semplate;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import semplate.annotations.Templatable;
+import semplate.annotations.TemplateField;
+
+/** Compares reading a markdown file with a large list line by line against reading the memory mapped file.
+ *
+ * @author Andrew Doble
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+
+	private static final String TEMPLATE =
+			"<!--{@template.comment}}-->\n" +
+			"<!--{@template.delimiter.pair:\"[]\"}}-->\n" +
+			"\n" +
+			"# {{title}}\n" +
+			"\n" +
+			"Written by {{author}}\n" +
+			"\n" +
+			"* [{{references.*.title}}] ({{references.*.link}})\n";
+
+	@Param({"1000", "100000"})
+	public int numberReferences;
+
+	private Path templateFile;
+	private Path markdownFile;
+
+	/** A self contained data object used in the benchmark */
+	@Templatable
+	public static class BenchmarkWorks {
+		@TemplateField
+		private String title;
+
+		@TemplateField
+		private String author;
+
+		@TemplateField
+		private List<BenchmarkReference> references = new ArrayList<>();
+	}
+
+	/** An entry in the list of the benchmark data object */
+	@Templatable
+	public static class BenchmarkReference {
+		@TemplateField
+		private String title;
+
+		@TemplateField
+		private URL link;
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		templateFile = Files.createTempFile("benchmark_template", ".md");
+		Files.writeString(templateFile, TEMPLATE);
+		markdownFile = Files.createTempFile("benchmark", ".md");
+
+		BenchmarkWorks works = new BenchmarkWorks();
+		works.title = "The Works of Plato";
+		works.author = "Plato";
+		for (int i = 0; i < numberReferences; i++) {
+			BenchmarkReference reference = new BenchmarkReference();
+			reference.title = "Dialogue " + i;
+			reference.link = new URL("https://en.wikisource.org/wiki/Dialogue_" + i);
+			works.references.add(reference);
+		}
+		SemanticWriter.with(works).usingTemplate(templateFile).write(markdownFile);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(templateFile);
+		Files.deleteIfExists(markdownFile);
+	}
+
+	@Benchmark
+	public Object lines() throws Exception {
+		return SemanticReader.with(BenchmarkWorks.class).usingFile(markdownFile).read();
+	}
+
+	@Benchmark
+	public Object memoryMapped() throws Exception {
+		return SemanticReader.with(BenchmarkWorks.class).usingFile(markdownFile).memoryMapped().read();
+	}
+
+}
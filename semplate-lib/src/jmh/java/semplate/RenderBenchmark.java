@@ -0,0 +1,129 @@
+package semplate;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import semplate.annotations.Templatable;
+import semplate.annotations.TemplateField;
+
+/** Compares generating markdown with the interpreted compiled template against the renderer
+ * specialised for the class of the data object.
+ *
+ * @author Andrew Doble
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+	private static final String TEMPLATE = 
+			"<!--{@template.comment}}-->\n" +
+			"<!--{@template.delimiter.pair:\"[]\"}}-->\n" +
+			"\n" +
+			"# {{title}}\n" +
+			"\n" +
+			"Written by {{author}} in {{year}}.\n" +
+			"\n" +
+			"## References\n" +
+			"\n" +
+			"* [{{references.*.title}}] ({{references.*.link}})\n";
+
+	@Param({"1", "10", "100"})
+	public int numberReferences;
+
+	@Param({"ArrayList", "LinkedList"})
+	public String listType;
+
+	private Path templateFile;
+	private CompiledTemplate template;
+	private BenchmarkWorks works;
+
+	/** A self contained data object used in the benchmark */
+	@Templatable
+	public static class BenchmarkWorks {
+		@TemplateField
+		private String title;
+
+		@TemplateField
+		private String author;
+
+		@TemplateField
+		private int year;
+
+		@TemplateField
+		private List<BenchmarkReference> references = new ArrayList<>();
+	}
+
+	/** An entry in the list of the benchmark data object */
+	@Templatable
+	public static class BenchmarkReference {
+		@TemplateField
+		private String title;
+
+		@TemplateField
+		private URL link;
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		templateFile = Files.createTempFile("benchmark_template", ".md");
+		Files.writeString(templateFile, TEMPLATE);
+		template = CompiledTemplate.compile(templateFile);
+
+		works = new BenchmarkWorks();
+		works.title = "The Works of Plato";
+		works.author = "Plato";
+		works.year = 1871;
+		works.references = listType.equals("LinkedList") ? new LinkedList<>() : new ArrayList<>();
+		for (int i = 0; i < numberReferences; i++) {
+			BenchmarkReference reference = new BenchmarkReference();
+			reference.title = "Dialogue " + i;
+			reference.link = new URL("https://en.wikisource.org/wiki/Dialogue_" + i);
+			works.references.add(reference);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(templateFile);
+	}
+
+	@Benchmark
+	public String interpreted() throws Exception {
+		StringWriter writer = new StringWriter();
+		SemanticWriter.with(works).usingTemplate(template).write(writer);
+		return writer.toString();
+	}
+
+	@Benchmark
+	public String specialized() throws Exception {
+		StringWriter writer = new StringWriter();
+		SemanticWriter.with(works).usingTemplate(template).specialized().write(writer);
+		return writer.toString();
+	}
+
+}
@@ -0,0 +1,134 @@
+package semplate;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+
+/** The results of writing a batch of semantically annotated markdown files with a {@link SemanticBatchWriter}.
+ * <p>
+ * There is one {@link Item} for each data object in the batch, in the order the data objects were supplied.
+ * When one data object is written using several templates with a {@link SemanticFanOutWriter} there is one
+ * {@link Item} for each template, in the order the templates were specified.
+ *
+ * @see SemanticBatchWriter
+ * @see SemanticFanOutWriter
+ *
+ * @author Andrew Doble
+ *
+ * @param <T> The type of the data objects
+ */
+public final class BatchResult<T> {
+	private final List<Item<T>> items;
+
+	/** The result of writing the markdown file for one data object in the batch.
+	 *
+	 * @param <T> The type of the data object
+	 */
+	public static final class Item<T> {
+		private final T dataObject;
+		private final Optional<Path> outputFile;
+		private final Optional<String> entryName;
+		private final Optional<WriteException> failure;
+
+		Item(T dataObject, Optional<Path> outputFile, Optional<WriteException> failure) {
+			this(dataObject, outputFile, Optional.empty(), failure);
+		}
+
+		Item(T dataObject, Optional<Path> outputFile, Optional<String> entryName, Optional<WriteException> failure) {
+			this.dataObject = dataObject;
+			this.outputFile = outputFile;
+			this.entryName = entryName;
+			this.failure = failure;
+		}
+
+		/** The data object whose data was written.
+		 *
+		 * @return The data object
+		 */
+		public T dataObject() {
+			return dataObject;
+		}
+
+		/** The markdown file written for the data object.
+		 *
+		 * @return The path of the markdown file or empty if the output path could not be determined
+		 */
+		public Optional<Path> outputFile() {
+			return outputFile;
+		}
+
+		/** The zip entry written for the data object when writing to a {@link ZipSink}.
+		 *
+		 * @return The name of the zip entry or empty if no zip entry was written
+		 */
+		public Optional<String> entryName() {
+			return entryName;
+		}
+
+		/** The reason why the markdown file could not be written.
+		 *
+		 * @return The exception or empty if the markdown file was written
+		 */
+		public Optional<WriteException> failure() {
+			return failure;
+		}
+
+		/** Was the markdown file written?
+		 *
+		 * @return True if the markdown file was written
+		 */
+		public boolean isSuccess() {
+			return failure.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return "Item [dataObject=" + dataObject + ", outputFile=" + outputFile + ", entryName=" + entryName + ", failure=" + failure + "]";
+		}
+	}
+
+	BatchResult(List<Item<T>> items) {
+		this.items = ImmutableList.copyOf(items);
+	}
+
+	/** All results, in the order the data objects were supplied.
+	 *
+	 * @return A list of the results
+	 */
+	public List<Item<T>> items() {
+		return items;
+	}
+
+	/** The results of the data objects whose markdown file could not be written.
+	 *
+	 * @return A list of the failed results
+	 */
+	public List<Item<T>> failures() {
+		return items.stream().filter(item -> !item.isSuccess()).collect(Collectors.toList());
+	}
+
+	/** The number of markdown files written.
+	 *
+	 * @return The number of markdown files written
+	 */
+	public int successCount() {
+		return (int) items.stream().filter(Item::isSuccess).count();
+	}
+
+	/** The number of data objects whose markdown file could not be written.
+	 *
+	 * @return The number of failures
+	 */
+	public int failureCount() {
+		return items.size() - successCount();
+	}
+
+	@Override
+	public String toString() {
+		return "BatchResult [items=" + items.size() + ", failures=" + failureCount() + "]";
+	}
+
+}
@@ -4,12 +4,11 @@ import static com.google.common.base.Preconditions.*;
 
 import java.util.ArrayList;
 import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Predicate;
 
 import semplate.valuemap.*;
 
-class Block {    StringBuffer text = new StringBuffer();
+class Block {    BlockText text = new BlockText();
 	
 	ArrayList<FieldSpec> fieldSpecs = new ArrayList<>();
 	
@@ -33,16 +32,10 @@ class Block {    StringBuffer text = new StringBuffer();
 		checkState(terminated);
 		
 		terminated = false;
-		text = new StringBuffer();
+		text.clear();
 		fieldSpecs.clear();
 		
-		Pattern fieldPattern = FieldSpec.pattern();
-		Matcher fieldMatcher = fieldPattern.matcher(semanticBlockLine);  
-
-		while (fieldMatcher.find()) {
-			FieldSpec field = FieldSpec.of(fieldMatcher.group());
-			this.fieldSpecs.add(field); 
-		}
+		fieldSpecs.addAll(SemanticLexer.fieldSpecs(semanticBlockLine));
 
 		return this; 
 	}
@@ -89,7 +82,7 @@ class Block {    StringBuffer text = new StringBuffer();
 		Block block = new Block(); 
 		return line -> { 
 			             if (line.isBlank()) { block.terminate(); return block;}  
-		                 else if (line.contains("{{") && line.contains("}}")) {block.initialise(line); return block;}
+		                 else if (SemanticLexer.isSemanticLine(line)) {block.initialise(line); return block;}
                          else if (!block.isTerminated()) {block.appendText(line); return Block.empty();}
                          else {return Block.empty();}  // Line has text that does not have an associated semantic block
 		               };
@@ -102,22 +95,27 @@ class Block {    StringBuffer text = new StringBuffer();
 	 * @return A value map representing the semantic information in this block.
 	 */
 	ValueMap toValueMap() {
+		return toValueMap(fieldName -> true);
+	}
+	
+	/**
+	 * Converts the information in this block to a value map containing only the selected fields. The values
+	 * of a block without selected fields are not extracted.
+	 * 
+	 * @param selected Selects the (compound) field names of the fields in the value map
+	 * @return A value map representing the selected semantic information in this block.
+	 */
+	ValueMap toValueMap(Predicate<String> selected) {
 	 
         ValueMap valueMap = new ValueMap();
+        if (fieldSpecs.stream().noneMatch(fieldSpec -> selected.test(fieldSpec.fieldName()))) return valueMap;
 		
-		for (FieldSpec fieldSpec: fieldSpecs) {
-			// Assemble a regex with matcher to find the first element specified by the field specification
-			//String regex = ".*?";
-			String regex = fieldSpec.delimiter().start().map(d -> Pattern.quote(d)).orElse("^");  // Quote the start delimiter 
-			regex +=  "(?<value>.*?)";
-            regex += fieldSpec.delimiter().end().map(d -> Pattern.quote(d)).orElse("$");  // Quote the start delimiter 
-            
-            Pattern pattern = Pattern.compile(regex);
-            Matcher matcher = pattern.matcher(this.text.toString());
-                       
-            if (matcher.find()) {
-			   String value = matcher.group("value");  // Just take the first one found
-			   valueMap.put(fieldSpec.fieldName(), value);
+        // Find the first value of every field specification in one pass over the text
+        CharSequence[] values = FieldExtractor.of(delimiters()).extract(text);
+		
+		for (int i = 0; i < fieldSpecs.size(); i++) {
+            if (values[i] != null && selected.test(fieldSpecs.get(i).fieldName())) {
+			   valueMap.putText(fieldSpecs.get(i).fieldName(), values[i]);  // Converted to a string when bound
             }
 		}
 		
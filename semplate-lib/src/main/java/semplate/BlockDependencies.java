@@ -0,0 +1,125 @@
+package semplate;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import semplate.valuemap.ValueMap;
+
+/** The fields each block of a compiled template depends on.
+ * <p>
+ * The dependencies are used to determine which blocks have to be rendered again when the data changes:
+ * <ul>
+ * <li>A block depends on the fields of the data object it contains. For list blocks these are the fields
+ *     of the data object used in the list entries, e.g. <code>{{title}}</code>, which are the same for all entries.
+ * <li>An entry of a list block depends on the fields of the list entry, e.g. <code>{{references.*.title}}</code>.
+ * </ul>
+ * A field has changed if the string written for it is different, so that values that are converted to the
+ * same string are not changes.
+ *
+ * @see CompiledTemplate
+ * @see RenderedDocument
+ *
+ * @author Andrew Doble
+ *
+ */
+final class BlockDependencies {
+	/** The indices of the blocks mapped to the fields of the data object they depend on */
+	private final Map<String, BitSet> blocksByField;
+
+	/** The suffixes of the list entry fields, e.g. <code>.title</code>, mapped to the indices of the list blocks */
+	private final Map<Integer, List<String>> entryFields;
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private BlockDependencies(Map<String, BitSet> blocksByField, Map<Integer, List<String>> entryFields) {
+		this.blocksByField = blocksByField;
+		this.entryFields = entryFields;
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/** Determines the dependencies of the blocks of a template.
+	 *
+	 * @param blocks The blocks of the template
+	 * @return The dependencies of the blocks
+	 */
+	static BlockDependencies of(List<TemplateBlock> blocks) {
+		Map<String, BitSet> blocksByField = new HashMap<>();
+		Map<Integer, List<String>> entryFields = new HashMap<>();
+
+		for (int i = 0; i < blocks.size(); i++) {
+			TemplateBlock block = blocks.get(i);
+			TemplateBlock fieldsBlock = block.type() == TemplateBlock.Type.LIST ? block.entry() : block;
+
+			for (TemplateSegment segment: segments(fieldsBlock)) {
+				if (segment.type() == TemplateSegment.Type.FIELD) {
+					blocksByField.computeIfAbsent(segment.text(), f -> new BitSet()).set(i);
+				}
+			}
+
+			if (block.type() == TemplateBlock.Type.LIST) {
+				entryFields.put(i, segments(fieldsBlock).stream()
+						                                .filter(segment -> segment.type() == TemplateSegment.Type.ENTRY_FIELD)
+						                                .map(TemplateSegment::text)
+						                                .distinct()
+						                                .collect(ImmutableList.toImmutableList()));
+			}
+		}
+
+		return new BlockDependencies(ImmutableMap.copyOf(blocksByField), ImmutableMap.copyOf(entryFields));
+	}
+
+	/** The blocks that depend on fields whose values differ in the two value maps.
+	 *
+	 * @param oldValueMap The value map the blocks were rendered with
+	 * @param newValueMap The value map with the new data
+	 * @return The indices of the changed blocks
+	 */
+	BitSet changedBlocks(ValueMap oldValueMap, ValueMap newValueMap) {
+		BitSet changed = new BitSet();
+
+		for (Map.Entry<String, BitSet> field: blocksByField.entrySet()) {
+			String fieldName = field.getKey();
+			if (!TemplateSegment.valueAsString(fieldName, oldValueMap).equals(TemplateSegment.valueAsString(fieldName, newValueMap))) {
+				changed.or(field.getValue());
+			}
+		}
+
+		return changed;
+	}
+
+	/** Does an entry of a list block have the same values in the two value maps of the list?
+	 *
+	 * @param block The index of the list block
+	 * @param index The index of the entry in the list
+	 * @param oldListValueMap The value map of the list the entry was rendered with
+	 * @param newListValueMap The value map of the list with the new data
+	 * @return True if all fields of the list entry are unchanged
+	 */
+	boolean isEntryUnchanged(int block, String index, ValueMap oldListValueMap, ValueMap newListValueMap) {
+		return entryFields.getOrDefault(block, List.of())
+				          .stream()
+				          .allMatch(suffix -> TemplateSegment.valueAsString(index + suffix, oldListValueMap)
+				        		                             .equals(TemplateSegment.valueAsString(index + suffix, newListValueMap)));
+	}
+
+
+
+	private static List<TemplateSegment> segments(TemplateBlock block) {
+		return ImmutableList.<TemplateSegment>builder()
+				            .addAll(block.semanticLine().orElse(List.of()))
+				            .addAll(block.text())
+				            .build();
+	}
+
+	@Override
+	public String toString() {
+		return "BlockDependencies [fields=" + blocksByField.keySet() + ", lists=" + entryFields.keySet() + "]";
+	}
+
+}
@@ -0,0 +1,103 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/** The text of a block, i.e. the text lines following the semantic line of the block without their line terminators.
+ * <p>
+ * The lines are not copied. They are kept as they were read, e.g. as strings or as views of the bytes of a
+ * memory mapped file. A part of the text within one line is a view of the line; only parts of the text
+ * spanning several lines are copied.
+ * Characters are usually read one after the other, so the line containing the last character read is
+ * remembered. Block texts are not thread safe.
+ *
+ * @author Andrew Doble
+ *
+ */
+final class BlockText implements CharSequence {
+	private final List<CharSequence> lines = new ArrayList<>();
+	private int length = 0;
+
+	// The line containing the last character read and the index of its first character
+	private int line = 0;
+	private int lineStart = 0;
+
+	/** Appends a line to the text.
+	 *
+	 * @param text The line without any line terminators
+	 * @return This block text
+	 */
+	BlockText append(CharSequence text) {
+		checkNotNull(text);
+
+		lines.add(text);
+		length += text.length();
+
+		return this;
+	}
+
+	/** Removes all lines.
+	 *
+	 * @return This block text
+	 */
+	BlockText clear() {
+		lines.clear();
+		length = 0;
+		line = 0;
+		lineStart = 0;
+
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		checkElementIndex(index, length);
+
+		if (index < lineStart) {
+			line = 0;
+			lineStart = 0;
+		}
+		while (index >= lineStart + lines.get(line).length()) {
+			lineStart += lines.get(line).length();
+			line++;
+		}
+
+		return lines.get(line).charAt(index - lineStart);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		checkPositionIndexes(start, end, length);
+
+		if (start < end) {
+			charAt(start);  // Find the line containing the start
+			if (end <= lineStart + lines.get(line).length()) {
+				CharSequence text = lines.get(line);
+				return text instanceof String ? CharBuffer.wrap(text, start - lineStart, end - lineStart)  // Substrings are copies
+						                      : text.subSequence(start - lineStart, end - lineStart);
+			}
+		}
+
+		StringBuilder text = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			text.append(charAt(i));
+		}
+		return text.toString();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder(length);
+		lines.forEach(text::append);
+		return text.toString();
+	}
+
+}
@@ -0,0 +1,65 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** A view of bytes in a buffer as characters with one character for each byte, i.e. the bytes decoded
+ * as ISO-8859-1. This is also the decoding of US-ASCII bytes and of UTF-8 bytes that are all ASCII.
+ * <p>
+ * The bytes are not copied; only {@link #toString()} creates a string. The buffer must not be changed
+ * while the view is used.
+ *
+ * @author Andrew Doble
+ *
+ */
+final class ByteChars implements CharSequence {
+	private final ByteBuffer buffer;
+	private final int start;
+	private final int end;
+
+	/** Creates a view of the bytes of a buffer.
+	 *
+	 * @param buffer The buffer
+	 * @param start The index of the first byte in the buffer
+	 * @param end The index after the last byte in the buffer
+	 */
+	ByteChars(ByteBuffer buffer, int start, int end) {
+		checkPositionIndexes(start, end, buffer.limit());
+
+		this.buffer = buffer;
+		this.start = start;
+		this.end = end;
+	}
+
+	@Override
+	public int length() {
+		return end - start;
+	}
+
+	@Override
+	public char charAt(int index) {
+		checkElementIndex(index, end - start);
+
+		return (char) (buffer.get(start + index) & 0xFF);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		checkPositionIndexes(start, end, this.end - this.start);
+
+		return new ByteChars(buffer, this.start + start, this.start + end);
+	}
+
+	@Override
+	public String toString() {
+		byte[] bytes = new byte[end - start];
+		ByteBuffer view = buffer.duplicate();
+		view.position(start);
+		view.get(bytes);
+
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+}
@@ -0,0 +1,495 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+
+import semplate.valuemap.ConversionException;
+import semplate.valuemap.ValueMap;
+
+/** A template that has been read and parsed once so that it can be used to generate any number of
+ * semantically annotated markdown files without reading or parsing the template file again.
+ * <p>
+ * For instance:
+ * <pre> <code>
+ *      CompiledTemplate template = CompiledTemplate.compile(templateFilePath);
+ *
+ *      SemanticWriter.with(dataObject1).usingTemplate(template).write(outputFilePath1);
+ *      SemanticWriter.with(dataObject2).usingTemplate(template).write(outputFilePath2);
+ * </code> </pre>
+ * <p>
+ * A compiled template holds the comment delimiter and the delimiters specified in the template directives
+ * as well as the template blocks with their text segments, field slots and list directives.
+ * Compiled templates are immutable and can be shared between threads.
+ * <p>
+ * Lines consisting of an include directive, e.g. <code>&lt;!--{&#64;template.include:"footer.md"}}--&gt;</code>, are
+ * replaced by the blocks of the included template fragment (see {@link TemplateFragment}). The other lines of the block
+ * containing the directive are kept as blocks before and after the fragment. The fragment file is resolved 
+ * against the directory of the template file and must be in this directory or one of its subdirectories. Fragments are 
+ * compiled once and shared by all templates that include them.
+ *
+ * @see SemanticWriter#usingTemplate(CompiledTemplate)
+ *
+ * @author Andrew Doble
+ *
+ */
+public final class CompiledTemplate {
+	/** The template file */
+	private final Path templatePath;
+
+	/** The delimiters used for comments in the markdown file */
+	private final Delimiter commentDelimiter;
+
+	/** Any delimiters used around data in the output file as specified in the template */
+	private final Delimiters delimiters;
+
+	/** The parsed blocks of the template */
+	private final List<TemplateBlock> blocks;
+
+	/** The fragments included in the template */
+	private final List<TemplateFragment> includes;
+
+	/** The template encoded in the charsets it has been rendered with */
+	private final ConcurrentMap<Charset, EncodedTemplate> encodedTemplates = new ConcurrentHashMap<>();
+
+	/** The renderers specialised for the classes of the data objects. Classes are weakly referenced so that they can be unloaded. */
+	private final LoadingCache<Class<?>, Optional<SpecializedRenderer>> specializedRenderers = 
+			CacheBuilder.newBuilder()
+			            .weakKeys()
+			            .build(CacheLoader.from(dataClass -> SpecializedRenderer.create(this, dataClass)));
+
+	/** The fields each block depends on, determined when first needed */
+	private final Supplier<BlockDependencies> dependencies = Suppliers.memoize(() -> BlockDependencies.of(blocks()));
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private CompiledTemplate(Path templatePath, Delimiter commentDelimiter, Delimiters delimiters, List<TemplateBlock> blocks, 
+			                 List<TemplateFragment> includes) {
+		this.templatePath = templatePath;
+		this.commentDelimiter = commentDelimiter;
+		this.delimiters = delimiters;
+		this.blocks = ImmutableList.copyOf(blocks);
+		this.includes = ImmutableList.copyOf(includes);
+	}
+
+	/** Creates a compiled template from blocks that have already been parsed, e.g. by a {@link PrecompiledTemplate}.
+	 *
+	 * @param templatePath The path of the template file the blocks were parsed from
+	 * @param commentDelimiter The delimiter used for comments in the markdown file
+	 * @param delimiters The delimiters used around data in the markdown file
+	 * @param blocks The blocks of the template
+	 * @return The compiled template
+	 */
+	static CompiledTemplate of(Path templatePath, Delimiter commentDelimiter, Delimiters delimiters, List<TemplateBlock> blocks) {
+		return new CompiledTemplate(templatePath, commentDelimiter, delimiters, blocks, List.of());
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** Reads and parses a template file encoded in the default charset.
+	 *
+	 * @param templatePath Path to the template file
+	 * @return The compiled template
+	 * @throws ReadException if the template file could not be read or does not contain a template comment directive
+	 */
+	public static CompiledTemplate compile(Path templatePath) throws ReadException {
+		return compile(templatePath, Charset.defaultCharset());
+	}
+
+	/** Reads and parses a template file. The fragments included in the template are read with the same charset.
+	 *
+	 * @param templatePath Path to the template file
+	 * @param charset The charset the template file is encoded in
+	 * @return The compiled template
+	 * @throws ReadException if the template file could not be read or does not contain a template comment directive
+	 */
+	public static CompiledTemplate compile(Path templatePath, Charset charset) throws ReadException {
+		checkNotNull(charset);
+
+		byte[] contents;
+		try {
+			contents = Files.readAllBytes(templatePath);
+		} catch (IOException e) {
+			String msg = "Cannot read template file " + templatePath.getFileName();
+			throw new ReadException(msg, e);
+		}
+
+		return compile(templatePath, contents, charset);
+	}
+
+	/** The path of the template file this template was compiled from.
+	 *
+	 * @return The path to the template file
+	 */
+	public Path path() {
+		return templatePath;
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/** Parses the contents of a template file.
+	 *
+	 * @param templatePath The path of the template file the contents were read from
+	 * @param contents The contents of the template file
+	 * @param charset The charset the template file and its fragments are encoded in
+	 * @return The compiled template
+	 * @throws ReadException if the contents cannot be decoded or do not contain a template comment directive
+	 */
+	static CompiledTemplate compile(Path templatePath, byte[] contents, Charset charset) throws ReadException {
+		List<String> lines;
+		try {
+			String text = charset.newDecoder().decode(ByteBuffer.wrap(contents)).toString();
+			lines = text.lines().collect(Collectors.toList());
+		} catch (CharacterCodingException e) {
+			String msg = "Cannot read template file " + templatePath.getFileName();
+			throw new ReadException(msg, e);
+		}
+
+		return compile(templatePath, lines, charset);
+	}
+
+	/** Parses the lines of a template.
+	 *
+	 * @param templatePath The path of the template file the lines were read from
+	 * @param lines The lines of the template
+	 * @param charset The charset the included fragments are encoded in
+	 * @return The compiled template
+	 * @throws ReadException if the template does not contain a template comment directive or an included fragment cannot be read
+	 */
+	static CompiledTemplate compile(Path templatePath, List<String> lines, Charset charset) throws ReadException {
+
+		Delimiter commentDelimiter = lines.stream()
+				                          .filter(line -> SemanticLexer.containsDirective(line, "template.comment"))
+				                          .map(line -> Delimiter.createCommentDelimiter(line))
+				                          .findFirst()
+				                          .orElseThrow(() -> new ReadException("No template.comment directive found in template."));
+
+		Delimiters delimiters = lines.stream()
+				                     .filter(line -> SemanticLexer.containsDirective(line, "template.delimiter"))
+				                     .map(line -> Delimiter.createDelimiter(line))
+				                     .collect(Collectors.collectingAndThen(Collectors.toList(), Delimiters::of));
+
+		// Expand the inline delimiters with the field delimiters so that only these are selected.
+		Delimiters fieldDelimiters = delimiters.insertAll("{{", "}}");
+
+		List<TemplateFragment> includes = new ArrayList<>();
+		Path path = templatePath.toAbsolutePath().normalize();
+		Set<Path> including = Set.of(path);
+		List<TemplateBlock> blocks = compileBlocks(templatePath, lines, path.getParent(), charset, fieldDelimiters, commentDelimiter, including, includes);
+
+		return new CompiledTemplate(templatePath, commentDelimiter, delimiters, blocks, includes);
+	}
+
+	/** Compiles the blocks of a template or template fragment. Lines consisting of an include directive are 
+	 * replaced by the blocks of the included fragment. The lines of the block before and after the directive
+	 * are compiled as blocks of their own.
+	 *
+	 * @param path The path of the file the lines were read from
+	 * @param lines The lines of the template or fragment
+	 * @param root The directory of the template, which must contain all included fragments
+	 * @param charset The charset the included fragments are encoded in
+	 * @param fieldDelimiters The delimiters around the fields
+	 * @param commentDelimiter The delimiter used for comments in the markdown file
+	 * @param including The files including the lines, used to detect cyclic includes
+	 * @param includes The fragments included in the lines are added to this list
+	 * @return The compiled blocks
+	 * @throws ReadException if an included fragment cannot be read or is not in the directory of the template
+	 */
+	static List<TemplateBlock> compileBlocks(Path path, List<String> lines, Path root, Charset charset, Delimiters fieldDelimiters, Delimiter commentDelimiter, 
+			                                 Set<Path> including, List<TemplateFragment> includes) throws ReadException {
+		List<String> chunks = Stream.concat(lines.stream(), Stream.of("\n"))   // Add a blank line so that all blocks are correctly terminated
+				                    .map(SemanticWriter.chunk())
+				                    .filter(optBlock -> optBlock.isPresent())
+				                    .map(optBlock -> optBlock.orElse(""))
+				                    .collect(Collectors.toList());
+
+		List<TemplateBlock> blocks = new ArrayList<>(chunks.size());
+		for (String block: chunks) {
+			if (!SemanticLexer.containsDirective(block, "template.include")) {
+				blocks.add(compileBlock(block, fieldDelimiters, commentDelimiter));
+				continue;
+			}
+
+			// Replace the lines with an include directive by the blocks of the fragment
+			StringBuilder otherLines = new StringBuilder();
+			for (String line: block.split("\n")) {
+				Optional<String> include = SemanticLexer.directive(line, "template.include").flatMap(SemanticLexer.Token::quotedValue);
+				if (include.isEmpty()) {
+					otherLines.append(line).append('\n');
+					continue;
+				}
+
+				if (otherLines.length() > 0) {
+					blocks.add(compileBlock(otherLines.toString(), fieldDelimiters, commentDelimiter));
+					otherLines.setLength(0);
+				}
+				TemplateFragment fragment = fragment(path, include.get(), root, charset, fieldDelimiters, commentDelimiter, including);
+				includes.add(fragment);
+				blocks.addAll(fragment.blocks());
+			}
+			if (otherLines.length() > 0) {
+				blocks.add(compileBlock(otherLines.toString(), fieldDelimiters, commentDelimiter));
+			}
+		}
+
+		return blocks;
+	}
+
+	/** Renders the template using the data in the value map. Each block is written to the writer 
+	 * as soon as it has been rendered and is followed by a line separator.
+	 *
+	 * @param valueMap The value map of the data object
+	 * @param writer The writer the rendered blocks are written to
+	 * @throws IOException if the rendered blocks cannot be written
+	 * @throws ConversionException if a list entry cannot be converted to a value map
+	 */
+	void render(ValueMap valueMap, Writer writer) throws IOException, ConversionException {
+		render(valueMap, ListEntries.none(), writer);
+	}
+
+	/** Renders the template using the data in the value map and the list entries. Each block and each
+	 * list entry is written to the writer as soon as it has been rendered and is followed by a line separator.
+	 *
+	 * @param valueMap The value map of the data object
+	 * @param listEntries The entries of the lists
+	 * @param writer The writer the rendered blocks are written to
+	 * @throws IOException if the rendered blocks cannot be written
+	 * @throws ConversionException if a list entry cannot be converted to a value map
+	 */
+	void render(ValueMap valueMap, ListEntries listEntries, Writer writer) throws IOException, ConversionException {
+		String lineSeparator = System.lineSeparator();
+		ValueMap noList = ValueMap.empty();
+
+		for (TemplateBlock block: blocks) {
+			block.render(writer, valueMap, noList, "");
+			writer.write(lineSeparator);
+
+			if (block.type() == TemplateBlock.Type.LIST) {
+				listEntries.forEach(valueMap, block.listFieldName(), (listValueMap, index) -> {
+					block.entry().render(writer, valueMap, listValueMap, index);
+					writer.write(lineSeparator);
+				}, (listValueMap, indices) -> {
+					// Render a range of entries into its own buffer
+					StringBuilder range = new StringBuilder();
+					for (String index: indices) {
+						block.entry().render(range, valueMap, listValueMap, index);
+						range.append(lineSeparator);
+					}
+					return range;
+				}, range -> writer.append(range));
+			}
+		}
+	}
+
+	/** The template with its static text encoded in a charset. The template is encoded once for each charset.
+	 *
+	 * @param charset The charset
+	 * @return The encoded template
+	 */
+	EncodedTemplate encoded(Charset charset) {
+		return encodedTemplates.computeIfAbsent(charset, c -> EncodedTemplate.encode(this, c));
+	}
+
+	/** The renderer of this template specialised for a class of data objects. The renderer is created once for each class.
+	 *
+	 * @param dataClass The class of the data objects
+	 * @return The specialised renderer or empty if the template cannot be specialised for the class
+	 */
+	Optional<SpecializedRenderer> specializedFor(Class<?> dataClass) {
+		return specializedRenderers.getUnchecked(dataClass);
+	}
+
+	List<TemplateBlock> blocks() {
+		return blocks;
+	}
+
+	/** The fields each block of this template depends on. These are determined once for each template.
+	 *
+	 * @return The dependencies of the blocks
+	 */
+	BlockDependencies dependencies() {
+		return dependencies.get();
+	}
+
+	/** Have the fragments included in this template not changed since the template was compiled?
+	 *
+	 * @return True if all included fragments are unchanged
+	 */
+	boolean includesUnchanged() {
+		return includes.stream().allMatch(TemplateFragment::isUnchanged);
+	}
+
+	Delimiter commentDelimiter() {
+		return commentDelimiter;
+	}
+
+	Delimiters delimiters() {
+		return delimiters;
+	}
+
+	/* The fragment included by a file, which must be in the directory of the template */
+	private static TemplateFragment fragment(Path path, String include, Path root, Charset charset, Delimiters fieldDelimiters, Delimiter commentDelimiter, 
+			                                 Set<Path> including) throws ReadException {
+		Path fragmentPath = path.resolveSibling(include).toAbsolutePath().normalize();
+		if (!fragmentPath.startsWith(root)) {
+			throw new ReadException("Template fragment " + include + " is not in the directory of the template");
+		}
+
+		return TemplateFragment.get(fragmentPath, root, charset, commentDelimiter, fieldDelimiters, including);
+	}
+
+	/* Compiles a blank line delimited block of template text.
+	 *
+	 * A block whose first field is a list field, e.g. {{order.*.articleNumber}}, is compiled into a list block
+	 * with a list directive and a template for each list entry.
+	 */
+	private static TemplateBlock compileBlock(String block, Delimiters fieldDelimiters, Delimiter commentDelimiter) {
+		Optional<String> firstFieldName = SemanticLexer.firstField(block).map(SemanticLexer.Token::name);
+
+		if (firstFieldName.isPresent() && firstFieldName.get().contains("*")) {
+			// Extract the first part of the field name before the '*' character.
+			// Only indexed field names with the same first part before the '*'
+			// are allowed in one block.
+			String fieldName = firstFieldName.get();
+			String listFieldName = Splitter.on('*').trimResults(CharMatcher.is('.')).splitToList(fieldName).get(0);
+
+			String listDirective = commentDelimiter.start().orElse("")
+					+ "{@list-template=\"" + block.replace("\n", "")
+					+ "\"}}"
+					+ commentDelimiter.end().orElse("")
+			        + "\n";
+
+			TemplateBlock entry = compileEntry(block, listFieldName, fieldDelimiters, commentDelimiter);
+
+			return TemplateBlock.list(listDirective, listFieldName, entry);
+		}
+
+		if (isPassedThrough(block)) {
+			return TemplateBlock.text(block);
+		}
+
+		String semanticBlock = SemanticTemplateWriter.assembleSemanticBlock(block, fieldDelimiters, commentDelimiter).toString();
+
+		return TemplateBlock.fields(Optional.of(List.of(TemplateSegment.literal(semanticBlock))),
+				                    fieldSegments(block, ""));
+	}
+
+	/* Compiles the template of a list entry. In the rendered entry each occurrence of "{{listFieldName.*" is
+	 * replaced with "{{listFieldName.<index>" and the fields are replaced with the values of the list entry.
+	 */
+	private static TemplateBlock compileEntry(String block, String listFieldName, Delimiters fieldDelimiters, Delimiter commentDelimiter) {
+		if (isDirective(block)) {
+			// Directives are passed through without any further processing
+			return TemplateBlock.fields(Optional.empty(), indexedSegments(block, listFieldName));
+		}
+
+		String semanticBlock = SemanticTemplateWriter.assembleSemanticBlock(block, fieldDelimiters, commentDelimiter).toString();
+
+		return TemplateBlock.fields(Optional.of(indexedSegments(semanticBlock, listFieldName)),
+				                    fieldSegments(block, listFieldName));
+	}
+
+	/** Compiles the template of a list entry in which only the list index is replaced. In the rendered entry 
+	 * each occurrence of "{{listFieldName.*" is replaced with "{{listFieldName.<index>"; the fields themselves
+	 * are not replaced. 
+	 * 
+	 * @param block The list template
+	 * @param listFieldName The first part of the list field name, i.e. the part before the '*' character
+	 * @param delimiters The delimiters around the fields
+	 * @param commentDelimiter The delimiter used for comments in the markdown file
+	 * @return The list entry consisting of a semantic block line and the list template with the list index replaced
+	 */
+	static TemplateBlock compileIndexedEntry(String block, String listFieldName, Delimiters delimiters, Delimiter commentDelimiter) {
+		String semanticBlock = SemanticTemplateWriter.assembleSemanticBlock(block, delimiters, commentDelimiter).toString();
+
+		return TemplateBlock.fields(Optional.of(indexedSegments(semanticBlock, listFieldName)),
+				                    indexedSegments(block, listFieldName));
+	}
+
+	private static boolean isDirective(String block) {
+		return block.contains("{@") && block.contains("}}");
+	}
+
+	/* Directives and text blocks without any fields are passed through without any further processing */
+	private static boolean isPassedThrough(String block) {
+		return isDirective(block) || !block.contains("{{");
+	}
+
+	/* Splits a block into literal text and field segments. If a list field name is specified then fields
+	 * starting with the list field name are list entry fields.
+	 */
+	private static List<TemplateSegment> fieldSegments(String block, String listFieldName) {
+		List<TemplateSegment> segments = new ArrayList<>();
+		String listFieldPrefix = listFieldName + ".*";
+
+		int position = 0;
+		for (SemanticLexer.Token field: SemanticLexer.fields(block)) {
+			segments.addAll(indexedSegments(block.substring(position, field.start()), listFieldName));
+			position = field.end();
+
+			String fieldName = field.name().replace("{", "");  // Remove any remaining field delimiters
+			if (!listFieldName.isEmpty() && fieldName.startsWith(listFieldPrefix)) {
+				segments.add(TemplateSegment.entryField(fieldName.substring(listFieldPrefix.length())));
+			} else if (fieldName.equals("template.comment")) {
+				segments.add(TemplateSegment.literal("{{template.comment}}"));
+			} else {
+				segments.add(TemplateSegment.field(fieldName));
+			}
+		}
+		segments.addAll(indexedSegments(block.substring(position), listFieldName));
+
+		return segments;
+	}
+
+	/* Splits text into literal segments and index segments at each "{{listFieldName.*" */
+	private static List<TemplateSegment> indexedSegments(String text, String listFieldName) {
+		List<TemplateSegment> segments = new ArrayList<>();
+
+		if (!listFieldName.isEmpty()) {
+			String marker = "{{" + listFieldName + ".*";
+			int position = 0;
+			int found;
+			while ((found = text.indexOf(marker, position)) != -1) {
+				segments.add(TemplateSegment.literal(text.substring(position, found + marker.length() - 1)));
+				segments.add(TemplateSegment.index());
+				position = found + marker.length();
+			}
+			text = text.substring(position);
+		}
+
+		if (!text.isEmpty()) {
+			segments.add(TemplateSegment.literal(text));
+		}
+
+		return segments;
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledTemplate [templatePath=" + templatePath + ", blocks=" + blocks.size() + "]";
+	}
+
+}
@@ -3,20 +3,36 @@ package semplate;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.google.common.base.Splitter;
 
 /** Handles, in uniform way, field delimiters in semantically annotated markkdown files.
+ * <p>
+ * Delimiters are immutable values. Methods such as {@link #start(String)} or {@link #insert(Delimiter)} 
+ * return a new delimiter and leave this delimiter unchanged, so that delimiters can be shared between 
+ * templates, writers and threads.
  * 
  * @author Andrew Doble
  *
  */
-class Delimiter {
-    private Optional<String> start = Optional.empty();
-	private Optional<String> end = Optional.empty();
+final class Delimiter {
+	private static final String DELIMITER_DIRECTIVE = "template.delimiter.";
+	
+    private final Optional<String> start;
+	private final Optional<String> end;
+	
+	/** Creates a delimiter without a start and end delimiter. */
+	Delimiter() {
+		this(Optional.empty(), Optional.empty());
+	}
+	
+	private Delimiter(Optional<String> start, Optional<String> end) {
+		this.start = start;
+		this.end = end;
+	}
 	
 	
 	/**
@@ -28,17 +44,12 @@ class Delimiter {
 	 * @return A delimiter object with the comment delimiter(s)
 	 */
 	static Delimiter createCommentDelimiter(String line) {
-		checkArgument(Patterns.COMMENT_DIRECTIVE_PATTERN.asPredicate().test(line), "The line \"%s\" does not contain a template comment field", line);
+		checkArgument(SemanticLexer.containsDirective(line, "template.comment"), "The line \"%s\" does not contain a template comment field", line);
         
-        Delimiter delimiter = new Delimiter();
-		
         List<String> preamble = Splitter.on("{@").trimResults().splitToList(line);
-		delimiter.start(preamble.get(0));
-
 		List<String> postamble = Splitter.on("}}").splitToList(line);
-		delimiter.end(postamble.get(1));
 
-		return delimiter;
+		return new Delimiter().start(preamble.get(0)).end(postamble.get(1));
 		
 	}
 	
@@ -49,23 +60,25 @@ class Delimiter {
 	 * @return A Delimiter object 
 	 */
 	static Delimiter createDelimiter(String line) {
-		Matcher matcher = Patterns.DELIMITER_DIRECTIVE_PATTERN.matcher(line);
-		
 		Delimiter delimiter = new Delimiter();  
-		while(matcher.find()) {
+		for (SemanticLexer.Token directive: SemanticLexer.directives(line)) {
+			String name = directive.name();
+			if (!name.startsWith(DELIMITER_DIRECTIVE) || !directive.value().isPresent()) {
+				continue;
+			}
 			
 		    // What type of delimiter directive is this?
-		    String delimiterType = matcher.group("type");
-		    String delimiterValue = matcher.group("delim");
+		    String delimiterType = name.substring(DELIMITER_DIRECTIVE.length());
+		    String delimiterValue = directive.value().get();
 		    if (delimiterValue.startsWith("\"")  && delimiterValue.endsWith("\"")) {
 		      // Remove the quotes
 		       delimiterValue = delimiterValue.substring(1, delimiterValue.length() - 1);
 		       if (delimiterType.equals("start")) {
-					delimiter.start(delimiterValue);
+					delimiter = delimiter.start(delimiterValue);
 				} else if (delimiterType.equals("end")) {
-					delimiter.end(delimiterValue);
+					delimiter = delimiter.end(delimiterValue);
 				} else if (delimiterType.equals("pair")) {
-					delimiter.pair(delimiterValue);
+					delimiter = delimiter.pair(delimiterValue);
 				}
 				
 		    } else {
@@ -79,14 +92,22 @@ class Delimiter {
 		
 	}
 
+	/** Returns a delimiter with the specified start delimiter and the end delimiter of this delimiter.
+	 * 
+	 * @param startDelimiter The start delimiter. An empty string or null means that there is no start delimiter.
+	 * @return The new delimiter
+	 */
 	Delimiter start(String startDelimiter) {
-		this.start = filter(startDelimiter);
-		return this;
+		return new Delimiter(filter(startDelimiter), end);
 	}
 
+	/** Returns a delimiter with the start delimiter of this delimiter and the specified end delimiter.
+	 * 
+	 * @param endDelimiter The end delimiter. An empty string or null means that there is no end delimiter.
+	 * @return The new delimiter
+	 */
 	Delimiter end(String endDelimiter) {
-		this.end = filter(endDelimiter);
-		return this;
+		return new Delimiter(start, filter(endDelimiter));
 	}
 
 	private Optional<String> filter(String delimiterString) {
@@ -103,19 +124,21 @@ class Delimiter {
 	}
 	
 	
+	/** Returns a delimiter with another delimiter inserted inside this one, e.g. inserting "{{" and "}}" 
+	 * into "(" and ")" returns the delimiter "({{" and "}})".
+	 * 
+	 * @param insertedDelimiter The delimiter inserted
+	 * @return The new delimiter
+	 */
 	Delimiter insert(Delimiter insertedDelimiter) {
-		start(this.start()
-				  .map(s -> s + insertedDelimiter.start().orElse(""))
-				  .orElse(insertedDelimiter.start().orElse(""))
-		     );
-		
-		end(this.end()
-				  .map(s -> insertedDelimiter.end().orElse("") + s)
-				  .orElse(insertedDelimiter.end().orElse(""))
-		     );
-		
-		return this;
-		
+		return start(this.start()
+				         .map(s -> s + insertedDelimiter.start().orElse(""))
+				         .orElse(insertedDelimiter.start().orElse(""))
+		            )
+			   .end(this.end()
+				        .map(s -> insertedDelimiter.end().orElse("") + s)
+				        .orElse(insertedDelimiter.end().orElse(""))
+		           );
 	}
 	
 	/** Returns a Pattern object that matches text between the two delimiters. The delimiters are included in the result. 
@@ -168,6 +191,11 @@ class Delimiter {
         return this.start().equals(testDelimiter.start()) && this.end().equals(testDelimiter.end());
 }
 
+	@Override
+	public int hashCode() {
+		return Objects.hash(start, end);
+	}
+
 	@Override
 	public String toString() { 
 		return "Delimiter [start=" + start + ", end=" + end + "]"; 
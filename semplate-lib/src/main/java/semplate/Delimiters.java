@@ -3,70 +3,98 @@ package semplate;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
 
 
 
 /** Manages a list of delimiters  
+ * <p>
+ * Like {@link Delimiter}, a list of delimiters is an immutable value. Adding delimiters or inserting delimiters 
+ * returns a new list and leaves this list unchanged, so that the delimiters of a template can be shared 
+ * between writers and threads.
  * 
  * @see Delimiter
  * 
  * @author Andrew Doble
  *
  */
-class Delimiters implements Iterable<Delimiter>, Cloneable {
+final class Delimiters implements Iterable<Delimiter> {
 		
-	private ArrayList<Delimiter> delimiters = new ArrayList<>();
+	private final ImmutableList<Delimiter> delimiters;
 	
-	/** Creates a Delimiter object with the specified start and end delimiter string.
+	/** The pattern matching all delimiters. This is only compiled if needed. */
+	private final Supplier<Pattern> pattern = Suppliers.memoize(this::compilePattern);
+	
+	/** Creates an empty list of delimiters. */
+	Delimiters() {
+		this(ImmutableList.of());
+	}
+	
+	private Delimiters(ImmutableList<Delimiter> delimiters) {
+		this.delimiters = delimiters;
+	}
+	
+	/** Creates a list of delimiters.
+	 * 
+	 * @param delimiters The delimiters in the list
+	 * @return The list of delimiters
+	 */
+	static Delimiters of(Iterable<Delimiter> delimiters) {
+		return new Delimiters(ImmutableList.copyOf(delimiters));
+	}
+	
+	/** Returns these delimiters with a Delimiter object with the specified start and end delimiter string added.
 	 * 
 	 * @see Delimiter 
 	 * 
 	 * @param startDelimiter A string with the start delimiter
 	 * @param endDelimiter A string with the end delimiter
+	 * @return The new list of delimiters
 	 */
-	void add(String startDelimiter, String endDelimiter) {
-		Delimiter delimiter = (new Delimiter()).start(startDelimiter).end(endDelimiter);
-		add(delimiter);
+	Delimiters add(String startDelimiter, String endDelimiter) {
+		return add((new Delimiter()).start(startDelimiter).end(endDelimiter));
 	}
 	
-	/** Create a Delimiter object with the specified pair of single character delimiters.
+	/** Returns these delimiters with a Delimiter object with the specified pair of single character delimiters added.
 	 * 
 	 * @see Delimiter
 	 * 
 	 * @param delimiterPair A string with the start and end delimiter character pair, e.g "[]" or "()"
+	 * @return The new list of delimiters
 	 * @throws IllegalArgumentException if the delimiterPair string contains more then two characters. 
 	 */
-	void addPair(String delimiterPair) {
+	Delimiters addPair(String delimiterPair) {
 		checkArgument(delimiterPair.length() == 2, "Calling addPair with %s. Only 2 characters are allowed.", delimiterPair);
 
-		add((new Delimiter()).pair(delimiterPair));
+		return add((new Delimiter()).pair(delimiterPair));
 	}
 	
-	/** Append the specified Delimiter object to the list of delimiters.
+	/** Returns these delimiters with the specified Delimiter object appended.
 	 * 
 	 * @see Delimiter
 	 * 
 	 * @param delimiter The delimiter object to be added
+	 * @return The new list of delimiters
 	 */
-	void add(Delimiter delimiter) {
-		delimiters.add(delimiter);
-		
+	Delimiters add(Delimiter delimiter) {
+		return new Delimiters(ImmutableList.<Delimiter>builder().addAll(delimiters).add(delimiter).build());
 	}
 	
-	/** Appends all of the specified delimiters to the end of this list, in the order 
+	/** Returns these delimiters with all of the specified delimiters appended, in the order 
 	 *  that they are returned by the specified delimiters Iterator.
 	 *  
 	 *  @see Delimiter
 	 *  
 	 *  @param delimiters The Delimiters object to be appended.
+	 *  @return The new list of delimiters
 	 */
-	void add(Delimiters delimiters) {
-	  	for (Delimiter delim: delimiters) {
-	  		this.add(delim);
-	  	}
+	Delimiters add(Delimiters delimiters) {
+		return new Delimiters(ImmutableList.<Delimiter>builder().addAll(this.delimiters).addAll(delimiters).build());
 	}
     
 	/** The number of delimiters added.
@@ -154,21 +182,32 @@ class Delimiters implements Iterable<Delimiter>, Cloneable {
 		return false;
 	}
 	
+	/** Returns these delimiters with the specified start and end delimiters inserted in each 
+	 *  delimiter (see {@link Delimiter#insert(Delimiter)}).
+	 *  
+	 * @param s The inserted start delimiter
+	 * @param e The inserted end delimiter
+	 * @return The new list of delimiters
+	 */
 	Delimiters insertAll(String s, String e) {
 		Delimiter insert = new Delimiter().start(s).end(e);
 		
-		delimiters.forEach(d -> d.insert(insert));
-		
-		return this; 
+		return new Delimiters(delimiters.stream()
+				                        .map(d -> d.insert(insert))
+				                        .collect(ImmutableList.toImmutableList())); 
 	}
 	
-	/** Constructs a pattern that matches all of the added delimiters. 
+	/** Constructs a pattern that matches all of the added delimiters. The pattern is constructed once. 
 	 * 
 	 * If no delimiters have been added then matched the whole text.
 	 * 
 	 * @return A Pattern object
 	 */
 	Pattern pattern() {
+		return pattern.get();
+	}
+	
+	private Pattern compilePattern() {
 		ArrayList<String> patternSpecs = new ArrayList<String>();
 		
 		if (delimiters.size() > 0) {
@@ -186,13 +225,20 @@ class Delimiters implements Iterable<Delimiter>, Cloneable {
 	
 	
 	@Override
-	@SuppressWarnings("unchecked")
-	public Delimiters clone() throws CloneNotSupportedException {
-			
-		Delimiters clone = (Delimiters) super.clone();
-		clone.delimiters = (ArrayList<Delimiter>) this.delimiters.clone();  // Deep copy
-		
-		return clone;
+	public boolean equals(Object obj) {
+		if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        
+		return delimiters.equals(((Delimiters) obj).delimiters);
+	}
+
+	@Override
+	public int hashCode() {
+		return delimiters.hashCode();
 	}
 
 	@Override
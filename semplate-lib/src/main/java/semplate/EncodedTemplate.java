@@ -0,0 +1,330 @@
+package semplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+
+import semplate.valuemap.ConversionException;
+import semplate.valuemap.ValueMap;
+
+/** A compiled template whose static text has been encoded in a charset.
+ * <p>
+ * All static text of the template - the semantic block lines, the literal text between fields,
+ * the line separators and the list directives - is merged into as few runs as possible and each run is encoded
+ * once. Rendering the template then only encodes the field values and writes the pre-encoded runs interleaved
+ * with the encoded values using gathering writes.
+ * <p>
+ * Some charsets, such as UTF-16, start each encoded text with a byte order mark. This is removed from the
+ * encoded runs and values and written once at the start of the rendered template.
+ * <p>
+ * Encoded templates are immutable and can be shared between threads.
+ *
+ * @see CompiledTemplate#encoded(Charset)
+ *
+ * @author Andrew Doble
+ *
+ */
+final class EncodedTemplate {
+	private final Charset charset;
+
+	// Any byte order mark the charset writes at the start of an encoded text
+	private final byte[] header;
+
+	private final List<Part> parts;
+
+	/* A part of the encoded template. */
+	private static final class Part {
+		enum Type { BYTES, FIELD, ENTRY_FIELD, INDEX, LIST }
+
+		final Type type;
+
+		// The pre-encoded static text
+		final byte[] bytes;
+
+		// The field name, the part of a list entry field name after the index or the list field name
+		final String text;
+
+		// The parts of a list entry
+		final List<Part> entry;
+
+		Part(Type type, byte[] bytes, String text, List<Part> entry) {
+			this.type = type;
+			this.bytes = bytes;
+			this.text = text;
+			this.entry = entry;
+		}
+	}
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private EncodedTemplate(Charset charset, byte[] header, List<Part> parts) {
+		this.charset = charset;
+		this.header = header;
+		this.parts = ImmutableList.copyOf(parts);
+	}
+
+	/** Encodes the static text of the compiled template.
+	 *
+	 * @param template The compiled template
+	 * @param charset The charset used to encode the template
+	 * @return The encoded template
+	 */
+	static EncodedTemplate encode(CompiledTemplate template, Charset charset) {
+		String lineSeparator = System.lineSeparator();
+		byte[] header = header(charset);
+
+		PartsBuilder builder = new PartsBuilder(charset, header);
+		for (TemplateBlock block: template.blocks()) {
+			builder.add(block).literal(lineSeparator);
+
+			if (block.type() == TemplateBlock.Type.LIST) {
+				List<Part> entry = new PartsBuilder(charset, header).add(block.entry()).literal(lineSeparator).build();
+				builder.list(block.listFieldName(), entry);
+			}
+		}
+
+		return new EncodedTemplate(charset, header, builder.build());
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	Charset charset() {
+		return charset;
+	}
+
+	/** Renders the template using the data in the value map and the list entries and writes it to a channel. If the
+	 * channel is a {@link GatheringByteChannel} the parts of the rendered template are written using gathering writes.
+	 *
+	 * @param valueMap The value map of the data object
+	 * @param listEntries The entries of the lists
+	 * @param channel The channel written to
+	 * @throws IOException if the rendered template cannot be written
+	 * @throws ConversionException if a list entry cannot be converted to a value map
+	 */
+	void render(ValueMap valueMap, ListEntries listEntries, WritableByteChannel channel) throws IOException, ConversionException {
+		GatheringOutput output = new GatheringOutput(channel, null);
+		output.add(ByteBuffer.wrap(header));
+		render(parts, valueMap, listEntries, output);
+		output.flush();
+	}
+
+	/** Renders the template using the data in the value map and the list entries and writes it to an output stream.
+	 *
+	 * @param valueMap The value map of the data object
+	 * @param listEntries The entries of the lists
+	 * @param outputStream The output stream written to
+	 * @throws IOException if the rendered template cannot be written
+	 * @throws ConversionException if a list entry cannot be converted to a value map
+	 */
+	void render(ValueMap valueMap, ListEntries listEntries, OutputStream outputStream) throws IOException, ConversionException {
+		GatheringOutput output = new GatheringOutput(null, outputStream);
+		output.add(ByteBuffer.wrap(header));
+		render(parts, valueMap, listEntries, output);
+		output.flush();
+	}
+
+	private void render(List<Part> parts, ValueMap valueMap, ListEntries listEntries, GatheringOutput output) throws IOException, ConversionException {
+		ValueMap noList = ValueMap.empty();
+
+		for (Part part: parts) {
+			if (part.type == Part.Type.LIST) {
+				listEntries.forEach(valueMap, part.text, (listValueMap, index) -> {
+					for (Part entryPart: part.entry) {
+						render(entryPart, valueMap, listValueMap, index, output);
+					}
+				}, (listValueMap, indices) -> {
+					// Render a range of entries into its own buffer
+					ByteArrayOutputStream range = new ByteArrayOutputStream();
+					GatheringOutput rangeOutput = new GatheringOutput(null, range);
+					for (String index: indices) {
+						for (Part entryPart: part.entry) {
+							render(entryPart, valueMap, listValueMap, index, rangeOutput);
+						}
+					}
+					rangeOutput.flush();
+					return range.toByteArray();
+				}, range -> output.add(ByteBuffer.wrap(range)));
+			} else {
+				render(part, valueMap, noList, "", output);
+			}
+		}
+	}
+
+	private void render(Part part, ValueMap valueMap, ValueMap listValueMap, String index, GatheringOutput output) throws IOException {
+		switch (part.type) {
+		case BYTES:
+			output.add(ByteBuffer.wrap(part.bytes));
+			break;
+		case FIELD:
+			output.add(encode(TemplateSegment.valueAsString(part.text, valueMap), charset, header));
+			break;
+		case ENTRY_FIELD:
+			output.add(encode(TemplateSegment.valueAsString(index + part.text, listValueMap), charset, header));
+			break;
+		case INDEX:
+			output.add(encode(index, charset, header));
+			break;
+		default:
+			throw new IllegalStateException("Unexpected part type " + part.type);
+		}
+	}
+
+	/* Encodes text without any byte order mark */
+	private static ByteBuffer encode(String text, Charset charset, byte[] header) {
+		ByteBuffer encoded = charset.encode(text);
+		if (startsWith(encoded, header)) {
+			encoded.position(encoded.position() + header.length);
+		}
+		return encoded;
+	}
+
+	/* Do the remaining bytes of the buffer start with the prefix? */
+	private static boolean startsWith(ByteBuffer buffer, byte[] prefix) {
+		if (buffer.remaining() < prefix.length) return false;
+
+		for (int i = 0; i < prefix.length; i++) {
+			if (buffer.get(buffer.position() + i) != prefix[i]) return false;
+		}
+		return true;
+	}
+
+	/* Determines the byte order mark, if any, written by the charset at the start of each encoded text.
+	 * Encoding one character and two characters only differ in the length of one character. */
+	private static byte[] header(Charset charset) {
+		ByteBuffer one = charset.encode("x");
+		int headerLength = 2 * one.remaining() - charset.encode("xx").remaining();
+		byte[] header = new byte[Math.max(headerLength, 0)];
+		one.get(header);
+		return header;
+	}
+
+	/* Builds the parts of an encoded template merging adjacent literal text */
+	private static final class PartsBuilder {
+		private final Charset charset;
+		private final byte[] header;
+		private final List<Part> parts = new ArrayList<>();
+		private final StringBuilder literal = new StringBuilder();
+
+		PartsBuilder(Charset charset, byte[] header) {
+			this.charset = charset;
+			this.header = header;
+		}
+
+		PartsBuilder add(TemplateBlock block) {
+			Optional<List<TemplateSegment>> semanticLine = block.semanticLine();
+			if (semanticLine.isPresent()) {
+				semanticLine.get().forEach(this::add);
+				literal("\n");
+			}
+			block.text().forEach(this::add);
+
+			return this;
+		}
+
+		PartsBuilder add(TemplateSegment segment) {
+			switch (segment.type()) {
+			case LITERAL:
+				return literal(segment.text());
+			case FIELD:
+				return part(new Part(Part.Type.FIELD, null, segment.text(), null));
+			case ENTRY_FIELD:
+				return part(new Part(Part.Type.ENTRY_FIELD, null, segment.text(), null));
+			case INDEX:
+				return part(new Part(Part.Type.INDEX, null, "", null));
+			default:
+				throw new IllegalStateException("Unknown segment type " + segment.type());
+			}
+		}
+
+		PartsBuilder literal(String text) {
+			literal.append(text);
+			return this;
+		}
+
+		PartsBuilder list(String listFieldName, List<Part> entry) {
+			return part(new Part(Part.Type.LIST, null, listFieldName, ImmutableList.copyOf(entry)));
+		}
+
+		private PartsBuilder part(Part part) {
+			flushLiteral();
+			parts.add(part);
+			return this;
+		}
+
+		private void flushLiteral() {
+			if (literal.length() > 0) {
+				ByteBuffer encoded = encode(literal.toString(), charset, header);
+				byte[] bytes = new byte[encoded.remaining()];
+				encoded.get(bytes);
+				parts.add(new Part(Part.Type.BYTES, bytes, "", null));
+				literal.setLength(0);
+			}
+		}
+
+		List<Part> build() {
+			flushLiteral();
+			return parts;
+		}
+	}
+
+	/* Collects buffers and writes them with as few write operations as possible */
+	private static final class GatheringOutput {
+		private static final int MAX_BUFFERS = 64;
+
+		private final ByteBuffer[] buffers = new ByteBuffer[MAX_BUFFERS];
+		private int count = 0;
+
+		private final WritableByteChannel channel;
+		private final OutputStream outputStream;
+
+		GatheringOutput(WritableByteChannel channel, OutputStream outputStream) {
+			this.channel = channel;
+			this.outputStream = outputStream;
+		}
+
+		void add(ByteBuffer buffer) throws IOException {
+			if (!buffer.hasRemaining()) return;
+
+			buffers[count++] = buffer;
+			if (count == MAX_BUFFERS) {
+				flush();
+			}
+		}
+
+		void flush() throws IOException {
+			if (outputStream != null) {
+				for (int i = 0; i < count; i++) {
+					ByteBuffer buffer = buffers[i];
+					outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				}
+			} else if (channel instanceof GatheringByteChannel) {
+				GatheringByteChannel gatheringChannel = (GatheringByteChannel) channel;
+				int first = 0;
+				while (first < count) {
+					gatheringChannel.write(buffers, first, count - first);
+					while (first < count && !buffers[first].hasRemaining()) first++;
+				}
+			} else {
+				for (int i = 0; i < count; i++) {
+					while (buffers[i].hasRemaining()) {
+						channel.write(buffers[i]);
+					}
+				}
+			}
+
+			Arrays.fill(buffers, 0, count, null);
+			count = 0;
+		}
+	}
+
+}
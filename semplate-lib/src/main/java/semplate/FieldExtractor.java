@@ -0,0 +1,248 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Chars;
+import com.google.common.primitives.Ints;
+
+/** Extracts the values of all fields of a block from the text of the block in one pass.
+ * <p>
+ * The start and end delimiters of the fields are compiled into one Aho-Corasick automaton. The text is
+ * scanned once and each occurrence of a delimiter either starts the value of the fields waiting for this start
+ * delimiter or ends the value of the fields waiting for this end delimiter. The time taken is linear in the
+ * length of the text and independent of the number of fields.
+ * <p>
+ * The values found are the same as those found by searching for each field separately with its
+ * {@link FieldSpec#extractionPattern() extraction pattern}, i.e. the first match wins, fields with the same
+ * delimiters have the same value, a missing start delimiter matches the start of the text, a missing end
+ * delimiter matches the end of the text and a value does not span line terminators.
+ * <p>
+ * The blocks of a markdown file usually have the same few sequences of delimiters, so the extractors
+ * are compiled once for each sequence and shared in a bounded cache. Extractors are immutable and thread safe.
+ *
+ * @author Andrew Doble
+ *
+ */
+final class FieldExtractor {
+	/** The maximum number of delimiter sequences whose extractors are cached */
+	static final long MAXIMUM_EXTRACTORS = 256;
+
+	private static final LoadingCache<List<Delimiter>, FieldExtractor> extractors = CacheBuilder.newBuilder()
+			                                                                                   .maximumSize(MAXIMUM_EXTRACTORS)
+			                                                                                   .build(CacheLoader.from(FieldExtractor::new));
+
+	private static final int ROOT = 0;
+	private static final int NOT_STARTED = -1;
+	private static final int NOT_FOUND = -2;
+
+	private final int numberFields;
+	private final boolean[] anchoredStart;  // The field has no start delimiter, i.e. starts at the start of the text
+	private final boolean[] anchoredEnd;    // The field has no end delimiter, i.e. ends at the end of the text
+
+	private final char[] alphabet;      // The sorted characters of the delimiters
+	private final int[][] transitions;  // The next state for a state and the index of a character in the alphabet
+	private final int[][] outputs;      // The delimiters found in a state
+	private final int[] lengths;        // The lengths of the delimiters
+	private final int[][] starting;     // The fields starting with a delimiter
+	private final int[][] ending;       // The fields ending with a delimiter
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private FieldExtractor(List<Delimiter> delimiters) {
+		numberFields = delimiters.size();
+		anchoredStart = new boolean[numberFields];
+		anchoredEnd = new boolean[numberFields];
+
+		// Number the distinct delimiter strings and record the fields starting and ending with each
+		Map<String, List<Integer>> startingFields = new LinkedHashMap<>();
+		Map<String, List<Integer>> endingFields = new LinkedHashMap<>();
+		for (int field = 0; field < numberFields; field++) {
+			Delimiter delimiter = delimiters.get(field);
+			anchoredStart[field] = delimiter.start().isEmpty();
+			anchoredEnd[field] = delimiter.end().isEmpty();
+			final int f = field;
+			delimiter.start().ifPresent(s -> startingFields.computeIfAbsent(s, k -> new ArrayList<>()).add(f));
+			delimiter.end().ifPresent(e -> endingFields.computeIfAbsent(e, k -> new ArrayList<>()).add(f));
+		}
+		List<String> strings = new ArrayList<>(startingFields.keySet());
+		endingFields.keySet().stream().filter(e -> !startingFields.containsKey(e)).forEach(strings::add);
+
+		lengths = new int[strings.size()];
+		starting = new int[strings.size()][];
+		ending = new int[strings.size()][];
+		TreeSet<Character> characters = new TreeSet<>();
+		for (int i = 0; i < strings.size(); i++) {
+			String s = strings.get(i);
+			lengths[i] = s.length();
+			starting[i] = Ints.toArray(startingFields.getOrDefault(s, List.of()));
+			ending[i] = Ints.toArray(endingFields.getOrDefault(s, List.of()));
+			s.chars().forEach(c -> characters.add((char) c));
+		}
+		alphabet = Chars.toArray(characters);
+
+		// Build the trie of the delimiter strings
+		List<int[]> trie = new ArrayList<>();
+		List<List<Integer>> found = new ArrayList<>();
+		trie.add(newState());
+		found.add(new ArrayList<>());
+		for (int i = 0; i < strings.size(); i++) {
+			int state = ROOT;
+			for (char c: strings.get(i).toCharArray()) {
+				int a = Arrays.binarySearch(alphabet, c);
+				if (trie.get(state)[a] < 0) {
+					trie.get(state)[a] = trie.size();
+					trie.add(newState());
+					found.add(new ArrayList<>());
+				}
+				state = trie.get(state)[a];
+			}
+			found.get(state).add(i);
+		}
+
+		// Complete the trie to an automaton by breadth first search, following the failure links
+		transitions = trie.toArray(new int[trie.size()][]);
+		int[] failure = new int[transitions.length];
+		int[] queue = new int[transitions.length];
+		int head = 0;
+		int tail = 0;
+		for (int a = 0; a < alphabet.length; a++) {
+			if (transitions[ROOT][a] < 0) {
+				transitions[ROOT][a] = ROOT;
+			} else {
+				failure[transitions[ROOT][a]] = ROOT;
+				queue[tail++] = transitions[ROOT][a];
+			}
+		}
+		while (head < tail) {
+			int state = queue[head++];
+			found.get(state).addAll(found.get(failure[state]));
+			for (int a = 0; a < alphabet.length; a++) {
+				int next = transitions[state][a];
+				if (next < 0) {
+					transitions[state][a] = transitions[failure[state]][a];
+				} else {
+					failure[next] = transitions[failure[state]][a];
+					queue[tail++] = next;
+				}
+			}
+		}
+
+		outputs = new int[transitions.length][];
+		for (int state = 0; state < transitions.length; state++) {
+			outputs[state] = Ints.toArray(found.get(state));
+		}
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** The extractor for fields with the delimiters. The extractor is compiled once for each sequence of
+	 * delimiters and cached.
+	 *
+	 * @param delimiters The delimiters of the fields in the order of the fields
+	 * @return The extractor
+	 */
+	static FieldExtractor of(Delimiter... delimiters) {
+		checkNotNull(delimiters);
+
+		return extractors.getUnchecked(ImmutableList.copyOf(delimiters));
+	}
+
+	/** Extracts the values of the fields from a text. The values are parts of the text that are not copied, 
+	 * if the text supports this.
+	 *
+	 * @param text The text
+	 * @return The value of each field in the order of the delimiters, or null if a field was not found
+	 */
+	CharSequence[] extract(CharSequence text) {
+		int[] valueStart = new int[numberFields];  // The start of the value, NOT_STARTED or NOT_FOUND
+		int[] valueEnd = new int[numberFields];    // The end of the value once found, otherwise -1
+		for (int field = 0; field < numberFields; field++) {
+			valueStart[field] = anchoredStart[field] ? 0 : NOT_STARTED;
+			valueEnd[field] = -1;
+		}
+
+		int length = text.length();
+		int state = ROOT;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+
+			if (isLineTerminator(c)) {
+				lineTerminator(text, i, valueStart, valueEnd);
+				state = ROOT;
+				continue;
+			}
+
+			int a = Arrays.binarySearch(alphabet, c);
+			state = a < 0 ? ROOT : transitions[state][a];
+
+			for (int delimiter: outputs[state]) {
+				int occurrence = i + 1 - lengths[delimiter];
+				for (int field: ending[delimiter]) {
+					if (valueEnd[field] < 0 && valueStart[field] >= 0 && occurrence >= valueStart[field]) {
+						valueEnd[field] = occurrence;
+					}
+				}
+				for (int field: starting[delimiter]) {
+					if (valueStart[field] == NOT_STARTED) {
+						valueStart[field] = i + 1;
+					}
+				}
+			}
+		}
+
+		CharSequence[] values = new CharSequence[numberFields];
+		for (int field = 0; field < numberFields; field++) {
+			if (valueEnd[field] < 0 && anchoredEnd[field] && valueStart[field] >= 0) {
+				valueEnd[field] = length;
+			}
+			if (valueEnd[field] >= 0) {
+				values[field] = text.subSequence(valueStart[field], valueEnd[field]);
+			}
+		}
+		return values;
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/* A value cannot span a line terminator. Fields without an end delimiter end at a final line terminator,
+	 * other fields waiting for their end delimiter start again with the next line, unless they have to start
+	 * at the start of the text.
+	 */
+	private void lineTerminator(CharSequence text, int i, int[] valueStart, int[] valueEnd) {
+		boolean finalTerminator = (i == text.length() - 1)
+				|| (i == text.length() - 2 && text.charAt(i) == '\r' && text.charAt(i + 1) == '\n');
+
+		for (int field = 0; field < numberFields; field++) {
+			if (valueEnd[field] >= 0 || valueStart[field] < 0) {
+				continue;
+			}
+			if (anchoredEnd[field] && finalTerminator) {
+				valueEnd[field] = i;
+			} else {
+				valueStart[field] = anchoredStart[field] ? NOT_FOUND : NOT_STARTED;
+			}
+		}
+	}
+
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == 0x2028 || c == 0x2029;
+	}
+
+	private int[] newState() {
+		int[] state = new int[alphabet.length];
+		Arrays.fill(state, -1);
+		return state;
+	}
+
+}
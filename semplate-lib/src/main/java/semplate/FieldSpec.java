@@ -1,31 +1,43 @@
 package semplate;
 
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static com.google.common.base.Preconditions.*;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 
 class FieldSpec {
-	final private static Pattern fieldPattern = Pattern.compile("\\{\\{(?<field>.*?):pattern=\"(?<start>.*?)%s(?<end>.*?)\"\\}\\}");
+	/** The maximum number of delimiters whose extraction patterns are cached */
+	static final long MAXIMUM_EXTRACTION_PATTERNS = 256;
 	
+	// The extraction patterns are shared by all field specs, blocks and files as the same delimiters are used again and again 
+	final private static LoadingCache<Delimiter, Pattern> extractionPatterns = CacheBuilder.newBuilder()
+			                                                                               .maximumSize(MAXIMUM_EXTRACTION_PATTERNS)
+			                                                                               .build(CacheLoader.from(FieldSpec::compileExtractionPattern));
 	
 	private String fieldName = ""; 	
     private Delimiter delimiter = new Delimiter();
+    private Pattern extractionPattern;
     
+    /** Parses a field specification of the form <code>{{fieldname:pattern="pattern"}}</code>.
+     * 
+     * @param fieldString The field specification
+     * @return The field spec
+     * @throws IllegalArgumentException if the string is not a field specification
+     */
     static FieldSpec of(String fieldString) {
-    	Matcher matcher = fieldPattern.matcher(fieldString);
-    	
-    	checkArgument(matcher.matches(), "Argument \"%s\"  does not match a field specification", fieldString);
-
+    	return SemanticLexer.fieldSpec(fieldString);
+    }
+    
+    static FieldSpec of(String fieldName, Delimiter delimiter) {
     	FieldSpec field = new FieldSpec();
-    	// Parse the field string. These are of the form {{fieldname:pattern="pattern"}}
-    	field.fieldName = matcher.group("field");
-    	
-    	field.delimiter.start(matcher.group("start")).end(matcher.group("end"));
+    	field.fieldName = fieldName;
+    	field.delimiter = delimiter;
+    	field.extractionPattern = extractionPattern(delimiter);
     	
     	return field;
-    	
     }
     
     String fieldName() {
@@ -36,8 +48,31 @@ class FieldSpec {
     	return delimiter;
     }
     
-    static Pattern pattern() {
-    	return fieldPattern;
+    /** The pattern finding the value of this field in the text of a block. The value is in the group <code>value</code>.
+     * 
+     * @return The compiled extraction pattern
+     */
+    Pattern extractionPattern() {
+    	return extractionPattern;
+    }
+    
+    /** The pattern finding a value between the start and end delimiter, e.g. <code>\[(?&lt;value&gt;.*?)\]</code>. 
+     * A missing start or end delimiter matches the start or end of the text. The pattern is compiled once 
+     * for each delimiter and cached.
+     * 
+     * @param delimiter The delimiter around the value
+     * @return The compiled extraction pattern
+     */
+    static Pattern extractionPattern(Delimiter delimiter) {
+    	return extractionPatterns.getUnchecked(delimiter);
+    }
+    
+    private static Pattern compileExtractionPattern(Delimiter delimiter) {
+    	String regex = delimiter.start().map(d -> Pattern.quote(d)).orElse("^");  // Quote the start delimiter
+    	regex += "(?<value>.*?)";
+    	regex += delimiter.end().map(d -> Pattern.quote(d)).orElse("$");  // Quote the end delimiter
+    	
+    	return Pattern.compile(regex);
     }
 
 	@Override
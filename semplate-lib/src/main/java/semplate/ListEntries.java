@@ -0,0 +1,257 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.BaseStream;
+
+import semplate.annotations.Templatable;
+import semplate.annotations.TemplateField;
+import semplate.valuemap.ConversionException;
+import semplate.valuemap.ValueMap;
+
+/** Supplies the entries of the lists expanded when a template is rendered.
+ * <p>
+ * The entries of a list are normally taken from the value map of the data object. A list can also be
+ * bound to an {@link Iterator} or a {@link java.util.stream.Stream}. The entries of such a lazy list are
+ * pulled and converted one at a time as the list is expanded, so that only the entry being rendered is held
+ * in memory. A lazy list can only be expanded once.
+ * <p>
+ * The entries of large lists taken from the value map can be rendered in parallel (see {@link #parallel(ForkJoinPool, int)}).
+ * The entries are split into ranges of consecutive entries, each range is rendered into a buffer on a fork join pool 
+ * and the buffers are written in the order of the ranges, so that the output is the same as when the entries 
+ * are rendered one after the other.
+ *
+ * @author Andrew Doble
+ *
+ */
+final class ListEntries {
+
+	/** Renders one entry of a list */
+	interface EntryRenderer {
+		/** Renders one list entry.
+		 *
+		 * @param listValueMap The value map containing the entry mapped to the index
+		 * @param index The index of the entry in the list
+		 * @throws IOException if the rendered entry cannot be written
+		 */
+		void render(ValueMap listValueMap, String index) throws IOException;
+	}
+
+	/** Renders a range of entries of a list into a buffer */
+	interface RangeRenderer<B> {
+		/** Renders a range of consecutive list entries. This is called in the threads of the fork join pool.
+		 *
+		 * @param listValueMap The value map containing the entries mapped to their indices
+		 * @param indices The indices of the entries in the range
+		 * @return The buffer containing the rendered entries
+		 * @throws IOException if the entries cannot be rendered
+		 */
+		B render(ValueMap listValueMap, List<String> indices) throws IOException;
+	}
+
+	/** Writes a buffer containing rendered list entries */
+	interface RangeWriter<B> {
+		/** Writes the rendered range of entries. This is called in the rendering thread in the order of the ranges.
+		 *
+		 * @param rendered The buffer containing the rendered entries
+		 * @throws IOException if the buffer cannot be written
+		 */
+		void write(B rendered) throws IOException;
+	}
+
+	/** The default number of entries in a range rendered in parallel */
+	static final int DEFAULT_RANGE_SIZE = 1024;
+
+	private static final ListEntries NONE = new ListEntries(Map.of(), null, DEFAULT_RANGE_SIZE);
+
+	// The lists that are expanded lazily mapped to their list field names
+	private final Map<String, Iterator<?>> lazyLists;
+
+	// The pool rendering ranges of list entries in parallel or null if the entries are rendered sequentially
+	private final ForkJoinPool pool;
+
+	// The number of entries in a range rendered in parallel
+	private final int rangeSize;
+
+	private ListEntries(Map<String, Iterator<?>> lazyLists, ForkJoinPool pool, int rangeSize) {
+		this.lazyLists = lazyLists;
+		this.pool = pool;
+		this.rangeSize = rangeSize;
+	}
+
+	/** List entries that are only taken from the value map of the data object.
+	 *
+	 * @return The list entries
+	 */
+	static ListEntries none() {
+		return NONE;
+	}
+
+	/** List entries taken from the lazy lists in a data object, i.e. the fields annotated with
+	 * {@link TemplateField} of type {@link Iterator} or {@link java.util.stream.Stream}, and the lists bound
+	 * to the writer.
+	 *
+	 * @param dataObject The data object
+	 * @param boundLists The lists bound to the writer. These replace any lazy lists in the data object with the same name.
+	 * @return The list entries
+	 * @throws ConversionException if the lazy lists cannot be read from the data object
+	 */
+	static ListEntries from(Object dataObject, Map<String, Iterator<?>> boundLists) throws ConversionException {
+		Map<String, Iterator<?>> lazyLists = new HashMap<>();
+
+		Class<?> c = dataObject.getClass();
+		if (c.isAnnotationPresent(Templatable.class)) {
+			for (Field field: c.getDeclaredFields()) {
+				if (field.isAnnotationPresent(TemplateField.class) && ValueMap.isLazy(field.getType())) {
+					field.setAccessible(true);
+					try {
+						Object fieldValue = field.get(dataObject);
+						if (fieldValue instanceof Iterator) {
+							lazyLists.put(field.getName(), (Iterator<?>) fieldValue);
+						} else if (fieldValue instanceof BaseStream) {
+							lazyLists.put(field.getName(), ((BaseStream<?, ?>) fieldValue).iterator());
+						}
+					} catch (IllegalArgumentException | IllegalAccessException e) {
+						String msg = "Unable to read the list " + field.getName();
+						throw new ConversionException(msg, e);
+					}
+				}
+			}
+		}
+
+		lazyLists.putAll(boundLists);
+
+		return lazyLists.isEmpty() ? NONE : new ListEntries(lazyLists, null, DEFAULT_RANGE_SIZE);
+	}
+
+	/** These list entries with the entries of lists taken from the value map rendered in parallel. Lists with 
+	 * at most one range of entries and lazy lists are still rendered sequentially.
+	 *
+	 * @param pool The pool the ranges of list entries are rendered on
+	 * @param rangeSize The number of consecutive entries rendered in one task
+	 * @return The list entries
+	 */
+	ListEntries parallel(ForkJoinPool pool, int rangeSize) {
+		checkNotNull(pool, "The fork join pool cannot be null");
+		checkArgument(rangeSize > 0, "A range needs at least one entry (was %s)", rangeSize);
+
+		return new ListEntries(lazyLists, pool, rangeSize);
+	}
+
+	/** Adds all entries of the lazy lists to a value map. This is used where the complete list is needed,
+	 * such as when updating a markdown file.
+	 *
+	 * @param valueMap The value map the entries are added to
+	 * @throws ConversionException if an entry of a lazy list cannot be converted to a value map
+	 */
+	void addTo(ValueMap valueMap) throws ConversionException {
+		for (Map.Entry<String, Iterator<?>> lazyList: lazyLists.entrySet()) {
+			ValueMap listValueMap = ValueMap.empty();
+			int i = 0;
+			while (lazyList.getValue().hasNext()) {
+				listValueMap.merge(ValueMap.fromEntry(String.valueOf(i++), lazyList.getValue().next()));
+			}
+			valueMap.put(lazyList.getKey(), listValueMap);
+		}
+	}
+
+	/** Renders each entry of a list.
+	 *
+	 * @param valueMap The value map of the data object
+	 * @param listFieldName The name of the list field
+	 * @param renderer Renders each entry
+	 * @throws IOException if a rendered entry cannot be written
+	 * @throws ConversionException if an entry of a lazy list cannot be converted to a value map
+	 */
+	void forEach(ValueMap valueMap, String listFieldName, EntryRenderer renderer) throws IOException, ConversionException {
+		forEach(valueMap, listFieldName, renderer, null, null);
+	}
+
+	/** Renders each entry of a list. If these list entries are rendered in parallel and the list has more than one
+	 * range of entries, the ranges are rendered with the range renderer and written with the range writer. Otherwise
+	 * each entry is rendered with the entry renderer.
+	 *
+	 * @param <B> The type of the buffers the ranges are rendered into
+	 * @param valueMap The value map of the data object
+	 * @param listFieldName The name of the list field
+	 * @param renderer Renders each entry
+	 * @param rangeRenderer Renders each range of entries or null if the entries cannot be rendered in parallel
+	 * @param rangeWriter Writes each rendered range or null if the entries cannot be rendered in parallel
+	 * @throws IOException if a rendered entry cannot be written
+	 * @throws ConversionException if an entry of a lazy list cannot be converted to a value map
+	 */
+	<B> void forEach(ValueMap valueMap, String listFieldName, EntryRenderer renderer,
+			         RangeRenderer<B> rangeRenderer, RangeWriter<B> rangeWriter) throws IOException, ConversionException {
+		if (pool != null && rangeRenderer != null && !lazyLists.containsKey(listFieldName)) {
+			ValueMap listValueMap = valueMap.getValueMap(listFieldName).orElse(ValueMap.empty());
+			if (listValueMap.fieldNames().size() > rangeSize) {
+				forEachRange(listValueMap, rangeRenderer, rangeWriter);
+				return;
+			}
+		}
+
+		Iterator<?> lazyList = lazyLists.get(listFieldName);
+
+		if (lazyList != null) {
+			int i = 0;
+			while (lazyList.hasNext()) {
+				String index = String.valueOf(i++);
+				renderer.render(ValueMap.fromEntry(index, lazyList.next()), index);
+			}
+		} else {
+			ValueMap listValueMap = valueMap.getValueMap(listFieldName).orElse(ValueMap.empty());
+			for (String index: listValueMap.fieldNames()) {
+				renderer.render(listValueMap, index);
+			}
+		}
+	}
+
+	/* Renders the ranges of entries on the pool and writes them in order. At most twice as many ranges as the pool 
+	 * has threads are rendered ahead of the range being written, so that not all rendered ranges are held in memory. */
+	private <B> void forEachRange(ValueMap listValueMap, RangeRenderer<B> rangeRenderer, RangeWriter<B> rangeWriter) throws IOException {
+		List<String> indices = new ArrayList<>(listValueMap.fieldNames());
+		int maxAhead = 2 * pool.getParallelism();
+
+		Deque<CompletableFuture<B>> rendering = new ArrayDeque<>();
+		try {
+			for (int start = 0; start < indices.size(); start += rangeSize) {
+				List<String> range = indices.subList(start, Math.min(start + rangeSize, indices.size()));
+				rendering.add(CompletableFuture.supplyAsync(() -> {
+					try {
+						return rangeRenderer.render(listValueMap, range);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}, pool));
+
+				if (rendering.size() >= maxAhead) {
+					rangeWriter.write(rendering.remove().join());
+				}
+			}
+
+			while (!rendering.isEmpty()) {
+				rangeWriter.write(rendering.remove().join());
+			}
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException) e.getCause()).getCause();
+			throw e;
+		} finally {
+			rendering.forEach(future -> future.cancel(false));
+		}
+	}
+
+}
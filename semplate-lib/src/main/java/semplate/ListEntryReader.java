@@ -0,0 +1,194 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import semplate.valuemap.ValueMap;
+
+/** Reads the entries of one list of a semantically annotated markdown file one at a time.
+ * <p>
+ * The file is read line by line and the blocks are built in the same way as when the whole file is read
+ * ({@link Block#block()}). Only the values of the entries of the list are kept. An entry is complete when a block
+ * of another entry or the end of the file is read, so at most the entries of one block are held in memory.
+ * <p>
+ * The shards referenced by the shard directives of a file are read after the file, in the order of the directives,
+ * in the same way as {@link SemanticReader#read()} reads them. Only one file is open at a time.
+ * <p>
+ * Errors are thrown as {@link UncheckedReadException}s, as the entries are read while iterating. The reader must be
+ * closed to close the file being read. List entry readers are not thread safe.
+ *
+ * @author Andrew Doble
+ *
+ */
+final class ListEntryReader implements Iterator<ValueMap>, Closeable {
+	private final String listFieldName;
+
+	private final Deque<Path> files = new ArrayDeque<>();  // The files still to be read
+	private final Set<Path> read = new HashSet<>();        // The files read, to detect shards referenced more than once
+
+	// The file being read
+	private Path file = null;
+	private BufferedReader reader = null;
+	private Function<String, Block> blocks;
+	private final List<String> shards = new ArrayList<>();
+
+	// The entry whose blocks are being read and the entries complete
+	private String index = null;
+	private ValueMap entry = null;
+	private final Deque<ValueMap> entries = new ArrayDeque<>();
+
+	private boolean closed = false;
+
+	/** Creates a reader of the entries of a list.
+	 *
+	 * @param file The markdown file, or the index file of the shards
+	 * @param listFieldName The name of the list field, e.g. <code>references</code>
+	 */
+	ListEntryReader(Path file, String listFieldName) {
+		checkNotNull(file);
+		checkNotNull(listFieldName);
+
+		this.listFieldName = listFieldName;
+		this.files.add(file);
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	@Override
+	public boolean hasNext() {
+		while (entries.isEmpty() && !closed) {
+			readLine();
+		}
+
+		return !entries.isEmpty();
+	}
+
+	/** The next entry of the list.
+	 *
+	 * @return The value map of the entry, e.g. the value map with the fields <code>title</code> and <code>link</code>
+	 *         of the entry <code>references.0</code>
+	 */
+	@Override
+	public ValueMap next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		return entries.remove();
+	}
+
+	/** Closes the file being read. No more entries are read.
+	 *
+	 * @throws UncheckedReadException if the file cannot be closed
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		files.clear();
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				throw new UncheckedReadException(new ReadException(e));
+			} finally {
+				reader = null;
+			}
+		}
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/* Reads the next line of the file being read, opening the next file if necessary */
+	private void readLine() {
+		try {
+			if (reader == null) {
+				open(files.remove());
+			}
+
+			String line = reader.readLine();
+			if (line == null) {
+				accept("\n");  // A blank line terminating the last block
+				reader.close();
+				reader = null;
+
+				// The shards are read before the files following this file
+				for (int i = shards.size() - 1; i >= 0; i--) {
+					files.addFirst(Sharding.referencedShard(file, shards.get(i)));
+				}
+				if (files.isEmpty()) {
+					complete();
+					closed = true;
+				}
+			} else {
+				accept(line);
+			}
+		} catch (IOException | UncheckedIOException e) {
+			close();
+			throw new UncheckedReadException(new ReadException(e instanceof UncheckedIOException ? e.getCause() : e));
+		} catch (ReadException e) {
+			close();
+			throw new UncheckedReadException(e);
+		}
+	}
+
+	private void open(Path nextFile) throws IOException, ReadException {
+		if (!read.add(nextFile.toAbsolutePath().normalize())) {
+			throw new ReadException("Shard " + nextFile.getFileName() + " is referenced more than once");
+		}
+
+		file = nextFile;
+		reader = Files.newBufferedReader(nextFile, Charset.defaultCharset());
+		blocks = Block.block();
+		shards.clear();
+	}
+
+	/* Adds the values of the list entries in the block terminated by a line */
+	private void accept(String line) {
+		Sharding.shardDirective(line).ifPresent(shards::add);
+
+		Block block = blocks.apply(line);
+		if (block.isEmpty()) return;
+
+		Optional<ValueMap> listValueMap = block.toValueMap().getValueMap(listFieldName);
+		if (listValueMap.isEmpty()) return;
+
+		for (String entryIndex: listValueMap.get().fieldNames()) {
+			Optional<ValueMap> entryValueMap = listValueMap.get().getValueMap(entryIndex);
+			if (entryValueMap.isEmpty()) continue;  // Not an entry of a list
+
+			if (entryIndex.equals(index)) {
+				entry.merge(entryValueMap.get());  // Another block of the same entry
+			} else {
+				complete();
+				index = entryIndex;
+				entry = entryValueMap.get();
+			}
+		}
+	}
+
+	private void complete() {
+		if (entry != null) {
+			entries.add(entry);
+		}
+		index = null;
+		entry = null;
+	}
+
+}
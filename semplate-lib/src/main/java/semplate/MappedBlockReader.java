@@ -0,0 +1,188 @@
+package semplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import semplate.valuemap.ValueMap;
+
+/** Reads the value map of a semantically annotated markdown file by scanning the bytes of the memory mapped file.
+ * <p>
+ * The lines, blank lines, semantic lines and directives are found at byte level. Only the semantic lines and the
+ * lines containing directives are decoded into strings. The text lines of a block are passed to the block as
+ * views of the mapped bytes ({@link ByteChars}), so that only the extracted values are decoded. Text lines
+ * containing non-ASCII characters are decoded, unless the charset is ISO-8859-1.
+ * <p>
+ * The blocks are built in the same way as when reading the file line by line with {@link Block#block()}, so the
+ * value map is the same. Lines are terminated by <code>\n</code>, <code>\r</code> or <code>\r\n</code>.
+ * <p>
+ * The file is scanned at byte level only for charsets in which the ASCII characters are encoded as single
+ * bytes that are not part of other characters, i.e. UTF-8, US-ASCII and ISO-8859-1. Files larger than
+ * {@link #MAXIMUM_SIZE} cannot be mapped into one buffer.
+ * <p>
+ * If only some fields are read ({@link Projection}), the scan stops as soon as the projection is complete.
+ *
+ * @author Andrew Doble
+ *
+ */
+final class MappedBlockReader {
+	/** The maximum size of a file that can be read */
+	static final long MAXIMUM_SIZE = Integer.MAX_VALUE;
+
+	private static final Set<Charset> CHARSETS = Set.of(StandardCharsets.UTF_8, StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1);
+
+	private final ByteBuffer buffer;
+	private final Charset charset;
+	private final boolean latin1;
+
+	private MappedBlockReader(ByteBuffer buffer, Charset charset) {
+		this.buffer = buffer;
+		this.charset = charset;
+		this.latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** True if files in the charset can be scanned at byte level
+	 *
+	 * @param charset The charset of the file
+	 * @return True if the charset is supported
+	 */
+	static boolean supports(Charset charset) {
+		return CHARSETS.contains(charset);
+	}
+
+	/** Reads the value map of a markdown file.
+	 *
+	 * @param file The markdown file
+	 * @param charset The charset of the file. Must be {@link #supports(Charset) supported}.
+	 * @param directiveLines Receives each line containing a directive, e.g. a shard directive
+	 * @return The value map
+	 * @throws IOException if the file cannot be read or is larger than {@link #MAXIMUM_SIZE}
+	 * @throws UnsupportedOperationException if the file system of the file does not support memory mapped files
+	 */
+	static ValueMap read(Path file, Charset charset, Consumer<String> directiveLines) throws IOException {
+		return read(file, charset, Projection.all(), directiveLines);
+	}
+
+	/** Reads the value map of the selected fields of a markdown file. The file is read until the projection is complete.
+	 *
+	 * @param file The markdown file
+	 * @param charset The charset of the file. Must be {@link #supports(Charset) supported}.
+	 * @param projection The fields read
+	 * @param directiveLines Receives each line containing a directive, e.g. a shard directive
+	 * @return The value map
+	 * @throws IOException if the file cannot be read or is larger than {@link #MAXIMUM_SIZE}
+	 * @throws UnsupportedOperationException if the file system of the file does not support memory mapped files
+	 */
+	static ValueMap read(Path file, Charset charset, Projection projection, Consumer<String> directiveLines) throws IOException {
+		if (!supports(charset)) {
+			throw new IllegalArgumentException("Files in " + charset + " cannot be scanned at byte level");
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > MAXIMUM_SIZE) {
+				throw new IOException("File " + file + " with " + size + " bytes is too large to be memory mapped");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+			return new MappedBlockReader(buffer, charset).read(projection, directiveLines);
+		}
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	private ValueMap read(Projection projection, Consumer<String> directiveLines) {
+		ValueMap valueMap = new ValueMap();
+		Block block = new Block();
+
+		int limit = buffer.limit();
+		int start = 0;
+		while (start <= limit && !projection.isComplete()) {
+			// Find the end of the line and what the line contains in one pass
+			boolean blank = true;
+			boolean ascii = true;
+			boolean fieldStart = false;
+			boolean end = false;
+			boolean directive = false;
+
+			int i = start;
+			byte previous = 0;
+			for (; i < limit; i++) {
+				byte b = buffer.get(i);
+				if (b == '\n' || b == '\r') {
+					break;
+				}
+				if (b < 0) {
+					ascii = false;
+				} else if (blank && !isWhitespace(b)) {
+					blank = false;
+				}
+				if (previous == '{') {
+					fieldStart |= (b == '{');
+					directive |= (b == '@');
+				} else if (previous == '}') {
+					end |= (b == '}');
+				}
+				previous = b;
+			}
+			if (blank && !ascii) {
+				blank = !latin1 && decode(start, i).isBlank();  // Whitespace characters that are not ASCII
+			}
+
+			if (blank) {
+				if (!block.isTerminated()) {
+					block.terminate();
+					if (!block.isEmpty()) valueMap.merge(projection.valueMap(block));
+				}
+			} else if (fieldStart && end) {
+				String line = decode(start, i);
+				directiveLines.accept(line);
+				block.initialise(line);
+				if (!block.isEmpty()) valueMap.merge(projection.valueMap(block));
+			} else {
+				if (directive) {
+					directiveLines.accept(decode(start, i));
+				}
+				if (!block.isTerminated()) {
+					block.appendText(ascii || latin1 ? new ByteChars(buffer, start, i) : decode(start, i));
+				}
+			}
+
+			// The next line
+			if (i < limit - 1 && buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') {
+				i++;
+			}
+			start = i + 1;
+		}
+
+		if (!block.isTerminated()) {
+			block.terminate();
+			if (!block.isEmpty()) valueMap.merge(projection.valueMap(block));
+		}
+
+		return valueMap;
+	}
+
+	/* The characters of String.isBlank() that are single bytes */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x1F);
+	}
+
+	private String decode(int start, int end) {
+		ByteBuffer line = buffer.duplicate();
+		line.position(start);
+		line.limit(end);
+
+		return charset.decode(line).toString();
+	}
+
+}
@@ -0,0 +1,236 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/** A template that has been compiled into Java source when the application was built.
+ * <p>
+ * Precompiled templates are created by the renderer classes generated by {@link TemplateCompiler}. The
+ * generated class contains the blocks of the template so that no template file is read or parsed when the
+ * application runs. A precompiled template is bound to the class of data objects it was generated for, e.g.:
+ * <pre> <code>
+ *      WorksRenderer.TEMPLATE.write(works, outputFilePath);
+ * </code> </pre>
+ * <p>
+ * Markdown files are generated with a renderer specialised for the class of the data objects (see
+ * {@link SemanticTemplateWriter#specialized()}). The generated markdown is the same as that generated using
+ * the template file.
+ * Precompiled templates are immutable and can be shared between threads.
+ *
+ * @see TemplateCompiler
+ *
+ * @author Andrew Doble
+ *
+ * @param <T> The class of the data objects
+ */
+public final class PrecompiledTemplate<T> {
+	private final Class<T> dataClass;
+
+	private final CompiledTemplate template;
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private PrecompiledTemplate(Class<T> dataClass, CompiledTemplate template) {
+		this.dataClass = dataClass;
+		this.template = template;
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** Starts building a precompiled template. This is used by the generated renderer classes.
+	 *
+	 * @param <T> The class of the data objects
+	 * @param dataClass The class of the data objects
+	 * @param templateName The name of the template file the template was compiled from
+	 * @return A builder for the template
+	 */
+	public static <T> Builder<T> builder(Class<T> dataClass, String templateName) {
+		return new Builder<>(checkNotNull(dataClass), checkNotNull(templateName));
+	}
+
+	/** Starts a sequence of segments of a template block. This is used by the generated renderer classes.
+	 *
+	 * @return An empty sequence of segments
+	 */
+	public static Segments segments() {
+		return new Segments();
+	}
+
+	/** The class of the data objects the template was compiled for.
+	 *
+	 * @return The class of the data objects
+	 */
+	public Class<T> dataClass() {
+		return dataClass;
+	}
+
+	/** The compiled template, e.g. for use with {@link SemanticWriter#usingTemplate(CompiledTemplate)}.
+	 *
+	 * @return The compiled template
+	 */
+	public CompiledTemplate template() {
+		return template;
+	}
+
+	/** Generates a semantically annotated markdown file.
+	 *
+	 * @param dataObject The data object
+	 * @param outputFile Path specifying the markdown file to be generated
+	 * @throws WriteException if the markdown file could not be created for some cause.
+	 */
+	public void write(T dataObject, Path outputFile) throws WriteException {
+		SemanticWriter.with(dataObject).usingTemplate(template).specialized().write(outputFile);
+	}
+
+	/** Writes the generated markdown to a writer. The writer is flushed, but not closed.
+	 *
+	 * @param dataObject The data object
+	 * @param writer The writer the markdown is written to
+	 * @throws WriteException if the markdown could not be generated or written
+	 */
+	public void write(T dataObject, Writer writer) throws WriteException {
+		SemanticWriter.with(dataObject).usingTemplate(template).specialized().write(writer);
+	}
+
+	@Override
+	public String toString() {
+		return "PrecompiledTemplate [dataClass=" + dataClass.getName() + ", template=" + template + "]";
+	}
+
+	/** Builds a precompiled template from the blocks of the template. */
+	public static final class Builder<T> {
+		private final Class<T> dataClass;
+		private final String templateName;
+
+		private Delimiter commentDelimiter = new Delimiter();
+		private Delimiters delimiters = new Delimiters();
+		private final List<TemplateBlock> blocks = new ArrayList<>();
+
+		private Builder(Class<T> dataClass, String templateName) {
+			this.dataClass = dataClass;
+			this.templateName = templateName;
+		}
+
+		/** Specifies the delimiter used for comments in the markdown file.
+		 *
+		 * @param start The start of a comment
+		 * @param end The end of a comment
+		 * @return This builder
+		 */
+		public Builder<T> commentDelimiter(String start, String end) {
+			this.commentDelimiter = new Delimiter().start(start).end(end);
+			return this;
+		}
+
+		/** Adds a delimiter used around the field values.
+		 *
+		 * @param start The start delimiter
+		 * @param end The end delimiter
+		 * @return This builder
+		 */
+		public Builder<T> delimiter(String start, String end) {
+			delimiters = delimiters.add(start, end);
+			return this;
+		}
+
+		/** Adds a block that is passed through unchanged.
+		 *
+		 * @param text The text of the block
+		 * @return This builder
+		 */
+		public Builder<T> text(String text) {
+			blocks.add(TemplateBlock.text(text));
+			return this;
+		}
+
+		/** Adds a block with fields.
+		 *
+		 * @param semanticLine The semantic block line or null if the block does not have one
+		 * @param text The text of the block
+		 * @return This builder
+		 */
+		public Builder<T> fields(Segments semanticLine, Segments text) {
+			blocks.add(fieldsBlock(semanticLine, text));
+			return this;
+		}
+
+		/** Adds a list block.
+		 *
+		 * @param listDirective The list directive written before the list entries
+		 * @param listFieldName The name of the list field
+		 * @param semanticLine The semantic block line of each entry or null if the entries do not have one
+		 * @param text The text of each entry
+		 * @return This builder
+		 */
+		public Builder<T> list(String listDirective, String listFieldName, Segments semanticLine, Segments text) {
+			blocks.add(TemplateBlock.list(listDirective, listFieldName, fieldsBlock(semanticLine, text)));
+			return this;
+		}
+
+		/** Builds the precompiled template.
+		 *
+		 * @return The precompiled template
+		 */
+		public PrecompiledTemplate<T> build() {
+			CompiledTemplate template = CompiledTemplate.of(Path.of(templateName), commentDelimiter, delimiters, blocks);
+			return new PrecompiledTemplate<>(dataClass, template);
+		}
+
+		private static TemplateBlock fieldsBlock(Segments semanticLine, Segments text) {
+			return TemplateBlock.fields(Optional.ofNullable(semanticLine).map(s -> s.segments), text.segments);
+		}
+	}
+
+	/** A sequence of the segments of a template block. */
+	public static final class Segments {
+		private final List<TemplateSegment> segments = new ArrayList<>();
+
+		private Segments() {
+		}
+
+		/** Adds literal text.
+		 *
+		 * @param text The text copied to the output
+		 * @return These segments
+		 */
+		public Segments literal(String text) {
+			segments.add(TemplateSegment.literal(text));
+			return this;
+		}
+
+		/** Adds a field of the data object.
+		 *
+		 * @param fieldName The simple or compound field name
+		 * @return These segments
+		 */
+		public Segments field(String fieldName) {
+			segments.add(TemplateSegment.field(fieldName));
+			return this;
+		}
+
+		/** Adds a field of a list entry.
+		 *
+		 * @param suffix The part of the field name following the '*' character
+		 * @return These segments
+		 */
+		public Segments entryField(String suffix) {
+			segments.add(TemplateSegment.entryField(suffix));
+			return this;
+		}
+
+		/** Adds the index of a list entry.
+		 *
+		 * @return These segments
+		 */
+		public Segments index() {
+			segments.add(TemplateSegment.index());
+			return this;
+		}
+	}
+
+}
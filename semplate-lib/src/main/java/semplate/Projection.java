@@ -0,0 +1,90 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import semplate.valuemap.ValueMap;
+
+/** The fields read from the blocks of a markdown file, either all fields or only the fields with given names.
+ * <p>
+ * The names are the names of the fields of the data object, e.g. <code>title</code> or <code>references</code>. A
+ * compound field name, e.g. <code>references.0.title</code>, is selected by the first name.
+ * The values of fields that are not selected are neither extracted nor converted.
+ * <p>
+ * A projection keeps track of the selected fields found while a file is read. Once every selected field has been
+ * found with a value, i.e. not as a list or value map, the projection is complete and the rest of the file need
+ * not be read. A projection selecting all fields is never complete. Projections are used for one read and are
+ * not thread safe.
+ *
+ * @author Andrew Doble
+ *
+ */
+final class Projection {
+	private final Set<String> fieldNames;  // Null if all fields are selected
+	private final Set<String> missing;
+
+	private Projection(Set<String> fieldNames) {
+		this.fieldNames = fieldNames;
+		this.missing = fieldNames == null ? Set.of() : new HashSet<>(fieldNames);
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** A projection selecting all fields
+	 *
+	 * @return The projection
+	 */
+	static Projection all() {
+		return new Projection(null);
+	}
+
+	/** A projection selecting the fields with the given names
+	 *
+	 * @param fieldNames The names of the fields, e.g. <code>title</code>. Must not be empty.
+	 * @return The projection
+	 */
+	static Projection of(Collection<String> fieldNames) {
+		checkArgument(!fieldNames.isEmpty(), "At least one field must be selected");
+
+		return new Projection(Set.copyOf(fieldNames));
+	}
+
+	/** True if the field with the (compound) field name is selected
+	 *
+	 * @param fieldName The field name, e.g. <code>title</code> or <code>references.0.title</code>
+	 * @return True if selected
+	 */
+	boolean selects(String fieldName) {
+		if (fieldNames == null) return true;
+
+		int end = fieldName.indexOf('.');
+		return fieldNames.contains(end < 0 ? fieldName : fieldName.substring(0, end));
+	}
+
+	/** The value map of the selected fields in a block. The fields with a value are recorded as found.
+	 *
+	 * @param block The block
+	 * @return The value map of the selected fields
+	 */
+	ValueMap valueMap(Block block) {
+		ValueMap valueMap = block.toValueMap(this::selects);
+
+		if (!missing.isEmpty()) {
+			missing.removeIf(fieldName -> valueMap.containsField(fieldName) && !valueMap.isValueMap(fieldName));
+		}
+
+		return valueMap;
+	}
+
+	/** True if all selected fields have been found with a value. A projection of all fields is never complete.
+	 *
+	 * @return True if complete
+	 */
+	boolean isComplete() {
+		return fieldNames != null && missing.isEmpty();
+	}
+
+}
@@ -0,0 +1,246 @@
+package semplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import semplate.valuemap.ValueMap;
+
+/** Records the markdown files that have been written so that files whose content would not change are not
+ * written again.
+ * <p>
+ * A render cache is used with {@link SemanticTemplateWriter#skipUnchanged(RenderCache)} or
+ * {@link SemanticBatchWriter#skipUnchanged(RenderCache)}, e.g.:
+ * <pre> <code>
+ *      RenderCache renderCache = RenderCache.create();
+ *      SemanticBatchWriter.with(works).usingTemplate(templateFilePath)
+ *                                     .skipUnchanged(renderCache)
+ *                                     .write(work -&gt; outputDirectory.resolve(work.getId() + ".md"));
+ *      renderCache.skippedCount();  // The number of files that were not written
+ * </code> </pre>
+ * For each markdown file the fingerprint of the data written to it, i.e. the structural hash of the value map of
+ * the data object, is recorded together with the template used:
+ * <ul>
+ * <li>If the data and the template are unchanged, and the markdown file has not been changed since it was written,
+ * the markdown is not even generated.
+ * <li>Otherwise the markdown is generated and compared with the existing markdown file. The file is only written if
+ * its content differs.
+ * </ul>
+ * Markdown files that are not written are neither truncated nor touched, so their last modified time is kept.
+ * The number of files written and skipped are counted. A render cache can be shared between threads.
+ *
+ * @see SemanticTemplateWriter
+ *
+ * @author Andrew Doble
+ *
+ */
+public final class RenderCache {
+	private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+	private final LongAdder written = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+
+	/* The fingerprint of the data last written to a markdown file together with the state of the file */
+	private static final class Entry {
+		final Object source;
+		final HashCode fingerprint;
+		final FileTime lastModified;
+		final long size;
+
+		Entry(Object source, HashCode fingerprint, BasicFileAttributes attributes) {
+			this.source = source;
+			this.fingerprint = fingerprint;
+			this.lastModified = attributes.lastModifiedTime();
+			this.size = attributes.size();
+		}
+
+		boolean isUnchanged(Object source, HashCode fingerprint, BasicFileAttributes attributes) {
+			return this.source.equals(source) && this.fingerprint.equals(fingerprint)
+					&& lastModified.equals(attributes.lastModifiedTime()) && size == attributes.size();
+		}
+	}
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private RenderCache() {
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** Creates a new, empty render cache.
+	 *
+	 * @return A new render cache
+	 */
+	public static RenderCache create() {
+		return new RenderCache();
+	}
+
+	/** Removes the recorded fingerprint of a markdown file, so that the markdown is generated and compared
+	 * with the file when it is next written.
+	 *
+	 * @param outputFile Path to the markdown file
+	 */
+	public void invalidate(Path outputFile) {
+		entries.remove(key(outputFile));
+	}
+
+	/** Removes all recorded fingerprints. */
+	public void invalidateAll() {
+		entries.clear();
+	}
+
+	/** The number of markdown files whose fingerprint is recorded.
+	 *
+	 * @return The number of markdown files
+	 */
+	public long size() {
+		return entries.size();
+	}
+
+	/** The number of markdown files written because their content changed or they did not exist.
+	 *
+	 * @return The number of markdown files written
+	 */
+	public long writtenCount() {
+		return written.sum();
+	}
+
+	/** The number of markdown files not written because their content would not have changed.
+	 *
+	 * @return The number of markdown files skipped
+	 */
+	public long skippedCount() {
+		return skipped.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "RenderCache [size=" + size() + ", written=" + writtenCount() + ", skipped=" + skippedCount() + "]";
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/** The structural hash of a value map. The hash only depends on the field names and the strings
+	 * written for the values, not on the order the fields were added.
+	 *
+	 * @param valueMap The value map
+	 * @return The fingerprint of the value map
+	 */
+	static HashCode fingerprint(ValueMap valueMap) {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		putValueMap(hasher, valueMap);
+		return hasher.hash();
+	}
+
+	/** The source of a markdown file that is updated. This changes when the file being updated changes.
+	 *
+	 * @param inputFile The file being updated
+	 * @return The source
+	 * @throws IOException if the attributes of the file cannot be read
+	 */
+	static Object source(Path inputFile) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(inputFile, BasicFileAttributes.class);
+		return List.of(key(inputFile), attributes.lastModifiedTime(), attributes.size());
+	}
+
+	/** Has the markdown file already been written from the same source and data? If so, the write is counted
+	 * as skipped.
+	 *
+	 * @param outputFile Path to the markdown file
+	 * @param source The template or file the markdown file is generated from
+	 * @param fingerprint The fingerprint of the data written to the markdown file
+	 * @return True if the markdown file does not need to be generated
+	 * @throws IOException if the attributes of the markdown file cannot be read
+	 */
+	boolean isUnchanged(Path outputFile, Object source, HashCode fingerprint) throws IOException {
+		Entry entry = entries.get(key(outputFile));
+		if (entry == null) return false;
+
+		Optional<BasicFileAttributes> attributes = attributes(outputFile);
+		if (attributes.isPresent() && entry.isUnchanged(source, fingerprint, attributes.get())) {
+			skipped.increment();
+			return true;
+		}
+
+		return false;
+	}
+
+	/** Writes the generated markdown to the markdown file unless the file already has the same content, and
+	 * records the fingerprint of the data.
+	 *
+	 * @param outputFile Path to the markdown file
+	 * @param source The template or file the markdown file is generated from
+	 * @param fingerprint The fingerprint of the data written to the markdown file
+	 * @param markdown The generated markdown
+	 * @throws IOException if the markdown file cannot be read or written
+	 */
+	void write(Path outputFile, Object source, HashCode fingerprint, byte[] markdown) throws IOException {
+		Optional<BasicFileAttributes> attributes = attributes(outputFile);
+
+		if (attributes.isPresent() && attributes.get().size() == markdown.length
+				&& Arrays.equals(Files.readAllBytes(outputFile), markdown)) {
+			skipped.increment();
+		} else {
+			Files.write(outputFile, markdown);
+			written.increment();
+			attributes = attributes(outputFile);
+		}
+
+		if (attributes.isPresent()) {
+			entries.put(key(outputFile), new Entry(source, fingerprint, attributes.get()));
+		}
+	}
+
+	private static void putValueMap(Hasher hasher, ValueMap valueMap) {
+		hasher.putChar('{');
+		for (String fieldName: valueMap.fieldNames().stream().sorted().toArray(String[]::new)) {
+			putString(hasher, fieldName);
+
+			Optional<ValueMap> fieldValueMap = valueMap.getValueMap(fieldName);
+			if (fieldValueMap.isPresent()) {
+				putValueMap(hasher, fieldValueMap.get());
+			} else {
+				Optional<Object> value = valueMap.getValue(fieldName);
+				if (value.isPresent()) {
+					hasher.putChar('=');
+					putString(hasher, value.get().toString());
+				} else {
+					hasher.putChar('!');
+				}
+			}
+		}
+		hasher.putChar('}');
+	}
+
+	/* Strings are prefixed with their length so that different field names and values have different hashes */
+	private static void putString(Hasher hasher, String s) {
+		hasher.putInt(s.length()).putString(s, StandardCharsets.UTF_8);
+	}
+
+	private static Optional<BasicFileAttributes> attributes(Path file) throws IOException {
+		try {
+			return Optional.of(Files.readAttributes(file, BasicFileAttributes.class));
+		} catch (NoSuchFileException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static Path key(Path file) {
+		return file.toAbsolutePath().normalize();
+	}
+
+}
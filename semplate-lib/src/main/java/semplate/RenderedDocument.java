@@ -0,0 +1,257 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import semplate.valuemap.ConversionException;
+import semplate.valuemap.ValueMap;
+
+/** Semantically annotated markdown rendered from a compiled template together with the data it was rendered from,
+ * so that it can be updated with new data by only rendering the blocks whose fields have changed.
+ * <p>
+ * For instance:
+ * <pre> <code>
+ *      RenderedDocument document = RenderedDocument.render(template, work);
+ *      document.write(outputFilePath);
+ *      ...
+ *      work.setTitle("The Republic");
+ *      document = document.update(work);   // Only renders the blocks containing the title
+ *      document.write(outputFilePath);
+ * </code> </pre>
+ * The blocks of the template that are rendered again are determined using the fields each block depends on
+ * (see {@link BlockDependencies}) and the fields whose values differ between the old and the new data. All other
+ * blocks and list entries are copied from the previously rendered markdown. The markdown is the same as that
+ * written by {@link SemanticTemplateWriter}.
+ * <p>
+ * Rendered documents are immutable and can be shared between threads.
+ *
+ * @see CompiledTemplate
+ *
+ * @author Andrew Doble
+ *
+ */
+public final class RenderedDocument {
+	/** The template the markdown was rendered with */
+	private final CompiledTemplate template;
+
+	/** A snapshot of the values of the data object the markdown was rendered from. It is never exposed or changed. */
+	private final ValueMap valueMap;
+
+	/** The rendered blocks of the template */
+	private final List<RenderedBlock> blocks;
+
+	/** The number of blocks and list entries rendered */
+	private final int renderedCount;
+
+	/** The number of blocks and list entries copied from the previously rendered document */
+	private final int reusedCount;
+
+	/* A rendered block. For list blocks these are the list directive and the entries mapped to their index. */
+	private static final class RenderedBlock {
+		final String text;
+		final Map<String, String> entries;
+
+		RenderedBlock(String text, Map<String, String> entries) {
+			this.text = text;
+			this.entries = ImmutableMap.copyOf(entries);
+		}
+	}
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private RenderedDocument(CompiledTemplate template, ValueMap valueMap, List<RenderedBlock> blocks, int renderedCount, int reusedCount) {
+		this.template = template;
+		this.valueMap = valueMap;
+		this.blocks = ImmutableList.copyOf(blocks);
+		this.renderedCount = renderedCount;
+		this.reusedCount = reusedCount;
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** Renders the template with the data in a data object.
+	 *
+	 * @param template The compiled template
+	 * @param dataObject The data object
+	 * @return The rendered document
+	 * @throws WriteException if the data object could not be converted
+	 */
+	public static RenderedDocument render(CompiledTemplate template, Object dataObject) throws WriteException {
+		checkNotNull(template, "The template cannot be null");
+
+		return render(template, null, valueMap(dataObject));
+	}
+
+	/** Renders the template with the data in a data object, only rendering the blocks and list entries whose
+	 * fields have changed. All other blocks and list entries are copied from this document.
+	 *
+	 * @param dataObject The data object with the new data
+	 * @return The updated document
+	 * @throws WriteException if the data object could not be converted
+	 */
+	public RenderedDocument update(Object dataObject) throws WriteException {
+		return render(template, this, valueMap(dataObject));
+	}
+
+	/** The rendered markdown.
+	 *
+	 * @return The markdown
+	 */
+	public String text() {
+		StringBuilder text = new StringBuilder();
+		for (RenderedBlock block: blocks) {
+			text.append(block.text);
+			block.entries.values().forEach(text::append);
+		}
+		return text.toString();
+	}
+
+	/** Writes the rendered markdown to a writer. The writer is flushed, but not closed.
+	 *
+	 * @param writer The writer the markdown is written to
+	 * @throws WriteException if the markdown could not be written
+	 */
+	public void write(Writer writer) throws WriteException {
+		try {
+			for (RenderedBlock block: blocks) {
+				writer.write(block.text);
+				for (String entry: block.entries.values()) {
+					writer.write(entry);
+				}
+			}
+			writer.flush();
+		} catch (IOException e) {
+			throw new WriteException("Unable to write the rendered markdown", e);
+		}
+	}
+
+	/** Writes the rendered markdown, encoded as UTF-8, to a file.
+	 *
+	 * @param outputFile Path specifying the markdown file to be written
+	 * @throws WriteException if the markdown file could not be written
+	 */
+	public void write(Path outputFile) throws WriteException {
+		try (Writer writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
+			write(writer);
+		} catch (IOException e) {
+			throw new WriteException("Unable to write " + outputFile.getFileName(), e);
+		}
+	}
+
+	/** The template the markdown was rendered with.
+	 *
+	 * @return The compiled template
+	 */
+	public CompiledTemplate template() {
+		return template;
+	}
+
+	/** The number of blocks and list entries that were rendered when this document was created.
+	 *
+	 * @return The number of rendered blocks and list entries
+	 */
+	public int renderedCount() {
+		return renderedCount;
+	}
+
+	/** The number of blocks and list entries that were copied from the previously rendered document.
+	 *
+	 * @return The number of copied blocks and list entries
+	 */
+	public int reusedCount() {
+		return reusedCount;
+	}
+
+	@Override
+	public String toString() {
+		return "RenderedDocument [template=" + template + ", rendered=" + renderedCount + ", reused=" + reusedCount + "]";
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/* Renders the template, copying the blocks and list entries that are unchanged from the previous document if there is one */
+	private static RenderedDocument render(CompiledTemplate template, RenderedDocument previous, ValueMap valueMap) {
+		String lineSeparator = System.lineSeparator();
+		ValueMap noList = ValueMap.empty();
+		BlockDependencies dependencies = template.dependencies();
+		BitSet changed = previous == null ? null : dependencies.changedBlocks(previous.valueMap, valueMap);
+
+		List<TemplateBlock> templateBlocks = template.blocks();
+		List<RenderedBlock> blocks = new ArrayList<>(templateBlocks.size());
+		int rendered = 0;
+		int reused = 0;
+
+		try {
+			for (int i = 0; i < templateBlocks.size(); i++) {
+				TemplateBlock block = templateBlocks.get(i);
+				boolean blockChanged = changed == null || changed.get(i);
+
+				String text;
+				if (previous != null && (!blockChanged || block.type() == TemplateBlock.Type.LIST)) {
+					// List directives do not contain any fields, so they never change
+					text = previous.blocks.get(i).text;
+					if (block.type() != TemplateBlock.Type.LIST) reused++;
+				} else {
+					StringBuilder out = new StringBuilder();
+					block.render(out, valueMap, noList, "");
+					text = out.append(lineSeparator).toString();
+					if (block.type() != TemplateBlock.Type.LIST) rendered++;
+				}
+
+				Map<String, String> entries = new LinkedHashMap<>();
+				if (block.type() == TemplateBlock.Type.LIST) {
+					ValueMap listValueMap = valueMap.getValueMap(block.listFieldName()).orElse(ValueMap.empty());
+					ValueMap previousListValueMap = previous == null ? ValueMap.empty()
+							                                         : previous.valueMap.getValueMap(block.listFieldName()).orElse(ValueMap.empty());
+
+					for (String index: listValueMap.fieldNames()) {
+						String previousEntry = blockChanged ? null : previous.blocks.get(i).entries.get(index);
+						if (previousEntry != null && dependencies.isEntryUnchanged(i, index, previousListValueMap, listValueMap)) {
+							entries.put(index, previousEntry);
+							reused++;
+						} else {
+							StringBuilder out = new StringBuilder();
+							block.entry().render(out, valueMap, listValueMap, index);
+							entries.put(index, out.append(lineSeparator).toString());
+							rendered++;
+						}
+					}
+				}
+
+				blocks.add(new RenderedBlock(text, entries));
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Appending to a string builder failed", e);
+		}
+
+		return new RenderedDocument(template, valueMap, blocks, rendered, reused);
+	}
+
+	/* A snapshot of the values of a data object including the entries of any lazy lists. Value maps passed as data 
+	 * objects are copied (see ValueMap.from), so later changes by the caller do not change the snapshot. */
+	private static ValueMap valueMap(Object dataObject) throws WriteException {
+		checkNotNull(dataObject, "The data object cannot be null");
+
+		try {
+			ValueMap valueMap = ValueMap.from(dataObject);
+			ListEntries.from(dataObject, Map.of()).addTo(valueMap);
+			return valueMap;
+		} catch (ConversionException e) {
+			throw new WriteException("Unable to convert data object of type " + dataObject.getClass(), e);
+		}
+	}
+
+}
@@ -0,0 +1,342 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/** Writes a semantically annotated markdown file for each data object in a batch using one template.
+ * <p>
+ * For instance, this statement:
+ * <pre>
+ * {@code
+ *     BatchResult<Work> result = SemanticBatchWriter.with(works)
+ *                                                   .usingTemplate(templateFilePath)
+ *                                                   .write(work -> outputDirectory.resolve(work.getId() + ".md"));
+ * }
+ * </pre>
+ * ... writes a markdown file for each data object in <code>works</code> using the template file at
+ * <code>templateFilePath</code>. The template is read and parsed once for the whole batch.
+ * <p>
+ * The markdown files are written in parallel using the executor specified with {@link #usingExecutor(Executor)}
+ * (by default the common fork join pool). At most {@link #maxInFlight(int)} data objects are rendered or
+ * written at the same time so that the data objects can be lazily supplied by a stream.
+ * <p>
+ * The markdown files can also be written as the entries of a zip archive with {@link #write(ZipSink, Function)}.
+ * <p>
+ * A failure to write one markdown file does not stop the batch. Instead the failures are reported
+ * for each data object in the returned {@link BatchResult}.
+ *
+ * @see SemanticWriter
+ * @see BatchResult
+ *
+ * @author Andrew Doble
+ *
+ * @param <T> The type of the data objects
+ */
+public class SemanticBatchWriter<T> {
+	/** The default maximum number of data objects rendered and written at the same time */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 2 * Runtime.getRuntime().availableProcessors();
+
+	private final Iterator<? extends T> dataObjects;
+
+	private final Runnable closeDataObjects;  // Closes the stream of data objects, if any
+
+	private CompiledTemplate template;
+
+	private Executor executor = ForkJoinPool.commonPool();
+
+	private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+	private RenderCache renderCache;
+
+	/* ------------------- CONSTRUCTORS ---------------- */
+	private SemanticBatchWriter(Iterator<? extends T> dataObjects, Runnable closeDataObjects) {
+		this.dataObjects = dataObjects;
+		this.closeDataObjects = closeDataObjects;
+	}
+
+	/* ------------------- PUBLIC API ------------------ */
+
+	/** Set up the data objects whose data is written to semantically annotated markdown files.
+	 *
+	 * @param <T> The type of the data objects
+	 * @param dataObjects The data objects
+	 * @return A SemanticBatchWriter object setup with the data objects
+	 */
+	public static <T> SemanticBatchWriter<T> with(Iterable<? extends T> dataObjects) {
+		checkNotNull(dataObjects, "The data objects cannot be null");
+		return new SemanticBatchWriter<T>(dataObjects.iterator(), () -> {});
+	}
+
+	/** Set up a stream of data objects whose data is written to semantically annotated markdown files.
+	 * The stream is consumed lazily as the markdown files are written and is closed when the batch has been
+	 * written, even if writing the batch fails.
+	 *
+	 * @param <T> The type of the data objects
+	 * @param dataObjects A stream of data objects
+	 * @return A SemanticBatchWriter object setup with the data objects
+	 */
+	public static <T> SemanticBatchWriter<T> with(Stream<? extends T> dataObjects) {
+		checkNotNull(dataObjects, "The data objects cannot be null");
+		return new SemanticBatchWriter<T>(dataObjects.iterator(), dataObjects::close);
+	}
+
+	/** Specifies the template file used to generate the semantically annotated markdown files.
+	 *
+	 * @param templateFile The file containing the template for the generated markdown files
+	 * @return This SemanticBatchWriter object
+	 * @throws ReadException if the template file could not be read for some reason
+	 */
+	public SemanticBatchWriter<T> usingTemplate(Path templateFile) throws ReadException {
+		return usingTemplate(TemplateCache.shared().get(templateFile));
+	}
+
+	/** Specifies an already compiled template used to generate the semantically annotated markdown files.
+	 *
+	 * @param template The compiled template for the generated markdown files
+	 * @return This SemanticBatchWriter object
+	 */
+	public SemanticBatchWriter<T> usingTemplate(CompiledTemplate template) {
+		this.template = checkNotNull(template, "The template cannot be null");
+		return this;
+	}
+
+	/** Specifies the executor used to render and write the markdown files.
+	 *
+	 * @param executor The executor
+	 * @return This SemanticBatchWriter object
+	 */
+	public SemanticBatchWriter<T> usingExecutor(Executor executor) {
+		this.executor = checkNotNull(executor, "The executor cannot be null");
+		return this;
+	}
+
+	/** Specifies the maximum number of data objects that are rendered and written at the same time.
+	 *
+	 * @param maxInFlight The maximum number of data objects in flight
+	 * @return This SemanticBatchWriter object
+	 * @throws IllegalArgumentException if maxInFlight is less than 1
+	 */
+	public SemanticBatchWriter<T> maxInFlight(int maxInFlight) {
+		checkArgument(maxInFlight > 0, "At least one data object needs to be in flight (was %s)", maxInFlight);
+		this.maxInFlight = maxInFlight;
+		return this;
+	}
+
+	/** Only writes the markdown files whose content changes (see {@link SemanticTemplateWriter#skipUnchanged(RenderCache)}).
+	 * The number of files that were not written is counted by the render cache.
+	 *
+	 * @param renderCache The render cache
+	 * @return This SemanticBatchWriter object
+	 */
+	public SemanticBatchWriter<T> skipUnchanged(RenderCache renderCache) {
+		this.renderCache = checkNotNull(renderCache, "The render cache cannot be null");
+		return this;
+	}
+
+	/** Writes a semantically annotated markdown file for each of the data objects and waits until all
+	 * have been written.
+	 *
+	 * @param outputFile A function returning the path of the markdown file to be written for a data object
+	 * @return The results for each of the data objects
+	 * @throws WriteException if the batch was interrupted
+	 * @throws IllegalStateException if no template has been specified
+	 */
+	public BatchResult<T> write(Function<? super T, Path> outputFile) throws WriteException {
+		checkState(template != null, "No template has been specified");
+		checkNotNull(outputFile, "The output file function cannot be null");
+
+		try {
+			Semaphore inFlight = new Semaphore(maxInFlight);
+			List<CompletableFuture<BatchResult.Item<T>>> futures = new ArrayList<>();
+
+			while (dataObjects.hasNext()) {
+				T dataObject = dataObjects.next();
+
+				try {
+					inFlight.acquire();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new WriteException("Batch write was interrupted", e);
+				}
+
+				CompletableFuture<BatchResult.Item<T>> future;
+				try {
+					future = CompletableFuture.supplyAsync(() -> writeItem(dataObject, outputFile), executor);
+				} catch (RejectedExecutionException e) {
+					future = CompletableFuture.completedFuture(
+							new BatchResult.Item<T>(dataObject, Optional.empty(), Optional.of(new WriteException("Batch write was rejected by the executor", e))));
+				}
+				future.whenComplete((item, throwable) -> inFlight.release());
+
+				futures.add(future);
+			}
+
+			List<BatchResult.Item<T>> items = new ArrayList<>(futures.size());
+			for (CompletableFuture<BatchResult.Item<T>> future: futures) {
+				items.add(future.join());
+			}
+
+			return new BatchResult<T>(items);
+		} finally {
+			closeDataObjects.run();
+		}
+	}
+
+	/** Writes the semantically annotated markdown for each of the data objects as an entry of a zip archive
+	 * and waits until all have been written. No intermediate files are created.
+	 * <p>
+	 * The markdown is generated in parallel. The entries are written in the order the data objects were supplied,
+	 * so that the same data objects always result in the same zip archive.
+	 *
+	 * @param sink The zip archive
+	 * @param entryName A function returning the name of the zip entry written for a data object
+	 * @return The results for each of the data objects
+	 * @throws IllegalStateException if no template has been specified
+	 */
+	public BatchResult<T> write(ZipSink sink, Function<? super T, String> entryName) {
+		checkState(template != null, "No template has been specified");
+		checkNotNull(sink, "The zip sink cannot be null");
+		checkNotNull(entryName, "The entry name function cannot be null");
+
+		try {
+			Semaphore inFlight = new Semaphore(maxInFlight);
+			Deque<CompletableFuture<Rendered<T>>> pending = new ArrayDeque<>();
+			List<BatchResult.Item<T>> items = new ArrayList<>();
+
+			while (dataObjects.hasNext()) {
+				T dataObject = dataObjects.next();
+
+				// The permits are released once the entries have been written, so write the oldest entries to free one
+				while (!inFlight.tryAcquire()) {
+					items.add(writeEntry(sink, pending.remove(), inFlight));
+				}
+
+				CompletableFuture<Rendered<T>> future;
+				try {
+					future = CompletableFuture.supplyAsync(() -> render(dataObject, entryName), executor);
+				} catch (RejectedExecutionException e) {
+					future = CompletableFuture.completedFuture(
+							new Rendered<T>(dataObject, Optional.empty(), null, Optional.of(new WriteException("Batch write was rejected by the executor", e))));
+				}
+				pending.add(future);
+
+				while (!pending.isEmpty() && pending.peek().isDone()) {
+					items.add(writeEntry(sink, pending.remove(), inFlight));
+				}
+			}
+
+			while (!pending.isEmpty()) {
+				items.add(writeEntry(sink, pending.remove(), inFlight));
+			}
+
+			return new BatchResult<T>(items);
+		} finally {
+			closeDataObjects.run();
+		}
+	}
+
+	/* ------------------- SUPPORT FUNCTIONS ------------------ */
+
+	/* The markdown generated for a data object that is written as a zip entry */
+	private static final class Rendered<T> {
+		final T dataObject;
+		final Optional<String> entryName;
+		final byte[] markdown;
+		final Optional<WriteException> failure;
+
+		Rendered(T dataObject, Optional<String> entryName, byte[] markdown, Optional<WriteException> failure) {
+			this.dataObject = dataObject;
+			this.entryName = entryName;
+			this.markdown = markdown;
+			this.failure = failure;
+		}
+	}
+
+	/* Generates the markdown for one data object. Never throws an exception, instead the failure is recorded. */
+	private Rendered<T> render(T dataObject, Function<? super T, String> entryName) {
+		String name;
+		try {
+			name = checkNotNull(entryName.apply(dataObject), "No entry name for data object %s", dataObject);
+		} catch (RuntimeException e) {
+			WriteException failure = new WriteException("Unable to determine the entry name", e);
+			return new Rendered<T>(dataObject, Optional.empty(), null, Optional.of(failure));
+		}
+
+		try {
+			ByteArrayOutputStream markdown = new ByteArrayOutputStream();
+			new SemanticTemplateWriter(dataObject, template).write(markdown, StandardCharsets.UTF_8);
+			return new Rendered<T>(dataObject, Optional.of(name), markdown.toByteArray(), Optional.empty());
+		} catch (WriteException e) {
+			return new Rendered<T>(dataObject, Optional.of(name), null, Optional.of(e));
+		} catch (RuntimeException e) {
+			WriteException failure = new WriteException("Unable to generate " + name, e);
+			return new Rendered<T>(dataObject, Optional.of(name), null, Optional.of(failure));
+		}
+	}
+
+	/* Writes the generated markdown as a zip entry and releases its permit */
+	private BatchResult.Item<T> writeEntry(ZipSink sink, CompletableFuture<Rendered<T>> future, Semaphore inFlight) {
+		try {
+			Rendered<T> rendered = future.join();
+			if (rendered.failure.isPresent()) {
+				return new BatchResult.Item<T>(rendered.dataObject, Optional.empty(), rendered.entryName, rendered.failure);
+			}
+
+			try {
+				sink.putEntry(rendered.entryName.get(), rendered.markdown);
+			} catch (IOException | RuntimeException e) {
+				WriteException failure = new WriteException("Unable to write the zip entry " + rendered.entryName.get(), e);
+				return new BatchResult.Item<T>(rendered.dataObject, Optional.empty(), rendered.entryName, Optional.of(failure));
+			}
+
+			return new BatchResult.Item<T>(rendered.dataObject, Optional.empty(), rendered.entryName, Optional.empty());
+		} finally {
+			inFlight.release();
+		}
+	}
+
+	/* Writes the markdown file for one data object. Never throws an exception, instead the failure is
+	 * recorded in the returned item. */
+	private BatchResult.Item<T> writeItem(T dataObject, Function<? super T, Path> outputFile) {
+		Path outputPath;
+		try {
+			outputPath = checkNotNull(outputFile.apply(dataObject), "No output file for data object %s", dataObject);
+		} catch (RuntimeException e) {
+			WriteException failure = new WriteException("Unable to determine the output file", e);
+			return new BatchResult.Item<T>(dataObject, Optional.empty(), Optional.of(failure));
+		}
+
+		try {
+			SemanticTemplateWriter writer = new SemanticTemplateWriter(dataObject, template);
+			if (renderCache != null) writer.skipUnchanged(renderCache);
+			writer.write(outputPath);
+		} catch (WriteException e) {
+			return new BatchResult.Item<T>(dataObject, Optional.of(outputPath), Optional.of(e));
+		} catch (RuntimeException e) {
+			WriteException failure = new WriteException("Unable to generate " + outputPath.getFileName(), e);
+			return new BatchResult.Item<T>(dataObject, Optional.of(outputPath), Optional.of(failure));
+		}
+
+		return new BatchResult.Item<T>(dataObject, Optional.of(outputPath), Optional.empty());
+	}
+
+}
@@ -0,0 +1,192 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import semplate.valuemap.ConversionException;
+import semplate.valuemap.ValueMap;
+
+/** Writes the data of one data object to several semantically annotated markdown files, each using a different template.
+ * <p>
+ * For instance, this statement:
+ * <pre>
+ * {@code
+ *     BatchResult<Work> result = SemanticFanOutWriter.with(work)
+ *                                                    .usingTemplate(markdownTemplate, outputDirectory.resolve("work.md"))
+ *                                                    .usingTemplate(asciiDocTemplate, outputDirectory.resolve("work.adoc"))
+ *                                                    .usingTemplate(textileTemplate, outputDirectory.resolve("work.textile"))
+ *                                                    .write();
+ * }
+ * </pre>
+ * ... writes the data in <code>work</code> using three templates with different comment styles.
+ * <p>
+ * The data object is converted to a value map once and each value is converted to the string written to the
+ * files once. The files are then written in parallel using the executor specified with {@link #usingExecutor(Executor)}
+ * (by default the common fork join pool). Lazy lists (see {@link SemanticTemplateWriter#withList(String, java.util.Iterator)})
+ * are read completely before the files are written, as each template expands them.
+ * <p>
+ * A failure to write one file does not stop the others being written. Instead the failures are reported for
+ * each file in the returned {@link BatchResult}, which has one item for each template in the order the
+ * templates were specified.
+ *
+ * @see SemanticWriter
+ * @see BatchResult
+ *
+ * @author Andrew Doble
+ *
+ * @param <T> The type of the data object
+ */
+public class SemanticFanOutWriter<T> {
+	private final T dataObject;
+
+	private final List<Target> targets = new ArrayList<>();
+
+	private Executor executor = ForkJoinPool.commonPool();
+
+	/* A template and the file written using it */
+	private static final class Target {
+		final CompiledTemplate template;
+		final Path outputFile;
+
+		Target(CompiledTemplate template, Path outputFile) {
+			this.template = template;
+			this.outputFile = outputFile;
+		}
+	}
+
+	/* ------------------- CONSTRUCTORS ---------------- */
+	private SemanticFanOutWriter(T dataObject) {
+		this.dataObject = dataObject;
+	}
+
+	/* ------------------- PUBLIC API ------------------ */
+
+	/** Set up the data object whose data is written to the semantically annotated markdown files.
+	 *
+	 * @param <T> The type of the data object
+	 * @param dataObject The data object
+	 * @return A SemanticFanOutWriter object setup with the data object
+	 */
+	public static <T> SemanticFanOutWriter<T> with(T dataObject) {
+		checkNotNull(dataObject, "The data object cannot be null");
+		return new SemanticFanOutWriter<T>(dataObject);
+	}
+
+	/** Adds a template file and the markdown file generated with it.
+	 *
+	 * @param templateFile The file containing the template
+	 * @param outputFile The file generated with the template
+	 * @return This SemanticFanOutWriter object
+	 * @throws ReadException if the template file could not be read for some reason
+	 */
+	public SemanticFanOutWriter<T> usingTemplate(Path templateFile, Path outputFile) throws ReadException {
+		return usingTemplate(TemplateCache.shared().get(templateFile), outputFile);
+	}
+
+	/** Adds an already compiled template and the markdown file generated with it.
+	 *
+	 * @param template The compiled template
+	 * @param outputFile The file generated with the template
+	 * @return This SemanticFanOutWriter object
+	 */
+	public SemanticFanOutWriter<T> usingTemplate(CompiledTemplate template, Path outputFile) {
+		targets.add(new Target(checkNotNull(template, "The template cannot be null"),
+				               checkNotNull(outputFile, "The output file cannot be null")));
+		return this;
+	}
+
+	/** Specifies the executor used to write the files.
+	 *
+	 * @param executor The executor
+	 * @return This SemanticFanOutWriter object
+	 */
+	public SemanticFanOutWriter<T> usingExecutor(Executor executor) {
+		this.executor = checkNotNull(executor, "The executor cannot be null");
+		return this;
+	}
+
+	/** Writes a semantically annotated markdown file for each of the templates and waits until all have been written.
+	 *
+	 * @return The results for each of the templates
+	 * @throws WriteException if the data object could not be converted
+	 * @throws IllegalStateException if no template has been specified
+	 */
+	public BatchResult<T> write() throws WriteException {
+		checkState(!targets.isEmpty(), "No template has been specified");
+
+		ValueMap valueMap;
+		try {
+			valueMap = ValueMap.from(dataObject);
+			ListEntries.from(dataObject, Map.of()).addTo(valueMap);
+		} catch (ConversionException e) {
+			throw new WriteException("Unable to convert data object of type " + dataObject.getClass(), e);
+		}
+		ValueMap stringValueMap = asStrings(valueMap);
+
+		List<CompletableFuture<BatchResult.Item<T>>> futures = new ArrayList<>(targets.size());
+		for (Target target: targets) {
+			CompletableFuture<BatchResult.Item<T>> future;
+			try {
+				future = CompletableFuture.supplyAsync(() -> writeItem(stringValueMap, target), executor);
+			} catch (RejectedExecutionException e) {
+				future = CompletableFuture.completedFuture(
+						new BatchResult.Item<T>(dataObject, Optional.of(target.outputFile), Optional.of(new WriteException("Write was rejected by the executor", e))));
+			}
+			futures.add(future);
+		}
+
+		List<BatchResult.Item<T>> items = new ArrayList<>(futures.size());
+		for (CompletableFuture<BatchResult.Item<T>> future: futures) {
+			items.add(future.join());
+		}
+
+		return new BatchResult<T>(items);
+	}
+
+	/* ------------------- SUPPORT FUNCTIONS ------------------ */
+
+	/* Writes the file for one template. Never throws an exception, instead the failure is
+	 * recorded in the returned item. */
+	private BatchResult.Item<T> writeItem(ValueMap valueMap, Target target) {
+		try (FileChannel channel = FileChannel.open(target.outputFile, StandardOpenOption.CREATE,
+				                                                       StandardOpenOption.TRUNCATE_EXISTING,
+				                                                       StandardOpenOption.WRITE)) {
+			target.template.encoded(StandardCharsets.UTF_8).render(valueMap, ListEntries.none(), channel);
+		} catch (IOException | ConversionException | RuntimeException e) {
+			WriteException failure = new WriteException("Unable to generate " + target.outputFile.getFileName(), e);
+			return new BatchResult.Item<T>(dataObject, Optional.of(target.outputFile), Optional.of(failure));
+		}
+
+		return new BatchResult.Item<T>(dataObject, Optional.of(target.outputFile), Optional.empty());
+	}
+
+	/* A copy of the value map in which each value has been converted to the string written to the markdown files.
+	 * The field names are added in the same order so that lists are expanded in the same order. */
+	static ValueMap asStrings(ValueMap valueMap) {
+		ValueMap stringValueMap = ValueMap.empty();
+		for (String fieldName: valueMap.fieldNames()) {
+			Optional<ValueMap> fieldValueMap = valueMap.getValueMap(fieldName);
+			if (fieldValueMap.isPresent()) {
+				stringValueMap.put(fieldName, asStrings(fieldValueMap.get()));
+			} else {
+				stringValueMap.put(fieldName, valueMap.getValue(fieldName).map(Object::toString).orElse(null));
+			}
+		}
+		return stringValueMap;
+	}
+
+}
@@ -0,0 +1,338 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/** A hand-written lexer for the semantic annotations in templates and markdown files, i.e.
+ * <ul>
+ *   <li>fields, e.g. <code>{{title}}</code>,</li>
+ *   <li>field specifications, e.g. <code>{{title:pattern="[%s]"}}</code>, and</li>
+ *   <li>directives, e.g. <code>{@template.delimiter.pair:"[]"}}</code> or <code>{@template.comment}}</code>,</li>
+ * </ul>
+ * as specified in <code>docs/specifications/semantically-annotated-markdown.abnf</code>.
+ * <p>
+ * The text is scanned once from left to right without any regular expressions or backtracking. Only the
+ * tokens found are allocated; names and values are extracted from the text when they are requested. The
+ * tokens found are the same as those found with the regular expressions the lexer is tested against. As
+ * with these patterns field specifications and directives do not span lines whereas fields may do so.
+ * <p>
+ * The lexer is shared by the reader, the writer and the updater.
+ *
+ * @author Andrew Doble
+ *
+ */
+final class SemanticLexer {
+
+	private static final String FIELD_START = "{{";
+	private static final String DIRECTIVE_START = "{@";
+	private static final String END = "}}";
+	private static final String PATTERN_START = ":pattern=\"";
+	private static final String PATTERN_VALUE = "%s";
+	private static final String QUOTED_END = "\"}}";
+	private static final char LINE_SEPARATOR = 0x2028;
+	private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+	/** A field or a directive found in a text */
+	static final class Token {
+		private final CharSequence text;
+		private final int start;
+		private final int end;
+		private final int nameEnd;
+		private final int valueStart;  // -1 if there is no value
+
+		private Token(CharSequence text, int start, int nameEnd, int valueStart, int end) {
+			this.text = text;
+			this.start = start;
+			this.nameEnd = nameEnd;
+			this.valueStart = valueStart;
+			this.end = end;
+		}
+
+		/** The index of the first character of the token, i.e. of the <code>{{</code> or <code>{@</code> */
+		int start() {
+			return start;
+		}
+
+		/** The index after the last character of the token, i.e. after the closing <code>}}</code> */
+		int end() {
+			return end;
+		}
+
+		/** The name of the field or directive, e.g. <code>title</code> or <code>template.delimiter.pair</code> */
+		String name() {
+			return text.subSequence(start + 2, nameEnd).toString();
+		}
+
+		/** True if the name of the token is the name or starts with the name followed by a '.' */
+		boolean hasName(String name) {
+			int length = name.length();
+			return start + 2 + length <= nameEnd && startsWith(text, start + 2, name)
+					&& (start + 2 + length == nameEnd || text.charAt(start + 2 + length) == '.');
+		}
+
+		/** The value of a directive as written, e.g. <code>"[]"</code>. Fields have no values. */
+		Optional<String> value() {
+			return valueStart < 0 ? Optional.empty() : Optional.of(text.subSequence(valueStart, end - END.length()).toString());
+		}
+
+		/** The value of a directive without the quotes, if the value is quoted */
+		Optional<String> quotedValue() {
+			return value().filter(SemanticLexer::isQuoted).map(value -> value.substring(1, value.length() - 1));
+		}
+
+		@Override
+		public String toString() {
+			return text.subSequence(start, end).toString();
+		}
+	}
+
+	private SemanticLexer() {
+	}
+
+	/* -------------------  FIELDS ----------------- */
+
+	/** The fields in a text, e.g. <code>{{title}}</code>. The field names do not contain a <code>}</code>.
+	 *
+	 * @param text The text
+	 * @return The fields in the order found
+	 */
+	static List<Token> fields(CharSequence text) {
+		List<Token> fields = new ArrayList<>();
+		for (Token field = nextField(text, 0); field != null; field = nextField(text, field.end())) {
+			fields.add(field);
+		}
+		return fields;
+	}
+
+	/** The first field in a text.
+	 *
+	 * @param text The text
+	 * @return The first field or empty if the text contains no fields
+	 */
+	static Optional<Token> firstField(CharSequence text) {
+		return Optional.ofNullable(nextField(text, 0));
+	}
+
+	/* The first field at or after the index or null if there are no more fields */
+	private static Token nextField(CharSequence text, int from) {
+		int length = text.length();
+		for (int i = indexOf(text, FIELD_START, from, length); i >= 0; i = indexOf(text, FIELD_START, i + 1, length)) {
+			int nameEnd = indexOf(text, '}', i + 2, length);
+			if (nameEnd < 0) {
+				return null;  // No more closing braces
+			}
+			if (nameEnd + 1 < length && text.charAt(nameEnd + 1) == '}') {
+				return new Token(text, i, nameEnd, -1, nameEnd + 2);
+			}
+		}
+		return null;
+	}
+
+	/* -------------------  FIELD SPECIFICATIONS ----------------- */
+
+	/** The field specifications in a text, e.g. <code>{{title:pattern="[%s]"}}</code>.
+	 *
+	 * @param text The text, usually the semantic line of a block
+	 * @return The field specifications in the order found
+	 */
+	static List<FieldSpec> fieldSpecs(CharSequence text) {
+		List<FieldSpec> fieldSpecs = new ArrayList<>();
+
+		int length = text.length();
+		int i = indexOf(text, FIELD_START, 0, length);
+		while (i >= 0) {
+			int end = fieldSpec(text, i, length, fieldSpecs);
+			i = indexOf(text, FIELD_START, end < 0 ? i + 1 : end, length);
+		}
+
+		return fieldSpecs;
+	}
+
+	/** The field specification that is the whole text.
+	 *
+	 * @param text The text
+	 * @return The field specification
+	 * @throws IllegalArgumentException if the text is not a field specification
+	 */
+	static FieldSpec fieldSpec(CharSequence text) {
+		List<FieldSpec> fieldSpecs = new ArrayList<>(1);
+
+		checkArgument(startsWith(text, 0, FIELD_START) && fieldSpec(text, 0, text.length(), fieldSpecs) == text.length(),
+				      "Argument \"%s\"  does not match a field specification", text);
+
+		return fieldSpecs.get(0);
+	}
+
+	/* Lexes the field specification starting at the index and adds it to the field specifications. Each part
+	 * of the field specification ends at the first occurrence of the following part in the line.
+	 * Returns the end of the field specification or -1 if there is no field specification at the index.
+	 */
+	private static int fieldSpec(CharSequence text, int start, int length, List<FieldSpec> fieldSpecs) {
+		int lineEnd = lineEnd(text, start, length);
+
+		int nameEnd = indexOf(text, PATTERN_START, start + 2, lineEnd);
+		if (nameEnd < 0) return -1;
+
+		int preEnd = indexOf(text, PATTERN_VALUE, nameEnd + PATTERN_START.length(), lineEnd);
+		if (preEnd < 0) return -1;
+
+		int postEnd = indexOf(text, QUOTED_END, preEnd + PATTERN_VALUE.length(), lineEnd);
+		if (postEnd < 0) return -1;
+
+		fieldSpecs.add(FieldSpec.of(text.subSequence(start + 2, nameEnd).toString(),
+				                    new Delimiter().start(text.subSequence(nameEnd + PATTERN_START.length(), preEnd).toString())
+				                                   .end(text.subSequence(preEnd + PATTERN_VALUE.length(), postEnd).toString())));
+
+		return postEnd + QUOTED_END.length();
+	}
+
+	/* -------------------  DIRECTIVES ----------------- */
+
+	/** The directives in a text. The name of a directive ends at the first '=', ':' or '}'. A quoted
+	 * value ends with the first <code>"}}</code>, so that it can contain fields, otherwise the value ends
+	 * with the first <code>}}</code>.
+	 *
+	 * @param text The text
+	 * @return The directives in the order found
+	 */
+	static List<Token> directives(CharSequence text) {
+		List<Token> directives = new ArrayList<>();
+		for (Token directive = nextDirective(text, 0); directive != null; directive = nextDirective(text, directive.end())) {
+			directives.add(directive);
+		}
+		return directives;
+	}
+
+	/** The first directive with a name in a text.
+	 *
+	 * @param text The text
+	 * @param name The name of the directive, or the first part of the name, e.g. <code>template.delimiter</code>
+	 * @return The first directive found or empty if the text does not contain the directive
+	 */
+	static Optional<Token> directive(CharSequence text, String name) {
+		for (Token directive = nextDirective(text, 0); directive != null; directive = nextDirective(text, directive.end())) {
+			if (directive.hasName(name)) {
+				return Optional.of(directive);
+			}
+		}
+		return Optional.empty();
+	}
+
+	/** True if the text contains the directive.
+	 *
+	 * @param text The text
+	 * @param name The name of the directive, or the first part of the name
+	 * @return True if the directive was found
+	 */
+	static boolean containsDirective(CharSequence text, String name) {
+		return directive(text, name).isPresent();
+	}
+
+	/* The first directive at or after the index or null if there are no more directives */
+	private static Token nextDirective(CharSequence text, int from) {
+		int length = text.length();
+		for (int i = indexOf(text, DIRECTIVE_START, from, length); i >= 0; i = indexOf(text, DIRECTIVE_START, i + 1, length)) {
+			int lineEnd = lineEnd(text, i, length);
+
+			// The name
+			int nameEnd = i + 2;
+			while (nameEnd < lineEnd && "=:}".indexOf(text.charAt(nameEnd)) < 0) {
+				nameEnd++;
+			}
+			if (nameEnd == lineEnd) continue;
+
+			if (text.charAt(nameEnd) == '}') {
+				if (startsWith(text, nameEnd, END)) {
+					return new Token(text, i, nameEnd, -1, nameEnd + END.length());
+				}
+				continue;
+			}
+
+			// The value
+			int valueStart = nameEnd + 1;
+			int valueEnd = (valueStart < lineEnd && text.charAt(valueStart) == '"') ? indexOf(text, QUOTED_END, valueStart + 1, lineEnd) + 1
+					                                                               : indexOf(text, END, valueStart, lineEnd);
+			if (valueEnd > 0) {
+				return new Token(text, i, nameEnd, valueStart, valueEnd + END.length());
+			}
+		}
+		return null;
+	}
+
+	/* -------------------  LINES ----------------- */
+
+	/** True if the line is the semantic line of a block, i.e. contains both <code>{{</code> and <code>}}</code>.
+	 * The line is scanned once.
+	 *
+	 * @param line The line
+	 * @return True if the line is a semantic line
+	 */
+	static boolean isSemanticLine(CharSequence line) {
+		boolean fieldStart = false;
+		boolean end = false;
+
+		int length = line.length();
+		for (int i = 0; i + 1 < length && !(fieldStart && end); i++) {
+			char c = line.charAt(i);
+			if (c == '{' && line.charAt(i + 1) == '{') {
+				fieldStart = true;
+			} else if (c == '}' && line.charAt(i + 1) == '}') {
+				end = true;
+			}
+		}
+
+		return fieldStart && end;
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	private static boolean isQuoted(String value) {
+		return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"");
+	}
+
+	/* The index of the first line terminator at or after the index, or the length of the text */
+	private static int lineEnd(CharSequence text, int from, int length) {
+		for (int i = from; i < length; i++) {
+			char c = text.charAt(i);
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR) {
+				return i;
+			}
+		}
+		return length;
+	}
+
+	private static int indexOf(CharSequence text, char c, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (text.charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int indexOf(CharSequence text, String s, int from, int to) {
+		char first = s.charAt(0);
+		for (int i = from, last = to - s.length(); i <= last; i++) {
+			if (text.charAt(i) == first && startsWith(text, i, s)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean startsWith(CharSequence text, int from, String s) {
+		if (from + s.length() > text.length()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (text.charAt(from + i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
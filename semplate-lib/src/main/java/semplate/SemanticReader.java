@@ -3,12 +3,25 @@
  */
 package semplate;
 
+import static com.google.common.base.Preconditions.*;
+
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import semplate.annotations.TemplateField;
 import semplate.valuemap.ConversionException;
 import semplate.valuemap.ValueMap;
 
@@ -24,6 +37,13 @@ import semplate.valuemap.ValueMap;
  * </pre>
  * ... reads the semantically annotated markdown file at <code>sourceFilePath</code> and creates the
  * data object <code>dataObject</code> using the data in the markdown file. 
+ * <p>
+ * If the markdown file is the index of shards written with {@link SemanticTemplateWriter#sharded(Sharding)}, 
+ * the shards are read as well and the list entries in them are reassembled into the lists of the data object. 
+ * <p>
+ * The entries of a very large list can be read one at a time with {@link #streamList(String)}, without reading 
+ * the whole file into a data object. If only some fields are needed, {@link #fields(String...)} or {@link #projected()} 
+ * read only these fields and stop reading the file once they have been found. 
  * 
  * @author Andrew Doble
  *
@@ -31,6 +51,8 @@ import semplate.valuemap.ValueMap;
 public class SemanticReader {
 	Class<?> dataObjectClass;
 	Path inputFile;
+	boolean memoryMapped = false;
+	Set<String> fieldNames = null;  // The fields read, null if all fields are read
 	
 	/** Private constructor as object are created with the factory method 
 	 *  {@link #with(Class)}
@@ -67,27 +89,95 @@ public class SemanticReader {
 		return this;
 	}
 
+	/** Reads the markdown file by scanning the bytes of the memory mapped file instead of reading it line by line.
+	 * <p>
+	 * Blank lines, semantic lines and directives are found without decoding the file. Only the semantic lines, the 
+	 * directives and the values of the fields are decoded into strings, so large generated markdown files are read 
+	 * with far fewer allocations. The data object read is the same as when the file is read line by line.
+	 * <p>
+	 * Files are mapped if their charset, i.e. the default charset, is UTF-8, US-ASCII or ISO-8859-1, they are not larger 
+	 * than 2 GB and their file system supports memory mapped files. Other files are read line by line.
+	 * 
+	 * @return This SemanticReader reading memory mapped files 
+	 */
+	public SemanticReader memoryMapped() {
+		this.memoryMapped = true;
+		
+		return this;
+	}
+
+	/** Reads only the fields with the specified names. The values of other fields are neither extracted nor converted
+	 * and the other fields of the data object are not set.  
+	 * <p>
+	 * The file is only read until all specified fields with a value have been found, e.g. for  
+	 * <pre>
+	 * {@code
+	 * Works works = (Works) SemanticReader.with(Works.class)
+	 *                                     .usingFile(sourceFilePath)
+	 *                                     .fields("title", "author")
+	 *                                     .read();
+	 *}
+	 * </pre>
+	 * ... the file is read until the blocks containing the title and the author have been read. If a specified field 
+	 * is a list, the whole file and its shards are read. If a field is contained in several blocks, the value in the 
+	 * first block is read instead of the value in the last block. 
+	 * 
+	 * @param fieldNames The names of the fields of the data object, e.g. <code>title</code>. At least one name must be specified.
+	 * @return This SemanticReader reading only the specified fields
+	 */
+	public SemanticReader fields(String... fieldNames) {
+		checkArgument(fieldNames.length > 0, "At least one field name must be specified");
+		
+		this.fieldNames = Set.copyOf(Arrays.asList(fieldNames));
+		
+		return this;
+	}
+
+	/** Reads only the fields annotated with {@link TemplateField} in the class of the data object, 
+	 * as with {@link #fields(String...)}.
+	 * <p>
+	 * A class declaring only some of the fields of a markdown file, e.g. only the title and the author, can be used as 
+	 * a view of the file. The other fields in the file are not read.
+	 * 
+	 * @return This SemanticReader reading only the fields of the data object
+	 */
+	public SemanticReader projected() {
+		checkState(dataObjectClass != null);
+		
+		String[] templateFields = Arrays.stream(dataObjectClass.getDeclaredFields())
+				                        .filter(field -> field.getAnnotation(TemplateField.class) != null)
+				                        .map(Field::getName)
+				                        .toArray(String[]::new);
+		checkArgument(templateFields.length > 0, "Class %s has no template fields", dataObjectClass.getName());
+		
+		return fields(templateFields);
+	}
+
 	/**  Reads a semantically annotated markdown file and creates a data object populated with 
 	 * the data in the file.
 	 * <p>
+	 * The shards referenced by shard directives, e.g. <code>{&#64;list-shard:"works-references-1.md"}}</code>,
+	 * are read as part of the file. 
 	 * 
 	 * @see SemanticReader
 	 * @see #usingFile(Path)
 	 * @see #with(Class) 
 	 * 
 	 * @return An object populated with the data from the markdown file. 
-	 * @throws ReadException when the markdown file cannot be read
+	 * @throws ReadException when the markdown file or a shard cannot be read
 	 */
 	public Object read() throws ReadException {
        //Template t = new Template();
        
        //Object o = t.read(dataObjectClass, inputFile);
        
-		ValueMap valueMap = readValueMap(inputFile);
+		Projection projection = fieldNames == null ? Projection.all() : Projection.of(fieldNames);
+		ValueMap valueMap = readValueMap(inputFile, projection, new HashSet<>());
 		
 		Object dataObject = null;
 		try {
-			dataObject = valueMap.toObject(dataObjectClass);
+			// A value map read must not refer to the memory mapped file
+			dataObject = dataObjectClass == ValueMap.class ? valueMap.convertText() : valueMap.toObject(dataObjectClass);
 		} catch (ConversionException e) {
 			throw new ReadException(e.getMessage(), e);
 		}
@@ -96,25 +186,104 @@ public class SemanticReader {
 	}
 	
 	
+	/** Reads the entries of a list in the markdown file lazily, one entry at a time. The class specified with 
+	 * {@link #with(Class)} is the class of the list entries. 
+	 * <p>
+	 * For example, this statement:
+	 * <pre>
+	 * {@code
+	 * try (Stream<Reference> references = SemanticReader.with(Reference.class)
+	 *                                                   .usingFile(sourceFilePath)
+	 *                                                   .streamList("references")) {
+	 *     references.forEach(reference -> ...);
+	 * }
+	 *}
+	 * </pre>
+	 * ... processes the entries of the list <code>references</code> one after the other. The file is only read as 
+	 * far as the entries are consumed and only the entry being processed is held in memory. The entries are in the 
+	 * order in which they are in the file. If the file is the index of shards, the entries in the shards are 
+	 * streamed as well.
+	 * <p>
+	 * The stream must be closed to close the file being read. Errors reading the file or converting an entry are 
+	 * thrown by the stream as {@link UncheckedReadException}s.
+	 * 
+	 * @param <T> The class of the list entries
+	 * @param listFieldName The name of the list field, e.g. <code>references</code>
+	 * @return A sequential stream of the list entries
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Stream<T> streamList(String listFieldName) {
+		ListEntryReader entries = new ListEntryReader(inputFile, listFieldName);
+
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(entries, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				            .onClose(entries::close)
+				            .map(entry -> (T) toEntryObject(entry));
+	}
+	
+	
 	/** ----------------------  SUPPORT FUNCTIONS -------------------------------------------- */
 	
 
-	private ValueMap readValueMap(Path markupFilePath) throws ReadException {
-		ValueMap valueMap;
+	/* Reads the value map of a markdown file merged with the value maps of the shards it references */
+	private ValueMap readValueMap(Path markupFilePath, Projection projection, Set<Path> read) throws ReadException {
+		if (!read.add(markupFilePath.toAbsolutePath().normalize())) {
+			throw new ReadException("Shard " + markupFilePath.getFileName() + " is referenced more than once");
+		}
+		
+		List<String> shards = new ArrayList<>();
+		Optional<ValueMap> mappedValueMap = memoryMapped ? readMapped(markupFilePath, projection, shards) : Optional.empty();
+		ValueMap valueMap = mappedValueMap.isPresent() ? mappedValueMap.get() : readLines(markupFilePath, projection, shards);
+
+		for (String shard: shards) {
+			if (projection.isComplete()) break;
+			valueMap.merge(readValueMap(Sharding.referencedShard(markupFilePath, shard), projection, read));
+		}
+
+		return valueMap;
+	}
+	
+	/* Reads the value map of a markdown file line by line until the projection is complete */
+	private static ValueMap readLines(Path markupFilePath, Projection projection, List<String> shards) throws ReadException {
 		try (Stream<String> lines = Files.lines(markupFilePath, Charset.defaultCharset())) {
 
-			valueMap = Stream.concat(lines, Stream.of("\n"))  // --> <String> : Add a blank lines to the stream of lines so that all blocks are correctly terminated 
+			return Stream.concat(lines, Stream.of("\n"))  // --> <String> : Add a blank lines to the stream of lines so that all blocks are correctly terminated 
+							  .takeWhile(line -> !projection.isComplete())  // Stop reading when all selected fields have been found
+							  .peek(line -> Sharding.shardDirective(line).ifPresent(shards::add))  // Collect the shards referenced
 							  .map(Block.block())              // --> <block> : Create block = [semantic-block] text-value | text-block | empty.
 							  .filter(b -> !b.isEmpty())       // --> <block> : Filter out any empty blocks
-							  .map(b -> b.toValueMap())        // --> <valueMap> : Read the values and create a value map 
+							  .map(projection::valueMap)       // --> <valueMap> : Read the values of the selected fields and create a value map 
 							  .collect(ValueMap::new, ValueMap::merge, ValueMap::merge);  
 
 		} catch (IOException e) {
 			throw new ReadException(e);
 		}
-
-
-		return valueMap;
 	}
-
+	
+	/* Reads the value map of a memory mapped markdown file or returns empty if the file cannot be memory mapped */
+	private static Optional<ValueMap> readMapped(Path markupFilePath, Projection projection, List<String> shards) throws ReadException {
+		Charset charset = Charset.defaultCharset();
+		
+		try {
+			if (MappedBlockReader.supports(charset) && Files.size(markupFilePath) <= MappedBlockReader.MAXIMUM_SIZE) {
+				return Optional.of(MappedBlockReader.read(markupFilePath, charset, projection, line -> Sharding.shardDirective(line).ifPresent(shards::add)));
+			}
+		} catch (UnsupportedOperationException e) {
+			// The file system does not support memory mapped files
+			shards.clear();
+		} catch (IOException e) {
+			throw new ReadException(e);
+		}
+		
+		return Optional.empty();
+	}
+	
+	/* Converts the value map of a list entry to an entry object */
+	private Object toEntryObject(ValueMap entry) {
+		try {
+			return dataObjectClass == ValueMap.class ? entry.convertText() : entry.toObject(dataObjectClass);
+		} catch (ConversionException e) {
+			throw new UncheckedReadException(new ReadException(e.getMessage(), e));
+		}
+	}
+	
 }
@@ -1,22 +1,36 @@
 package semplate;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.regex.MatchResult;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Splitter;
+import com.google.common.hash.HashCode;
 
 import semplate.valuemap.ConversionException;
 import semplate.valuemap.ValueMap;
@@ -29,6 +43,43 @@ import semplate.valuemap.ValueMap;
  *      SemanticWriter.with(dataObject).usingTemplate(templateFilePath).write(outputFilePath);
  * </code> </pre>
  * 
+ * The template is read and parsed once into a {@link CompiledTemplate}. Generating the markdown file only 
+ * renders the compiled template with the data in the data object. When writing bytes, the static text of the 
+ * template is encoded once and only the field values are encoded for each markdown file.
+ * <p>
+ * Lists can be expanded lazily, one entry at a time, by binding them to an {@link Iterator} or a {@link Stream}, 
+ * either with {@link #withList(String, Iterator)} or by declaring the list field in the data object as an 
+ * <code>Iterator</code> or <code>Stream</code>. Only the list entry being generated is held in memory: 
+ * <pre> <code>
+ *      SemanticWriter.with(account).usingTemplate(templateFilePath)
+ *                                  .withList("transactions", transactionStream)
+ *                                  .write(outputFilePath);
+ * </code> </pre>
+ * <p>
+ * For frequently used templates a renderer specialised for the class of the data object can be used 
+ * with {@link #specialized()}. This reads the fields directly from the data object without converting it
+ * to a value map.
+ * <p>
+ * Documents with very large lists can be generated using all cores with {@link #parallelLists()}. The list entries 
+ * are rendered in ranges in parallel and written in order, so the generated markdown is the same.
+ * <p>
+ * Once it has been configured a writer can be reused to write any number of data objects, e.g. one writer can be 
+ * shared between all request threads of a server:
+ * <pre> <code>
+ *      SemanticTemplateWriter writer = SemanticWriter.withTemplate(template).specialized();
+ *      ...
+ *      writer.write(account, outputStream, StandardCharsets.UTF_8);    // In any thread
+ * </code> </pre>
+ * The template, its delimiters and the writer are not changed when writing, so this is safe as long as the writer 
+ * is not configured further and no lists are bound with {@link #withList(String, Iterator)}, as these can only 
+ * be expanded once.
+ * <p>
+ * When markdown files are regenerated regularly and only few of them change, a {@link RenderCache} can be 
+ * used with {@link #skipUnchanged(RenderCache)} so that files whose content would not change are not written.
+ * <p>
+ * Documents with lists too large for a single markdown file can be split into an index file and shards 
+ * containing the list entries with {@link #sharded(Sharding)}.
+ * 
  * @author Andrew Doble
  *
  */
@@ -44,25 +95,44 @@ public class SemanticTemplateWriter {
 	
 	/** The delimiters used for comments in the mark down file */
 	protected Delimiter commentDelimiter;
+	
+	/** The template read and parsed from the template file */
+	protected CompiledTemplate template;
+	
+	/** The lists that are expanded lazily mapped to their list field names */
+	protected Map<String, Iterator<?>> boundLists = new HashMap<>();
+	
+	/** Use a renderer specialised for the class of the data object */
+	protected boolean specialized = false;
+	
+	/** Records the markdown files written so that unchanged files are not written again, or null */
+	protected RenderCache renderCache;
+	
+	/** The pool list entries are rendered on in parallel or null if they are rendered sequentially */
+	protected ForkJoinPool listPool;
+	
+	/** The number of consecutive list entries rendered in one task */
+	protected int listRangeSize = ListEntries.DEFAULT_RANGE_SIZE;
+	
+	/** How list entries are split across shards when writing a file or null if they are not */
+	protected Sharding sharding;
 
 	/* -------------------  CONSTRUCTORS----------------- */
 	
-	/** Construct a SemanticTemplateWriter object using the data object containing the data and the path to the template file.
-	 * Also specified are the any found delimiters 
+	/** Construct a SemanticTemplateWriter object using the data object containing the data and a compiled template.
 	 * <p>
 	 * This constructor has package scope as it is never directly called by clients. Instead it is constructed using the 
 	 * factory method {@link SemanticWriter#with(Object)}.
 	 * 
 	 * @param dataObject An object annotated with template field information
-	 * @param templatePath Path to a template file
-	 * @param delimiters List of the delimiters used in the template
-	 * @param commentDelimiter The delimiter used for comments in the template
+	 * @param template The compiled template 
 	 */
-	SemanticTemplateWriter(Object dataObject, Path templatePath, Delimiters delimiters, Delimiter commentDelimiter) {
+	SemanticTemplateWriter(Object dataObject, CompiledTemplate template) {
 		this.dataObject = dataObject;
-		this.templatePath = templatePath;
-		this.delimiters = delimiters;
-		this.commentDelimiter = commentDelimiter;
+		this.template = template;
+		this.templatePath = template.path();
+		this.delimiters = template.delimiters();
+		this.commentDelimiter = template.commentDelimiter();
 	}
 	
 	/** Construct a SemanticTemplateWriter object using the data object containing the data. 
@@ -78,6 +148,115 @@ public class SemanticTemplateWriter {
     }
 	
 	/* -------------------  PUBLIC API ----------------- */
+	
+	/** Binds a list field in the template, e.g. <code>{{transactions.*.amount}}</code>, to an iterator. 
+	 * The list entries are pulled from the iterator and generated one at a time. Any entries of the list 
+	 * in the data object are ignored.
+	 * 
+	 * @param listFieldName The name of the list field, e.g. <code>transactions</code>
+	 * @param entries An iterator over the list entries
+	 * @return This SemanticTemplateWriter object
+	 */
+	public SemanticTemplateWriter withList(String listFieldName, Iterator<?> entries) {
+		checkNotNull(listFieldName, "The list field name cannot be null");
+		checkNotNull(entries, "The list entries cannot be null");
+		
+		boundLists.put(listFieldName, entries);
+		return this;
+	}
+	
+	/** Binds a list field in the template, e.g. <code>{{transactions.*.amount}}</code>, to a stream. 
+	 * The list entries are pulled from the stream and generated one at a time. Any entries of the list 
+	 * in the data object are ignored. The stream is not closed.
+	 * 
+	 * @param listFieldName The name of the list field, e.g. <code>transactions</code>
+	 * @param entries A stream of the list entries
+	 * @return This SemanticTemplateWriter object
+	 */
+	public SemanticTemplateWriter withList(String listFieldName, Stream<?> entries) {
+		checkNotNull(entries, "The list entries cannot be null");
+		
+		return withList(listFieldName, entries.iterator());
+	}
+
+	/** Generates the markdown using a renderer specialised for the class of the data object. 
+	 * <p>
+	 * The renderer is created the first time the template is used with a class and reads the fields 
+	 * used in the template directly from the data object. The generated markdown is the same as without 
+	 * the specialised renderer. If the template cannot be specialised for the class, e.g. the data object 
+	 * contains lazy lists or lists are bound with {@link #withList(String, Iterator)}, then the markdown is 
+	 * generated as normal.
+	 * 
+	 * @return This SemanticTemplateWriter object
+	 */
+	public SemanticTemplateWriter specialized() {
+		this.specialized = true;
+		return this;
+	}
+	
+	/** Renders the entries of large lists in parallel on the common fork join pool (see {@link #parallelLists(ForkJoinPool, int)}).
+	 * 
+	 * @return This SemanticTemplateWriter object
+	 */
+	public SemanticTemplateWriter parallelLists() {
+		return parallelLists(ForkJoinPool.commonPool(), ListEntries.DEFAULT_RANGE_SIZE);
+	}
+	
+	/** Renders the entries of large lists in parallel. 
+	 * <p>
+	 * The entries of a list are split into ranges of consecutive entries. The ranges are rendered into separate 
+	 * buffers on the fork join pool and the buffers are written in the order of the ranges, so that the generated 
+	 * markdown is the same as when the entries are rendered one after the other. Lists with no more entries than 
+	 * one range and lists bound to an iterator or stream are rendered sequentially. No specialised renderer 
+	 * (see {@link #specialized()}) is used.
+	 * 
+	 * @param pool The pool the ranges of list entries are rendered on
+	 * @param rangeSize The number of consecutive list entries rendered in one task
+	 * @return This SemanticTemplateWriter object
+	 * @throws IllegalArgumentException if the range size is less than 1
+	 */
+	public SemanticTemplateWriter parallelLists(ForkJoinPool pool, int rangeSize) {
+		checkArgument(rangeSize > 0, "A range needs at least one entry (was %s)", rangeSize);
+		
+		this.listPool = checkNotNull(pool, "The fork join pool cannot be null");
+		this.listRangeSize = rangeSize;
+		return this;
+	}
+	
+	/** Only writes a markdown file if its content changes. 
+	 * <p>
+	 * When a markdown file is written, the fingerprint of the data and the template are recorded in the render cache. 
+	 * If these are unchanged when the file is written again, the markdown is not generated. Otherwise the markdown 
+	 * is generated and only written if it differs from the existing file. The number of files skipped is 
+	 * counted by the render cache.
+	 * <p>
+	 * This only applies to writing files with {@link #write(Path)}. As the complete markdown is compared with the 
+	 * existing file, lazy lists are read completely and no specialised renderer is used.
+	 * 
+	 * @param renderCache The render cache
+	 * @return This SemanticTemplateWriter object
+	 */
+	public SemanticTemplateWriter skipUnchanged(RenderCache renderCache) {
+		this.renderCache = checkNotNull(renderCache, "The render cache cannot be null");
+		return this;
+	}
+
+	/** Splits the entries of the lists across several markdown files when writing a file with {@link #write(Path)}.
+	 * <p>
+	 * The file written is the index of the shards and contains all blocks of the template except the list entries, 
+	 * which are written to the shards. Reading the index file with {@link SemanticReader} also reads the shards.
+	 * The list entries are rendered sequentially and the render cache (see {@link #skipUnchanged(RenderCache)}) 
+	 * is not used.
+	 * 
+	 * @see Sharding
+	 * 
+	 * @param sharding Specifies how the lists are split
+	 * @return This SemanticTemplateWriter object
+	 */
+	public SemanticTemplateWriter sharded(Sharding sharding) {
+		this.sharding = checkNotNull(sharding, "The sharding cannot be null");
+		return this;
+	}
 
 	/** Generates a semantically annotated markdown file from a template.
 	 * 
@@ -86,152 +265,246 @@ public class SemanticTemplateWriter {
 	 * @throws WriteException if the markdown file could no be created for some cause.
 	 */
 	public void write(Path outputFile) throws WriteException {
+		checkDataObject();
+		Optional<SpecializedRenderer> renderer = specializedRenderer();
 		
 		try {
-			generate(dataObject, outputFile);
-		} catch (IOException | CloneNotSupportedException | ConversionException e) {
+			if (sharding != null) {
+				sharding.write(template, ValueMap.from(dataObject), ListEntries.from(dataObject, boundLists), outputFile);
+				return;
+			}
+			
+			if (renderCache != null) {
+				writeIfChanged(outputFile);
+				return;
+			}
+			
+			if (renderer.isPresent()) {
+				try (Writer writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
+					renderer.get().render(dataObject, writer);
+				}
+				return;
+			}
+			
+			ValueMap valueMap = ValueMap.from(dataObject);
+			ListEntries listEntries = listEntries(ListEntries.from(dataObject, boundLists));
+			
+			try (FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.CREATE, 
+					                                                StandardOpenOption.TRUNCATE_EXISTING, 
+					                                                StandardOpenOption.WRITE)) {
+				template.encoded(StandardCharsets.UTF_8).render(valueMap, listEntries, channel);
+			}
+		} catch (IOException | ConversionException e) {
 			String msg = "Unable to generate " + outputFile.getFileName() + " from data object of type " + dataObject.getClass();
 			throw new WriteException(msg, e); 
 		}
 		
 	}
 	
-	/* -------------------  SUPPORT FUNCTIONS ----------------- */
-	/**
-	 * Generates a markdown file as specified by the template file using the information
-	 * in the data object.
-     * 
-     * @param dataObject An object annotated with template field information
-	 * @param outputFilePath Path specifying the markdown file to be generated
+	/** Generates semantically annotated markdown from a template and writes it to a writer. 
+	 * <p>
+	 * Each block of markdown is written as soon as it has been generated. The writer is flushed, but not closed. 
+	 * 
+	 * @param writer The writer the markdown is written to
+	 * @throws WriteException if the markdown could not be generated or written for some cause.
 	 */
-	void generate(Object dataObject, Path outputFilePath) throws IOException, CloneNotSupportedException, ConversionException {
-
-		ValueMap valueMap = ValueMap.from(dataObject);
-
-		// Expand the inline delimiters with the field delimiters so that only these are selected. 
-		Delimiters expandedDelimiters = delimiters.clone().insertAll("{{", "}}"); 
-
-		try (Stream<String> lines= Files.lines(templatePath, Charset.defaultCharset())) {
-			List<String> replacements =  
-					Stream.concat(lines, Stream.of("\n"))          // Add a blank line to the stream of lines so that all blocks are correctly terminated
-					.map(SemanticWriter.chunk())                                                      // Map to Optional<StringBuffer> elements that either contain markdown text blocks or are empty
-					.filter(optBlock -> optBlock.isPresent())                          // Filter out the empty blocks
-					.map(optBlock -> optBlock.orElse(""))                              // Convert each block to a string
-					.flatMap(block -> templateExpand(block, valueMap))                 // Expand any lists
-					.map(line -> templateReplace(line, valueMap, expandedDelimiters))  // Replace the fields and add semantic information
-					.collect(Collectors.toList());
+	public void write(Writer writer) throws WriteException {
+		checkDataObject();
+		Optional<SpecializedRenderer> renderer = specializedRenderer();
+		
+		try {
+			if (renderer.isPresent()) {
+				renderer.get().render(dataObject, writer);
+				writer.flush();
+				return;
+			}
 			
-			Files.write(outputFilePath, replacements);
+			generate(ValueMap.from(dataObject), listEntries(ListEntries.from(dataObject, boundLists)), writer);
+			writer.flush();
+		} catch (IOException | ConversionException e) {
+			String msg = "Unable to generate markdown from data object of type " + dataObject.getClass();
+			throw new WriteException(msg, e); 
 		}
-
+		
 	}
 	
-	/* Expands any markdown block that contains field names that refer to a list (i.e. have a '*' as part of their (compound) name
-	 * to a stream of template blocks  each one of which represents one entry of the list.
-	 * 
-	 * For instance: the following template block:
-	 * <code>
-	 *    * Article number {{order.*.articleNumber}}
-	 * </code>   
-	 * will be expanded to a stream of the following blocks:
-	 * <code>
-	 *   * Article number {{order.0.articleNumber}}
-	 *   
-	 *   * Article number {{order.1.articleNumber}}
-	 *   
-	 *   * Article number {{order.2.articleNumber}}
-	 *   
-	 * </code>
-	 * where the number of block is that contained in the value map.
-	 * 
-	 * If the block does not contain field names that contain a '*' then the block will be passed on without any changes. 
-	 * 
-	 * ---Precondition is that the blocks do not contains directives.
+	/** Generates semantically annotated markdown from a template and writes it to an output stream 
+	 * using the specified charset.
+	 * <p>
+	 * The markdown is written as it is generated. The output stream is flushed, but not closed. 
 	 * 
+	 * @param outputStream The output stream the markdown is written to
+	 * @param charset The charset used to encode the markdown
+	 * @throws WriteException if the markdown could not be generated or written for some cause.
+	 */
+	public void write(OutputStream outputStream, Charset charset) throws WriteException {
+		checkDataObject();
+		if (specializedRenderer().isPresent()) {
+			write(new BufferedWriter(new OutputStreamWriter(outputStream, charset)));
+			return;
+		}
+		
+		try {
+			template.encoded(charset).render(ValueMap.from(dataObject), listEntries(ListEntries.from(dataObject, boundLists)), outputStream);
+			outputStream.flush();
+		} catch (IOException | ConversionException e) {
+			String msg = "Unable to generate markdown from data object of type " + dataObject.getClass();
+			throw new WriteException(msg, e); 
+		}
+		
+	}
+	
+	/** Generates semantically annotated markdown from a template and writes it, encoded as UTF-8, to a channel.
+	 * <p>
+	 * The markdown is written as it is generated using gathering writes if the channel supports them. The channel is not closed. 
 	 * 
-	 * @param block A blank line delimited block of markdown text.
-	 * @param valueMap The value map  
-	 * @throws IllegalArgumentException if the block contains a directive
+	 * @param channel The channel the markdown is written to
+	 * @throws WriteException if the markdown could not be generated or written for some cause.
 	 */
-	private Stream<String> templateExpand(String block, ValueMap valueMap)  throws IllegalArgumentException {
-
-        Stream.Builder<String> streamBuilder = Stream.builder();
-
-        Matcher fieldMatcher = Patterns.FIELD_PATTERN.matcher(block);
-
-		String newBlock;	
-		if (fieldMatcher.find()) {
-			String fieldName = fieldMatcher.group("fieldname");
-			if (fieldName.contains("*")) {
-				// Extract the first part of the field name before the '*' character. 
-				// Only indexed field names with the same first part before the '*' 
-				// are allowed in one block.
-				String firstPartFieldName = Splitter.on('*').trimResults(CharMatcher.is('.')).splitToList(fieldName).get(0);  //Included the periods, but that's ok. 
-
-				// Add the list directive  
-				String listDirective = commentDelimiter.start().orElse("") 
-						+ "{@list-template=\"" + block.replace("\n", "") 
-						+ "\"}}"
-						+ commentDelimiter.end().orElse("")
-				        + "\n";
-				streamBuilder.add(listDirective);
-				
-				// Expand the list fields
-				ValueMap iteratedValueMap = valueMap.getValueMap(firstPartFieldName).orElse(ValueMap.empty());
-				Set<String> fieldNameSet =  iteratedValueMap.fieldNames();
-				for (String fieldNameEntry: fieldNameSet) {
-					String regex = "\\{\\{" + firstPartFieldName + "\\.\\*";
-					String replacement = "{{" + firstPartFieldName + "." + fieldNameEntry;
-					newBlock = block.replaceAll(regex, replacement);
-					
-					streamBuilder.add(newBlock);   
-				}                       
-
-			} else {
-				// Block does not contain any field that represents a list, Just pass it on. 
-				streamBuilder.add(block);  
-			}
-		} else {
-			// Text block contains no fields or a directive. Just pass it on.
-			streamBuilder.add(block);
+	public void write(WritableByteChannel channel) throws WriteException {
+		checkDataObject();
+		if (specializedRenderer().isPresent()) {
+			write(Channels.newWriter(channel, StandardCharsets.UTF_8));
+			return;
 		}
-
-
-		return streamBuilder.build();
+		
+		try {
+			template.encoded(StandardCharsets.UTF_8).render(ValueMap.from(dataObject), listEntries(ListEntries.from(dataObject, boundLists)), channel);
+		} catch (IOException | ConversionException e) {
+			String msg = "Unable to generate markdown from data object of type " + dataObject.getClass();
+			throw new WriteException(msg, e); 
+		}
+		
 	}
-
-    /**
-     * 
-     * TODO try and find a less redundant solution
-     * @param inBlock
-     * @param valueMap
-     * @param delimiters
-     * @return
-     */
-	private String templateReplace(String inBlock, ValueMap valueMap, Delimiters delimiters) {
-	   if (inBlock.contains("{@") && inBlock.contains("}}")) {
-		   // Directives are passed through without any further processing
-		   return inBlock;
-		   
-	   }
-	   
-	   if (!inBlock.contains("{{")) {
-		   // Any text block without any fields is passed through without any further processing
-		   return inBlock;
-	   }
+	
+	/** Generates semantically annotated markdown from a template and writes it, encoded as UTF-8, as an entry of 
+	 * a zip archive. The markdown is generated in memory without creating an intermediate file and only added to the 
+	 * zip archive once it has been generated completely, so no entry is added if it cannot be generated.
+	 * 
+	 * @param sink The zip archive
+	 * @param entryName The name of the zip entry, e.g. <code>works/4711.md</code>
+	 * @throws WriteException if the markdown could not be generated or written for some cause.
+	 */
+	public void write(ZipSink sink, String entryName) throws WriteException {
+		checkNotNull(sink, "The zip sink cannot be null");
 		
-		Matcher fieldMatcher = Patterns.FIELD_PATTERN.matcher(inBlock);
+		ByteArrayOutputStream markdown = new ByteArrayOutputStream();
+		write(markdown, StandardCharsets.UTF_8);
 		
-		StringBuilder semanticBlock = assembleSemanticBlock(inBlock);
+		try {
+			sink.putEntry(entryName, markdown.toByteArray());
+		} catch (IOException e) {
+			throw new WriteException("Unable to write the zip entry " + entryName, e);
+		}
+	}
+	
+	/** Generates a semantically annotated markdown file for a data object. The data object this writer was set up
+	 * with, if any, and the lists bound to this writer are not used, and this writer is not changed, so that 
+	 * the writer can be used to write data objects in several threads at the same time.
+	 * 
+	 * @param dataObject The data object
+	 * @param outputFile Path specifying the markdown file to be generated
+	 * @throws WriteException if the markdown file could no be created for some cause.
+	 */
+	public void write(Object dataObject, Path outputFile) throws WriteException {
+		writerFor(dataObject).write(outputFile);
+	}
+	
+	/** Generates semantically annotated markdown for a data object and writes it to a writer. The writer is 
+	 * flushed, but not closed. As with {@link #write(Object, Path)} this writer is not changed.
+	 * 
+	 * @param dataObject The data object
+	 * @param writer The writer the markdown is written to
+	 * @throws WriteException if the markdown could not be generated or written for some cause.
+	 */
+	public void write(Object dataObject, Writer writer) throws WriteException {
+		writerFor(dataObject).write(writer);
+	}
+	
+	/** Generates semantically annotated markdown for a data object and writes it to an output stream using the 
+	 * specified charset. The output stream is flushed, but not closed. As with {@link #write(Object, Path)} this 
+	 * writer is not changed.
+	 * 
+	 * @param dataObject The data object
+	 * @param outputStream The output stream the markdown is written to
+	 * @param charset The charset used to encode the markdown
+	 * @throws WriteException if the markdown could not be generated or written for some cause.
+	 */
+	public void write(Object dataObject, OutputStream outputStream, Charset charset) throws WriteException {
+		writerFor(dataObject).write(outputStream, charset);
+	}
+	
+	/** Generates semantically annotated markdown for a data object and writes it, encoded as UTF-8, as an entry of 
+	 * a zip archive. As with {@link #write(Object, Path)} this writer is not changed.
+	 * 
+	 * @param dataObject The data object
+	 * @param sink The zip archive
+	 * @param entryName The name of the zip entry
+	 * @throws WriteException if the markdown could not be generated or written for some cause.
+	 */
+	public void write(Object dataObject, ZipSink sink, String entryName) throws WriteException {
+		writerFor(dataObject).write(sink, entryName);
+	}
+	
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+	
+	/* A writer for one data object with the same template and configuration as this writer */
+	private SemanticTemplateWriter writerFor(Object dataObject) {
+		checkNotNull(dataObject, "The data object cannot be null");
+		checkState(template != null, "No template has been specified");
 		
-		// Now replace every thing in the in block that is a valid field using the value map
-		String textValue =  fieldMatcher.replaceAll(mr -> fieldSubstitution(mr, valueMap));
+		SemanticTemplateWriter writer = new SemanticTemplateWriter(dataObject, template);
+		writer.specialized = specialized;
+		writer.renderCache = renderCache;
+		writer.listPool = listPool;
+		writer.listRangeSize = listRangeSize;
+		writer.sharding = sharding;
+		return writer;
+	}
+	
+	/* The list entries rendered in parallel if this has been requested */
+	private ListEntries listEntries(ListEntries listEntries) {
+		return listPool == null ? listEntries : listEntries.parallel(listPool, listRangeSize);
+	}
+	
+	/* Writes the markdown file only if the data, the template or the file have changed and the content of the file 
+	 * would change */
+	private void writeIfChanged(Path outputFile) throws IOException, ConversionException {
+		ValueMap valueMap = ValueMap.from(dataObject);
+		ListEntries.from(dataObject, boundLists).addTo(valueMap);
 		
+		HashCode fingerprint = RenderCache.fingerprint(valueMap);
+		if (renderCache.isUnchanged(outputFile, template, fingerprint)) return;
 		
-		return semanticBlock + "\n" + textValue;
+		ByteArrayOutputStream markdown = new ByteArrayOutputStream();
+		template.encoded(StandardCharsets.UTF_8).render(valueMap, listEntries(ListEntries.none()), markdown);
+		renderCache.write(outputFile, template, fingerprint, markdown.toByteArray());
+	}
+	
+	private void checkDataObject() {
+		checkState(dataObject != null, "No data object has been specified");
+	}
+	
+	/* The specialised renderer if one has been requested and can be used */
+	private Optional<SpecializedRenderer> specializedRenderer() {
+		if (!specialized || !boundLists.isEmpty() || listPool != null) return Optional.empty();
 		
+		return template.specializedFor(dataObject.getClass());
 	}
 	
+	/**
+	 * Generates markdown as specified by the compiled template using the information
+	 * in the value map of the data object.
+     * 
+     * @param valueMap The value map of the data object
+     * @param listEntries The entries of the lists
+	 * @param writer The writer the markdown is written to
+	 */
+	void generate(ValueMap valueMap, ListEntries listEntries, Writer writer) throws IOException, ConversionException {
+
+		template.render(valueMap, listEntries, writer);
+
+	}
 	
 	/** 
 	 *  Reads in a text containing field specifications and creates a semantic block for it 
@@ -240,6 +513,19 @@ public class SemanticTemplateWriter {
 	 * @return The constructed semantic block
 	 */
 	protected StringBuilder assembleSemanticBlock(String textValueBlock) {
+		return assembleSemanticBlock(textValueBlock, delimiters, commentDelimiter);
+	}
+	
+	/** 
+	 *  Reads in a text containing field specifications and creates a semantic block for it 
+	 *  using the specified delimiters.
+	 *
+	 * @param textValueBlock String containing field specifications
+	 * @param delimiters The delimiters around the fields
+	 * @param commentDelimiter The delimiter used for comments in the markdown file
+	 * @return The constructed semantic block
+	 */
+	static StringBuilder assembleSemanticBlock(String textValueBlock, Delimiters delimiters, Delimiter commentDelimiter) {
 		StringBuilder semanticBlock = new StringBuilder();
 						
 		// Assemble the semantic block 
@@ -248,20 +534,18 @@ public class SemanticTemplateWriter {
 		Matcher delimiterMatcher  = delimiterPattern.matcher(textValueBlock);
 		semanticBlock = delimiterMatcher.results()
 				                        .map(mr -> mr.group())   // Map to the string  s{{f}}e
-						                .map(s -> mapInlineFieldSpec(s))
+						                .map(s -> inlineFieldSpec(s))
 						                .collect(StringBuilder::new, StringBuilder::append, StringBuilder::append);
 		
 		
 		boolean noInlineFieldsFound = (semanticBlock.length() == 0);
 		
-		Matcher fieldMatcher = Patterns.FIELD_PATTERN.matcher(textValueBlock);
-	    
 		if (noInlineFieldsFound) {
 			// A text block has the form
 			//   a{{f}}b  where a, b are strings with 0 or more characters, f is the field name
 			// Need to map this to the outline field spec:
 			//   {{f:pattern="a%s%b"}}
-			if (fieldMatcher.find()) {
+			if (SemanticLexer.firstField(textValueBlock).isPresent()) {
 				List<String> parts = Splitter.onPattern("\\{\\{|\\}\\}").trimResults(CharMatcher.is('\n')).splitToList(textValueBlock);
 				
 				semanticBlock.append("{{").append(parts.get(1));
@@ -307,6 +591,10 @@ public class SemanticTemplateWriter {
 	 * 
 	 */
 	protected StringBuffer mapInlineFieldSpec(String s) {
+		return inlineFieldSpec(s);
+	}
+	
+	private static StringBuffer inlineFieldSpec(String s) {
 		StringBuffer sb = new StringBuffer();
 		List<String> parts = Splitter.onPattern("\\{\\{|\\}\\}").splitToList(s);
 		
@@ -317,41 +605,5 @@ public class SemanticTemplateWriter {
 		return sb;
 		
 	}
-	
-	private String fieldSubstitution(MatchResult mr, ValueMap valueMap) {
-
-		String fieldName = mr.group().replaceAll("\\{|\\}", "");  // Removed the field delimiters
-
-		// Field names starting with "template." are ignored. Note that these are always alone on a line.
-	    if (fieldName.startsWith("template.")) {
-	    	if (fieldName.substring("template.".length()).equals("comment")) {
-	          return "{{template.comment}}";
-	    	}
-	    }
-
-
-	    String valueString = getFieldValueAsString(fieldName, valueMap);
-
-
-
-
-		return valueString;
-
-	}
-	
-	private String getFieldValueAsString(String fieldName, ValueMap fieldValueMap) {
-		String valueString;
-		Optional<Object> valueObject;
-				
- 		if (fieldValueMap.containsField(fieldName)) {
-			valueObject =  fieldValueMap.getValue(fieldName);
-			valueString = valueObject.orElse("ERROR").toString();
-		} else {
-			valueString ="UNKNOWN";
-		}
-
-		
-		return valueString;
-	}
 
 }
@@ -3,14 +3,24 @@
  */
 package semplate;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -19,6 +29,7 @@ import java.util.stream.Stream;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Function;
 import com.google.common.base.Splitter;
+import com.google.common.hash.HashCode;
 
 import semplate.valuemap.ConversionException;
 import semplate.valuemap.ValueMap;
@@ -49,6 +60,20 @@ import semplate.valuemap.ValueMap;
  *
  */
 public class SemanticWriter extends SemanticTemplateWriter {
+	// Field names that are part of a iteration. i.e field names of the form 
+	//  a.D.b  
+	//  D.b
+	//  a.D
+	//  D
+	// Where a and b are field names made of non-numeric characters
+	// and D is a number. 
+	private final static Pattern ITERATED_FIELD_PATTERN = Pattern.compile("\\{{2}"
+			                                                            + "(?<fieldname>.*?\\.\\d+\\..*?|"
+			                                                            + ".*?\\.\\d+|"
+			                                                            + "\\d+\\..+?|"
+			                                                            + "\\d+?)"
+			                                                            + "\\:.*?\\}{2}");
+
 	// Existing semantic markdown file to be updated
 	private Path inputFile;
 	
@@ -77,15 +102,43 @@ public class SemanticWriter extends SemanticTemplateWriter {
 		return semanticWriter;
 	}
 	
+	/** Set up a writer for a template that is not bound to a data object. The data objects are specified 
+	 * when writing, e.g. with {@link SemanticTemplateWriter#write(Object, Path)}, so that one writer can 
+	 * be reused for any number of data objects and shared between threads. 
+	 * 
+	 * @see SemanticTemplateWriter
+	 * 
+	 * @param template The compiled template for the generated markdown files
+	 * @return A SemanticTemplateWriter object
+	 */
+	public static SemanticTemplateWriter withTemplate(CompiledTemplate template) {
+		checkNotNull(template, "The template cannot be null");
+		return new SemanticTemplateWriter(null, template);
+	}
+	
+	/** Set up a writer for a template file that is not bound to a data object (see {@link #withTemplate(CompiledTemplate)}).
+	 * 
+	 * @param templateFile The file containing the template for the generated markdown files
+	 * @return A SemanticTemplateWriter object
+	 * @throws ReadException if the template file could not be read for some reason
+	 */
+	public static SemanticTemplateWriter withTemplate(Path templateFile) throws ReadException {
+		return withTemplate(TemplateCache.shared().get(templateFile));
+	}
+	
 	
 
 	
 	/** Specifies the template file used to generate the semantically annotated markdown file.
+	 * <p>
+	 * The compiled template is taken from the {@link TemplateCache#shared() shared template cache}, so the 
+	 * template file is only read and parsed again if it has changed.
 	 * 
 	 * @see SemanticWriter
 	 * @see #with(Object)
 	 * @see SemanticTemplateWriter
 	 * @see SemanticTemplateWriter#write(Path)
+	 * @see TemplateCache
 	 * 
 	 * @param templateFile The file containing the template for the generated markdown file
 	 * @return A SemanticTemplateWriter object
@@ -93,14 +146,27 @@ public class SemanticWriter extends SemanticTemplateWriter {
 	 */
 	public SemanticTemplateWriter usingTemplate(Path templateFile) throws ReadException {
 		
-		try {
-			readDelimiters(templateFile);
-		} catch (IOException e) {
-			String msg = "Cannot read template file" + templateFile.getFileName();
-			throw new ReadException(msg, e);
-		} 
+		CompiledTemplate template = TemplateCache.shared().get(templateFile);
 		
-		SemanticTemplateWriter writer = new SemanticTemplateWriter(dataObject, templateFile, delimiters, commentDelimiter);
+		return usingTemplate(template);
+	}
+	
+	/** Specifies an already compiled template used to generate the semantically annotated markdown file.
+	 * <p>
+	 * The template file is not read or parsed again, so the same compiled template can be used 
+	 * to generate any number of markdown files.
+	 * 
+	 * @see SemanticWriter
+	 * @see #with(Object)
+	 * @see CompiledTemplate
+	 * @see SemanticTemplateWriter#write(Path)
+	 * 
+	 * @param template The compiled template for the generated markdown file
+	 * @return A SemanticTemplateWriter object
+	 */
+	public SemanticTemplateWriter usingTemplate(CompiledTemplate template) {
+		
+		SemanticTemplateWriter writer = new SemanticTemplateWriter(dataObject, template);
 		
 		return writer;
 	}
@@ -141,11 +207,53 @@ public class SemanticWriter extends SemanticTemplateWriter {
 	 */
 	@Override
 	public void write(Path outputFile) throws WriteException {
-		//Template t = new Template();
-		
 		update(dataObject, inputFile, outputFile);
 	}
 	
+	/** Writes the updated semantically annotated markdown to a writer.
+	 * <p>
+	 * Each block of markdown is written as soon as it has been updated. The writer is flushed, but not closed.
+	 *  
+	 * @param writer The writer the updated markdown is written to
+	 * @throws WriteException If the markdown could not be updated. 
+	 */
+	@Override
+	public void write(Writer writer) throws WriteException {
+		ValueMap updatedValueMap = prepareUpdate(dataObject, inputFile);
+		
+		try {
+			update(updatedValueMap, inputFile, writer);
+			writer.flush();
+		} catch (IOException | UncheckedIOException e) {
+			throw new WriteException("Unable to update the file", e);
+		}
+	}
+	
+	/** Writes the updated semantically annotated markdown to an output stream using the specified charset.
+	 * <p>
+	 * The output stream is flushed, but not closed.
+	 *  
+	 * @param outputStream The output stream the updated markdown is written to
+	 * @param charset The charset used to encode the markdown
+	 * @throws WriteException If the markdown could not be updated. 
+	 */
+	@Override
+	public void write(OutputStream outputStream, Charset charset) throws WriteException {
+		write(new BufferedWriter(new OutputStreamWriter(outputStream, charset)));
+	}
+	
+	/** Writes the updated semantically annotated markdown, encoded as UTF-8, to a channel.
+	 * <p>
+	 * The channel is not closed.
+	 *  
+	 * @param channel The channel the updated markdown is written to
+	 * @throws WriteException If the markdown could not be updated. 
+	 */
+	@Override
+	public void write(WritableByteChannel channel) throws WriteException {
+		write(Channels.newWriter(channel, StandardCharsets.UTF_8));
+	}
+	
 	/* ------------------- SUPPORT FUNCTIONS ------------------ */
 	
 	/**
@@ -159,6 +267,37 @@ public class SemanticWriter extends SemanticTemplateWriter {
 	 */
 	void update(Object dataObject, Path inputFile, Path outputFile) throws WriteException {
 		
+		ValueMap updatedValueMap = prepareUpdate(dataObject, inputFile);
+		
+		try {
+			if (renderCache != null) {
+				// Only write the output file if the file being updated, the data or the updated content have changed 
+				Object source = RenderCache.source(inputFile);
+				HashCode fingerprint = RenderCache.fingerprint(updatedValueMap);
+				if (!renderCache.isUnchanged(outputFile, source, fingerprint)) {
+					StringWriter updated = new StringWriter();
+					update(updatedValueMap, inputFile, updated);
+					renderCache.write(outputFile, source, fingerprint, updated.toString().getBytes(StandardCharsets.UTF_8));
+				}
+			} else if (Files.exists(outputFile) && Files.isSameFile(inputFile, outputFile)) {
+				// The file is updated in place, so it has to be completely read before it is written. 
+				StringWriter updated = new StringWriter();
+				update(updatedValueMap, inputFile, updated);
+				Files.writeString(outputFile, updated.toString(), StandardCharsets.UTF_8);
+			} else {
+				try (Writer writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
+					update(updatedValueMap, inputFile, writer);
+				}
+			}
+		} catch (IOException | UncheckedIOException e) {
+			throw new WriteException("Unable to update the file", e);
+		}
+		
+	}
+	
+	/* Determines the delimiters in the markdown file to be updated and creates the value map with the new data */
+	private ValueMap prepareUpdate(Object dataObject, Path inputFile) throws WriteException {
+		
 		// Determine delimiters in the markdown file to be updated. 
 		try {
 			readDelimiters(inputFile);
@@ -166,37 +305,36 @@ public class SemanticWriter extends SemanticTemplateWriter {
 			throw new WriteException("Unable to initally read the file to be updated", e);
 		}
 		
-		ValueMap updatedValueMap;
 		try {
-			updatedValueMap = ValueMap.from(dataObject);
+			ValueMap valueMap = ValueMap.from(dataObject);
+			ListEntries.from(dataObject, boundLists).addTo(valueMap);
+			return valueMap;
 		} catch (ConversionException e) {
 			throw new WriteException("Cannot read the supplied data object", e);
 		} 
-
-		// Update the contents with the data in the value map 
-		List<String> blocks;
+	}
+	
+	/* Updates the contents of the input file with the data in the value map and writes each updated block 
+	 * as soon as it has been updated.  
+	 */
+	private void update(ValueMap updatedValueMap, Path inputFile, Writer writer) throws IOException {
+		String lineSeparator = System.lineSeparator();
+		
 		try (Stream<String> lines = Files.lines(inputFile, Charset.defaultCharset())) {
-			blocks = Stream.concat(lines, Stream.of("\n"))    // --> <String> : Add a blank lines to the stream of lines so that all blocks are correctly terminated
+			Iterator<String> blocks = Stream.concat(lines, Stream.of("\n"))    // --> <String> : Add a blank lines to the stream of lines so that all blocks are correctly terminated
 					.map(chunk())  
 					.map(o -> o.orElse(""))  // Remove any empty blocks
 					.flatMap(b -> removeListElement(b))  // Remove any blocks that have list elements in them
 					.flatMap(chunk -> updateList(chunk, updatedValueMap))  
 					.map(chunk -> updateBlock(chunk, updatedValueMap))
-					.collect(Collectors.toList());
+					.iterator();
 			
-		} catch (IOException  e)  {
-			throw new WriteException("Unable to update the file", e);
-		}
-		
-		// Create the output file with the new contents.  
-		try {
-			Files.write(outputFile, blocks);
-		} catch (IOException e) {
-			String msg = "Cannot update the markdown file";
-			throw new WriteException(msg, e);
+			while (blocks.hasNext()) {
+				writer.write(blocks.next());
+				writer.write(lineSeparator);
+			}
 		}
 		
-		
 	}
 	
 	/** Converts lines of markdown into blocks of markdown that are separated by two new lines. 
@@ -229,21 +367,8 @@ public class SemanticWriter extends SemanticTemplateWriter {
 	private Stream<String> removeListElement(String block) {
 		Stream.Builder<String> streamBuilder = Stream.builder();
 		
-		// Regular expression to find field names that are part of a iteration. i.e field names of the form 
-		//  a.D.b  
-		//  D.b
-		//  a.D
-		//  D
-		// Where a and b are field names made of non-numeric characters
-		// and D is a number. 
-		String regex = "\\{{2}"
-				+ "(?<fieldname>.*?\\.\\d+\\..*?|"
-				+ ".*?\\.\\d+|"
-				+ "\\d+\\..+?|"
-				+ "\\d+?)"
-				+ "\\:.*?\\}{2}";
-		
-		Matcher iteratedFieldNameMatcher = Pattern.compile(regex).matcher(block);
+		// Find field names that are part of a iteration
+		Matcher iteratedFieldNameMatcher = ITERATED_FIELD_PATTERN.matcher(block);
 		
 		if (!iteratedFieldNameMatcher.find()) {
 			streamBuilder.add(block);
@@ -252,7 +377,11 @@ public class SemanticWriter extends SemanticTemplateWriter {
 		
 	}
 	
-	/** If the chunk is a list directive then expends this into a list and streams each list entry
+	/** If the chunk is a list directive then expends this into a list and streams each list entry.
+	 * <p>
+	 * The list template is compiled once with slots for the list index. Each list entry is then 
+	 * created by writing the index into the slots.
+	 * 
 	 * @param chunk  Contains some text 
 	 * @param valueMap The updated value map
 	 * @return A stream of either text blocks or added list entries
@@ -260,18 +389,17 @@ public class SemanticWriter extends SemanticTemplateWriter {
 	private Stream<String> updateList(String chunk, ValueMap valueMap) {
 		Stream.Builder<String> streamBuilder = Stream.builder();
 
-		Pattern listDirectivePattern  = Pattern.compile("\\{@list-template=\\\"(?<template>.*?)\\\"\\}\\}"); 
-		Matcher listDirectiveMatcher = listDirectivePattern.matcher(chunk);
+		Optional<String> listTemplate = SemanticLexer.directive(chunk, "list-template").flatMap(SemanticLexer.Token::quotedValue);
 
-		if (listDirectiveMatcher.find()) {
-			String template = listDirectiveMatcher.group("template");
+		if (listTemplate.isPresent()) {
+			String template = listTemplate.get();
 
 			streamBuilder.add(chunk);  // Add the list directive
 
 			// Get the fields specified in the template
-			Matcher templateFieldMatcher = Patterns.FIELD_PATTERN.matcher(template);
-			if (templateFieldMatcher.find()) {
-				String fieldName = templateFieldMatcher.group("fieldname");
+			Optional<SemanticLexer.Token> templateField = SemanticLexer.firstField(template);
+			if (templateField.isPresent()) {
+				String fieldName = templateField.get().name();
 				if (fieldName.contains("*")) {
 					// Extract the first part of the field name before the '*' character. 
 					// Only indexed field names with the same first part before the '*' 
@@ -279,18 +407,19 @@ public class SemanticWriter extends SemanticTemplateWriter {
 					String firstPartFieldName = Splitter.on('*').trimResults(CharMatcher.is('.')).splitToList(fieldName).get(0);  
 					// Expand the list fields
 					ValueMap iteratedValueMap = valueMap.getValueMap(firstPartFieldName).orElse(ValueMap.empty());
-					Set<String> fieldNameSet =  iteratedValueMap.fieldNames();
-					for (String fieldNameEntry: fieldNameSet) {
-						String regex = "\\{\\{" + firstPartFieldName + "\\.\\*";
-						String replacement = "{{" + firstPartFieldName + "." + fieldNameEntry;
-						String listTextValue = template.replaceAll(regex, replacement);
-						
-						// Create the semantic block
-						StringBuilder semanticBlock = assembleSemanticBlock(listTextValue);
-						
-						String block = semanticBlock + "\n" + listTextValue + "\n\n";
+					TemplateBlock entry = CompiledTemplate.compileIndexedEntry(template, firstPartFieldName, delimiters, commentDelimiter);
+					
+					StringBuilder block = new StringBuilder();
+					for (String fieldNameEntry: iteratedValueMap.fieldNames()) {
+						block.setLength(0);
+						try {
+							entry.render(block, ValueMap.empty(), iteratedValueMap, fieldNameEntry);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);  // Never thrown by a StringBuilder
+						}
+						block.append("\n\n");
 						
-						streamBuilder.add(block);
+						streamBuilder.add(block.toString());
 					}
 				}
 			}
@@ -310,18 +439,8 @@ public class SemanticWriter extends SemanticTemplateWriter {
 	 * @returns The updated chunk. 
 	 */
 	private String updateBlock(String block, ValueMap valueMap) {
-		ArrayList<FieldSpec> fieldSpecs = new ArrayList<>();
-		
 		// Extract the field specs 
-        fieldSpecs.clear();
-		
-		Pattern fieldPattern = FieldSpec.pattern();
-		Matcher fieldMatcher = fieldPattern.matcher(block);  
-
-		while (fieldMatcher.find()) {
-			FieldSpec field = FieldSpec.of(fieldMatcher.group());
-			fieldSpecs.add(field); 
-		}
+		List<FieldSpec> fieldSpecs = SemanticLexer.fieldSpecs(block);
 		
 		// Separate the chunk into the first line containing the semantics and
 		// the rest containing the text.
@@ -340,10 +459,8 @@ public class SemanticWriter extends SemanticTemplateWriter {
 			Optional<String> startDelimiter = fieldSpec.delimiter().start();
 			Optional<String> endDelimiter = fieldSpec.delimiter().end();
 			
-			String regex = startDelimiter.map(d -> Pattern.quote(d)).orElse("^");
-			regex += ".*?";
-			regex += endDelimiter.map(d -> Pattern.quote(d)).orElse("$");
-			replacementChunk = replacementChunk.replaceFirst(regex, startDelimiter.orElse("") + value.toString() + endDelimiter.orElse(""));
+			String replacement = startDelimiter.orElse("") + value.toString() + endDelimiter.orElse("");
+			replacementChunk = fieldSpec.extractionPattern().matcher(replacementChunk).replaceFirst(Matcher.quoteReplacement(replacement));
 		}
 		
 		
@@ -362,7 +479,7 @@ public class SemanticWriter extends SemanticTemplateWriter {
 	void readDelimiters(Path templatePath) throws IOException, ReadException {
 		
 		try (Stream<String> stream = Files.lines(templatePath, Charset.defaultCharset())) {
- 			commentDelimiter = stream.filter(Patterns.COMMENT_DIRECTIVE_PATTERN.asPredicate())
+ 			commentDelimiter = stream.filter(line -> SemanticLexer.containsDirective(line, "template.comment"))
 						 			 .map(line -> Delimiter.createCommentDelimiter(line))
  									 .findFirst()
  									 .orElseThrow(() -> new ReadException("No template.comment directive found in template."));
@@ -370,9 +487,9 @@ public class SemanticWriter extends SemanticTemplateWriter {
 
 		
 		try (Stream<String> stream = Files.lines(templatePath, Charset.defaultCharset())) {
-			delimiters  = stream.filter(Patterns.DELIMITER_DIRECTIVE_PATTERN.asPredicate())
+			delimiters  = stream.filter(line -> SemanticLexer.containsDirective(line, "template.delimiter"))
 							    .map(line -> Delimiter.createDelimiter(line))
-					            .collect(Delimiters::new, Delimiters::add, Delimiters::add);
+					            .collect(Collectors.collectingAndThen(Collectors.toList(), Delimiters::of));
 		}
 		
 		
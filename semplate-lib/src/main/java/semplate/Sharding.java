@@ -0,0 +1,251 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import semplate.valuemap.ConversionException;
+import semplate.valuemap.ValueMap;
+
+/** Specifies how the entries of lists are split across several markdown files, the shards, so that documents
+ * with very large lists are not written as one file.
+ * <p>
+ * For instance, this statement:
+ * <pre> <code>
+ *      SemanticWriter.with(works).usingTemplate(templateFilePath)
+ *                                .sharded(Sharding.byEntries(1000))
+ *                                .write(indexFilePath);
+ * </code> </pre>
+ * ... writes the markdown file <code>works.md</code> at <code>indexFilePath</code> with all blocks of the template
+ * except the list entries. The entries of each list are written, at most 1000 per file, to the shards
+ * <code>works-references-1.md</code>, <code>works-references-2.md</code> etc. in the same directory. The markdown
+ * file is the index of the shards: after the list directive it contains a shard directive and a link for each shard, e.g.
+ * <pre>
+ *     &lt;!--{&#64;list-shard:"works-references-1.md"}}--&gt;
+ *     [works-references-1.md](works-references-1.md)
+ * </pre>
+ * Each shard starts with the list directive followed by its entries. The entries keep their index in the complete
+ * list, so that {@link SemanticReader} reassembles the list when reading the index file.
+ * <p>
+ * Lists can be split by the number of entries ({@link #byEntries(int)}) or by the number of bytes
+ * ({@link #bySize(long)}) in each shard. The entries are written to the shards as they are rendered, so lazy lists
+ * are also only held in memory one entry at a time.
+ *
+ * @see SemanticTemplateWriter#sharded(Sharding)
+ *
+ * @author Andrew Doble
+ *
+ */
+public final class Sharding {
+	/** The maximum number of entries in a shard */
+	private final int maxEntries;
+
+	/** The maximum number of bytes in a shard */
+	private final long maxBytes;
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private Sharding(int maxEntries, long maxBytes) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** Splits the lists into shards with at most the specified number of entries.
+	 *
+	 * @param maxEntries The maximum number of list entries in a shard
+	 * @return The sharding
+	 * @throws IllegalArgumentException if the number of entries is less than 1
+	 */
+	public static Sharding byEntries(int maxEntries) {
+		checkArgument(maxEntries > 0, "A shard needs at least one entry (was %s)", maxEntries);
+		return new Sharding(maxEntries, Long.MAX_VALUE);
+	}
+
+	/** Splits the lists into shards with at most the specified number of bytes, encoded as UTF-8. A shard always
+	 * contains at least one entry, so a shard with a single large entry can be larger.
+	 *
+	 * @param maxBytes The maximum number of bytes in a shard
+	 * @return The sharding
+	 * @throws IllegalArgumentException if the number of bytes is less than 1
+	 */
+	public static Sharding bySize(long maxBytes) {
+		checkArgument(maxBytes > 0, "A shard needs at least one byte (was %s)", maxBytes);
+		return new Sharding(Integer.MAX_VALUE, maxBytes);
+	}
+
+	@Override
+	public String toString() {
+		return maxBytes == Long.MAX_VALUE ? "Sharding [maxEntries=" + maxEntries + "]"
+				                          : "Sharding [maxBytes=" + maxBytes + "]";
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/** Renders the template, writing the list entries to shards and all other blocks to the index file.
+	 *
+	 * @param template The compiled template
+	 * @param valueMap The value map of the data object
+	 * @param listEntries The entries of the lists
+	 * @param indexFile Path specifying the index file. The shards are written to the same directory.
+	 * @return The paths of the shards written
+	 * @throws IOException if the index file or a shard cannot be written
+	 * @throws ConversionException if a list entry cannot be converted to a value map
+	 */
+	List<Path> write(CompiledTemplate template, ValueMap valueMap, ListEntries listEntries, Path indexFile) throws IOException, ConversionException {
+		String lineSeparator = System.lineSeparator();
+		ValueMap noList = ValueMap.empty();
+		Delimiter commentDelimiter = template.commentDelimiter();
+
+		List<Path> shardFiles = new ArrayList<>();
+		Map<String, Integer> shardCounts = new HashMap<>();   // The same list can be expanded more than once
+
+		try (Writer index = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8)) {
+			for (TemplateBlock block: template.blocks()) {
+				block.render(index, valueMap, noList, "");
+				index.write(lineSeparator);
+
+				if (block.type() == TemplateBlock.Type.LIST) {
+					StringBuilder listDirective = new StringBuilder();
+					block.render(listDirective, valueMap, noList, "");
+					listDirective.append(lineSeparator);
+
+					List<Path> blockShards;
+					try (Shards shards = new Shards(indexFile, block.listFieldName(), shardCounts.getOrDefault(block.listFieldName(), 0),
+							                        listDirective.toString())) {
+						listEntries.forEach(valueMap, block.listFieldName(), (listValueMap, i) -> {
+							StringBuilder entry = new StringBuilder();
+							block.entry().render(entry, valueMap, listValueMap, i);
+							shards.write(entry.append(lineSeparator).toString());
+						});
+						blockShards = shards.files;
+					}
+					shardCounts.merge(block.listFieldName(), blockShards.size(), Integer::sum);
+
+					for (Path shardFile: blockShards) {
+						String fileName = shardFile.getFileName().toString();
+						index.write(commentDelimiter.start().orElse("") + "{@list-shard:\"" + fileName + "\"}}" + commentDelimiter.end().orElse(""));
+						index.write(lineSeparator);
+						index.write("[" + fileName + "](" + fileName + ")");
+						index.write(lineSeparator);
+						index.write(lineSeparator);
+					}
+					shardFiles.addAll(blockShards);
+				}
+			}
+		}
+
+		return shardFiles;
+	}
+
+	/** The path of a shard of a list, e.g. <code>works-references-1.md</code> for the index file <code>works.md</code>.
+	 *
+	 * @param indexFile The index file
+	 * @param listFieldName The name of the list field
+	 * @param number The number of the shard, starting with 1
+	 * @return The path of the shard
+	 */
+	static Path shardFile(Path indexFile, String listFieldName, int number) {
+		String fileName = indexFile.getFileName().toString();
+		int dot = fileName.lastIndexOf('.');
+		String stem = dot > 0 ? fileName.substring(0, dot) : fileName;
+		String extension = dot > 0 ? fileName.substring(dot) : "";
+
+		return indexFile.resolveSibling(stem + "-" + listFieldName + "-" + number + extension);
+	}
+
+	/** The file name in a shard directive, e.g. <code>works-references-1.md</code> in the line
+	 * <code>&lt;!--{&#64;list-shard:"works-references-1.md"}}--&gt;</code>.
+	 *
+	 * @param line A line of an index file
+	 * @return The file name or empty if the line does not contain a shard directive
+	 */
+	static Optional<String> shardDirective(String line) {
+		return SemanticLexer.directive(line, "list-shard").flatMap(SemanticLexer.Token::quotedValue);
+	}
+
+	/** The path of a shard referenced by a shard directive in an index file. Shards are always in the directory of
+	 * the index file, so the file name in the directive must be a plain file name. Other paths, e.g. absolute
+	 * paths or paths containing <code>..</code>, are rejected, as the index file may come from anywhere.
+	 *
+	 * @param indexFile The index file
+	 * @param fileName The file name in the shard directive
+	 * @return The path of the shard
+	 * @throws ReadException if the file name is not a plain file name
+	 */
+	static Path referencedShard(Path indexFile, String fileName) throws ReadException {
+		try {
+			Path shard = indexFile.getFileSystem().getPath(fileName);
+			if (!fileName.isEmpty() && !shard.isAbsolute() && shard.getNameCount() == 1 && !fileName.equals(".") && !fileName.equals("..")
+					&& shard.getFileName().toString().equals(fileName)) {
+				return indexFile.resolveSibling(shard);
+			}
+		} catch (InvalidPathException e) {
+			// Rejected below
+		}
+
+		throw new ReadException("Shard " + fileName + " referenced in " + indexFile.getFileName() + " is not a file name in the directory of the index file");
+	}
+
+	/* The shards of one list, opening a new shard whenever the current one is full */
+	private final class Shards implements Closeable {
+		final Path indexFile;
+		final String listFieldName;
+		final byte[] listDirective;
+		final List<Path> files = new ArrayList<>();
+
+		int number;
+		OutputStream shard;
+		int entries;
+		long bytes;
+
+		Shards(Path indexFile, String listFieldName, int number, String listDirective) {
+			this.indexFile = indexFile;
+			this.listFieldName = listFieldName;
+			this.number = number;
+			this.listDirective = listDirective.getBytes(StandardCharsets.UTF_8);
+		}
+
+		void write(String entry) throws IOException {
+			byte[] encoded = entry.getBytes(StandardCharsets.UTF_8);
+
+			if (shard == null || entries >= maxEntries || (entries > 0 && bytes + encoded.length > maxBytes)) {
+				close();
+
+				Path shardFile = shardFile(indexFile, listFieldName, ++number);
+				shard = new BufferedOutputStream(Files.newOutputStream(shardFile));
+				files.add(shardFile);
+				shard.write(listDirective);
+				entries = 0;
+				bytes = listDirective.length;
+			}
+
+			shard.write(encoded);
+			entries++;
+			bytes += encoded.length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (shard != null) {
+				shard.close();
+				shard = null;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,493 @@
+package semplate;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+
+import semplate.annotations.Templatable;
+import semplate.annotations.TemplateField;
+import semplate.valuemap.ValueMap;
+
+/** A renderer for a compiled template that is specialised for one class of data objects.
+ * <p>
+ * When the renderer is created each field in the template is resolved to a method handle reading the
+ * field directly from the data object, and adjacent static text is merged. Rendering then reads
+ * only the fields used in the template and appends them between the static text. The data object is
+ * not converted to a {@link ValueMap}.
+ * <p>
+ * The rendered markdown is the same as that rendered by the {@link CompiledTemplate}, including the
+ * <code>UNKNOWN</code> and <code>ERROR</code> values and the order of the list entries. Templates and
+ * classes that cannot be specialised, for instance classes with lazy lists or lists that are
+ * not fields of the data object, are rendered using the compiled template.
+ *
+ * @see CompiledTemplate#specializedFor(Class)
+ *
+ * @author Andrew Doble
+ *
+ */
+final class SpecializedRenderer {
+	private static final String UNKNOWN = "UNKNOWN";
+	private static final String ERROR = "ERROR";
+
+	/** The maximum total number of entries of the cached orders of list entries */
+	private static final long MAXIMUM_ENTRY_ORDER_WEIGHT = 1 << 20;
+
+	/** The orders of the entries of lists of a size. Lists usually have only a few different sizes. */
+	private static final LoadingCache<Integer, EntryOrder> ENTRY_ORDERS = 
+			CacheBuilder.newBuilder()
+			            .maximumWeight(MAXIMUM_ENTRY_ORDER_WEIGHT)
+			            .weigher((Integer size, EntryOrder order) -> size)
+			            .build(CacheLoader.from(EntryOrder::new));
+
+	private final Class<?> dataClass;
+
+	private final List<Step> steps;
+
+	/* A step in rendering the template */
+	private static final class Step {
+		enum Type { TEXT, FIELD, ENTRY_FIELD, INDEX, LIST }
+
+		final Type type;
+
+		// The static text
+		final String text;
+
+		// Reads the value of a field from the data object or from a list entry
+		final Reader reader;
+
+		// Reads the list from the data object
+		final ListReader listReader;
+
+		// The steps rendered for each list entry
+		final List<Step> entry;
+
+		Step(Type type, String text, Reader reader, ListReader listReader, List<Step> entry) {
+			this.type = type;
+			this.text = text;
+			this.reader = reader;
+			this.listReader = listReader;
+			this.entry = entry;
+		}
+	}
+
+	/* Reads the string value of a field from an object */
+	private interface Reader {
+		String read(Object object);
+	}
+
+	/* Thrown when a template cannot be specialised for a class */
+	private static final class NotSpecializable extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		NotSpecializable(String message) {
+			super(message);
+		}
+	}
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private SpecializedRenderer(Class<?> dataClass, List<Step> steps) {
+		this.dataClass = dataClass;
+		this.steps = ImmutableList.copyOf(steps);
+	}
+
+	/** Creates a renderer for the template specialised for a class of data objects.
+	 *
+	 * @param template The compiled template
+	 * @param dataClass The class of the data objects
+	 * @return The renderer or empty if the template cannot be specialised for the class
+	 */
+	static Optional<SpecializedRenderer> create(CompiledTemplate template, Class<?> dataClass) {
+		try {
+			if (hasLazyFields(dataClass)) {
+				throw new NotSpecializable("Lazy lists are only supported by the compiled template");
+			}
+
+			StepsBuilder builder = new StepsBuilder(dataClass);
+			for (TemplateBlock block: template.blocks()) {
+				builder.add(block).text(System.lineSeparator());
+
+				if (block.type() == TemplateBlock.Type.LIST) {
+					List<Step> entry = new StepsBuilder(dataClass).add(block.entry()).text(System.lineSeparator()).build();
+					builder.list(block.listFieldName(), entry);
+				}
+			}
+
+			return Optional.of(new SpecializedRenderer(dataClass, builder.build()));
+		} catch (NotSpecializable e) {
+			return Optional.empty();
+		}
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	Class<?> dataClass() {
+		return dataClass;
+	}
+
+	/** Renders the template using the data in the data object.
+	 *
+	 * @param dataObject The data object. This has to be of the class the renderer was created for.
+	 * @param out The appendable the rendered template is appended to
+	 * @throws IOException if the rendered template cannot be appended
+	 */
+	void render(Object dataObject, Appendable out) throws IOException {
+		checkClass(dataObject);
+
+		for (Step step: steps) {
+			if (step.type == Step.Type.LIST) {
+				List<?> entries = entries(step.listReader.list(dataObject));
+				EntryOrder order = ENTRY_ORDERS.getUnchecked(entries.size());
+				for (int i = 0; i < order.positions.length; i++) {
+					Object entry = Objects.requireNonNull(entries.get(order.positions[i]));
+					for (Step entryStep: step.entry) {
+						render(entryStep, dataObject, entry, order.indices[i], out);
+					}
+				}
+			} else {
+				render(step, dataObject, null, "", out);
+			}
+		}
+	}
+
+	private void render(Step step, Object dataObject, Object entry, String index, Appendable out) throws IOException {
+		switch (step.type) {
+		case TEXT:
+			out.append(step.text);
+			break;
+		case FIELD:
+			out.append(step.reader.read(dataObject));
+			break;
+		case ENTRY_FIELD:
+			out.append(step.reader.read(entry));
+			break;
+		case INDEX:
+			out.append(index);
+			break;
+		default:
+			throw new IllegalStateException("Unexpected step type " + step.type);
+		}
+	}
+
+	private void checkClass(Object dataObject) {
+		if (dataObject.getClass() != dataClass) {
+			throw new IllegalArgumentException("The renderer is specialised for " + dataClass.getName()
+			                                   + " and not for " + dataObject.getClass().getName());
+		}
+	}
+
+	/* List entries are rendered in the same order as the field names of the list in a value map. The order
+	 * only depends on the size of the list and is determined once for each size. */
+	private static final class EntryOrder {
+		final int[] positions;   // The position in the list of each entry rendered
+		final String[] indices;  // The index of each entry rendered
+
+		EntryOrder(int size) {
+			ValueMap order = ValueMap.empty();
+			for (int i = 0; i < size; i++) {
+				order.put(String.valueOf(i), Boolean.TRUE);
+			}
+
+			positions = new int[size];
+			indices = order.fieldNames().toArray(new String[size]);
+			for (int i = 0; i < size; i++) {
+				positions[i] = Integer.parseInt(indices[i]);
+			}
+		}
+	}
+
+	/* Builds the steps of the renderer merging adjacent static text */
+	private static final class StepsBuilder {
+		private final Class<?> dataClass;
+		private final List<Step> steps = new ArrayList<>();
+		private final StringBuilder text = new StringBuilder();
+
+		StepsBuilder(Class<?> dataClass) {
+			this.dataClass = dataClass;
+		}
+
+		StepsBuilder add(TemplateBlock block) throws NotSpecializable {
+			Optional<List<TemplateSegment>> semanticLine = block.semanticLine();
+			if (semanticLine.isPresent()) {
+				for (TemplateSegment segment: semanticLine.get()) {
+					add(segment);
+				}
+				text("\n");
+			}
+			for (TemplateSegment segment: block.text()) {
+				add(segment);
+			}
+
+			return this;
+		}
+
+		StepsBuilder add(TemplateSegment segment) throws NotSpecializable {
+			switch (segment.type()) {
+			case LITERAL:
+				return text(segment.text());
+			case FIELD:
+				return step(new Step(Step.Type.FIELD, "", reader(dataClass, path(segment.text())), null, null));
+			case ENTRY_FIELD:
+				return step(new Step(Step.Type.ENTRY_FIELD, "", new NestedReader(path(segment.text())), null, null));
+			case INDEX:
+				return step(new Step(Step.Type.INDEX, "", null, null, null));
+			default:
+				throw new IllegalStateException("Unknown segment type " + segment.type());
+			}
+		}
+
+		StepsBuilder text(String text) {
+			this.text.append(text);
+			return this;
+		}
+
+		StepsBuilder list(String listFieldName, List<Step> entry) throws NotSpecializable {
+			return step(new Step(Step.Type.LIST, "", null, listReader(dataClass, listFieldName), ImmutableList.copyOf(entry)));
+		}
+
+		private StepsBuilder step(Step step) {
+			flushText();
+			steps.add(step);
+			return this;
+		}
+
+		private void flushText() {
+			if (text.length() > 0) {
+				steps.add(new Step(Step.Type.TEXT, text.toString(), null, null, null));
+				text.setLength(0);
+			}
+		}
+
+		List<Step> build() {
+			flushText();
+			return steps;
+		}
+	}
+
+	/* -------------------  FIELD READERS ----------------- */
+
+	/* Splits a field name, e.g. "references.2.title" or ".title", into its parts */
+	private static List<String> path(String fieldName) {
+		return Splitter.on('.').omitEmptyStrings().splitToList(fieldName);
+	}
+
+	/* Creates a reader for the field at the path in objects of the class. The value read is the same as
+	 * the value of the field in the value map of the object.
+	 */
+	private static Reader reader(Class<?> c, List<String> path) throws NotSpecializable {
+		if (path.isEmpty()) return object -> ERROR;  // The object itself is mapped to a value map and not to a value
+
+		Optional<Field> field = templateField(c, path.get(0));
+		if (field.isEmpty()) return object -> UNKNOWN;
+
+		MethodHandle getter = getter(field.get());
+		List<String> tail = ImmutableList.copyOf(path.subList(1, path.size()));
+		Class<?> type = field.get().getType();
+
+		if (type.isArray() || Iterable.class.isAssignableFrom(type)) {
+			IndexedReader indexedReader = new IndexedReader(tail);
+			return object -> indexedReader.read(get(getter, object));
+		} else if (ValueMap.isSimpleType(type)) {
+			if (!tail.isEmpty()) return object -> UNKNOWN;
+			return object -> Objects.toString(get(getter, object), ERROR);
+		} else {
+			NestedReader nestedReader = new NestedReader(tail);
+			IndexedReader indexedReader = new IndexedReader(tail);
+			return object -> {
+				Object value = get(getter, object);
+				if (value instanceof Iterable) return indexedReader.read(value);
+				return nestedReader.read(value);
+			};
+		}
+	}
+
+	/* Creates a reader for a list field in objects of the class */
+	private static ListReader listReader(Class<?> c, String listFieldName) throws NotSpecializable {
+		if (listFieldName.contains(".")) {
+			throw new NotSpecializable("Only lists that are fields of the data object can be specialised");
+		}
+
+		Optional<Field> field = templateField(c, listFieldName);
+		if (field.isEmpty()) return new ListReader(null);  // Always empty
+
+		Class<?> type = field.get().getType();
+		if (!type.isArray() && !Iterable.class.isAssignableFrom(type)) {
+			throw new NotSpecializable("The field " + listFieldName + " is not a list");
+		}
+
+		return new ListReader(getter(field.get()));
+	}
+
+	/* Reads the value of an indexed field from a list, e.g. "2.title". The index is parsed and the reader of
+	 * the field in the entry is created once. */
+	private static final class IndexedReader implements Reader {
+		private final boolean isList;            // The path is empty and refers to the list itself
+		private final int index;                 // The index of the entry or -1 if the path does not start with an index
+		private final NestedReader entryReader;
+
+		IndexedReader(List<String> path) {
+			this.isList = path.isEmpty();
+			this.index = isList ? -1 : index(path.get(0));
+			this.entryReader = isList ? null : new NestedReader(path.subList(1, path.size()));
+		}
+
+		@Override
+		public String read(Object list) {
+			List<?> entries = entries(list);
+			if (isList) return entries.isEmpty() ? UNKNOWN : ERROR;
+			if (index < 0 || index >= entries.size()) return UNKNOWN;
+
+			return entryReader.read(entries.get(index));
+		}
+
+		/* The index of a list entry as used in the field names of a value map, e.g. "2" but not "02" or "+2" */
+		private static int index(String text) {
+			try {
+				int index = Integer.parseInt(text);
+				return index >= 0 && String.valueOf(index).equals(text) ? index : -1;
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+	}
+
+	/* Reads a field from an object whose class is only known when the template is rendered, i.e. nested objects
+	 * and list entries. The field readers are created once for each class. */
+	private static final class NestedReader implements Reader {
+		private final List<String> path;
+		private final Map<Class<?>, Reader> readers = new ConcurrentHashMap<>();
+
+		NestedReader(List<String> path) {
+			this.path = ImmutableList.copyOf(path);
+		}
+
+		@Override
+		public String read(Object object) {
+			Objects.requireNonNull(object);  // As when converting the data object to a value map
+			return readers.computeIfAbsent(object.getClass(), this::reader).read(object);
+		}
+
+		private Reader reader(Class<?> c) {
+			try {
+				return SpecializedRenderer.reader(c, path);
+			} catch (NotSpecializable e) {
+				throw new IllegalStateException("Cannot read " + path + " from " + c.getName(), e);
+			}
+		}
+	}
+
+	/* Reads a list from the data object */
+	private static final class ListReader {
+		private final MethodHandle getter;
+
+		ListReader(MethodHandle getter) {
+			this.getter = getter;
+		}
+
+		Object list(Object dataObject) {
+			return getter == null ? List.of() : Objects.requireNonNull(get(getter, dataObject));
+		}
+	}
+
+	/* The field annotated with TemplateField, as used when converting objects to value maps */
+	private static Optional<Field> templateField(Class<?> c, String fieldName) {
+		if (!c.isAnnotationPresent(Templatable.class)) return Optional.empty();
+
+		try {
+			Field field = c.getDeclaredField(fieldName);
+			if (!field.isAnnotationPresent(TemplateField.class) || ValueMap.isLazy(field.getType())) {
+				return Optional.empty();
+			}
+			return Optional.of(field);
+		} catch (NoSuchFieldException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static boolean hasLazyFields(Class<?> c) {
+		for (Field field: c.getDeclaredFields()) {
+			if (field.isAnnotationPresent(TemplateField.class) && ValueMap.isLazy(field.getType())) return true;
+		}
+		return false;
+	}
+
+	private static MethodHandle getter(Field field) throws NotSpecializable {
+		try {
+			field.setAccessible(true);
+			return MethodHandles.lookup().unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+		} catch (IllegalAccessException | RuntimeException e) {
+			throw new NotSpecializable("Cannot access field " + field.getName());
+		}
+	}
+
+	private static Object get(MethodHandle getter, Object object) {
+		try {
+			return getter.invokeExact(object);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/* The entries of a list or array with random access. Arrays and lists with random access are not copied.
+	 * A missing list is treated as when converting to a value map. */
+	private static List<?> entries(Object list) {
+		Objects.requireNonNull(list);
+
+		if (list.getClass().isArray()) {
+			return new ArrayEntries(list);
+		} else if (list instanceof List && list instanceof RandomAccess) {
+			return (List<?>) list;
+		} else if (list instanceof Collection) {
+			return new ArrayList<>((Collection<?>) list);
+		} else {
+			List<Object> entries = new ArrayList<>();
+			((Iterable<?>) list).forEach(entries::add);
+			return entries;
+		}
+	}
+
+	/* A view of the elements of an array, including arrays of primitives */
+	private static final class ArrayEntries extends AbstractList<Object> implements RandomAccess {
+		private final Object array;
+
+		ArrayEntries(Object array) {
+			this.array = array;
+		}
+
+		@Override
+		public Object get(int index) {
+			return Array.get(array, index);
+		}
+
+		@Override
+		public int size() {
+			return Array.getLength(array);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SpecializedRenderer [dataClass=" + dataClass.getName() + ", steps=" + steps.size() + "]";
+	}
+
+}
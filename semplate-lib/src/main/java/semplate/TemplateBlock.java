@@ -0,0 +1,136 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+
+import semplate.valuemap.ValueMap;
+
+/** A blank line delimited block of a template that has been parsed once so that it can be rendered
+ * any number of times.
+ * <p>
+ * A block is one of:
+ * <ul>
+ * <li>{@link Type#TEXT}: text, such as directives or text without fields, that is passed through unchanged.
+ * <li>{@link Type#FIELDS}: a block with fields. This is rendered as a semantic block line followed by the text
+ *     with the field values.
+ * <li>{@link Type#LIST}: a block with list fields, e.g. <code>{{references.*.title}}</code>. This is rendered as
+ *     a list directive followed by one entry block for each entry in the list.
+ * </ul>
+ *
+ * @see CompiledTemplate
+ * @see TemplateSegment
+ *
+ * @author Andrew Doble
+ *
+ */
+final class TemplateBlock {
+
+	enum Type { TEXT, FIELDS, LIST }
+
+	private final Type type;
+
+	// The semantic block line. Not present for blocks that are passed through without semantic information.
+	private final Optional<List<TemplateSegment>> semanticLine;
+
+	// The text of the block. For lists this is the list directive.
+	private final List<TemplateSegment> text;
+
+	// The first part of the list field name, i.e. the part before the '*' character
+	private final String listFieldName;
+
+	// The block rendered for each list entry
+	private final TemplateBlock entry;
+
+	private TemplateBlock(Type type, Optional<List<TemplateSegment>> semanticLine, List<TemplateSegment> text,
+			              String listFieldName, TemplateBlock entry) {
+		this.type = type;
+		this.semanticLine = semanticLine.map(ImmutableList::copyOf);
+		this.text = ImmutableList.copyOf(text);
+		this.listFieldName = listFieldName;
+		this.entry = entry;
+	}
+
+	/** Creates a block that is passed through without any further processing.
+	 *
+	 * @param text The text of the block
+	 * @return A text block
+	 */
+	static TemplateBlock text(String text) {
+		return new TemplateBlock(Type.TEXT, Optional.empty(), List.of(TemplateSegment.literal(text)), "", null);
+	}
+
+	/** Creates a block that contains fields.
+	 *
+	 * @param semanticLine The segments of the semantic block line or empty if the block has no semantic block
+	 * @param text The segments of the text
+	 * @return A block with fields
+	 */
+	static TemplateBlock fields(Optional<List<TemplateSegment>> semanticLine, List<TemplateSegment> text) {
+		return new TemplateBlock(Type.FIELDS, semanticLine, text, "", null);
+	}
+
+	/** Creates a block that is expanded into a list.
+	 *
+	 * @param listDirective The list directive written before the list entries
+	 * @param listFieldName The first part of the list field name, i.e. the part before the '*' character
+	 * @param entry The block rendered for each list entry
+	 * @return A list block
+	 */
+	static TemplateBlock list(String listDirective, String listFieldName, TemplateBlock entry) {
+		return new TemplateBlock(Type.LIST, Optional.empty(), List.of(TemplateSegment.literal(listDirective)), listFieldName, entry);
+	}
+
+	Type type() {
+		return type;
+	}
+
+	Optional<List<TemplateSegment>> semanticLine() {
+		return semanticLine;
+	}
+
+	List<TemplateSegment> text() {
+		return text;
+	}
+
+	String listFieldName() {
+		checkState(type == Type.LIST, "Block is not a list block");
+		return listFieldName;
+	}
+
+	TemplateBlock entry() {
+		checkState(type == Type.LIST, "Block is not a list block");
+		return entry;
+	}
+
+	/** Renders the block. For list blocks only the list directive is rendered.
+	 *
+	 * @param out The appendable the rendered block is appended to
+	 * @param valueMap The value map of the data object
+	 * @param listValueMap The value map of the list being expanded or empty if not in a list
+	 * @param index The index of the list entry being expanded or empty if not in a list
+	 * @throws IOException if the block cannot be appended
+	 */
+	void render(Appendable out, ValueMap valueMap, ValueMap listValueMap, String index) throws IOException {
+		if (semanticLine.isPresent()) {
+			for (TemplateSegment segment: semanticLine.get()) {
+				segment.appendTo(out, valueMap, listValueMap, index);
+			}
+			out.append('\n');
+		}
+
+		for (TemplateSegment segment: text) {
+			segment.appendTo(out, valueMap, listValueMap, index);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TemplateBlock [type=" + type + ", semanticLine=" + semanticLine + ", text=" + text + ", entry=" + entry + "]";
+	}
+
+}
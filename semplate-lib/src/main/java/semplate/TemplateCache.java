@@ -0,0 +1,233 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+
+/** A bounded cache of compiled templates keyed by the path of the template file.
+ * <p>
+ * {@link SemanticWriter#usingTemplate(Path)} uses the process wide cache returned by {@link #shared()} so that a
+ * template file is only read and parsed again if it has changed:
+ * <ul>
+ * <li>If the last modified time and the size of the template file are unchanged, the cached compiled template is used
+ * without reading the file.
+ * <li>Otherwise the file is read. If the hash of its contents is unchanged the cached compiled template is still used,
+ * else the template is compiled again.
+ * <li>If a template fragment included in the template has changed, the template is compiled again.
+ * </ul>
+ * When the total size of the cached template files exceeds the maximum weight, the least recently used templates
+ * are evicted.
+ * <p>
+ * A template file is compiled by one thread at a time. Threads requesting a template that is being compiled wait
+ * for it and use the same compiled template.
+ * <p>
+ * The number of hits, misses and evictions are counted.
+ *
+ * @see CompiledTemplate
+ *
+ * @author Andrew Doble
+ *
+ */
+public final class TemplateCache {
+	/** The default maximum total size in bytes of the cached template files */
+	public static final long DEFAULT_MAXIMUM_WEIGHT = 16 * 1024 * 1024;
+
+	private static final TemplateCache SHARED = new TemplateCache(DEFAULT_MAXIMUM_WEIGHT);
+
+	/* The number of locks serialising the compilation of template files */
+	private static final int LOCK_STRIPES = 64;
+
+	private final Cache<Path, Entry> cache;
+
+	private final Striped<Lock> locks = Striped.lazyWeakLock(LOCK_STRIPES);
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/* A cached template together with the state of the template file it was compiled from */
+	private static final class Entry {
+		final CompiledTemplate template;
+		final FileTime lastModified;
+		final long size;
+		final HashCode contentHash;
+
+		Entry(CompiledTemplate template, FileTime lastModified, long size, HashCode contentHash) {
+			this.template = template;
+			this.lastModified = lastModified;
+			this.size = size;
+			this.contentHash = contentHash;
+		}
+
+		boolean isUnchanged(BasicFileAttributes attributes) {
+			return lastModified.equals(attributes.lastModifiedTime()) && size == attributes.size() && template.includesUnchanged();
+		}
+
+		int weight() {
+			return (int) Math.min(Integer.MAX_VALUE, Math.max(1, size));
+		}
+	}
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private TemplateCache(long maximumWeight) {
+		cache = CacheBuilder.newBuilder()
+				            .concurrencyLevel(1)  // A single segment so that the maximum weight applies to all templates
+				            .maximumWeight(maximumWeight)
+				            .weigher((Path path, Entry entry) -> entry.weight())
+				            .removalListener((RemovalNotification<Path, Entry> notification) -> {
+				            	if (notification.wasEvicted()) evictions.increment();
+				            })
+				            .build();
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** The process wide template cache used by {@link SemanticWriter#usingTemplate(Path)}.
+	 *
+	 * @return The shared template cache
+	 */
+	public static TemplateCache shared() {
+		return SHARED;
+	}
+
+	/** Creates a new template cache.
+	 *
+	 * @param maximumWeight The maximum total size in bytes of the cached template files
+	 * @return A new, empty template cache
+	 * @throws IllegalArgumentException if the maximum weight is negative
+	 */
+	public static TemplateCache create(long maximumWeight) {
+		checkArgument(maximumWeight >= 0, "The maximum weight cannot be negative (was %s)", maximumWeight);
+
+		return new TemplateCache(maximumWeight);
+	}
+
+	/** Returns the compiled template for the template file, compiling it only if it is not cached or
+	 * the template file has changed.
+	 *
+	 * @param templatePath Path to the template file
+	 * @return The compiled template
+	 * @throws ReadException if the template file could not be read or does not contain a template comment directive
+	 */
+	public CompiledTemplate get(Path templatePath) throws ReadException {
+		Path key = templatePath.toAbsolutePath().normalize();
+
+		try {
+			Entry entry = cache.getIfPresent(key);
+			if (entry != null && entry.isUnchanged(Files.readAttributes(key, BasicFileAttributes.class))) {
+				hits.increment();
+				return entry.template;
+			}
+
+			// Compile the template file once, even if it is requested by several threads at the same time
+			Lock lock = locks.get(key);
+			lock.lock();
+			try {
+				return load(key, templatePath);
+			} finally {
+				lock.unlock();
+			}
+
+		} catch (IOException e) {
+			String msg = "Cannot read template file " + templatePath.getFileName();
+			throw new ReadException(msg, e);
+		}
+	}
+
+	/** Removes the compiled template of the template file from the cache.
+	 *
+	 * @param templatePath Path to the template file
+	 */
+	public void invalidate(Path templatePath) {
+		cache.invalidate(templatePath.toAbsolutePath().normalize());
+	}
+
+	/** Removes all compiled templates from the cache. */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/** The number of cached compiled templates.
+	 *
+	 * @return The number of cached compiled templates
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/** The number of times a cached compiled template was returned.
+	 *
+	 * @return The number of cache hits
+	 */
+	public long hitCount() {
+		return hits.sum();
+	}
+
+	/** The number of times a template file was compiled because it was not cached or had changed.
+	 *
+	 * @return The number of cache misses
+	 */
+	public long missCount() {
+		return misses.sum();
+	}
+
+	/** The number of compiled templates evicted from the cache because the maximum weight was exceeded.
+	 *
+	 * @return The number of evictions
+	 */
+	public long evictionCount() {
+		return evictions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "TemplateCache [size=" + size() + ", hits=" + hitCount() + ", misses=" + missCount() + ", evictions=" + evictionCount() + "]";
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/* Returns the cached template of the template file or compiles it. Called with the lock of the template file held,
+	 * so the template may have been compiled by another thread meanwhile. */
+	private CompiledTemplate load(Path key, Path templatePath) throws IOException, ReadException {
+		BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+
+		Entry entry = cache.getIfPresent(key);
+		if (entry != null && entry.isUnchanged(attributes)) {
+			hits.increment();
+			return entry.template;
+		}
+
+		byte[] contents = Files.readAllBytes(key);
+		HashCode contentHash = Hashing.sha256().hashBytes(contents);
+
+		CompiledTemplate template;
+		if (entry != null && entry.contentHash.equals(contentHash) && entry.template.includesUnchanged()) {
+			// Only the file attributes have changed
+			hits.increment();
+			template = entry.template;
+		} else {
+			misses.increment();
+			template = CompiledTemplate.compile(templatePath, contents, Charset.defaultCharset());
+		}
+
+		cache.put(key, new Entry(template, attributes.lastModifiedTime(), contents.length, contentHash));
+
+		return template;
+	}
+
+}
@@ -0,0 +1,451 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.base.Splitter;
+
+import semplate.annotations.Templatable;
+import semplate.annotations.TemplateField;
+import semplate.valuemap.ValueMap;
+
+/** Compiles template files into the Java source of renderer classes when an application is built.
+ * <p>
+ * Each generated renderer class is bound to a class of data objects annotated with {@link Templatable} and
+ * contains the template as a {@link PrecompiledTemplate}. When the application runs the template file is
+ * neither read nor parsed. For instance, the renderer class <code>com.example.WorksRenderer</code> generated for the
+ * template <code>works_template.md</code> and the class <code>com.example.Works</code> is used as follows:
+ * <pre> <code>
+ *      WorksRenderer.write(works, outputFilePath);
+ * </code> </pre>
+ * <p>
+ * The generated class contains the parsed blocks of the template, not code specific to the template. The markdown
+ * is rendered with the renderer specialised for the data class (see {@link SemanticTemplateWriter#specialized()}),
+ * so that it is the same as the markdown generated using the template file.
+ * <p>
+ * Each field in the template is checked against the fields of the data class annotated with {@link TemplateField}.
+ * A template field that does not match, e.g. because of a misspelt field name, causes the compilation to fail. The
+ * data class must be accessible to the renderer class, so local and anonymous classes cannot be used and nested
+ * classes must be public unless the renderer class is in the same package.
+ * <p>
+ * Template files are read as UTF-8 unless another charset is specified, so that the generated classes do not
+ * depend on the default charset of the machine the application is built on.
+ * <p>
+ * The compiler is run from the build with {@link #main(String[])} (see <code>semplate-templates.gradle</code>) with
+ * an optional charset, the output directory and the template file, the data class and the renderer class of each template:
+ * <pre>
+ *      java semplate.TemplateCompiler -charset UTF-8 build/generated/sources/templates \
+ *                                     src/main/templates/works_template.md com.example.Works com.example.WorksRenderer
+ * </pre>
+ *
+ * @see PrecompiledTemplate
+ *
+ * @author Andrew Doble
+ *
+ */
+public final class TemplateCompiler {
+	// Literals longer than this are split so that the constants in the generated class do not exceed the class file limits
+	private static final int MAX_LITERAL_LENGTH = 8192;
+
+	private static final String INDENT = "\t\t\t";
+
+	private TemplateCompiler() {
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** Compiles template files into renderer classes.
+	 *
+	 * @param args The option <code>-charset</code> with the charset of the template files, if they are not encoded
+	 * in UTF-8, and the output directory followed by the template file, the fully qualified name of the data class and
+	 * the fully qualified name of the renderer class for each template.
+	 */
+	public static void main(String[] args) {
+		int first = args.length > 0 && args[0].equals("-charset") ? 2 : 0;
+		if (args.length < first + 4 || (args.length - first - 1) % 3 != 0) {
+			System.err.println("Usage: TemplateCompiler [-charset <charset>] <output directory> (<template file> <data class> <renderer class>)...");
+			System.exit(2);
+		}
+
+		Charset charset = StandardCharsets.UTF_8;
+		if (first > 0) {
+			try {
+				charset = Charset.forName(args[1]);
+			} catch (IllegalArgumentException e) {
+				System.err.println("Unsupported charset: " + args[1]);
+				System.exit(2);
+			}
+		}
+
+		Path outputDirectory = Path.of(args[first]);
+		try {
+			for (int i = first + 1; i < args.length; i += 3) {
+				Class<?> dataClass = Class.forName(args[i + 1], false, Thread.currentThread().getContextClassLoader());
+				compile(Path.of(args[i]), charset, dataClass, args[i + 2], outputDirectory);
+			}
+		} catch (ClassNotFoundException e) {
+			System.err.println("Data class not found: " + e.getMessage());
+			System.exit(1);
+		} catch (ReadException | WriteException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/** Compiles a template file encoded in UTF-8 into a renderer class and writes its source to a directory.
+	 *
+	 * @param templateFile The template file
+	 * @param dataClass The class of the data objects rendered with the template
+	 * @param rendererClassName The fully qualified name of the generated renderer class
+	 * @param outputDirectory The root directory of the generated sources
+	 * @return The path of the generated source file
+	 * @throws ReadException if the template file could not be read or its fields do not match the data class
+	 * @throws WriteException if the source file could not be written
+	 */
+	public static Path compile(Path templateFile, Class<?> dataClass, String rendererClassName, Path outputDirectory) throws ReadException, WriteException {
+		return compile(templateFile, StandardCharsets.UTF_8, dataClass, rendererClassName, outputDirectory);
+	}
+
+	/** Compiles a template file into a renderer class and writes its source to a directory.
+	 *
+	 * @param templateFile The template file
+	 * @param charset The charset the template file and its fragments are encoded in
+	 * @param dataClass The class of the data objects rendered with the template
+	 * @param rendererClassName The fully qualified name of the generated renderer class
+	 * @param outputDirectory The root directory of the generated sources
+	 * @return The path of the generated source file
+	 * @throws ReadException if the template file could not be read or its fields do not match the data class
+	 * @throws WriteException if the source file could not be written
+	 */
+	public static Path compile(Path templateFile, Charset charset, Class<?> dataClass, String rendererClassName, Path outputDirectory) throws ReadException, WriteException {
+		String source = generate(templateFile, charset, dataClass, rendererClassName);
+
+		Path sourceFile = outputDirectory.resolve(rendererClassName.replace('.', '/') + ".java");
+		try {
+			Files.createDirectories(sourceFile.getParent());
+			Files.writeString(sourceFile, source, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			String msg = "Cannot write the renderer class " + rendererClassName;
+			throw new WriteException(msg, e);
+		}
+
+		return sourceFile;
+	}
+
+	/** Compiles a template file encoded in UTF-8 into the source of a renderer class.
+	 *
+	 * @param templateFile The template file
+	 * @param dataClass The class of the data objects rendered with the template
+	 * @param rendererClassName The fully qualified name of the generated renderer class
+	 * @return The Java source of the renderer class
+	 * @throws ReadException if the template file could not be read or its fields do not match the data class
+	 */
+	public static String generate(Path templateFile, Class<?> dataClass, String rendererClassName) throws ReadException {
+		return generate(templateFile, StandardCharsets.UTF_8, dataClass, rendererClassName);
+	}
+
+	/** Compiles a template file into the source of a renderer class.
+	 *
+	 * @param templateFile The template file
+	 * @param charset The charset the template file and its fragments are encoded in
+	 * @param dataClass The class of the data objects rendered with the template
+	 * @param rendererClassName The fully qualified name of the generated renderer class
+	 * @return The Java source of the renderer class
+	 * @throws ReadException if the template file could not be read, its fields do not match the data class or the
+	 * data class is not accessible to the renderer class
+	 */
+	public static String generate(Path templateFile, Charset charset, Class<?> dataClass, String rendererClassName) throws ReadException {
+		checkNotNull(charset);
+		checkNotNull(dataClass);
+		checkArgument(rendererClassName.matches("([\\p{javaJavaIdentifierStart}][\\p{javaJavaIdentifierPart}]*\\.)*[\\p{javaJavaIdentifierStart}][\\p{javaJavaIdentifierPart}]*"),
+				      "%s is not a valid class name", rendererClassName);
+
+		String templateName = templateFile.getFileName().toString();
+		if (!dataClass.isAnnotationPresent(Templatable.class)) {
+			throw new ReadException(templateName + ": the class " + dataClass.getName() + " is not annotated with @Templatable");
+		}
+		checkAccessible(dataClass, packageName(rendererClassName), templateName);
+
+		CompiledTemplate template = CompiledTemplate.compile(templateFile, charset);
+		check(template, dataClass, templateName);
+
+		return source(template, dataClass, templateName, rendererClassName);
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/* Checks that the generated renderer class can refer to the data class by its canonical name */
+	private static void checkAccessible(Class<?> dataClass, String rendererPackageName, String templateName) throws ReadException {
+		if (dataClass.getCanonicalName() == null) {
+			throw new ReadException(templateName + ": the class " + dataClass.getName() + " is a local or anonymous class");
+		}
+
+		boolean samePackage = dataClass.getPackageName().equals(rendererPackageName);
+		for (Class<?> c = dataClass; c != null; c = c.getEnclosingClass()) {
+			int modifiers = c.getModifiers();
+			if (!Modifier.isPublic(modifiers) && (!samePackage || Modifier.isPrivate(modifiers))) {
+				throw new ReadException(templateName + ": the class " + c.getName() + " is not public and cannot be used by the renderer class");
+			}
+		}
+	}
+
+	private static String packageName(String className) {
+		int lastDot = className.lastIndexOf('.');
+		return lastDot < 0 ? "" : className.substring(0, lastDot);
+	}
+
+	/* Checks that all fields in the template are template fields of the data class */
+	private static void check(CompiledTemplate template, Class<?> dataClass, String templateName) throws ReadException {
+		for (TemplateBlock block: template.blocks()) {
+			if (block.type() == TemplateBlock.Type.LIST) {
+				List<String> listPath = path(block.listFieldName());
+				if (listPath.size() != 1) {
+					// Lists in nested objects are only checked as far as the list field
+					checkPath(dataClass, listPath, block.listFieldName() + ".*", templateName);
+					continue;
+				}
+
+				Field listField = checkField(dataClass, listPath, block.listFieldName() + ".*", templateName);
+				if (!isList(listField.getType()) && !listField.getType().isArray()) {
+					throw new ReadException(templateName + ": the field " + listField.getName() + " of "
+				                            + dataClass.getName() + " is not a list");
+				}
+
+				Optional<Class<?>> entryClass = elementClass(listField);
+				for (TemplateSegment segment: segments(block.entry())) {
+					if (segment.type() == TemplateSegment.Type.ENTRY_FIELD && entryClass.isPresent()) {
+						checkPath(entryClass.get(), path(segment.text()), block.listFieldName() + ".*" + segment.text(), templateName);
+					}
+				}
+			} else {
+				for (TemplateSegment segment: segments(block)) {
+					if (segment.type() == TemplateSegment.Type.FIELD) {
+						checkPath(dataClass, path(segment.text()), segment.text(), templateName);
+					}
+				}
+			}
+		}
+	}
+
+	/* Checks a compound field name as far as the classes of the fields are known */
+	private static void checkPath(Class<?> c, List<String> path, String fieldName, String templateName) throws ReadException {
+		if (path.isEmpty() || !c.isAnnotationPresent(Templatable.class)) return;
+
+		Field field = checkField(c, path, fieldName, templateName);
+
+		if (path.size() > 1 && !field.getType().isArray() && !isList(field.getType())) {
+			checkPath(field.getType(), path.subList(1, path.size()), fieldName, templateName);
+		}
+	}
+
+	private static Field checkField(Class<?> c, List<String> path, String fieldName, String templateName) throws ReadException {
+		try {
+			Field field = c.getDeclaredField(path.get(0));
+			if (field.isAnnotationPresent(TemplateField.class)) return field;
+		} catch (NoSuchFieldException e) {
+			// Reported below
+		}
+
+		throw new ReadException(templateName + ": the field {{" + fieldName + "}} does not match a field of "
+		                        + c.getName() + " annotated with @TemplateField");
+	}
+
+	private static boolean isList(Class<?> type) {
+		return Iterable.class.isAssignableFrom(type) || ValueMap.isLazy(type);
+	}
+
+	/* The class of the entries of a list field, if it is known */
+	private static Optional<Class<?>> elementClass(Field listField) {
+		if (listField.getType().isArray()) {
+			return Optional.of(listField.getType().getComponentType());
+		}
+
+		Type type = listField.getGenericType();
+		if (type instanceof ParameterizedType) {
+			Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+			if (arguments.length == 1 && arguments[0] instanceof Class) {
+				return Optional.of((Class<?>) arguments[0]);
+			}
+		}
+		return Optional.empty();
+	}
+
+	private static List<String> path(String fieldName) {
+		return Splitter.on('.').omitEmptyStrings().splitToList(fieldName);
+	}
+
+	private static List<TemplateSegment> segments(TemplateBlock block) {
+		List<TemplateSegment> segments = new ArrayList<>(block.semanticLine().orElse(List.of()));
+		segments.addAll(block.text());
+		return segments;
+	}
+
+	/* Generates the source of the renderer class */
+	private static String source(CompiledTemplate template, Class<?> dataClass, String templateName, String rendererClassName) {
+		String packageName = packageName(rendererClassName);
+		String simpleName = rendererClassName.substring(rendererClassName.lastIndexOf('.') + 1);
+		String dataClassName = dataClass.getCanonicalName();
+
+		StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("import static semplate.PrecompiledTemplate.segments;\n\n")
+		      .append("import java.io.Writer;\n")
+		      .append("import java.nio.file.Path;\n\n")
+		      .append("import semplate.PrecompiledTemplate;\n")
+		      .append("import semplate.WriteException;\n\n")
+		      .append("/** Renders {@link ").append(dataClassName).append("} objects using the template ")
+		      .append(templateName.replace("*/", "*&#47;")).append(".\n")
+		      .append(" * <p>\n")
+		      .append(" * Generated by {@link semplate.TemplateCompiler}. Do not edit.\n")
+		      .append(" */\n")
+		      .append("@javax.annotation.processing.Generated(\"semplate.TemplateCompiler\")\n")
+		      .append("public final class ").append(simpleName).append(" {\n\n")
+		      .append("\t/** The precompiled template */\n")
+		      .append("\tpublic static final PrecompiledTemplate<").append(dataClassName).append("> TEMPLATE =\n")
+		      .append("\t\tPrecompiledTemplate.builder(").append(dataClassName).append(".class, ")
+		      .append(literal(templateName)).append(")\n");
+
+		Delimiter commentDelimiter = template.commentDelimiter();
+		source.append(INDENT).append(".commentDelimiter(").append(literal(commentDelimiter.start().orElse(""))).append(", ")
+		      .append(literal(commentDelimiter.end().orElse(""))).append(")\n");
+		for (Delimiter delimiter: template.delimiters()) {
+			source.append(INDENT).append(".delimiter(").append(literal(delimiter.start().orElse(""))).append(", ")
+			      .append(literal(delimiter.end().orElse(""))).append(")\n");
+		}
+
+		for (TemplateBlock block: template.blocks()) {
+			switch (block.type()) {
+			case TEXT:
+				source.append(INDENT).append(".text(").append(literal(block.text().get(0).text())).append(")\n");
+				break;
+			case FIELDS:
+				source.append(INDENT).append(".fields(").append(segments(block.semanticLine())).append(",\n")
+				      .append(INDENT).append("        ").append(segments(Optional.of(block.text()))).append(")\n");
+				break;
+			case LIST:
+				TemplateBlock entry = block.entry();
+				source.append(INDENT).append(".list(").append(literal(block.text().get(0).text())).append(", ")
+				      .append(literal(block.listFieldName())).append(",\n")
+				      .append(INDENT).append("      ").append(segments(entry.semanticLine())).append(",\n")
+				      .append(INDENT).append("      ").append(segments(Optional.of(entry.text()))).append(")\n");
+				break;
+			default:
+				throw new IllegalStateException("Unknown block type " + block.type());
+			}
+		}
+
+		source.append(INDENT).append(".build();\n\n")
+		      .append("\tprivate ").append(simpleName).append("() {\n")
+		      .append("\t}\n\n")
+		      .append("\t/** Generates a semantically annotated markdown file.\n")
+		      .append("\t *\n")
+		      .append("\t * @param dataObject The data object\n")
+		      .append("\t * @param outputFile Path specifying the markdown file to be generated\n")
+		      .append("\t * @throws WriteException if the markdown file could not be created for some cause.\n")
+		      .append("\t */\n")
+		      .append("\tpublic static void write(").append(dataClassName).append(" dataObject, Path outputFile) throws WriteException {\n")
+		      .append("\t\tTEMPLATE.write(dataObject, outputFile);\n")
+		      .append("\t}\n\n")
+		      .append("\t/** Writes the generated markdown to a writer. The writer is flushed, but not closed.\n")
+		      .append("\t *\n")
+		      .append("\t * @param dataObject The data object\n")
+		      .append("\t * @param writer The writer the markdown is written to\n")
+		      .append("\t * @throws WriteException if the markdown could not be generated or written\n")
+		      .append("\t */\n")
+		      .append("\tpublic static void write(").append(dataClassName).append(" dataObject, Writer writer) throws WriteException {\n")
+		      .append("\t\tTEMPLATE.write(dataObject, writer);\n")
+		      .append("\t}\n\n")
+		      .append("}\n");
+
+		return source.toString();
+	}
+
+	/* The expression creating the segments in the generated source */
+	private static String segments(Optional<List<TemplateSegment>> segments) {
+		if (segments.isEmpty()) return "null";
+
+		StringBuilder expression = new StringBuilder("segments()");
+		for (TemplateSegment segment: segments.get()) {
+			switch (segment.type()) {
+			case LITERAL:
+				for (String chunk: chunks(segment.text())) {
+					expression.append(".literal(").append(literal(chunk)).append(")");
+				}
+				break;
+			case FIELD:
+				expression.append(".field(").append(literal(segment.text())).append(")");
+				break;
+			case ENTRY_FIELD:
+				expression.append(".entryField(").append(literal(segment.text())).append(")");
+				break;
+			case INDEX:
+				expression.append(".index()");
+				break;
+			default:
+				throw new IllegalStateException("Unknown segment type " + segment.type());
+			}
+		}
+		return expression.toString();
+	}
+
+	/* A Java expression for the text. Long text is joined from several literals at run time. */
+	private static String literal(String text) {
+		List<String> chunks = chunks(text);
+		if (chunks.size() == 1) return quote(chunks.get(0));
+
+		StringBuilder expression = new StringBuilder("String.join(\"\"");
+		for (String chunk: chunks) {
+			expression.append(", ").append(quote(chunk));
+		}
+		return expression.append(")").toString();
+	}
+
+	private static List<String> chunks(String text) {
+		List<String> chunks = new ArrayList<>();
+		int start = 0;
+		do {
+			int end = Math.min(start + MAX_LITERAL_LENGTH, text.length());
+			if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) end--;  // Do not split surrogate pairs
+			chunks.add(text.substring(start, end));
+			start = end;
+		} while (start < text.length());
+		return chunks;
+	}
+
+	/* A Java string literal with all characters outside of printable ASCII escaped */
+	private static String quote(String text) {
+		StringBuilder literal = new StringBuilder("\"");
+		for (char c: text.toCharArray()) {
+			switch (c) {
+			case '"':  literal.append("\\\""); break;
+			case '\\': literal.append("\\\\"); break;
+			case '\n': literal.append("\\n"); break;
+			case '\r': literal.append("\\r"); break;
+			case '\t': literal.append("\\t"); break;
+			default:
+				if (c < 0x20 || c > 0x7e) {
+					literal.append(String.format("\\u%04x", (int) c));
+				} else {
+					literal.append(c);
+				}
+			}
+		}
+		return literal.append("\"").toString();
+	}
+
+}
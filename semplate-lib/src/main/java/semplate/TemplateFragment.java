@@ -0,0 +1,188 @@
+package semplate;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/** A template fragment included in templates with the include directive, e.g.
+ * <pre>
+ *     &lt;!--{&#64;template.include:"footer.md"}}--&gt;
+ * </pre>
+ * The blocks of a fragment replace the line containing the include directive. The file name is resolved
+ * against the directory of the including template or fragment. The fragment file, also when reached through
+ * symbolic links, must be in the directory of the template or one of its subdirectories. Fragments do not have their own template directives;
+ * instead they are compiled with the comment delimiter and delimiters of the including template. Fragments
+ * can themselves include fragments.
+ * <p>
+ * A fragment is compiled once for each template directory, comment delimiter and delimiters it is used with and the compiled
+ * blocks are shared by all templates that include it. A fragment is compiled again if the fragment file,
+ * or a fragment it includes, has changed.
+ *
+ * @author Andrew Doble
+ *
+ */
+final class TemplateFragment {
+	/** The maximum number of compiled fragments that are cached */
+	static final long MAXIMUM_SIZE = 1024;
+
+	private static final Cache<Key, TemplateFragment> FRAGMENTS = CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+
+	/** The fragment file */
+	private final Path fragmentPath;
+
+	/** The last modified time of the fragment file when it was compiled */
+	private final FileTime lastModified;
+
+	/** The size of the fragment file when it was compiled */
+	private final long size;
+
+	/** The compiled blocks of the fragment */
+	private final List<TemplateBlock> blocks;
+
+	/** The fragments included in this fragment */
+	private final List<TemplateFragment> includes;
+
+	/* A fragment file compiled for a template directory and charset with a comment delimiter and delimiters */
+	private static final class Key {
+		final Path fragmentPath;
+		final Path root;
+		final Charset charset;
+		final Delimiter commentDelimiter;
+		final Delimiters fieldDelimiters;
+
+		Key(Path fragmentPath, Path root, Charset charset, Delimiter commentDelimiter, Delimiters fieldDelimiters) {
+			this.fragmentPath = fragmentPath;
+			this.root = root;
+			this.charset = charset;
+			this.commentDelimiter = commentDelimiter;
+			this.fieldDelimiters = fieldDelimiters;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Key)) return false;
+			Key other = (Key) obj;
+			return fragmentPath.equals(other.fragmentPath) && root.equals(other.root) && charset.equals(other.charset)
+					&& commentDelimiter.equals(other.commentDelimiter)
+					&& fieldDelimiters.equals(other.fieldDelimiters);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(fragmentPath, root, charset, commentDelimiter, fieldDelimiters);
+		}
+	}
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private TemplateFragment(Path fragmentPath, BasicFileAttributes attributes, List<TemplateBlock> blocks, List<TemplateFragment> includes) {
+		this.fragmentPath = fragmentPath;
+		this.lastModified = attributes.lastModifiedTime();
+		this.size = attributes.size();
+		this.blocks = ImmutableList.copyOf(blocks);
+		this.includes = ImmutableList.copyOf(includes);
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/** Returns the compiled fragment, compiling it only if it has not been compiled with the same delimiters
+	 * or the fragment file has changed.
+	 *
+	 * @param fragmentPath Path to the fragment file
+	 * @param root The directory of the including template, which must contain the fragment file
+	 * @param charset The charset the fragment file is encoded in
+	 * @param commentDelimiter The delimiter used for comments in the including template
+	 * @param fieldDelimiters The delimiters around the fields in the including template
+	 * @param including The files including the fragment, used to detect cyclic includes
+	 * @return The compiled fragment
+	 * @throws ReadException if the fragment file cannot be read, is not in the directory of the template or is included cyclically
+	 */
+	static TemplateFragment get(Path fragmentPath, Path root, Charset charset, Delimiter commentDelimiter, Delimiters fieldDelimiters, Set<Path> including) throws ReadException {
+		Path path = fragmentPath.toAbsolutePath().normalize();
+		if (including.contains(path)) {
+			throw new ReadException("Template fragment " + fragmentPath.getFileName() + " is included cyclically");
+		}
+
+		Key key = new Key(path, root, charset, commentDelimiter, fieldDelimiters);
+
+		TemplateFragment fragment = FRAGMENTS.getIfPresent(key);
+		if (fragment != null && fragment.isUnchanged()) {
+			return fragment;
+		}
+
+		FRAGMENTS.invalidate(key);
+		try {
+			return FRAGMENTS.get(key, () -> compile(path, root, charset, commentDelimiter, fieldDelimiters, including));
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			if (e.getCause() instanceof ReadException) throw (ReadException) e.getCause();
+			throw new ReadException("Cannot compile template fragment " + fragmentPath.getFileName(), e.getCause());
+		}
+	}
+
+	/** Have this fragment file and the fragments it includes not changed since they were compiled?
+	 *
+	 * @return True if the fragment and the fragments it includes are unchanged
+	 */
+	boolean isUnchanged() {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(fragmentPath, BasicFileAttributes.class);
+			if (!lastModified.equals(attributes.lastModifiedTime()) || size != attributes.size()) return false;
+		} catch (IOException e) {
+			return false;
+		}
+
+		return includes.stream().allMatch(TemplateFragment::isUnchanged);
+	}
+
+	List<TemplateBlock> blocks() {
+		return blocks;
+	}
+
+	Path path() {
+		return fragmentPath;
+	}
+
+	private static TemplateFragment compile(Path path, Path root, Charset charset, Delimiter commentDelimiter, Delimiters fieldDelimiters, Set<Path> including) throws ReadException {
+		try {
+			// Symbolic links must not lead out of the directory of the template
+			if (!path.toRealPath().startsWith(root.toRealPath())) {
+				throw new ReadException("Template fragment " + path.getFileName() + " is not in the directory of the template");
+			}
+
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			List<String> lines = Files.readAllLines(path, charset);
+
+			List<TemplateFragment> includes = new ArrayList<>();
+			Set<Path> includingFragment = ImmutableSet.<Path>builder().addAll(including).add(path).build();
+			List<TemplateBlock> blocks = CompiledTemplate.compileBlocks(path, lines, root, charset, fieldDelimiters, commentDelimiter, includingFragment, includes);
+
+			return new TemplateFragment(path, attributes, blocks, includes);
+		} catch (NoSuchFileException e) {
+			throw new ReadException("Template fragment " + path.getFileName() + " not found", e);
+		} catch (IOException e) {
+			throw new ReadException("Cannot read template fragment " + path.getFileName(), e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TemplateFragment [fragmentPath=" + fragmentPath + ", blocks=" + blocks.size() + "]";
+	}
+
+}
@@ -0,0 +1,141 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import semplate.valuemap.ValueMap;
+
+/** A part of a compiled template block.
+ * <p>
+ * A segment is either:
+ * <ul>
+ * <li>literal text that is copied unchanged to the output,
+ * <li>a field whose value is taken from the value map,
+ * <li>a field of a list entry whose value is taken from the value map of the list, or
+ * <li>the index of a list entry.
+ * </ul>
+ *
+ * @see TemplateBlock
+ * @see CompiledTemplate
+ *
+ * @author Andrew Doble
+ *
+ */
+final class TemplateSegment {
+
+	enum Type { LITERAL, FIELD, ENTRY_FIELD, INDEX }
+
+	private final Type type;
+
+	// The literal text, the field name or, for list entry fields, the part of the field name after the index
+	private final String text;
+
+	private TemplateSegment(Type type, String text) {
+		this.type = type;
+		this.text = checkNotNull(text);
+	}
+
+	/** Creates a segment with literal text.
+	 *
+	 * @param text The text copied to the output
+	 * @return A literal segment
+	 */
+	static TemplateSegment literal(String text) {
+		return new TemplateSegment(Type.LITERAL, text);
+	}
+
+	/** Creates a segment for a field whose value is taken from the value map of the data object.
+	 *
+	 * @param fieldName The simple or compound field name
+	 * @return A field segment
+	 */
+	static TemplateSegment field(String fieldName) {
+		return new TemplateSegment(Type.FIELD, fieldName);
+	}
+
+	/** Creates a segment for a field in a list entry.
+	 * <p>
+	 * For the template field <code>{{references.*.title}}</code> the suffix is <code>.title</code>.
+	 *
+	 * @param suffix The part of the field name following the '*' character
+	 * @return A list entry field segment
+	 */
+	static TemplateSegment entryField(String suffix) {
+		return new TemplateSegment(Type.ENTRY_FIELD, suffix);
+	}
+
+	/** Creates a segment that is replaced by the index of a list entry.
+	 *
+	 * @return An index segment
+	 */
+	static TemplateSegment index() {
+		return new TemplateSegment(Type.INDEX, "");
+	}
+
+	Type type() {
+		return type;
+	}
+
+	/** The literal text, the field name or, for list entry fields, the part of the field name after the index.
+	 *
+	 * @return The text of this segment
+	 */
+	String text() {
+		return text;
+	}
+
+	/** Appends the rendered segment.
+	 *
+	 * @param out The appendable the segment is appended to
+	 * @param valueMap The value map of the data object
+	 * @param listValueMap The value map of the list being expanded or empty if not in a list
+	 * @param index The index of the list entry being expanded or empty if not in a list
+	 * @throws IOException if the segment cannot be appended
+	 */
+	void appendTo(Appendable out, ValueMap valueMap, ValueMap listValueMap, String index) throws IOException {
+		switch (type) {
+		case LITERAL:
+			out.append(text);
+			break;
+		case FIELD:
+			out.append(valueAsString(text, valueMap));
+			break;
+		case ENTRY_FIELD:
+			out.append(valueAsString(index + text, listValueMap));
+			break;
+		case INDEX:
+			out.append(index);
+			break;
+		default:
+			throw new IllegalStateException("Unknown segment type " + type);
+		}
+	}
+
+	/** Converts the value of a field to the string written to the markdown file.
+	 *
+	 * @param fieldName The simple or compound field name
+	 * @param valueMap The value map containing the field
+	 * @return The value as string, "UNKNOWN" if the field does not exist and "ERROR" if it has no value
+	 */
+	static String valueAsString(String fieldName, ValueMap valueMap) {
+		String valueString;
+		Optional<Object> valueObject;
+
+		if (valueMap.containsField(fieldName)) {
+			valueObject =  valueMap.getValue(fieldName);
+			valueString = valueObject.orElse("ERROR").toString();
+		} else {
+			valueString ="UNKNOWN";
+		}
+
+		return valueString;
+	}
+
+	@Override
+	public String toString() {
+		return "TemplateSegment [type=" + type + ", text=" + text + "]";
+	}
+
+}
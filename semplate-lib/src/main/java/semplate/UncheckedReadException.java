@@ -0,0 +1,30 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.*;
+
+/** Wraps a {@link ReadException} with an unchecked exception. Thrown by the streams of list entries
+ * read with {@link SemanticReader#streamList(String)}, which cannot throw checked exceptions.
+ *
+ * @author Andrew Doble
+ *
+ */
+public class UncheckedReadException extends RuntimeException {
+
+	private static final long serialVersionUID = 2854329270457811390L;
+
+	/** Constructs an UncheckedReadException, saving a reference to the read exception.
+	 * @param cause the read exception
+	 */
+	public UncheckedReadException(ReadException cause) {
+		super(checkNotNull(cause));
+	}
+
+	/** Returns the read exception wrapped by this exception.
+	 * @return the read exception
+	 */
+	@Override
+	public synchronized ReadException getCause() {
+		return (ReadException) super.getCause();
+	}
+
+}
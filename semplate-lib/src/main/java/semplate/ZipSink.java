@@ -0,0 +1,160 @@
+package semplate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Writes generated markdown as the entries of a zip archive, so that no intermediate files are created.
+ * <p>
+ * For instance, this statement:
+ * <pre>
+ * {@code
+ *     try (ZipSink zip = ZipSink.create(zipFilePath).compressionLevel(Deflater.BEST_SPEED)) {
+ *         SemanticBatchWriter.with(works)
+ *                            .usingTemplate(templateFilePath)
+ *                            .write(zip, work -> work.getId() + ".md");
+ *     }
+ * }
+ * </pre>
+ * ... writes a markdown file for each data object in <code>works</code> as an entry of the zip file at
+ * <code>zipFilePath</code>. A single markdown file is written with {@link SemanticTemplateWriter#write(ZipSink, String)}.
+ * <p>
+ * The entries are written one after the other, so a zip sink can be shared between threads. Zip archives can also be
+ * written with a zip file system (see {@link java.nio.file.FileSystems#newFileSystem(Path, ClassLoader)}) using the
+ * paths of the zip file system as output files. However, the compression level cannot be specified then.
+ *
+ * @see SemanticBatchWriter#write(ZipSink, java.util.function.Function)
+ *
+ * @author Andrew Doble
+ *
+ */
+public final class ZipSink implements Closeable {
+	private final ZipOutputStream zip;
+
+	private final boolean closeZip;
+
+	private int entryCount = 0;
+
+	private boolean closed = false;
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private ZipSink(ZipOutputStream zip, boolean closeZip) {
+		this.zip = zip;
+		this.closeZip = closeZip;
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** Creates a zip sink writing a zip archive to an output stream. The output stream is closed when the zip
+	 * sink is closed.
+	 *
+	 * @param outputStream The output stream the zip archive is written to
+	 * @return A zip sink
+	 */
+	public static ZipSink create(OutputStream outputStream) {
+		checkNotNull(outputStream, "The output stream cannot be null");
+		return new ZipSink(new ZipOutputStream(new BufferedOutputStream(outputStream)), true);
+	}
+
+	/** Creates a zip sink writing a zip file. Any existing file is replaced.
+	 *
+	 * @param zipFile Path specifying the zip file to be written
+	 * @return A zip sink
+	 * @throws WriteException if the zip file could not be created
+	 */
+	public static ZipSink create(Path zipFile) throws WriteException {
+		checkNotNull(zipFile, "The zip file cannot be null");
+		try {
+			return create(Files.newOutputStream(zipFile));
+		} catch (IOException e) {
+			throw new WriteException("Unable to create " + zipFile.getFileName(), e);
+		}
+	}
+
+	/** Creates a zip sink writing to an existing zip output stream. The zip output stream is finished, but not
+	 * closed, when the zip sink is closed.
+	 *
+	 * @param zip The zip output stream
+	 * @return A zip sink
+	 */
+	public static ZipSink of(ZipOutputStream zip) {
+		return new ZipSink(checkNotNull(zip, "The zip output stream cannot be null"), false);
+	}
+
+	/** Specifies the compression level of the following entries.
+	 *
+	 * @param level The compression level from {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}
+	 *              or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @return This zip sink
+	 * @throws IllegalArgumentException if the compression level is invalid
+	 */
+	public synchronized ZipSink compressionLevel(int level) {
+		checkArgument(level == Deflater.DEFAULT_COMPRESSION || (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION),
+				      "Invalid compression level %s", level);
+		zip.setLevel(level);
+		return this;
+	}
+
+	/** The number of entries written.
+	 *
+	 * @return The number of entries
+	 */
+	public synchronized int entryCount() {
+		return entryCount;
+	}
+
+	/** Finishes the zip archive and, unless the zip sink was created with an existing zip output stream, closes it.
+	 *
+	 * @throws IOException if the zip archive could not be finished or closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) return;
+		closed = true;
+
+		if (closeZip) {
+			zip.close();
+		} else {
+			zip.finish();
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ZipSink [entries=" + entryCount + ", closed=" + closed + "]";
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/** Adds an entry with already generated content. The content is generated before the entry is added, so that
+	 * no entry is added for markdown that could not be generated.
+	 *
+	 * @param entryName The name of the entry
+	 * @param content The content of the entry
+	 * @throws IOException if the entry could not be written
+	 */
+	synchronized void putEntry(String entryName, byte[] content) throws IOException {
+		checkNotNull(entryName, "The entry name cannot be null");
+		checkState(!closed, "The zip sink has been closed");
+
+		zip.putNextEntry(new ZipEntry(entryName));
+		try {
+			zip.write(content);
+		} finally {
+			zip.closeEntry();
+		}
+		entryCount++;
+	}
+
+}
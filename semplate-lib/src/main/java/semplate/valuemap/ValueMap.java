@@ -10,6 +10,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.stream.BaseStream;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Splitter;
@@ -30,6 +31,37 @@ public class ValueMap {
 	
 	Map<String, Object> valueMap = new HashMap<>();
 	
+	/* Text mapped to a field name that has not yet been converted to a string, e.g. a view of the bytes of a 
+	 * memory mapped markdown file. The text is converted when the value is requested or bound to a field.
+	 */
+	private static final class Text implements CharSequence {
+		private final CharSequence text;
+		
+		Text(CharSequence text) {
+			this.text = text;
+		}
+
+		@Override
+		public int length() {
+			return text.length();
+		}
+
+		@Override
+		public char charAt(int index) {
+			return text.charAt(index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return text.subSequence(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return text.toString();
+		}
+	}
+	
 
 	/**  
 	 * Returns an optional value mapped to the specified field name. 
@@ -63,6 +95,7 @@ public class ValueMap {
 			Object value = valueMap.get(fieldName);
 			if (value != null) {
 				if (value instanceof ValueMap) return Optional.empty();
+				else if (value instanceof Text) return Optional.of(value.toString());  // Not cached, reading must not change the map
 				else return Optional.of(value);
 			} else return Optional.empty();
 		} else {
@@ -292,6 +325,40 @@ public class ValueMap {
 		return this;
 	}
 	
+	/** Maps text to a field name without converting it to a string. The text is converted when the value is 
+	 * requested with {@link #getValue(String)} or bound to a field of a data object with {@link #toObject(Class)}, 
+	 * so text that is never used is never copied. Requesting a value does not change the value map, so text that 
+	 * is requested several times is converted each time; use {@link #convertText()} to convert all text once.
+	 * <p>
+	 * The text must not change after it has been mapped.
+	 * 
+	 * @param fieldName The simple or compound field name
+	 * @param text The text, e.g. a part of a line read from a markdown file
+	 * @return This value map.
+	 */
+	public ValueMap putText(String fieldName, CharSequence text) {
+		checkNotNull(text);
+		
+		return put(fieldName, text instanceof String ? text : new Text(text));
+	}
+	
+	/** Converts all text mapped with {@link #putText(String, CharSequence)} to strings, including the text in the 
+	 * value maps of this value map. Afterwards the value map does not refer to the text any more.
+	 * 
+	 * @return This value map.
+	 */
+	public ValueMap convertText() {
+		for (Map.Entry<String, Object> entry: valueMap.entrySet()) {
+			if (entry.getValue() instanceof Text) {
+				entry.setValue(entry.getValue().toString());
+			} else if (entry.getValue() instanceof ValueMap) {
+				((ValueMap) entry.getValue()).convertText();
+			}
+		}
+		
+		return this;
+	}
+	
 	/**  Add a value map to a list of value maps associated with a field.
 	 * 	<p>	
 	 * For instance:
@@ -348,8 +415,11 @@ public class ValueMap {
 
 		for (String fieldName: other.fieldNames()) {
 
-			// Overwrite or add the entries that do not have a value map
-			other.getValue(fieldName).ifPresent(obj -> this.put(fieldName, obj));
+			// Overwrite or add the entries that do not have a value map. Text is not converted.
+			Object value = other.valueMap.get(fieldName);
+			if (value != null && !(value instanceof ValueMap)) {
+				this.put(fieldName, value);
+			}
 
 			//other.getValueMap(fieldName).ifPresent(obj -> this.merge(obj));
 
@@ -373,6 +443,22 @@ public class ValueMap {
 
 	}
 	
+	/** Creates a deep copy of this value map. The value maps of this value map are copied as well, the values, 
+	 * e.g. strings, are not.
+	 * 
+	 * @return A new value map with the same fields and values as this value map
+	 */
+	public ValueMap copy() {
+		ValueMap copy = new ValueMap();
+		
+		for (Map.Entry<String, Object> entry: valueMap.entrySet()) {
+			Object value = entry.getValue();
+			copy.valueMap.put(entry.getKey(), value instanceof ValueMap ? ((ValueMap) value).copy() : value);
+		}
+		
+		return copy;
+	}
+	
 	/** Creates a mutable empty value map.
 	 * 
 	 * @return  A mutable empty value map.
@@ -534,13 +620,22 @@ public class ValueMap {
 	}
 
     /** Creates a value map from the specified data object.
+     * <p>
+     * Fields of type {@link Iterator} or {@link java.util.stream.Stream} are not converted as this would consume 
+     * them. Instead they are expanded lazily when the markdown is generated.
+     * <p>
+     * If the data object is itself a value map, a copy of it is returned (see {@link #copy()}). This allows markdown 
+     * to be generated from data that is not held in annotated classes without the value map of the caller being changed 
+     * or kept.
      * 
-     * @param dataObject An object whose fields are annotated with @{@link TemplateField}
+     * @param dataObject An object whose fields are annotated with @{@link TemplateField} or a value map
      * @throws ConversionException if the data object cannot be converted to a value map.
      * @return The created value map
      */
     @SuppressWarnings("unchecked")
 	public static ValueMap from(Object dataObject) throws ConversionException {
+		if (dataObject instanceof ValueMap) return ((ValueMap) dataObject).copy();
+		
 		Object fieldValue;
 		
 		Iterable<Object> fieldIterable;
@@ -553,6 +648,8 @@ public class ValueMap {
 
 			for(Field field: c.getDeclaredFields()) {
 				if (field.isAnnotationPresent(TemplateField.class)) {
+					if (isLazy(field.getType())) continue;
+					
 					field.setAccessible(true);
 
 					try {
@@ -561,10 +658,7 @@ public class ValueMap {
 						if (!(fieldValue instanceof Iterable) && !field.getType().isArray()) {
 					        Class<?> type = field.getType();
 							// Simple  value
-					        // TODO find a better way to do this. @See setField(...)
-							if (type.isPrimitive() || isWrapperType(type) || type == String.class
-									|| type == LocalDate.class || type == LocalDateTime.class || type == ZonedDateTime.class
-									|| type == URL.class) {
+							if (isSimpleType(type)) {
 								fieldValueMap.put(field.getName(), fieldValue);
 							} else {
 								ValueMap subValueMap = ValueMap.from(fieldValue);
@@ -632,31 +726,76 @@ public class ValueMap {
     	ValueMap fieldValueMap = new ValueMap();   
     	int index = 0;
     	while (iterator.hasNext()) {
-    		Object value = iterator.next();
-    		Class<?> type = value.getClass();
-    		// TODO find a better way to do this. @See Template.setField(...)
-    		if (type.isPrimitive() || isWrapperType(type) || type == String.class
-    				|| type == LocalDate.class || type == LocalDateTime.class || type == ZonedDateTime.class
-    				|| type == URL.class) {
-    			fieldValueMap.put(String.valueOf(index++), value);
-    		} else {
-    			ValueMap subValueMap = ValueMap.from(value);
-    			fieldValueMap.put(String.valueOf(index++), subValueMap);
-    		}
-
+    		fieldValueMap.put(String.valueOf(index++), entryValue(iterator.next()));
     	}
 
     	return fieldValueMap;
 
     }
     
+    /** Creates a value map containing one entry of a list.
+     * <p>
+     * For instance: 
+     * <pre>
+     * {@code ValueMap valueMap = ValueMap.fromEntry("2", "Pohl");}
+     * </pre>
+     * ... will create a value map with the field <code>2</code> mapped to "Pohl". This is used to 
+     * expand lists one entry at a time without converting the complete list.
+     * 
+     * @see #from(Iterator)
+     * 
+     * @param ordinalFieldName The name of the field the entry is mapped to, i.e. the index of the entry in the list
+     * @param entry The list entry
+     * @throws ConversionException If the entry cannot be converted to a value map
+     * @return The created value map
+     */
+    public static ValueMap fromEntry(String ordinalFieldName, Object entry) throws ConversionException {
+    	return new ValueMap().put(ordinalFieldName, entryValue(entry));
+    }
+    
+    /** Test if fields of the specified type are expanded lazily, i.e. are of type {@link Iterator} or 
+     * {@link java.util.stream.Stream}. 
+     * 
+     * @param type The type of a field
+     * @return True if the field is not converted to a value map
+     */
+    public static boolean isLazy(Class<?> type) {
+    	return Iterator.class.isAssignableFrom(type) || BaseStream.class.isAssignableFrom(type);
+    }
+    
+    /** Test if values of the specified type are simple values, i.e. are mapped directly to a field name 
+     * instead of being converted to a value map. These are the types that {@link #toObject(Class)} can set: 
+     * primitives and their wrappers, strings, dates and URLs. 
+     * 
+     * @param type The type of a value
+     * @return True if values of the type are simple values
+     */
+    public static boolean isSimpleType(Class<?> type) {
+    	return type.isPrimitive() || isWrapperType(type) || type == String.class
+    			|| type == LocalDate.class || type == LocalDateTime.class || type == ZonedDateTime.class
+    			|| type == URL.class;
+    }
+    
+    /* Simple values are used directly, other values are converted to a value map. */
+    private static Object entryValue(Object value) throws ConversionException {
+    	if (isSimpleType(value.getClass())) {
+    		return value;
+    	} else {
+    		return ValueMap.from(value);
+    	}
+    }
+    
     /**Creates an object from the specified class using the data in this value map.
+     * <p>
+     * If the class is <code>ValueMap</code> then this value map is returned.
      * 
      * @param objectClass The class of the object to be created
      * @return An object populated with the values in this value map
      * @throws ConversionException If the value map cannot be converted to an object 
      */
     public Object toObject(Class<?> objectClass) throws ConversionException {
+		if (objectClass == ValueMap.class) return this;
+		
 		Object dataObject;
 		
 		//TODO what happens if the specified objectClass does not have a constructor with no parameters?
@@ -675,13 +814,12 @@ public class ValueMap {
 		for (String fieldName : fieldNames) {
 			// Get the value
 			if (!this.isValueMap(fieldName)) {
-				Optional<Object> fieldValue = this.getValue(fieldName);
-
 				Field field;
 				try {
 					field = dataObject.getClass().getDeclaredField(fieldName);
 					if (field.getAnnotation(TemplateField.class) != null ) {
-						setField(dataObject, field, fieldValue);
+						// Text is converted when it is bound to the field
+						setField(dataObject, field, Optional.ofNullable(valueMap.get(fieldName)));
 
 					} else {
 						// If the field has not been annotated then silently ignore
@@ -721,7 +859,8 @@ public class ValueMap {
     private void setField(Object dataObject, Field field, Optional<Object> fieldValue) throws ConversionException {
 
 		if (fieldValue.isEmpty()) return;  // TODO replace with checkArgument?
-		String valStr = fieldValue.orElseThrow().toString();
+		Object value = fieldValue.orElseThrow();
+		CharSequence valChars = (value instanceof CharSequence) ? (CharSequence) value : value.toString();
 
 		Class<?> fieldType = field.getType();
 
@@ -730,70 +869,70 @@ public class ValueMap {
 		try {
 
 			if (fieldType.equals(String.class)) {
-				field.set(dataObject, valStr);
+				field.set(dataObject, valChars.toString());
 			} else if (fieldType.equals(Integer.TYPE)) {
-				int val = Integer.parseInt(valStr);
+				int val = Integer.parseInt(valChars, 0, valChars.length(), 10);
 				field.setInt(dataObject, val);
 			} else if (fieldType.equals(Integer.class)) {
-				Integer val = Integer.parseInt(valStr);
+				Integer val = Integer.parseInt(valChars, 0, valChars.length(), 10);
 				field.set(dataObject, val);
 			} else if (fieldType.equals(Short.TYPE)) {
-				short val = Short.parseShort(valStr);
+				short val = Short.parseShort(valChars.toString());
 				field.setShort(dataObject, val);
 			} else if (fieldType.equals(Short.class)) {
-				Short val = Short.parseShort(valStr);
+				Short val = Short.parseShort(valChars.toString());
 				field.set(dataObject, val);
 			} else if (fieldType.equals(Byte.TYPE)) {
-				byte val = Byte.parseByte(valStr);
+				byte val = Byte.parseByte(valChars.toString());
 				field.setByte(dataObject, val);
 			} else if (fieldType.equals(Byte.class)) {
-				Byte val = Byte.parseByte(valStr);
+				Byte val = Byte.parseByte(valChars.toString());
 				field.set(dataObject, val);
 			} else if (fieldType.equals(Long.TYPE)) {
-				long val = Long.parseLong(valStr);
+				long val = Long.parseLong(valChars, 0, valChars.length(), 10);
 				field.setLong(dataObject, val);
 			} else if (fieldType.equals(Long.class)) {
-				Long val = Long.parseLong(valStr);
+				Long val = Long.parseLong(valChars, 0, valChars.length(), 10);
 				field.set(dataObject, val);
 			} else if (fieldType.equals(Double.TYPE)) {
-				double val = Double.parseDouble(valStr);
+				double val = Double.parseDouble(valChars.toString());
 				field.setDouble(dataObject, val);
 			} else if (fieldType.equals(Double.class)) {
-				Double val = Double.parseDouble(valStr);
+				Double val = Double.parseDouble(valChars.toString());
 				field.set(dataObject, val);
 			} else if (fieldType.equals(Float.TYPE)) {
-				float val = Float.parseFloat(valStr);
+				float val = Float.parseFloat(valChars.toString());
 				field.setFloat(dataObject, val);
 			} else if (fieldType.equals(Float.class)) {
-				Float val = Float.parseFloat(valStr);
+				Float val = Float.parseFloat(valChars.toString());
 				field.set(dataObject, val);
 			} else if (fieldType.equals(Boolean.TYPE)) {
-				boolean val = Boolean.parseBoolean(valStr);
+				boolean val = Boolean.parseBoolean(valChars.toString());
 				field.setBoolean(dataObject, val);
 			} else if (fieldType.equals(Boolean.class)) {
-				Boolean val = Boolean.parseBoolean(valStr);
+				Boolean val = Boolean.parseBoolean(valChars.toString());
 				field.set(dataObject, val);
 			} else if (fieldType.equals(Character.TYPE) ) {
-				char val = valStr.charAt(0);
+				char val = valChars.charAt(0);
 				field.setChar(dataObject, val);
 			} else if (fieldType.equals(Character.class)) {
-				Character val = Character.valueOf(valStr.charAt(0));
+				Character val = Character.valueOf(valChars.charAt(0));
 				field.set(dataObject, val);
 			}
 			// Dates are formatted according to ISO_LOCAL_DATE or ISO_LOCAL_DATE_TIME.
 			  else if (fieldType.equals(LocalDate.class)) {
-				LocalDate val = LocalDate.parse(valStr);
+				LocalDate val = LocalDate.parse(valChars);
 				field.set(dataObject, val);
 			} else if (fieldType.equals(LocalDateTime.class)) {
-				LocalDateTime val = LocalDateTime.parse(valStr);
+				LocalDateTime val = LocalDateTime.parse(valChars);
 				field.set(dataObject, val);
 			} else if (fieldType.equals(ZonedDateTime.class)) {
-				ZonedDateTime val = ZonedDateTime.parse(valStr);
+				ZonedDateTime val = ZonedDateTime.parse(valChars);
 				field.set(dataObject, val);
 			}
 			// Use standard string representation of URLs
 			else if (fieldType.equals(URL.class)) {
-				URL val = new URL(valStr);
+				URL val = new URL(valChars.toString());
 				field.set(dataObject, val);
 			} else {
 				System.err.println("Type of " + field.getName() + " is unknown");
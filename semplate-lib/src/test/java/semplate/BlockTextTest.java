@@ -0,0 +1,39 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class BlockTextTest {
+
+	@Test
+	void testLines() {
+		BlockText text = new BlockText().append("The [first]").append("").append(" line.");
+
+		assertEquals(17, text.length());
+		assertEquals("The [first] line.", text.toString());
+		assertEquals('[', text.charAt(4));
+		assertEquals(' ', text.charAt(11));
+		assertEquals('T', text.charAt(0));
+		assertThrows(IndexOutOfBoundsException.class, () -> text.charAt(17));
+
+		text.clear().append("Second");
+		assertEquals(6, text.length());
+		assertEquals('d', text.charAt(5));
+	}
+
+	@Test
+	void testSubSequence() {
+		BlockText text = new BlockText().append("The [first]").append(" line.");
+
+		// Parts within a line are views of the line, parts spanning lines are copied
+		CharSequence first = text.subSequence(5, 10);
+		assertFalse(first instanceof String);
+		assertEquals("first", first.toString());
+		assertEquals("line", text.subSequence(12, 16).toString());
+		assertEquals("] line", text.subSequence(10, 16));
+		assertEquals("", text.subSequence(3, 3).toString());
+		assertThrows(IndexOutOfBoundsException.class, () -> text.subSequence(10, 18));
+	}
+
+}
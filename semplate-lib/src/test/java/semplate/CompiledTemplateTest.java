@@ -0,0 +1,108 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import semplate.valuemap.ValueMap;
+
+class CompiledTemplateTest {
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/templates");  // Template files here
+
+	private Path templatesPath;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		templatesPath = files.path();
+	}
+
+	@Test
+	void testCompile() throws Exception {
+		Path templateFile = templatesPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templateFile);
+
+		CompiledTemplate template = CompiledTemplate.compile(templateFile);
+
+		assertEquals(templateFile, template.path());
+		assertEquals(new Delimiter().start("<!--").end("-->"), template.commentDelimiter());
+		assertEquals(2, template.delimiters().number());
+
+		long listBlocks = template.blocks().stream().filter(b -> b.type() == TemplateBlock.Type.LIST).count();
+		assertEquals(1, listBlocks);
+	}
+
+	@Test
+	void testCompileNoCommentDirective() {
+		Path templateFile = templatesPath.resolve("no_comment_directive.md");
+		TestUtilities.copyFromResource("no_comment_directive.md", templateFile);
+
+		assertThrows(ReadException.class, () -> CompiledTemplate.compile(templateFile));
+	}
+
+	@Test
+	void testCompileNonExistentTemplate() {
+		assertThrows(ReadException.class, () -> CompiledTemplate.compile(templatesPath.resolve("non-existent.md")));
+	}
+
+	@Test
+	void testReuseCompiledTemplate() throws Exception {
+		Path templateFile = templatesPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templateFile);
+
+		CompiledTemplate template = CompiledTemplate.compile(templateFile);
+
+		// The template file is no longer needed
+		Files.delete(templateFile);
+
+		Works works = new Works();
+		works.setTitle("The Works of Plato");
+		works.setAuthor("Plato");
+		works.addReference(new Reference("Apology", new URL("https://en.wikisource.org/wiki/Apology_%28Plato%29")));
+		works.addReference(new Reference("Charmides", new URL("https://en.wikisource.org/wiki/Charmides_%28Plato%29")));
+		works.addReference(new Reference("The Republic", new URL("https://en.wikisource.org/wiki/The_Republic_of_Plato")));
+
+		Path expectedFile = templatesPath.resolve("list_expected.md");
+		TestUtilities.copyFromResource("list_expected.md", expectedFile);
+		String expectedContents = Files.lines(expectedFile).collect(Collectors.joining());
+
+		for (int i = 0; i < 3; i++) {
+			Path outputPath = templatesPath.resolve("list_actual_" + i + ".md");
+
+			SemanticWriter.with(works).usingTemplate(template).write(outputPath);
+
+			String actualContents = Files.lines(outputPath).collect(Collectors.joining());
+			assertEquals(expectedContents, actualContents);
+		}
+	}
+
+	@Test
+	void testCompileIndexedEntry() throws Exception {
+		String listTemplate = "* [{{references.*.title}}]({{references.*.link}})";
+		Delimiters delimiters = new Delimiters().addPair("[]").addPair("()");
+		Delimiter commentDelimiter = new Delimiter().start("<!--").end("-->");
+
+		TemplateBlock entry = CompiledTemplate.compileIndexedEntry(listTemplate, "references", delimiters, commentDelimiter);
+
+		for (String index: new String[] {"0", "7", "12345"}) {
+			// The same as replacing the list index in the template and then assembling the semantic block
+			String indexedTemplate = listTemplate.replace("{{references.*", "{{references." + index);
+			String expected = SemanticTemplateWriter.assembleSemanticBlock(indexedTemplate, delimiters, commentDelimiter)
+					          + "\n" + indexedTemplate;
+
+			StringBuilder actual = new StringBuilder();
+			entry.render(actual, ValueMap.empty(), ValueMap.empty(), index);
+
+			assertEquals(expected, actual.toString());
+		}
+	}
+
+}
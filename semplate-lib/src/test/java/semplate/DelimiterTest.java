@@ -29,13 +29,13 @@ class DelimiterTest {
 		
 		assertTrue(delimiter.start().isEmpty());
 		
-		delimiter.start("<");
+		delimiter = delimiter.start("<");
 		assertEquals("<", delimiter.start().orElse(""));
 		
-		delimiter.start("");
+		delimiter = delimiter.start("");
 		assertTrue(delimiter.start().isEmpty());
 		
-		delimiter.start("<span>");
+		delimiter = delimiter.start("<span>");
 		assertEquals("<span>", delimiter.start().orElse(""));
 		
 	}
@@ -44,13 +44,13 @@ class DelimiterTest {
 	void testEnd() {
 		assertTrue(delimiter.end().isEmpty());
 
-		delimiter.end("<");
+		delimiter = delimiter.end("<");
 		assertEquals("<", delimiter.end().orElse(""));
 
-		delimiter.end("");
+		delimiter = delimiter.end("");
 		assertTrue(delimiter.end().isEmpty());
 		
-		delimiter.end("</span>");
+		delimiter = delimiter.end("</span>");
 		assertEquals("</span>", delimiter.end().orElse(""));
 		
 	}
@@ -58,7 +58,7 @@ class DelimiterTest {
 	@Test
 	void testPair() {
 
-		delimiter.pair("[]");
+		delimiter = delimiter.pair("[]");
 		assertEquals("[", delimiter.start().orElse(""));
 		assertEquals("]", delimiter.end().orElse(""));
 
@@ -71,7 +71,7 @@ class DelimiterTest {
 	void testPattern() {
 		String text = "This contains (some text) in delimiters";
 		
-		delimiter.pair("()");
+		delimiter = delimiter.pair("()");
 		Pattern pattern = delimiter.pattern();
 		
 		Matcher matcher = pattern.matcher(text);
@@ -86,7 +86,7 @@ class DelimiterTest {
 	void testPatternWithMutiCharacterDelimiters() {
 		String text = "The word population in <span>{{year}}</span> is <span>{{population}}</span> according to the World Bank.";
 		
-		delimiter.start("<span>").end("</span>");
+		delimiter = delimiter.start("<span>").end("</span>");
 		
         Pattern pattern = delimiter.pattern();
 		
@@ -106,7 +106,7 @@ class DelimiterTest {
 	void testPatternWithNoEndDelimiter() {
 		String text = "This contains (some text) in delimiters";
 
-		delimiter.start("(").end("");
+		delimiter = delimiter.start("(").end("");
 		Pattern pattern = delimiter.pattern();
 		Matcher matcher = pattern.matcher(text);
 		assertTrue(matcher.find(0));
@@ -119,7 +119,7 @@ class DelimiterTest {
 	void testPatternWithNoStartDelimiter() {
 		String text = "This contains (some text) in delimiters";
 
-		delimiter.start("").end(")");
+		delimiter = delimiter.start("").end(")");
 		Pattern pattern = delimiter.pattern();
 		Matcher matcher = pattern.matcher(text);
 		assertTrue(matcher.find(0));
@@ -132,7 +132,7 @@ class DelimiterTest {
 	void testPatternWithNoDelimiters() {
 		String text = "This contains (some text) in delimiters";
 
-		delimiter.start("").end("");
+		delimiter = delimiter.start("").end("");
 		Pattern pattern = delimiter.pattern();
 		Matcher matcher = pattern.matcher(text);
 		assertTrue(matcher.find(0));
@@ -143,56 +143,70 @@ class DelimiterTest {
 	
     @Test
 	void testInsert() {
-    	delimiter.start("(").end(")");
+    	delimiter = delimiter.start("(").end(")");
     	
     	Delimiter insert = new Delimiter().start("{{").end("}}");
-    	delimiter.insert(insert);
+    	delimiter = delimiter.insert(insert);
     	
     	assertEquals("({{", delimiter.start().orElse(""));
     	assertEquals("}})", delimiter.end().orElse(""));
     	
-       	delimiter.start("(").end("");
-    	delimiter.insert(insert);
+       	delimiter = delimiter.start("(").end("");
+    	delimiter = delimiter.insert(insert);
     	assertEquals("({{", delimiter.start().orElse(""));
     	assertEquals("}}", delimiter.end().orElse(""));
     	
-    	delimiter.start("").end(")");
-    	delimiter.insert(insert);
+    	delimiter = delimiter.start("").end(")");
+    	delimiter = delimiter.insert(insert);
     	assertEquals("{{", delimiter.start().orElse(""));
     	assertEquals("}})", delimiter.end().orElse(""));
     	
-    	delimiter.start("(").end(")");
-    	insert.start("").end("");
+    	delimiter = delimiter.start("(").end(")");
+    	insert = insert.start("").end("");
     	assertEquals("(", delimiter.start().orElse(""));
     	assertEquals(")", delimiter.end().orElse(""));
 		
 	}
     
+    @Test
+	void testImmutable() {
+		Delimiter original = new Delimiter().pair("()");
+		
+		Delimiter inserted = original.insert(new Delimiter().start("{{").end("}}"));
+		Delimiter changed = original.start("<").end(">");
+		
+		assertEquals("(", original.start().orElse(""));
+		assertEquals(")", original.end().orElse(""));
+		assertEquals("({{", inserted.start().orElse(""));
+		assertEquals("<", changed.start().orElse(""));
+		assertEquals(new Delimiter().pair("()").hashCode(), original.hashCode());
+	}
+    
     @Test
     void testEquals() {
     	Delimiter testDelimiter = new Delimiter().start("(").end(")");
-    	delimiter.start("(").end(")");
+    	delimiter = delimiter.start("(").end(")");
     	assertTrue(delimiter.equals(testDelimiter));
     	
-    	testDelimiter.start("<span>").end("</span>");
-    	delimiter.start("<span>").end("</span>");
+    	testDelimiter = testDelimiter.start("<span>").end("</span>");
+    	delimiter = delimiter.start("<span>").end("</span>");
     	assertTrue(delimiter.equals(testDelimiter));
     	    	
     	testDelimiter = new Delimiter().start("[").end("]");
-    	delimiter.start("(").end(")");
+    	delimiter = delimiter.start("(").end(")");
     	assertFalse(delimiter.equals(testDelimiter));
     	
     	delimiter = new Delimiter();
     	testDelimiter = new Delimiter().start("//");
-    	delimiter.start("//");
+    	delimiter = delimiter.start("//");
     	assertTrue(delimiter.equals(testDelimiter));
     	
     	testDelimiter = new Delimiter().start("//").end("");
-    	delimiter.start("//");
+    	delimiter = delimiter.start("//");
     	assertTrue(delimiter.equals(testDelimiter));
     	
-    	testDelimiter.start("<span>").end("</span>");
-    	delimiter.start("span").end("</span>");
+    	testDelimiter = testDelimiter.start("<span>").end("</span>");
+    	delimiter = delimiter.start("span").end("</span>");
     	assertFalse(delimiter.equals(testDelimiter));
     	
     	
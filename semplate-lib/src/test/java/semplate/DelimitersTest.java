@@ -2,6 +2,7 @@ package semplate;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,11 +15,11 @@ class DelimitersTest {
 	void testAddDelimiters() { 
         Delimiters delimiters = new Delimiters();
         
-        delimiters.add("(", ")");
-        delimiters.add("[", "]");
-        delimiters.add("<", ">");
-        delimiters.add("<span>", "</span>");
-        delimiters.add("//", "");
+        delimiters = delimiters.add("(", ")");
+        delimiters = delimiters.add("[", "]");
+        delimiters = delimiters.add("<", ">");
+        delimiters = delimiters.add("<span>", "</span>");
+        delimiters = delimiters.add("//", "");
         
         
         assertEquals(5,  delimiters.number());
@@ -36,9 +37,9 @@ class DelimitersTest {
 		
 		Delimiters delimiters = new Delimiters();
 		
-		delimiters.addPair("()");
-		delimiters.addPair("[]");
-		delimiters.addPair("<>");
+		delimiters = delimiters.addPair("()");
+		delimiters = delimiters.addPair("[]");
+		delimiters = delimiters.addPair("<>");
 
 		
 		assertEquals("(", delimiters.startDelimiter(0).orElse("")); 
@@ -48,9 +49,9 @@ class DelimitersTest {
 		assertEquals("<", delimiters.startDelimiter(2).orElse("")); 
 		assertEquals(">", delimiters.endDelimiter(2).orElse("")); 
         
-		assertThrows(IllegalArgumentException.class, () -> delimiters.addPair(""));
-		assertThrows(IllegalArgumentException.class, () -> delimiters.addPair("["));
-		assertThrows(IllegalArgumentException.class, () -> delimiters.addPair("<!>"));
+		assertThrows(IllegalArgumentException.class, () -> new Delimiters().addPair(""));
+		assertThrows(IllegalArgumentException.class, () -> new Delimiters().addPair("["));
+		assertThrows(IllegalArgumentException.class, () -> new Delimiters().addPair("<!>"));
 	}
 	
 	@Test
@@ -60,8 +61,8 @@ class DelimitersTest {
 		Delimiter d1 = new Delimiter().pair("()");
 		Delimiter d2 = new Delimiter().start("//");
 		
-		delimiters.add(d1);
-		delimiters.add(d2);
+		delimiters = delimiters.add(d1);
+		delimiters = delimiters.add(d2);
 		
 		assertEquals(2, delimiters.number());
 		
@@ -89,10 +90,10 @@ class DelimitersTest {
 		
 		Delimiters delimiters = new Delimiters();
         		
-		delimiters.add(testStarts[0], testEnds[0]);
-		delimiters.add(testStarts[1], testEnds[1]);
-		delimiters.add(testStarts[2], testEnds[2]);
-		delimiters.add(testStarts[3], testEnds[3]);
+		delimiters = delimiters.add(testStarts[0], testEnds[0]);
+		delimiters = delimiters.add(testStarts[1], testEnds[1]);
+		delimiters = delimiters.add(testStarts[2], testEnds[2]);
+		delimiters = delimiters.add(testStarts[3], testEnds[3]);
         
 		int i = 0;
         for (Delimiter delim: delimiters) {
@@ -113,14 +114,14 @@ class DelimitersTest {
 		
 		Delimiters delimiters = new Delimiters();
 		
-		delimiters.add(testData[0]);
-		delimiters.add(testData[1]);
+		delimiters = delimiters.add(testData[0]);
+		delimiters = delimiters.add(testData[1]);
 		Delimiters extraDelimiters = new Delimiters();
 		
-		extraDelimiters.add(testData[2]);
-		extraDelimiters.add(testData[3]);
+		extraDelimiters = extraDelimiters.add(testData[2]);
+		extraDelimiters = extraDelimiters.add(testData[3]);
 		
-		delimiters.add(extraDelimiters);
+		delimiters = delimiters.add(extraDelimiters);
 		
 		assertEquals(4, delimiters.number());
 
@@ -137,9 +138,9 @@ class DelimitersTest {
 	void testSurround() {
 		Delimiters delimiters = new Delimiters();
 
-		delimiters.addPair("()");
-		delimiters.addPair("[]");
-		delimiters.addPair("<>");
+		delimiters = delimiters.addPair("()");
+		delimiters = delimiters.addPair("[]");
+		delimiters = delimiters.addPair("<>");
 		
 		assertTrue(delimiters.isDelimited("(hello)"));
 		assertTrue(delimiters.isDelimited("<Loret ipsum>"));
@@ -162,9 +163,9 @@ class DelimitersTest {
 
 		Delimiters delimiters = new Delimiters();
 
-		delimiters.add("<span>", "</span>");
-		delimiters.addPair("()");
-		delimiters.addPair("[]");
+		delimiters = delimiters.add("<span>", "</span>");
+		delimiters = delimiters.addPair("()");
+		delimiters = delimiters.addPair("[]");
 
 		Pattern pattern = delimiters.pattern();
 
@@ -199,11 +200,11 @@ class DelimitersTest {
 	void testInsertAll() {
 		Delimiters delimiters = new Delimiters();
 		
-		delimiters.addPair("()");
-		delimiters.addPair("[]");
-		delimiters.addPair("<>");
+		delimiters = delimiters.addPair("()");
+		delimiters = delimiters.addPair("[]");
+		delimiters = delimiters.addPair("<>");
 		
-		delimiters.insertAll("{{", "}}");
+		delimiters = delimiters.insertAll("{{", "}}");
 		
 		for (Delimiter d: delimiters) {
 			assertEquals(3, d.start().orElse("").length());
@@ -217,30 +218,31 @@ class DelimitersTest {
 	}
 	
 	@Test
-	void testClone( ) throws CloneNotSupportedException {
-        Delimiters delimiters = new Delimiters();
-		
+	void testImmutable() {
         Delimiter[] testDelimiters = {  
         		new Delimiter().pair("()"),
         		new Delimiter().pair("[]"),
         		new Delimiter().pair("<>")
         };
 
-      for (Delimiter d: testDelimiters) {
-    	  delimiters.add(d);
-      }
+		Delimiters delimiters = Delimiters.of(List.of(testDelimiters));
 		
-		Delimiters clone = delimiters.clone();
+		Delimiters inserted = delimiters.insertAll("{{", "}}");
+		Delimiters added = delimiters.addPair("''");
 		
-		  Delimiter[] results = new Delimiter[3];
-		  
-		  int i = 0;
-		  for (Delimiter d: clone) {
-	    	  results[i++] = d;
-	      }
-			  
+		// The original delimiters are unchanged
+		Delimiter[] results = new Delimiter[3];
+		int i = 0;
+		for (Delimiter d: delimiters) {
+			results[i++] = d;
+		}
 		assertArrayEquals(testDelimiters, results);
+		assertEquals(new Delimiter().pair("()"), testDelimiters[0]);
 		
+		assertEquals("({{", inserted.startDelimiter(0).orElse(""));
+		assertEquals(4, added.number());
+		assertEquals(Delimiters.of(List.of(testDelimiters)), delimiters);
+		assertSame(delimiters.pattern(), delimiters.pattern());
 	}
 	
 	
@@ -0,0 +1,107 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import semplate.valuemap.ValueMap;
+
+class EncodedTemplateTest {
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/files");  // Test files here
+
+	private Path rootPath;
+	private CompiledTemplate template;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		rootPath = files.path();
+
+		Path templateFile = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templateFile);
+
+		template = CompiledTemplate.compile(templateFile);
+	}
+
+	@Test
+	void testEncodedOnce() {
+		assertSame(template.encoded(StandardCharsets.UTF_8), template.encoded(StandardCharsets.UTF_8));
+		assertEquals(StandardCharsets.UTF_16, template.encoded(StandardCharsets.UTF_16).charset());
+	}
+
+	@Test
+	void testRenderSameAsText() throws Exception {
+		// Use values that are encoded differently in each charset
+		Works works = TestUtilities.works(3);
+		works.setTitle("Die Werke Platons, \u00fcbersetzt von Schleiermacher");
+		ValueMap valueMap = ValueMap.from(works);
+
+		for (Charset charset: new Charset[] {StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16}) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			template.encoded(charset).render(valueMap, ListEntries.none(), outputStream);
+
+			assertEquals(renderText(valueMap), new String(outputStream.toByteArray(), charset), charset.name());
+		}
+	}
+
+	@Test
+	void testRenderShortValuesWithByteOrderMark() throws Exception {
+		// Values shorter than the byte order mark, which must not be skipped unless it is written
+		for (String title: new String[] {"", "x"}) {
+			Works works = TestUtilities.works(1);
+			works.setTitle(title);
+			works.setAuthor("P");
+			ValueMap valueMap = ValueMap.from(works);
+
+			for (Charset charset: new Charset[] {StandardCharsets.UTF_16, StandardCharsets.UTF_16BE, StandardCharsets.UTF_16LE}) {
+				ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+				template.encoded(charset).render(valueMap, ListEntries.none(), outputStream);
+
+				assertArrayEquals(renderText(valueMap).getBytes(charset), outputStream.toByteArray(), charset.name() + " \"" + title + "\"");
+			}
+		}
+	}
+
+	@Test
+	void testRenderGathering() throws Exception {
+		// Enough list entries for the buffers to be written in several gathering writes
+		ValueMap valueMap = ValueMap.from(TestUtilities.works(200));
+
+		Path outputFile = rootPath.resolve("works.md");
+		try (FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			template.encoded(StandardCharsets.UTF_8).render(valueMap, ListEntries.none(), channel);
+		}
+
+		assertEquals(renderText(valueMap), Files.readString(outputFile, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testRenderNonGatheringChannel() throws Exception {
+		ValueMap valueMap = ValueMap.from(TestUtilities.works(100));
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		template.encoded(StandardCharsets.UTF_8).render(valueMap, ListEntries.none(), Channels.newChannel(outputStream));
+
+		assertEquals(renderText(valueMap), new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	private String renderText(ValueMap valueMap) throws Exception {
+		StringWriter writer = new StringWriter();
+		template.render(valueMap, writer);
+		return writer.toString();
+	}
+
+}
@@ -0,0 +1,86 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import org.junit.jupiter.api.Test;
+
+class FieldExtractorTest {
+
+	@Test
+	void testExtract() {
+		FieldExtractor extractor = FieldExtractor.of(delimiter("[", "]"), delimiter("(", ")"));
+
+		assertArrayEquals(new String[] {"Apology", "https://en.wikisource.org/wiki/Apology"},
+				          strings(extractor.extract("* [Apology](https://en.wikisource.org/wiki/Apology)")));
+		assertArrayEquals(new String[] {"first", null}, strings(extractor.extract("[first] [second] (no end")));
+		assertArrayEquals(new String[] {null, null}, strings(extractor.extract("")));
+	}
+
+	@Test
+	void testFirstMatchWins() {
+		// Fields with the same delimiters have the same value
+		FieldExtractor extractor = FieldExtractor.of(delimiter("<span>", "</span>"), delimiter("<span>", "</span>"));
+		assertArrayEquals(new String[] {"Plato", "Plato"}, strings(extractor.extract("<span>Plato</span> was <span>Apology</span>")));
+
+		// The value starts after the first start delimiter and ends before the first end delimiter after it
+		extractor = FieldExtractor.of(delimiter("# ", "!"));
+		assertArrayEquals(new String[] {"# a # b"}, strings(extractor.extract("# # a # b!!")));
+	}
+
+	@Test
+	void testAnchoredDelimiters() {
+		FieldExtractor extractor = FieldExtractor.of(delimiter("", ""), delimiter("", " by"), delimiter("by ", ""));
+
+		assertArrayEquals(new String[] {"The Republic by Plato", "The Republic", "Plato"}, strings(extractor.extract("The Republic by Plato")));
+
+		// Values do not span line terminators
+		extractor = FieldExtractor.of(delimiter("", ""), delimiter("", "e"), delimiter("i", ""));
+		assertArrayEquals(new String[] {"line", "lin", "ne"}, strings(extractor.extract("line\n")));
+		assertArrayEquals(new String[] {null, "lin", null}, strings(extractor.extract("line\n\n")));
+		assertArrayEquals(new String[] {null, null, "rst"}, strings(extractor.extract("\nfirst")));
+	}
+
+	@Test
+	void testCached() {
+		assertSame(FieldExtractor.of(delimiter("[", "]")), FieldExtractor.of(delimiter("[", "]")));
+		assertNotSame(FieldExtractor.of(delimiter("[", "]")), FieldExtractor.of(delimiter("(", ")")));
+	}
+
+	@Test
+	void testAsExtractionPatterns() {
+		String[] delimiterStrings = {"", "a", "b", "ab", "ba", "aa", "[", "]", "\""};
+		String characters = "ab[]\" \n";
+		Random random = new Random(4711);
+
+		for (int n = 0; n < 2000; n++) {
+			Delimiter[] delimiters = new Delimiter[1 + random.nextInt(4)];
+			for (int i = 0; i < delimiters.length; i++) {
+				delimiters[i] = delimiter(delimiterStrings[random.nextInt(delimiterStrings.length)],
+						                  delimiterStrings[random.nextInt(delimiterStrings.length)]);
+			}
+			StringBuilder text = new StringBuilder();
+			for (int i = random.nextInt(20); i > 0; i--) {
+				text.append(characters.charAt(random.nextInt(characters.length())));
+			}
+
+			String[] values = strings(FieldExtractor.of(delimiters).extract(text));
+			for (int i = 0; i < delimiters.length; i++) {
+				Matcher matcher = FieldSpec.extractionPattern(delimiters[i]).matcher(text);
+				assertEquals(matcher.find() ? matcher.group("value") : null, values[i], delimiters[i] + " in \"" + text + "\"");
+			}
+		}
+	}
+
+	private static String[] strings(CharSequence[] values) {
+		return Arrays.stream(values).map(value -> value == null ? null : value.toString()).toArray(String[]::new);
+	}
+
+	private static Delimiter delimiter(String start, String end) {
+		return new Delimiter().start(start).end(end);
+	}
+
+}
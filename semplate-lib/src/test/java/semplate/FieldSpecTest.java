@@ -2,6 +2,8 @@ package semplate;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.regex.Matcher;
+
 import org.junit.jupiter.api.Test;
 
 class FieldSpecTest {
@@ -42,5 +44,27 @@ class FieldSpecTest {
 		assertThrows(IllegalArgumentException.class, () -> FieldSpec.of("{{kj koj dvd"));
 		
 	}
+	
+	@Test
+	void testExtractionPattern() {
+		FieldSpec source = FieldSpec.of(testStrings[0]);
+		FieldSpec other = FieldSpec.of("{{other:pattern=\"[%s]\"}}");
+		
+		// Field specs with the same delimiters share the compiled pattern
+		assertSame(source.extractionPattern(), other.extractionPattern());
+		assertNotSame(source.extractionPattern(), FieldSpec.of(testStrings[1]).extractionPattern());
+		
+		Matcher matcher = source.extractionPattern().matcher("See [Apology] and [Crito]");
+		assertTrue(matcher.find());
+		assertEquals("Apology", matcher.group("value"));
+		
+		matcher = FieldSpec.of("{{title:pattern=\"# %s\"}}").extractionPattern().matcher("# The Republic");
+		assertTrue(matcher.find());
+		assertEquals("The Republic", matcher.group("value"));
+		
+		matcher = FieldSpec.of("{{all:pattern=\"%s\"}}").extractionPattern().matcher("The whole text");
+		assertTrue(matcher.find());
+		assertEquals("The whole text", matcher.group("value"));
+	}
 
 }
@@ -0,0 +1,106 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class ListEntriesTest {
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/files");  // Test files here
+
+	private Path rootPath;
+	private Path templateFile;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		rootPath = files.path();
+
+		templateFile = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templateFile);
+	}
+
+	@Test
+	void testBoundIterator() throws Exception {
+		Path expectedFile = rootPath.resolve("expected.md");
+		SemanticWriter.with(TestUtilities.works(5)).usingTemplate(templateFile).write(expectedFile);
+
+		Path outputFile = rootPath.resolve("works.md");
+		SemanticWriter.with(TestUtilities.works(0))
+		              .usingTemplate(templateFile)
+		              .withList("references", IntStream.range(0, 5).mapToObj(i -> TestUtilities.reference(i)).iterator())
+		              .write(outputFile);
+
+		assertEquals(Files.readString(expectedFile), Files.readString(outputFile));
+	}
+
+	@Test
+	void testStreamField() throws Exception {
+		Path expectedFile = rootPath.resolve("expected.md");
+		SemanticWriter.with(TestUtilities.works(5)).usingTemplate(templateFile).write(expectedFile);
+
+		StreamedWorks streamedWorks = new StreamedWorks("The Works of Plato", "Plato", IntStream.range(0, 5).mapToObj(i -> TestUtilities.reference(i)));
+
+		StringWriter writer = new StringWriter();
+		SemanticWriter.with(streamedWorks).usingTemplate(templateFile).write(writer);
+
+		assertEquals(Files.readString(expectedFile), writer.toString());
+	}
+
+	@Test
+	void testEntriesPulledOneAtATime() throws Exception {
+		StringWriter writer = new StringWriter();
+
+		// Each entry is only pulled once the previous entry has been written
+		Iterator<Reference> references = new Iterator<>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < 100;
+			}
+
+			@Override
+			public Reference next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				if (next > 0) {
+					assertTrue(writer.toString().contains("[Dialogue " + (next - 1) + "]"));
+				}
+				assertFalse(writer.toString().contains("[Dialogue " + next + "]"));
+				return TestUtilities.reference(next++);
+			}
+		};
+
+		SemanticWriter.with(TestUtilities.works(0)).usingTemplate(templateFile).withList("references", references).write(writer);
+
+		assertTrue(writer.toString().contains("* [Dialogue 99](https://en.wikisource.org/wiki/Dialogue_99)"));
+	}
+
+	@Test
+	void testUpdateWithBoundList() throws Exception {
+		Path inputFile = rootPath.resolve("input.md");
+		SemanticWriter.with(TestUtilities.works(2)).usingTemplate(templateFile).write(inputFile);
+
+		// The same as updating with a data object containing the list
+		Path expectedFile = rootPath.resolve("expected.md");
+		SemanticWriter.with(TestUtilities.works(3)).usingFile(inputFile).write(expectedFile);
+
+		Path outputFile = rootPath.resolve("output.md");
+		SemanticWriter.with(TestUtilities.works(0))
+		              .usingFile(inputFile)
+		              .withList("references", IntStream.range(0, 3).mapToObj(i -> TestUtilities.reference(i)))
+		              .write(outputFile);
+
+		assertEquals(Files.readString(expectedFile), Files.readString(outputFile));
+	}
+
+}
@@ -0,0 +1,139 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+import semplate.valuemap.ValueMap;
+
+class MappedBlockReaderTest {
+
+	@TempDir
+	Path rootPath;
+
+	@Test
+	void testReadAsLines() throws Exception {
+		Path markdownPath = rootPath.resolve("list_expected.md");
+		TestUtilities.copyFromResource("list_expected.md", markdownPath);
+
+		Works expected = (Works) SemanticReader.with(Works.class).usingFile(markdownPath).read();
+		Works actual = (Works) SemanticReader.with(Works.class).usingFile(markdownPath).memoryMapped().read();
+
+		assertEquals(expected.getTitle(), actual.getTitle());
+		assertEquals(expected.getAuthor(), actual.getAuthor());
+		assertEquals(expected.numberReferences(), actual.numberReferences());
+		for (int i = 0; i < expected.numberReferences(); i++) {
+			assertEquals(expected.getReference(i).getTitle(), actual.getReference(i).getTitle());
+			assertEquals(expected.getReference(i).getLink(), actual.getReference(i).getLink());
+		}
+	}
+
+	@Test
+	void testLineTerminators() throws Exception {
+		String[] lines = {
+				"<!--{@template.comment}}-->",
+				"<!--{{title:pattern=\"# %s\"}}-->",
+				"# The Works",
+				"of Plato",
+				" \t ",
+				"Text without semantic line",
+				"<!--{{author:pattern=\"by %s\"}}-->",
+				"by Plato"
+		};
+
+		for (String separator: List.of("\n", "\r\n", "\r")) {
+			Path markdownPath = rootPath.resolve("works.md");
+			Files.writeString(markdownPath, String.join(separator, lines) + separator);
+
+			ValueMap valueMap = MappedBlockReader.read(markdownPath, StandardCharsets.UTF_8, line -> {});
+			assertEquals("The Worksof Plato", valueMap.getValue("title").get());
+			assertEquals("Plato", valueMap.getValue("author").get());
+
+			// The end of the file terminates the last block
+			Files.writeString(markdownPath, String.join(separator, lines));
+			assertEquals("Plato", MappedBlockReader.read(markdownPath, StandardCharsets.UTF_8, line -> {}).getValue("author").get());
+		}
+	}
+
+	@Test
+	void testNonAscii() throws Exception {
+		Path markdownPath = rootPath.resolve("works.md");
+		String text = String.join("\n",
+				"<!--{{title:pattern=\"[%s]\"}}{{author:pattern=\"(%s)\"}}-->",
+				"[Polite\u00efa] (\u03a0\u03bb\u03ac\u03c4\u03c9\u03bd)",
+				"\u3000",
+				"<!--{{id:pattern=\"%s\"}}-->",
+				"4711");
+
+		Files.writeString(markdownPath, text, StandardCharsets.UTF_8);
+		ValueMap valueMap = MappedBlockReader.read(markdownPath, StandardCharsets.UTF_8, line -> {});
+		assertEquals("Polite\u00efa", valueMap.getValue("title").get());
+		assertEquals("\u03a0\u03bb\u03ac\u03c4\u03c9\u03bd", valueMap.getValue("author").get());
+		assertEquals("4711", valueMap.getValue("id").get());
+
+		Files.writeString(markdownPath, text.replace("\u03a0\u03bb\u03ac\u03c4\u03c9\u03bd", "Platon").replace("\u3000", " "), StandardCharsets.ISO_8859_1);
+		valueMap = MappedBlockReader.read(markdownPath, StandardCharsets.ISO_8859_1, line -> {});
+		assertEquals("Polite\u00efa", valueMap.getValue("title").get());
+		assertEquals("Platon", valueMap.getValue("author").get());
+	}
+
+	@Test
+	void testDirectiveLines() throws Exception {
+		Path markdownPath = rootPath.resolve("works.md");
+		Files.writeString(markdownPath, String.join("\n",
+				"<!--{@template.comment}}-->",
+				"",
+				"<!--{@list-shard:\"works-references-1.md\"}}-->",
+				"[works-references-1.md](works-references-1.md)"));
+
+		List<String> directiveLines = new ArrayList<>();
+		MappedBlockReader.read(markdownPath, StandardCharsets.UTF_8, directiveLines::add);
+
+		assertEquals(List.of("<!--{@template.comment}}-->", "<!--{@list-shard:\"works-references-1.md\"}}-->"), directiveLines);
+	}
+
+	@Test
+	void testShards() throws Exception {
+		Path templatePath = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templatePath);
+		CompiledTemplate template = CompiledTemplate.compile(templatePath);
+		Works works = new Works();
+		works.setTitle("The Works of Plato");
+		for (int i = 0; i < 12; i++) {
+			works.addReference(new Reference("Dialogue " + i, new URL("https://en.wikisource.org/wiki/Dialogue_" + i)));
+		}
+		Path indexFile = rootPath.resolve("works.md");
+		SemanticWriter.with(works).usingTemplate(template).sharded(Sharding.byEntries(5)).write(indexFile);
+
+		Works actual = (Works) SemanticReader.with(Works.class).usingFile(indexFile).memoryMapped().read();
+		assertEquals("The Works of Plato", actual.getTitle());
+		assertEquals(12, actual.numberReferences());
+	}
+
+	@Test
+	void testNotMapped() throws Exception {
+		// Files on file systems without memory mapped files are read line by line
+		try (FileSystem fileSystem = Jimfs.newFileSystem(Configuration.unix())) {
+			Path markdownPath = fileSystem.getPath("/list_expected.md");
+			TestUtilities.copyFromResource("list_expected.md", markdownPath);
+
+			Works works = (Works) SemanticReader.with(Works.class).usingFile(markdownPath).memoryMapped().read();
+			assertEquals(3, works.numberReferences());
+		}
+
+		assertThrows(IllegalArgumentException.class, () -> MappedBlockReader.read(rootPath, StandardCharsets.UTF_16, line -> {}));
+	}
+
+}
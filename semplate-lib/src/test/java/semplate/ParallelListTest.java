@@ -0,0 +1,82 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class ParallelListTest {
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/files");  // Test files here
+
+	private Path rootPath;
+	private CompiledTemplate template;
+	private ForkJoinPool pool;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		rootPath = files.path();
+
+		Path templatePath = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templatePath);
+		template = CompiledTemplate.compile(templatePath);
+
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		pool.shutdown();
+	}
+
+	@Test
+	void testSameAsSequential() throws Exception {
+		Works works = TestUtilities.works(5000);
+
+		SemanticWriter.with(works).usingTemplate(template).write(rootPath.resolve("sequential.md"));
+		SemanticWriter.with(works).usingTemplate(template).parallelLists(pool, 64).write(rootPath.resolve("parallel.md"));
+		byte[] expected = Files.readAllBytes(rootPath.resolve("sequential.md"));
+		assertArrayEquals(expected, Files.readAllBytes(rootPath.resolve("parallel.md")));
+
+		StringWriter writer = new StringWriter();
+		SemanticWriter.with(works).usingTemplate(template).parallelLists(pool, 64).specialized().write(writer);
+		assertEquals(new String(expected, StandardCharsets.UTF_8), writer.toString());
+
+		ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+		SemanticWriter.with(works).usingTemplate(template).write(sequential, StandardCharsets.UTF_16);
+		ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+		SemanticWriter.withTemplate(template).parallelLists(pool, 100).write(works, parallel, StandardCharsets.UTF_16);
+		assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+	}
+
+	@Test
+	void testSmallList() throws Exception {
+		for (int numberReferences: new int[] {0, 1, 64, 65}) {
+			Works works = TestUtilities.works(numberReferences);
+
+			StringWriter sequential = new StringWriter();
+			SemanticWriter.with(works).usingTemplate(template).write(sequential);
+			StringWriter parallel = new StringWriter();
+			SemanticWriter.with(works).usingTemplate(template).parallelLists(pool, 64).write(parallel);
+
+			assertEquals(sequential.toString(), parallel.toString());
+		}
+	}
+
+	@Test
+	void testInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> SemanticWriter.withTemplate(template).parallelLists(pool, 0));
+		assertThrows(NullPointerException.class, () -> SemanticWriter.withTemplate(template).parallelLists(null, 10));
+	}
+
+}
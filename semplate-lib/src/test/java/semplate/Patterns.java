@@ -1,13 +1,18 @@
-package semplate;
-
-import java.util.regex.Pattern;
-
-final class Patterns {
-	
-	final static Pattern COMMENT_DIRECTIVE_PATTERN = Pattern.compile("\\{@template.comment\\}\\}");
-
-	final static Pattern DELIMITER_DIRECTIVE_PATTERN = Pattern.compile("\\{@template.delimiter.(?<type>.*?):(?<delim>.*?)\\}\\}");
-
-	final static Pattern FIELD_PATTERN = Pattern.compile("\\{{2}(?<fieldname>[^\\}]*)\\}{2}");  
-
-}
+package semplate;
+
+import java.util.regex.Pattern;
+
+/** The regular expressions for the semantic annotations. Fields, field specifications and directives are lexed
+ * with the {@link SemanticLexer}; these patterns are the reference the lexer is tested and benchmarked against.
+ */
+final class Patterns {
+	
+	final static Pattern COMMENT_DIRECTIVE_PATTERN = Pattern.compile("\\{@template.comment\\}\\}");
+
+	final static Pattern DELIMITER_DIRECTIVE_PATTERN = Pattern.compile("\\{@template.delimiter.(?<type>.*?):(?<delim>.*?)\\}\\}");
+
+	final static Pattern FIELD_PATTERN = Pattern.compile("\\{{2}(?<fieldname>[^\\}]*)\\}{2}");  
+
+	final static Pattern FIELD_SPEC_PATTERN = Pattern.compile("\\{\\{(?<field>.*?):pattern=\"(?<start>.*?)%s(?<end>.*?)\"\\}\\}");
+
+}
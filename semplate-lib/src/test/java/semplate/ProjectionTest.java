@@ -0,0 +1,142 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import semplate.annotations.Templatable;
+import semplate.annotations.TemplateField;
+import semplate.valuemap.ValueMap;
+
+class ProjectionTest {
+
+	@TempDir
+	Path rootPath;
+
+	/** A view of the header of the works */
+	@Templatable
+	public static class WorksHeader {
+		@TemplateField
+		private String title;
+
+		@TemplateField
+		private String author;
+	}
+
+	@Test
+	void testSelects() {
+		Projection projection = Projection.of(List.of("title", "references"));
+
+		assertTrue(projection.selects("title"));
+		assertTrue(projection.selects("references.0.title"));
+		assertFalse(projection.selects("author"));
+		assertFalse(projection.selects("titles"));
+		assertTrue(Projection.all().selects("author"));
+
+		assertThrows(IllegalArgumentException.class, () -> Projection.of(List.of()));
+	}
+
+	@Test
+	void testComplete() {
+		Projection projection = Projection.of(List.of("title", "author"));
+		Block block = Block.block().apply("<!--{{title:pattern=\"# %s\"}}{{id:pattern=\"%s\"}}-->");
+		block.appendText("# The Works of Plato").terminate();
+
+		ValueMap valueMap = projection.valueMap(block);
+		assertEquals(Set.of("title"), valueMap.fieldNames());
+		assertFalse(projection.isComplete());
+
+		block.initialise("<!--{{author:pattern=\"by %s\"}}-->").appendText("by Plato").terminate();
+		assertEquals("Plato", projection.valueMap(block).getValue("author").get());
+		assertTrue(projection.isComplete());
+
+		// Fields only found in lists never complete a projection
+		projection = Projection.of(List.of("references"));
+		block.initialise("<!--{{references.0.title:pattern=\"[%s]\"}}-->").appendText("[Apology]").terminate();
+		assertTrue(projection.valueMap(block).isValueMap("references"));
+		assertFalse(projection.isComplete());
+
+		assertFalse(Projection.all().isComplete());
+	}
+
+	@Test
+	void testReadFields() throws Exception {
+		Path markdownPath = rootPath.resolve("list_expected.md");
+		TestUtilities.copyFromResource("list_expected.md", markdownPath);
+
+		for (boolean memoryMapped: List.of(false, true)) {
+			SemanticReader reader = SemanticReader.with(Works.class).usingFile(markdownPath).fields("title", "author");
+			Works works = (Works) (memoryMapped ? reader.memoryMapped() : reader).read();
+			assertEquals("The Works of Plato", works.getTitle());
+			assertEquals("Plato", works.getAuthor());
+			assertEquals(0, works.numberReferences());
+
+			reader = SemanticReader.with(Works.class).usingFile(markdownPath).fields("title", "references");
+			works = (Works) (memoryMapped ? reader.memoryMapped() : reader).read();
+			assertEquals("The Works of Plato", works.getTitle());
+			assertNull(works.getAuthor());
+			assertEquals(3, works.numberReferences());
+		}
+
+		ValueMap valueMap = (ValueMap) SemanticReader.with(ValueMap.class).usingFile(markdownPath).fields("author").read();
+		assertEquals(Set.of("author"), valueMap.fieldNames());
+
+		assertThrows(IllegalArgumentException.class, () -> SemanticReader.with(Works.class).fields());
+	}
+
+	@Test
+	void testProjected() throws Exception {
+		Path markdownPath = rootPath.resolve("list_expected.md");
+		TestUtilities.copyFromResource("list_expected.md", markdownPath);
+
+		// The view does not declare all fields of the file
+		assertThrows(ReadException.class, () -> SemanticReader.with(WorksHeader.class).usingFile(markdownPath).read());
+
+		WorksHeader header = (WorksHeader) SemanticReader.with(WorksHeader.class).usingFile(markdownPath).projected().read();
+		assertEquals("The Works of Plato", header.title);
+		assertEquals("Plato", header.author);
+
+		assertThrows(IllegalArgumentException.class, () -> SemanticReader.with(ValueMap.class).projected());
+	}
+
+	@Test
+	void testEarlyExit() throws Exception {
+		// The shard does not exist, so the file can only be read as far as the shard directive
+		Path markdownPath = rootPath.resolve("works.md");
+		Files.writeString(markdownPath, String.join("\n",
+				"<!--{@template.comment}}-->",
+				"",
+				"<!--{{title:pattern=\"# %s\"}}-->",
+				"# The Works of Plato",
+				"",
+				"<!--{{author:pattern=\"by %s\"}}-->",
+				"by Plato",
+				"",
+				"<!--{@list-template=\"* {{references.*.title}}\"}}-->",
+				"",
+				"<!--{@list-shard:\"works-references-1.md\"}}-->",
+				"[works-references-1.md](works-references-1.md)",
+				"",
+				"<!--{{title:pattern=\"# %s\"}}-->",
+				"# Not read"));
+
+		assertThrows(ReadException.class, () -> SemanticReader.with(Works.class).usingFile(markdownPath).read());
+
+		for (boolean memoryMapped: List.of(false, true)) {
+			SemanticReader reader = SemanticReader.with(Works.class).usingFile(markdownPath).fields("title", "author");
+			Works works = (Works) (memoryMapped ? reader.memoryMapped() : reader).read();
+			assertEquals("The Works of Plato", works.getTitle());
+			assertEquals("Plato", works.getAuthor());
+		}
+
+		// A missing field requires reading the whole file
+		assertThrows(ReadException.class, () -> SemanticReader.with(Works.class).usingFile(markdownPath).fields("title", "id").read());
+	}
+
+}
@@ -0,0 +1,145 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import semplate.valuemap.ValueMap;
+
+class RenderCacheTest {
+
+	private static final FileTime OLD = FileTime.fromMillis(0);
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/files");  // Test files here
+
+	private Path rootPath;
+	private Path templatePath;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		rootPath = files.path();
+
+		templatePath = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templatePath);
+	}
+
+	@Test
+	void testSkipUnchanged() throws Exception {
+		RenderCache renderCache = RenderCache.create();
+		Path outputFile = rootPath.resolve("works.md");
+
+		SemanticWriter.with(TestUtilities.works(12)).usingTemplate(templatePath).skipUnchanged(renderCache).write(outputFile);
+		assertEquals(1, renderCache.writtenCount());
+		TestUtilities.assertEqualsResource(TestUtilities.worksExpected(12), Files.readString(outputFile));
+		Files.setLastModifiedTime(outputFile, OLD);
+
+		// Same data: fingerprint hit
+		SemanticWriter.with(TestUtilities.works(12)).usingTemplate(templatePath).skipUnchanged(renderCache).write(outputFile);
+		assertEquals(1, renderCache.writtenCount());
+		assertEquals(1, renderCache.skippedCount());
+		assertEquals(OLD, Files.getLastModifiedTime(outputFile));
+
+		// Changed data is written
+		Works changed = TestUtilities.works(12);
+		changed.setTitle("The Dialogues of Plato");
+		SemanticWriter.with(changed).usingTemplate(templatePath).skipUnchanged(renderCache).write(outputFile);
+		assertEquals(2, renderCache.writtenCount());
+		assertTrue(Files.readString(outputFile).contains("# The Dialogues of Plato"), Files.readString(outputFile));
+	}
+
+	@Test
+	void testSameContentNotWritten() throws Exception {
+		Path outputFile = rootPath.resolve("works.md");
+		SemanticWriter.with(TestUtilities.works(3)).usingTemplate(templatePath).write(outputFile);
+		Files.setLastModifiedTime(outputFile, OLD);
+
+		// Not in the cache, so the content is compared
+		RenderCache renderCache = RenderCache.create();
+		SemanticWriter.with(TestUtilities.works(3)).usingTemplate(templatePath).skipUnchanged(renderCache).write(outputFile);
+		assertEquals(0, renderCache.writtenCount());
+		assertEquals(1, renderCache.skippedCount());
+		assertEquals(1, renderCache.size());
+		assertEquals(OLD, Files.getLastModifiedTime(outputFile));
+
+		// A file changed since it was written is regenerated
+		Files.writeString(outputFile, "Changed");
+		SemanticWriter.with(TestUtilities.works(3)).usingTemplate(templatePath).skipUnchanged(renderCache).write(outputFile);
+		assertEquals(1, renderCache.writtenCount());
+		TestUtilities.assertEqualsResource(TestUtilities.worksExpected(3), Files.readString(outputFile));
+	}
+
+	@Test
+	void testBatch() throws Exception {
+		RenderCache renderCache = RenderCache.create();
+		List<Works> works = Stream.of(0, 2, 3, 12).map(TestUtilities::works).collect(Collectors.toList());
+
+		for (int run = 0; run < 2; run++) {
+			BatchResult<Works> result = SemanticBatchWriter.with(works)
+			                                               .usingTemplate(templatePath)
+			                                               .skipUnchanged(renderCache)
+			                                               .write(w -> rootPath.resolve(w.numberReferences() + ".md"));
+			assertEquals(4, result.successCount());
+		}
+		assertEquals(4, renderCache.writtenCount());
+		assertEquals(4, renderCache.skippedCount());
+
+		for (Works w: works) {
+			TestUtilities.assertEqualsResource(TestUtilities.worksExpected(w.numberReferences()), Files.readString(rootPath.resolve(w.numberReferences() + ".md")));
+		}
+	}
+
+	@Test
+	void testUpdate() throws Exception {
+		Path inputFile = rootPath.resolve("works.md");
+		Path outputFile = rootPath.resolve("updated.md");
+		SemanticWriter.with(TestUtilities.works(2)).usingTemplate(templatePath).write(inputFile);
+
+		RenderCache renderCache = RenderCache.create();
+		SemanticWriter.with(TestUtilities.works(2)).usingFile(inputFile).skipUnchanged(renderCache).write(outputFile);
+		SemanticWriter.with(TestUtilities.works(2)).usingFile(inputFile).skipUnchanged(renderCache).write(outputFile);
+		assertEquals(1, renderCache.writtenCount());
+		assertEquals(1, renderCache.skippedCount());
+
+		// The same as updating without the render cache
+		StringWriter expected = new StringWriter();
+		SemanticWriter.with(TestUtilities.works(2)).usingFile(inputFile).write(expected);
+		assertEquals(expected.toString(), Files.readString(outputFile));
+	}
+
+	@Test
+	void testFingerprint() throws Exception {
+		ValueMap a = ValueMap.empty().put("title", "Plato").put("id", "1");
+		ValueMap b = ValueMap.empty().put("id", "1").put("title", "Plato");
+
+		assertEquals(RenderCache.fingerprint(a), RenderCache.fingerprint(b));
+		assertNotEquals(RenderCache.fingerprint(a), RenderCache.fingerprint(ValueMap.empty().put("title", "Plato1").put("id", "")));
+		assertNotEquals(RenderCache.fingerprint(ValueMap.from(TestUtilities.works(2))), RenderCache.fingerprint(ValueMap.from(TestUtilities.works(3))));
+	}
+
+	@Test
+	void testValueMapNotChanged() throws Exception {
+		ValueMap valueMap = new ValueMap().put("title", "The Works of Plato").put("author", "Plato");
+		List<Reference> references = List.of(new Reference("Apology", new URL("https://en.wikisource.org/wiki/Apology")));
+
+		// The entries of the lazy list are added to a copy of the value map, not to the value map of the caller
+		SemanticWriter.with(valueMap).usingTemplate(templatePath).withList("references", references.iterator())
+		              .skipUnchanged(RenderCache.create()).write(rootPath.resolve("works.md"));
+
+		assertEquals(Set.of("title", "author"), valueMap.fieldNames());
+		assertTrue(Files.readString(rootPath.resolve("works.md")).contains("* [Apology](https://en.wikisource.org/wiki/Apology)"));
+	}
+
+}
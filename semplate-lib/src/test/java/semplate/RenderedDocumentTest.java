@@ -0,0 +1,111 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import semplate.valuemap.ValueMap;
+
+class RenderedDocumentTest {
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/files");  // Test files here
+
+	private Path rootPath;
+	private CompiledTemplate template;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		rootPath = files.path();
+
+		Path templatePath = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templatePath);
+		template = CompiledTemplate.compile(templatePath);
+	}
+
+	@Test
+	void testRender() throws Exception {
+		RenderedDocument document = RenderedDocument.render(template, TestUtilities.works(12));
+
+		TestUtilities.assertEqualsResource(TestUtilities.worksExpected(12), document.text());
+		assertEquals(4 + 12, document.renderedCount());  // The list directive is not counted
+		assertEquals(0, document.reusedCount());
+
+		document.write(rootPath.resolve("works.md"));
+		TestUtilities.assertEqualsResource(TestUtilities.worksExpected(12), Files.readString(rootPath.resolve("works.md")));
+	}
+
+	@Test
+	void testUpdateChangedValueMap() throws Exception {
+		ValueMap valueMap = new ValueMap().put("title", "The Works of Plato").put("author", "Plato");
+		RenderedDocument document = RenderedDocument.render(template, valueMap);
+
+		// The document keeps a snapshot of the values, so changing the value map is an update
+		valueMap.put("title", "The Dialogues of Plato");
+		RenderedDocument updated = document.update(valueMap);
+
+		assertTrue(updated.text().contains("# The Dialogues of Plato"));
+		assertEquals(1, updated.renderedCount());
+		assertTrue(document.text().contains("# The Works of Plato"));
+	}
+
+	@Test
+	void testUnchanged() throws Exception {
+		RenderedDocument document = RenderedDocument.render(template, TestUtilities.works(3)).update(TestUtilities.works(3));
+
+		TestUtilities.assertEqualsResource(TestUtilities.worksExpected(3), document.text());
+		assertEquals(0, document.renderedCount());
+		assertEquals(4 + 3, document.reusedCount());
+	}
+
+	@Test
+	void testFieldChanged() throws Exception {
+		Works works = TestUtilities.works(3);
+		RenderedDocument document = RenderedDocument.render(template, works);
+
+		works.setTitle("The Dialogues of Plato");
+		document = document.update(works);
+
+		assertTrue(document.text().contains("# The Dialogues of Plato"), document.text());
+		assertEquals(RenderedDocument.render(template, works).text(), document.text());
+		assertEquals(1, document.renderedCount());
+		assertEquals(3 + 3, document.reusedCount());
+	}
+
+	@Test
+	void testListEntriesChanged() throws Exception {
+		Works works = TestUtilities.works(3);
+		RenderedDocument document = RenderedDocument.render(template, works);
+
+		works.getReference(1).setTitle("Crito");
+		works.addReference(new Reference("Phaedo", new URL("https://en.wikisource.org/wiki/Phaedo")));
+		document = document.update(works);
+
+		TestUtilities.assertEqualsResource("works_changed_expected.md", document.text());
+		assertEquals(2, document.renderedCount());  // The changed and the added entry
+
+		works.removeReference(0);
+		document = document.update(works);
+		TestUtilities.assertEqualsResource("works_removed_expected.md", document.text());
+	}
+
+	@Test
+	void testDependencies() throws Exception {
+		BlockDependencies dependencies = template.dependencies();
+
+		ValueMap valueMap = new ValueMap().put("title", "The Works of Plato").put("author", "Plato");
+
+		assertSame(dependencies, template.dependencies());
+		assertEquals(BitSet.valueOf(new long[] {0b10}), dependencies.changedBlocks(valueMap, new ValueMap().put("title", "Republic").put("author", "Plato")));
+		assertEquals(BitSet.valueOf(new long[] {0b100}), dependencies.changedBlocks(valueMap, new ValueMap().put("title", "The Works of Plato").put("author", "Aristotle")));
+		assertEquals(new BitSet(), dependencies.changedBlocks(valueMap, new ValueMap().put("title", "The Works of Plato").put("author", "Plato")));
+	}
+
+}
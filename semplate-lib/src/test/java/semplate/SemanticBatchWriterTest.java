@@ -0,0 +1,111 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class SemanticBatchWriterTest {
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/files");  // Test files here
+
+	private Path rootPath;
+	private Path templateFile;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		rootPath = files.path();
+
+		templateFile = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templateFile);
+	}
+
+	@Test
+	void testWriteBatch() throws Exception {
+		List<Works> batch = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			batch.add(volume(i));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			BatchResult<Works> result = SemanticBatchWriter.with(batch)
+					                                       .usingTemplate(templateFile)
+					                                       .usingExecutor(executor)
+					                                       .maxInFlight(3)
+					                                       .write(w -> rootPath.resolve("works_" + w.getId() + ".md"));
+
+			assertEquals(20, result.successCount());
+			assertEquals(0, result.failureCount());
+
+			// Results are in the order of the data objects
+			for (int i = 0; i < 20; i++) {
+				assertSame(batch.get(i), result.items().get(i).dataObject());
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+
+		// Each file is the same as the one written for a single data object
+		for (int i = 0; i < 20; i++) {
+			Path expectedFile = rootPath.resolve("expected_" + i + ".md");
+			SemanticWriter.with(volume(i)).usingTemplate(templateFile).write(expectedFile);
+
+			assertEquals(Files.readString(expectedFile), Files.readString(rootPath.resolve("works_" + i + ".md")));
+		}
+	}
+
+	@Test
+	void testWriteStreamWithFailures() throws Exception {
+		CompiledTemplate template = CompiledTemplate.compile(templateFile);
+
+		AtomicBoolean closed = new AtomicBoolean();
+		BatchResult<Works> result = SemanticBatchWriter.with(IntStream.range(0, 10).mapToObj(i -> volume(i)).onClose(() -> closed.set(true)))
+				                                       .usingTemplate(template)
+				                                       .write(w -> {
+				                                    	   if (w.getId() % 3 == 0) {
+				                                    		   return rootPath.resolve("missing_directory").resolve("works_" + w.getId() + ".md");
+				                                    	   }
+				                                    	   return rootPath.resolve("works_" + w.getId() + ".md");
+				                                       });
+
+		assertTrue(closed.get());  // The stream is closed when the batch has been written
+		assertEquals(10, result.items().size());
+		assertEquals(4, result.failureCount());
+		assertEquals(6, result.successCount());
+
+		for (BatchResult.Item<Works> failure: result.failures()) {
+			assertEquals(0, failure.dataObject().getId() % 3);
+			assertTrue(failure.failure().isPresent());
+			assertFalse(Files.exists(failure.outputFile().get()));
+		}
+	}
+
+	@Test
+	void testNoTemplate() {
+		SemanticBatchWriter<Works> writer = SemanticBatchWriter.with(List.of(volume(1)));
+
+		assertThrows(IllegalStateException.class, () -> writer.write(w -> rootPath.resolve("works.md")));
+	}
+
+	/* The works with the references "Dialogue 0" and "Dialogue 1" as a volume with the id */
+	private Works volume(int id) {
+		Works works = TestUtilities.works(2);
+		works.setId(id);
+		return works;
+	}
+
+}
@@ -0,0 +1,101 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class SemanticFanOutWriterTest {
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/files");  // Test files here
+
+	private Path rootPath;
+	private Path markdownTemplate;
+	private Path asciiDocTemplate;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		rootPath = files.path();
+
+		markdownTemplate = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", markdownTemplate);
+
+		asciiDocTemplate = rootPath.resolve("list_template.adoc");
+		Files.writeString(asciiDocTemplate, "//{@template.comment}}\n"
+		                                    + "//{@template.delimiter.pair:\"[]\"}}\n\n"
+		                                    + "= {{title}}\n\n"
+		                                    + "By: {{author}} {{id}}\n\n"
+		                                    + "* [{{references.*.title}}] {{references.*.link}}\n");
+	}
+
+	@Test
+	void testSameAsSeparateWrites() throws Exception {
+		Works works = TestUtilities.works(25);
+
+		BatchResult<Works> result = SemanticFanOutWriter.with(works)
+		                                                .usingTemplate(markdownTemplate, rootPath.resolve("works.md"))
+		                                                .usingTemplate(asciiDocTemplate, rootPath.resolve("works.adoc"))
+		                                                .write();
+
+		assertEquals(2, result.successCount());
+		assertEquals(rootPath.resolve("works.md"), result.items().get(0).outputFile().get());
+		assertEquals(rootPath.resolve("works.adoc"), result.items().get(1).outputFile().get());
+
+		SemanticWriter.with(works).usingTemplate(markdownTemplate).write(rootPath.resolve("expected.md"));
+		SemanticWriter.with(works).usingTemplate(asciiDocTemplate).write(rootPath.resolve("expected.adoc"));
+
+		assertEquals(Files.readString(rootPath.resolve("expected.md")), Files.readString(rootPath.resolve("works.md")));
+		assertEquals(Files.readString(rootPath.resolve("expected.adoc")), Files.readString(rootPath.resolve("works.adoc")));
+	}
+
+	@Test
+	void testLazyListExpandedForEachTemplate() throws Exception {
+		StreamedWorks streamedWorks = new StreamedWorks("The Works of Plato", "Plato",
+				IntStream.range(0, 3).mapToObj(i -> TestUtilities.reference(i)));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			BatchResult<StreamedWorks> result = SemanticFanOutWriter.with(streamedWorks)
+			                                                        .usingTemplate(markdownTemplate, rootPath.resolve("a.md"))
+			                                                        .usingTemplate(markdownTemplate, rootPath.resolve("b.md"))
+			                                                        .usingExecutor(executor)
+			                                                        .write();
+			assertEquals(2, result.successCount());
+		} finally {
+			executor.shutdown();
+		}
+
+		SemanticWriter.with(TestUtilities.works(3)).usingTemplate(markdownTemplate).write(rootPath.resolve("expected.md"));
+
+		String expected = Files.readString(rootPath.resolve("expected.md"));
+		assertEquals(expected, Files.readString(rootPath.resolve("a.md")));
+		assertEquals(expected, Files.readString(rootPath.resolve("b.md")));
+	}
+
+	@Test
+	void testFailureDoesNotStopOthers() throws Exception {
+		BatchResult<Works> result = SemanticFanOutWriter.with(TestUtilities.works(2))
+		                                                .usingTemplate(markdownTemplate, rootPath.resolve("missing").resolve("works.md"))
+		                                                .usingTemplate(asciiDocTemplate, rootPath.resolve("works.adoc"))
+		                                                .write();
+
+		assertEquals(1, result.failureCount());
+		assertEquals(rootPath.resolve("missing").resolve("works.md"), result.failures().get(0).outputFile().get());
+		assertTrue(Files.exists(rootPath.resolve("works.adoc")));
+	}
+
+	@Test
+	void testNoTemplate() {
+		assertThrows(IllegalStateException.class, () -> SemanticFanOutWriter.with(TestUtilities.works(0)).write());
+		assertThrows(NullPointerException.class, () -> SemanticFanOutWriter.with(null));
+	}
+
+}
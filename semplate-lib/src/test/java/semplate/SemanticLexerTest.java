@@ -0,0 +1,128 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class SemanticLexerTest {
+
+	private static final String[] LINES = {
+			"<!--{{references.0.title:pattern=\"[%s]\"}}{{references.0.link:pattern=\"(%s)\"}}-->",
+			"<!--{{author:pattern=\"<span>%s</span>\"}}{{title:pattern=\"<span>%s</span>\"}}-->",
+			"<!--{{id:pattern=\"%s\"}}-->",
+			"<!--{@list-template=\"* [{{references.*.title}}]({{references.*.link}})\"}}-->",
+			"<!--{@template.delimiter.pair:\"[]\"}}--> <!--{@template.delimiter.start:\"<<\"}}-->",
+			"<!--{@template.comment}}-->",
+			"* [{{references.*.title}}] ({{references.*.link}})",
+			"{{{title}}} and {{}} and {{a}b}} and {{last",
+			"{{a}}{{b:pattern=\"x%sy\"}}",
+			"{{a:pattern=\"%s\n\"}}{{b:pattern=\"%s\"}}",
+			"{{broken:pattern=\"no value\"}}{{c:pattern=\"%s%s\"}}",
+			"{{field\nover two lines}} {@no end",
+			"}} before {{",
+			"",
+	};
+
+	@Test
+	void testFieldsAsPattern() {
+		for (String line: LINES) {
+			List<String> expected = new ArrayList<>();
+			Matcher matcher = Patterns.FIELD_PATTERN.matcher(line);
+			while (matcher.find()) {
+				expected.add(matcher.start() + ":" + matcher.end() + ":" + matcher.group("fieldname"));
+			}
+
+			List<String> actual = SemanticLexer.fields(line).stream()
+					                                        .map(field -> field.start() + ":" + field.end() + ":" + field.name())
+					                                        .collect(Collectors.toList());
+
+			assertEquals(expected, actual, line);
+		}
+	}
+
+	@Test
+	void testFieldSpecsAsPattern() {
+		for (String line: LINES) {
+			List<String> expected = new ArrayList<>();
+			Matcher matcher = Patterns.FIELD_SPEC_PATTERN.matcher(line);
+			while (matcher.find()) {
+				expected.add(matcher.group("field") + "|" + matcher.group("start") + "|" + matcher.group("end"));
+			}
+
+			List<String> actual = SemanticLexer.fieldSpecs(line).stream()
+					                                            .map(field -> field.fieldName() + "|" + field.delimiter().start().orElse("") + "|" + field.delimiter().end().orElse(""))
+					                                            .collect(Collectors.toList());
+
+			assertEquals(expected, actual, line);
+		}
+	}
+
+	@Test
+	void testDirectives() {
+		List<SemanticLexer.Token> directives = SemanticLexer.directives(LINES[4]);
+		assertEquals(2, directives.size());
+		assertEquals("template.delimiter.pair", directives.get(0).name());
+		assertEquals("\"[]\"", directives.get(0).value().get());
+		assertEquals("<<", directives.get(1).quotedValue().get());
+
+		SemanticLexer.Token listDirective = SemanticLexer.directive(LINES[3], "list-template").get();
+		assertEquals("* [{{references.*.title}}]({{references.*.link}})", listDirective.quotedValue().get());
+		assertEquals(LINES[3].length() - 3, listDirective.end());
+
+		SemanticLexer.Token commentDirective = SemanticLexer.directive(LINES[5], "template.comment").get();
+		assertEquals(4, commentDirective.start());
+		assertFalse(commentDirective.value().isPresent());
+
+		assertTrue(SemanticLexer.containsDirective(LINES[4], "template.delimiter"));
+		assertFalse(SemanticLexer.containsDirective(LINES[4], "template.delim"));
+		assertFalse(SemanticLexer.containsDirective(LINES[0], "template.comment"));
+		assertFalse(SemanticLexer.containsDirective(LINES[11], "no"));
+		assertTrue(SemanticLexer.directives("<!--{@-->").isEmpty());
+		assertTrue(SemanticLexer.directives("<--{{template.delimiter.pair:\"xx\"}}-->").isEmpty());
+	}
+
+	@Test
+	void testDelimiterDirectivesAsPattern() {
+		for (String line: LINES) {
+			Matcher matcher = Patterns.DELIMITER_DIRECTIVE_PATTERN.matcher(line);
+			assertEquals(matcher.find(), SemanticLexer.containsDirective(line, "template.delimiter"), line);
+		}
+	}
+
+	@Test
+	void testCommentDirectivesAsPattern() {
+		for (String line: LINES) {
+			Matcher matcher = Patterns.COMMENT_DIRECTIVE_PATTERN.matcher(line);
+			Integer expected = matcher.find() ? matcher.start() : null;
+
+			assertEquals(expected, SemanticLexer.directive(line, "template.comment").map(SemanticLexer.Token::start).orElse(null), line);
+		}
+	}
+
+	@Test
+	void testIsSemanticLine() {
+		for (String line: LINES) {
+			assertEquals(line.contains("{{") && line.contains("}}"), SemanticLexer.isSemanticLine(line), line);
+		}
+		assertFalse(SemanticLexer.isSemanticLine("{}{}"));
+		assertFalse(SemanticLexer.isSemanticLine("{"));
+	}
+
+	@Test
+	void testFieldSpec() {
+		FieldSpec field = SemanticLexer.fieldSpec("{{text:pattern=\"Preamble %s postamble\"}}");
+		assertEquals("text", field.fieldName());
+		assertEquals("Preamble ", field.delimiter().start().get());
+		assertEquals(" postamble", field.delimiter().end().get());
+
+		assertThrows(IllegalArgumentException.class, () -> SemanticLexer.fieldSpec("{{text:pattern=\"%s\"}} "));
+		assertThrows(IllegalArgumentException.class, () -> SemanticLexer.fieldSpec(" {{text:pattern=\"%s\"}}"));
+		assertThrows(IllegalArgumentException.class, () -> SemanticLexer.fieldSpec("{{text}}"));
+	}
+
+}
@@ -0,0 +1,170 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class ShardingTest {
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/files");  // Test files here
+
+	private Path rootPath;
+	private CompiledTemplate template;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		rootPath = files.path();
+
+		Path templatePath = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templatePath);
+		template = CompiledTemplate.compile(templatePath);
+	}
+
+	@Test
+	void testByEntries() throws Exception {
+		Works works = TestUtilities.works(25);
+		Path indexFile = rootPath.resolve("works.md");
+
+		SemanticWriter.with(works).usingTemplate(template).sharded(Sharding.byEntries(10)).write(indexFile);
+
+		for (int i = 1; i <= 3; i++) {
+			Path shardFile = rootPath.resolve("works-references-" + i + ".md");
+			assertTrue(Files.exists(shardFile));
+			assertEquals(i < 3 ? 10 : 5, entryCount(shardFile));
+		}
+		assertFalse(Files.exists(rootPath.resolve("works-references-4.md")));
+
+		String index = Files.readString(indexFile, StandardCharsets.UTF_8);
+		assertTrue(index.contains("<!--{@list-shard:\"works-references-1.md\"}}-->"));
+		assertTrue(index.contains("[works-references-3.md](works-references-3.md)"));
+		assertTrue(index.contains("# The Works of Plato"));
+		assertTrue(index.contains("The above can be changed at any time."));
+		assertFalse(index.contains("Dialogue"));
+	}
+
+	@Test
+	void testBySize() throws Exception {
+		Works works = TestUtilities.works(100);
+		Path indexFile = rootPath.resolve("works.md");
+
+		SemanticWriter.with(works).usingTemplate(template).sharded(Sharding.bySize(1000)).write(indexFile);
+
+		int entries = 0;
+		int number = 1;
+		for (Path shardFile = Sharding.shardFile(indexFile, "references", number); Files.exists(shardFile);
+				shardFile = Sharding.shardFile(indexFile, "references", ++number)) {
+			assertTrue(Files.size(shardFile) <= 1000);
+			entries += entryCount(shardFile);
+		}
+		assertTrue(number > 2);
+		assertEquals(100, entries);
+
+		// A shard contains at least one entry
+		SemanticWriter.with(TestUtilities.works(3)).usingTemplate(template).sharded(Sharding.bySize(1)).write(rootPath.resolve("small.md"));
+		for (int i = 1; i <= 3; i++) {
+			assertEquals(1, entryCount(rootPath.resolve("small-references-" + i + ".md")));
+		}
+	}
+
+	@Test
+	void testReadReassembles() throws Exception {
+		Works works = TestUtilities.works(25);
+		Path indexFile = rootPath.resolve("works.md");
+		Path outputFile = rootPath.resolve("unsharded.md");
+
+		SemanticWriter.with(works).usingTemplate(template).sharded(Sharding.byEntries(7)).write(indexFile);
+		SemanticWriter.with(works).usingTemplate(template).write(outputFile);
+
+		Works expected = (Works) SemanticReader.with(Works.class).usingFile(outputFile).read();
+		Works actual = (Works) SemanticReader.with(Works.class).usingFile(indexFile).read();
+
+		assertEquals(expected.getTitle(), actual.getTitle());
+		assertEquals(expected.getAuthor(), actual.getAuthor());
+		assertEquals(25, actual.numberReferences());
+		assertEquals(titles(expected), titles(actual));
+	}
+
+	@Test
+	void testSharedWriter() throws Exception {
+		SemanticTemplateWriter writer = SemanticWriter.withTemplate(template).sharded(Sharding.byEntries(5));
+
+		writer.write(TestUtilities.works(6), rootPath.resolve("first.md"));
+		writer.write(TestUtilities.works(0), rootPath.resolve("second.md"));
+
+		assertEquals(5, entryCount(rootPath.resolve("first-references-1.md")));
+		assertEquals(1, entryCount(rootPath.resolve("first-references-2.md")));
+		assertFalse(Files.exists(rootPath.resolve("second-references-1.md")));
+		assertFalse(Files.readString(rootPath.resolve("second.md")).contains("list-shard"));
+
+		Works works = (Works) SemanticReader.with(Works.class).usingFile(rootPath.resolve("second.md")).read();
+		assertEquals(0, works.numberReferences());
+	}
+
+	@Test
+	void testShardFile() {
+		Path indexFile = rootPath.resolve("works.md");
+		assertEquals(rootPath.resolve("works-references-2.md"), Sharding.shardFile(indexFile, "references", 2));
+		assertEquals(rootPath.resolve("works-references-1"), Sharding.shardFile(rootPath.resolve("works"), "references", 1));
+	}
+
+	@Test
+	void testReferencedShard() throws Exception {
+		Path indexFile = rootPath.resolve("works.md");
+		assertEquals(rootPath.resolve("works-references-1.md"), Sharding.referencedShard(indexFile, "works-references-1.md"));
+
+		for (String fileName: new String[] {"../secret.md", "/secret.md", "sub/works-references-1.md", "..", ".", ""}) {
+			assertThrows(ReadException.class, () -> Sharding.referencedShard(indexFile, fileName), fileName);
+		}
+	}
+
+	@Test
+	void testShardOutsideDirectory() throws Exception {
+		Files.createDirectory(rootPath.resolve("index"));
+		Path indexFile = rootPath.resolve("index/works.md");
+		Files.writeString(rootPath.resolve("secret.md"), String.join("\n",
+				"<!--{@template.comment}}-->",
+				"",
+				"<!--{{title:pattern=\"%s\"}}-->",
+				"Secret"));
+
+		for (String shard: new String[] {"../secret.md", "/files/secret.md"}) {
+			Files.writeString(indexFile, "<!--{@list-shard:\"" + shard + "\"}}-->\n");
+
+			assertThrows(ReadException.class, () -> SemanticReader.with(Works.class).usingFile(indexFile).read());
+			assertThrows(ReadException.class, () -> SemanticReader.with(Works.class).usingFile(indexFile).memoryMapped().read());
+			try (Stream<Reference> references = SemanticReader.with(Reference.class).usingFile(indexFile).streamList("references")) {
+				assertThrows(UncheckedReadException.class, () -> references.count());
+			}
+		}
+	}
+
+	@Test
+	void testInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> Sharding.byEntries(0));
+		assertThrows(IllegalArgumentException.class, () -> Sharding.bySize(0));
+		assertThrows(NullPointerException.class, () -> SemanticWriter.withTemplate(template).sharded(null));
+	}
+
+	private static long entryCount(Path shardFile) throws Exception {
+		return Files.readAllLines(shardFile).stream().filter(line -> line.startsWith("<!--{{references.")).count();
+	}
+
+	private static Set<String> titles(Works works) {
+		Set<String> titles = new HashSet<>();
+		for (int i = 0; i < works.numberReferences(); i++) {
+			titles.add(works.getReference(i).getTitle());
+		}
+		return titles;
+	}
+
+}
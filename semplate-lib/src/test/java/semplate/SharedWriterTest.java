@@ -0,0 +1,85 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class SharedWriterTest {
+
+	private static final int[] NUMBER_REFERENCES = {0, 2, 3, 12};
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/files");  // Test files here
+
+	private Path rootPath;
+	private Path templatePath;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		rootPath = files.path();
+
+		templatePath = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templatePath);
+	}
+
+	@Test
+	void testReuse() throws Exception {
+		SemanticTemplateWriter writer = SemanticWriter.withTemplate(templatePath);
+
+		for (int numberReferences: new int[] {0, 2, 3}) {
+			StringWriter output = new StringWriter();
+			writer.write(TestUtilities.works(numberReferences), output);
+			TestUtilities.assertEqualsResource(TestUtilities.worksExpected(numberReferences), output.toString());
+		}
+
+		writer.write(TestUtilities.works(12), rootPath.resolve("works.md"));
+		TestUtilities.assertEqualsResource(TestUtilities.worksExpected(12), Files.readString(rootPath.resolve("works.md")));
+	}
+
+	@Test
+	void testSharedBetweenThreads() throws Exception {
+		for (SemanticTemplateWriter writer: List.of(SemanticWriter.withTemplate(templatePath),
+		                                            SemanticWriter.withTemplate(templatePath).specialized())) {
+			ExecutorService executor = Executors.newFixedThreadPool(8);
+			try {
+				List<Future<String>> futures = new ArrayList<>();
+				for (int i = 0; i < 40; i++) {
+					Works works = TestUtilities.works(NUMBER_REFERENCES[i % NUMBER_REFERENCES.length]);
+					futures.add(executor.submit(() -> {
+						ByteArrayOutputStream output = new ByteArrayOutputStream();
+						writer.write(works, output, StandardCharsets.UTF_8);
+						return output.toString(StandardCharsets.UTF_8);
+					}));
+				}
+				for (int i = 0; i < 40; i++) {
+					TestUtilities.assertEqualsResource(TestUtilities.worksExpected(NUMBER_REFERENCES[i % NUMBER_REFERENCES.length]), futures.get(i).get());
+				}
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	@Test
+	void testNoDataObject() throws Exception {
+		SemanticTemplateWriter writer = SemanticWriter.withTemplate(templatePath);
+
+		assertThrows(IllegalStateException.class, () -> writer.write(new StringWriter()));
+		assertThrows(NullPointerException.class, () -> writer.write(null, new StringWriter()));
+		assertThrows(NullPointerException.class, () -> SemanticWriter.withTemplate((CompiledTemplate) null));
+	}
+
+}
@@ -0,0 +1,165 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class SpecializedRendererTest {
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/files");  // Test files here
+
+	private Path rootPath;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		rootPath = files.path();
+	}
+
+	@Test
+	void testSimpleTemplates() throws Exception {
+		Work work = new Work();
+		work.setId(4711);
+		work.setTitle("The Republic");
+		work.setAuthor("Plato");
+		work.setTranslator("Benjamin Jowett");
+		work.setSource("Wikisource");
+		work.setSourceLink(new URL("https://en.wikisource.org/wiki/The_Republic"));
+
+		assertSameAsInterpreted("simple_template.md", work);
+		assertSameAsInterpreted("delimiter_directives.md", work);
+		assertSameAsInterpreted("all_types_template.md", work);
+	}
+
+	@Test
+	void testListTemplate() throws Exception {
+		// More than 10 entries to check that the entries are in the same order
+		for (int numberReferences: new int[] {0, 3, 25}) {
+			assertSameAsInterpreted("list_template.md", TestUtilities.works(numberReferences));
+		}
+	}
+
+	@Test
+	void testArrayTemplate() throws Exception {
+		References references = new References(3);
+		for (int i = 0; i < 3; i++) {
+			references.add(new Reference("Reference " + i, new URL("https://en.wikisource.org/wiki/Reference_" + i)));
+		}
+
+		assertSameAsInterpreted("array_template.md", references);
+	}
+
+	@Test
+	void testListTypesAndIndexedFields() throws Exception {
+		Path templateFile = rootPath.resolve("indexed_template.md");
+		Files.writeString(templateFile, "<!--{@template.comment}}-->\n"
+		                                + "<!--{@template.delimiter.pair:\"[]\"}}-->\n\n"
+		                                + "First [{{references.0.title}}], twelfth [{{references.12.title}}], "
+		                                + "not an index [{{references.01.title}}], missing [{{references.99.title}}]\n\n"
+		                                + "* [{{references.*.title}}]\n");
+		CompiledTemplate template = CompiledTemplate.compile(templateFile);
+		assertTrue(template.specializedFor(Works.class).isPresent());
+
+		Works works = TestUtilities.works(25);
+		for (List<Reference> references: List.of(new ArrayList<>(works.references), new LinkedList<>(works.references))) {
+			works.references = references;
+
+			StringWriter writer = new StringWriter();
+			SemanticWriter.with(works).usingTemplate(template).specialized().write(writer);
+			assertEquals(interpreted(template, works), writer.toString(), references.getClass().getName());
+		}
+
+		References array = new References(25);
+		for (int i = 0; i < 25; i++) {
+			array.add(TestUtilities.reference(i));
+		}
+		assertSameAsInterpreted("array_template.md", array);
+	}
+
+	@Test
+	void testNestedTemplate() throws Exception {
+		Linked linked = new Linked();
+		linked.setId(9999);
+		Link link = new Link();
+		link.setId(4711);
+		link.setReference(linked);
+
+		assertSameAsInterpreted("link_template.md", link);
+	}
+
+	@Test
+	void testWriteTargets() throws Exception {
+		CompiledTemplate template = template("list_template.md");
+		String expected = interpreted(template, TestUtilities.works(12));
+
+		Path outputFile = rootPath.resolve("works.md");
+		SemanticWriter.with(TestUtilities.works(12)).usingTemplate(template).specialized().write(outputFile);
+		assertEquals(expected, Files.readString(outputFile));
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		SemanticWriter.with(TestUtilities.works(12)).usingTemplate(template).specialized().write(outputStream, StandardCharsets.UTF_16);
+		assertEquals(expected, new String(outputStream.toByteArray(), StandardCharsets.UTF_16));
+	}
+
+	@Test
+	void testCreatedOncePerClass() throws Exception {
+		CompiledTemplate template = template("list_template.md");
+
+		assertTrue(template.specializedFor(Works.class).isPresent());
+		assertSame(template.specializedFor(Works.class).get(), template.specializedFor(Works.class).get());
+	}
+
+	@Test
+	void testFallbackForLazyLists() throws Exception {
+		CompiledTemplate template = template("list_template.md");
+
+		assertFalse(template.specializedFor(StreamedWorks.class).isPresent());
+
+		StreamedWorks streamedWorks = new StreamedWorks("The Works of Plato", "Plato",
+				IntStream.range(0, 5).mapToObj(i -> TestUtilities.reference(i)));
+
+		StringWriter writer = new StringWriter();
+		SemanticWriter.with(streamedWorks).usingTemplate(template).specialized().write(writer);
+
+		assertEquals(interpreted(template, TestUtilities.works(5)), writer.toString());
+	}
+
+	private void assertSameAsInterpreted(String templateFileName, Object dataObject) throws Exception {
+		CompiledTemplate template = template(templateFileName);
+
+		assertTrue(template.specializedFor(dataObject.getClass()).isPresent(), templateFileName);
+
+		StringWriter writer = new StringWriter();
+		SemanticWriter.with(dataObject).usingTemplate(template).specialized().write(writer);
+
+		assertEquals(interpreted(template, dataObject), writer.toString(), templateFileName);
+	}
+
+	private String interpreted(CompiledTemplate template, Object dataObject) throws Exception {
+		StringWriter writer = new StringWriter();
+		SemanticWriter.with(dataObject).usingTemplate(template).write(writer);
+		return writer.toString();
+	}
+
+	private CompiledTemplate template(String templateFileName) throws Exception {
+		Path templateFile = rootPath.resolve(templateFileName);
+		if (Files.notExists(templateFile)) {
+			TestUtilities.copyFromResource(templateFileName, templateFile);
+		}
+		return CompiledTemplate.compile(templateFile);
+	}
+
+}
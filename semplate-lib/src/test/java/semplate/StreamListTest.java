@@ -0,0 +1,117 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import semplate.valuemap.ValueMap;
+
+class StreamListTest {
+
+	@TempDir
+	Path rootPath;
+
+	@Test
+	void testStreamList() throws Exception {
+		Path markdownPath = rootPath.resolve("list_expected.md");
+		TestUtilities.copyFromResource("list_expected.md", markdownPath);
+
+		Works works = (Works) SemanticReader.with(Works.class).usingFile(markdownPath).read();
+
+		try (Stream<Reference> references = SemanticReader.with(Reference.class).usingFile(markdownPath).streamList("references")) {
+			List<Reference> streamed = references.collect(Collectors.toList());
+
+			assertEquals(works.numberReferences(), streamed.size());
+			for (int i = 0; i < streamed.size(); i++) {
+				assertEquals(works.getReference(i).getTitle(), streamed.get(i).getTitle());
+				assertEquals(works.getReference(i).getLink(), streamed.get(i).getLink());
+			}
+		}
+
+		try (Stream<ValueMap> references = SemanticReader.with(ValueMap.class).usingFile(markdownPath).streamList("references")) {
+			assertEquals(List.of("Apology", "Charmides", "The Republic"),
+					     references.map(entry -> entry.getValue("title").get()).collect(Collectors.toList()));
+		}
+
+		// A field that is not a list has no entries
+		try (Stream<Reference> references = SemanticReader.with(Reference.class).usingFile(markdownPath).streamList("title")) {
+			assertEquals(0, references.count());
+		}
+	}
+
+	@Test
+	void testShards() throws Exception {
+		Path templatePath = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templatePath);
+		Works works = new Works();
+		works.setTitle("The Works of Plato");
+		for (int i = 0; i < 10; i++) {
+			works.addReference(new Reference("Dialogue " + i, new URL("https://en.wikisource.org/wiki/Dialogue_" + i)));
+		}
+		Path indexFile = rootPath.resolve("works.md");
+		SemanticWriter.with(works).usingTemplate(templatePath).sharded(Sharding.byEntries(4)).write(indexFile);
+
+		try (Stream<Reference> references = SemanticReader.with(Reference.class).usingFile(indexFile).streamList("references")) {
+			assertEquals(IntStream.range(0, 10).mapToObj(i -> "Dialogue " + i).collect(Collectors.toList()),
+					     references.map(Reference::getTitle).collect(Collectors.toList()));
+		}
+
+		// Only as many entries as consumed are read
+		try (Stream<Reference> references = SemanticReader.with(Reference.class).usingFile(indexFile).streamList("references")) {
+			assertEquals("Dialogue 6", references.skip(6).findFirst().get().getTitle());
+		}
+	}
+
+	@Test
+	void testClose() throws Exception {
+		Path markdownPath = rootPath.resolve("list_expected.md");
+		TestUtilities.copyFromResource("list_expected.md", markdownPath);
+
+		ListEntryReader reader = new ListEntryReader(markdownPath, "references");
+		assertEquals("Apology", reader.next().getValue("title").get());
+
+		reader.close();
+		assertFalse(reader.hasNext());
+
+		// Reading all entries closes the reader
+		Iterator<ValueMap> entries = new ListEntryReader(markdownPath, "references");
+		entries.forEachRemaining(entry -> {});
+		assertFalse(entries.hasNext());
+		assertThrows(NoSuchElementException.class, () -> entries.next());
+	}
+
+	@Test
+	void testErrors() throws Exception {
+		Path missingPath = rootPath.resolve("missing.md");
+		Stream<Reference> missing = SemanticReader.with(Reference.class).usingFile(missingPath).streamList("references");
+		assertThrows(UncheckedReadException.class, () -> missing.count());
+		missing.close();
+
+		Path indexFile = rootPath.resolve("works.md");
+		Files.writeString(indexFile, String.join("\n",
+				"<!--{@list-shard:\"works-references-1.md\"}}-->",
+				"<!--{@list-shard:\"works-references-1.md\"}}-->"));
+		Files.writeString(rootPath.resolve("works-references-1.md"), String.join("\n",
+				"<!--{@template.delimiter.pair:\"[]\"}}-->",
+				"",
+				"<!--{{references.0.title:pattern=\"[%s]\"}}-->",
+				"* [Apology]"));
+
+		try (Stream<Reference> references = SemanticReader.with(Reference.class).usingFile(indexFile).streamList("references")) {
+			UncheckedReadException e = assertThrows(UncheckedReadException.class, () -> references.count());
+			assertTrue(e.getCause().getMessage().contains("more than once"));
+		}
+	}
+
+}
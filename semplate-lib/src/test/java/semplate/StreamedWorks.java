@@ -0,0 +1,24 @@
+package semplate;
+
+import java.util.stream.Stream;
+
+import semplate.annotations.*;
+
+@Templatable
+public class StreamedWorks {
+	@TemplateField
+	private String title;
+
+	@TemplateField
+	private String author;
+
+	@TemplateField
+	private Stream<Reference> references;
+
+	public StreamedWorks(String title, String author, Stream<Reference> references) {
+		this.title = title;
+		this.author = author;
+		this.references = references;
+	}
+
+}
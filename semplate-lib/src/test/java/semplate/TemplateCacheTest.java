@@ -0,0 +1,159 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class TemplateCacheTest {
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/templates");  // Template files here
+
+	private Path templatesPath;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		templatesPath = files.path();
+	}
+
+	@Test
+	void testHitAndMiss() throws Exception {
+		Path templateFile = templatesPath.resolve("simple_template.md");
+		TestUtilities.copyFromResource("simple_template.md", templateFile);
+
+		TemplateCache cache = TemplateCache.create(TemplateCache.DEFAULT_MAXIMUM_WEIGHT);
+
+		CompiledTemplate first = cache.get(templateFile);
+		CompiledTemplate second = cache.get(templateFile);
+
+		assertSame(first, second);
+		assertEquals(1, cache.missCount());
+		assertEquals(1, cache.hitCount());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void testChangedTemplate() throws Exception {
+		Path templateFile = templatesPath.resolve("simple_template.md");
+		TestUtilities.copyFromResource("simple_template.md", templateFile);
+
+		TemplateCache cache = TemplateCache.create(TemplateCache.DEFAULT_MAXIMUM_WEIGHT);
+
+		CompiledTemplate first = cache.get(templateFile);
+
+		Files.writeString(templateFile, "<!--{@template.comment}}-->\n\n# {{title}}\n");
+
+		CompiledTemplate second = cache.get(templateFile);
+
+		assertNotSame(first, second);
+		assertEquals(2, cache.missCount());
+		assertEquals(0, cache.hitCount());
+	}
+
+	@Test
+	void testTouchedTemplate() throws Exception {
+		Path templateFile = templatesPath.resolve("simple_template.md");
+		TestUtilities.copyFromResource("simple_template.md", templateFile);
+
+		TemplateCache cache = TemplateCache.create(TemplateCache.DEFAULT_MAXIMUM_WEIGHT);
+
+		CompiledTemplate first = cache.get(templateFile);
+
+		// Change the last modified time but not the contents
+		Files.setLastModifiedTime(templateFile, FileTime.fromMillis(0));
+
+		CompiledTemplate second = cache.get(templateFile);
+
+		assertSame(first, second);
+		assertEquals(1, cache.missCount());
+		assertEquals(1, cache.hitCount());
+	}
+
+	@Test
+	void testConcurrentMisses() throws Exception {
+		Path templateFile = templatesPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templateFile);
+
+		TemplateCache cache = TemplateCache.create(TemplateCache.DEFAULT_MAXIMUM_WEIGHT);
+
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<CompiledTemplate>> templates = new ArrayList<>();
+			for (int i = 0; i < 4 * threads; i++) {
+				Callable<CompiledTemplate> get = () -> { start.await(); return cache.get(templateFile); };
+				templates.add(executor.submit(get));
+			}
+			start.countDown();
+
+			// The template is compiled once and all threads get the same compiled template
+			CompiledTemplate first = templates.get(0).get();
+			for (Future<CompiledTemplate> template: templates) {
+				assertSame(first, template.get());
+			}
+			assertEquals(1, cache.missCount());
+			assertEquals(4 * threads - 1, cache.hitCount());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testEviction() throws Exception {
+		Path simpleTemplateFile = templatesPath.resolve("simple_template.md");
+		TestUtilities.copyFromResource("simple_template.md", simpleTemplateFile);
+		Path listTemplateFile = templatesPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", listTemplateFile);
+
+		// Only room for one of the templates
+		long maximumWeight = Math.max(Files.size(simpleTemplateFile), Files.size(listTemplateFile));
+		TemplateCache cache = TemplateCache.create(maximumWeight);
+
+		cache.get(simpleTemplateFile);
+		cache.get(listTemplateFile);
+
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.evictionCount());
+
+		cache.get(simpleTemplateFile);
+
+		assertEquals(3, cache.missCount());
+	}
+
+	@Test
+	void testInvalidate() throws Exception {
+		Path templateFile = templatesPath.resolve("simple_template.md");
+		TestUtilities.copyFromResource("simple_template.md", templateFile);
+
+		TemplateCache cache = TemplateCache.create(TemplateCache.DEFAULT_MAXIMUM_WEIGHT);
+
+		cache.get(templateFile);
+		cache.invalidate(templateFile);
+		cache.get(templateFile);
+
+		assertEquals(2, cache.missCount());
+		assertEquals(0, cache.evictionCount());
+	}
+
+	@Test
+	void testNonExistentTemplate() {
+		TemplateCache cache = TemplateCache.create(TemplateCache.DEFAULT_MAXIMUM_WEIGHT);
+
+		assertThrows(ReadException.class, () -> cache.get(templatesPath.resolve("non-existent.md")));
+	}
+
+}
@@ -0,0 +1,208 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import semplate.annotations.Templatable;
+import semplate.annotations.TemplateField;
+
+class TemplateCompilerTest {
+
+	@TempDir
+	Path tempDir;
+
+	private Path templateDirectory;
+	private Path sourceDirectory;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		templateDirectory = Files.createDirectory(tempDir.resolve("templates"));
+		sourceDirectory = Files.createDirectory(tempDir.resolve("generated"));
+	}
+
+	@Test
+	void testListTemplate() throws Exception {
+		Works works = new Works();
+		works.setTitle("The Works of Plato");
+		works.setAuthor("Plato");
+		for (int i = 0; i < 25; i++) {
+			works.addReference(new Reference("Dialogue " + i, new URL("https://en.wikisource.org/wiki/Dialogue_" + i)));
+		}
+
+		assertSameAsTemplate("list_template.md", works, "generated.WorksRenderer");
+	}
+
+	@Test
+	void testSimpleTemplate() throws Exception {
+		Work work = new Work();
+		work.setId(4711);
+		work.setTitle("The Republic");
+		work.setAuthor("Plato");
+		work.setTranslator("Benjamin Jowett");
+		work.setSource("Wikisource");
+		work.setSourceLink(new URL("https://en.wikisource.org/wiki/The_Republic"));
+
+		assertSameAsTemplate("simple_template.md", work, "generated.WorkRenderer");
+		assertSameAsTemplate("delimiter_directives.md", work, "WorkDirectivesRenderer");
+	}
+
+	@Test
+	void testArrayAndNestedTemplates() throws Exception {
+		References references = new References(2);
+		references.add(new Reference("Apology", new URL("https://en.wikisource.org/wiki/Apology")));
+		references.add(new Reference("Crito", new URL("https://en.wikisource.org/wiki/Crito")));
+		assertSameAsTemplate("array_template.md", references, "generated.ReferencesRenderer");
+
+		Linked linked = new Linked();
+		linked.setId(9999);
+		Link link = new Link();
+		link.setId(4711);
+		link.setReference(linked);
+		assertSameAsTemplate("link_template.md", link, "generated.LinkRenderer");
+	}
+
+	@Test
+	void testEscapedText() throws Exception {
+		Path templateFile = templateDirectory.resolve("escaped_template.md");
+		Files.writeString(templateFile, "<!--{@template.comment}}-->\n\n"
+		                                + "\"Quoted\" \\ back\tslash {{title}} \\u00fc\n\n"
+		                                + "*/ no fields here");
+		Work work = new Work();
+		work.setTitle("The \"Republic\"");
+
+		assertSameAsTemplate(templateFile, work, "generated.EscapedRenderer");
+	}
+
+	@Test
+	void testFieldMismatch() throws Exception {
+		Path templateFile = templateDirectory.resolve("all_types_template.md");
+		TestUtilities.copyFromResource("all_types_template.md", templateFile);
+
+		ReadException e = assertThrows(ReadException.class,
+				() -> TemplateCompiler.generate(templateFile, Work.class, "generated.AllTypesRenderer"));
+		assertTrue(e.getMessage().contains("{{str}}"), e.getMessage());
+	}
+
+	@Test
+	void testEntryFieldMismatch() throws Exception {
+		Path templateFile = templateDirectory.resolve("list_template.md");
+		Files.writeString(templateFile, "<!--{@template.comment}}-->\n\n* {{references.*.titel}}\n");
+
+		ReadException e = assertThrows(ReadException.class,
+				() -> TemplateCompiler.generate(templateFile, Works.class, "generated.WorksRenderer"));
+		assertTrue(e.getMessage().contains("{{references.*.titel}}"), e.getMessage());
+	}
+
+	@Test
+	void testNotTemplatable() throws Exception {
+		Path templateFile = templateDirectory.resolve("simple_template.md");
+		TestUtilities.copyFromResource("simple_template.md", templateFile);
+
+		assertThrows(ReadException.class, () -> TemplateCompiler.generate(templateFile, NonValidClass.class, "generated.Renderer"));
+		assertThrows(IllegalArgumentException.class, () -> TemplateCompiler.generate(templateFile, Work.class, "generated.1Renderer"));
+	}
+
+	@Test
+	void testDataClassNotAccessible() throws Exception {
+		@Templatable
+		class LocalWork {
+			@TemplateField
+			private String title;
+		}
+
+		Path templateFile = templateDirectory.resolve("title_template.md");
+		Files.writeString(templateFile, "<!--{@template.comment}}-->\n\n# {{title}}\n");
+
+		ReadException e = assertThrows(ReadException.class, () -> TemplateCompiler.generate(templateFile, LocalWork.class, "generated.Renderer"));
+		assertTrue(e.getMessage().contains("local or anonymous"), e.getMessage());
+
+		e = assertThrows(ReadException.class, () -> TemplateCompiler.generate(templateFile, PackageWork.class, "generated.Renderer"));
+		assertTrue(e.getMessage().contains("is not public"), e.getMessage());
+		e = assertThrows(ReadException.class, () -> TemplateCompiler.generate(templateFile, PrivateWork.class, "semplate.Renderer"));
+		assertTrue(e.getMessage().contains("is not public"), e.getMessage());
+
+		// A renderer class in the same package can use a class that is not public
+		assertTrue(TemplateCompiler.generate(templateFile, PackageWork.class, "semplate.Renderer").contains("TemplateCompilerTest.PackageWork"));
+	}
+
+	@Test
+	void testCharset() throws Exception {
+		Path templateFile = templateDirectory.resolve("umlaut_template.md");
+		String template = "<!--{@template.comment}}-->\n\n# {{title}} \u00fcber Plato\n";
+
+		// Template files are read as UTF-8 whatever the default charset is
+		Files.writeString(templateFile, template, StandardCharsets.UTF_8);
+		assertTrue(TemplateCompiler.generate(templateFile, Work.class, "generated.Renderer").contains(" \\u00fcber Plato"));
+
+		Files.writeString(templateFile, template, StandardCharsets.ISO_8859_1);
+		assertThrows(ReadException.class, () -> TemplateCompiler.generate(templateFile, Work.class, "generated.Renderer"));
+		assertTrue(TemplateCompiler.generate(templateFile, StandardCharsets.ISO_8859_1, Work.class, "generated.Renderer").contains(" \\u00fcber Plato"));
+	}
+
+	@Templatable
+	static class PackageWork {
+		@TemplateField
+		private String title;
+	}
+
+	@Templatable
+	private static class PrivateWork {
+		@TemplateField
+		private String title;
+	}
+
+	private void assertSameAsTemplate(String templateFileName, Object dataObject, String rendererClassName) throws Exception {
+		Path templateFile = templateDirectory.resolve(templateFileName);
+		TestUtilities.copyFromResource(templateFileName, templateFile);
+
+		assertSameAsTemplate(templateFile, dataObject, rendererClassName);
+	}
+
+	private void assertSameAsTemplate(Path templateFile, Object dataObject, String rendererClassName) throws Exception {
+		StringWriter expected = new StringWriter();
+		SemanticWriter.with(dataObject).usingTemplate(CompiledTemplate.compile(templateFile)).write(expected);
+
+		Path sourceFile = TemplateCompiler.compile(templateFile, dataObject.getClass(), rendererClassName, sourceDirectory);
+
+		// Move the template so that it cannot be read when the renderer is used
+		Files.move(templateFile, templateFile.resolveSibling(templateFile.getFileName() + ".moved"));
+
+		StringWriter writer = new StringWriter();
+		Method write = compileRenderer(sourceFile, rendererClassName).getMethod("write", dataObject.getClass(), Writer.class);
+		write.invoke(null, dataObject, writer);
+
+		assertEquals(expected.toString(), writer.toString(), rendererClassName);
+	}
+
+	private Class<?> compileRenderer(Path sourceFile, String rendererClassName) throws Exception {
+		Path classDirectory = Files.createDirectories(tempDir.resolve("classes"));
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		int result = compiler.run(null, null, null,
+				                  "-d", classDirectory.toString(),
+				                  "-classpath", System.getProperty("java.class.path") + File.pathSeparator + classDirectory,
+				                  "-encoding", "UTF-8",
+				                  sourceFile.toString());
+		assertEquals(0, result, "Generated renderer does not compile");
+
+		URLClassLoader classLoader = new URLClassLoader(new URL[] {classDirectory.toUri().toURL()}, getClass().getClassLoader());
+		return classLoader.loadClass(rendererClassName);
+	}
+
+}
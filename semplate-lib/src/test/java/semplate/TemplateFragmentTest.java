@@ -0,0 +1,168 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class TemplateFragmentTest {
+
+	private static final String DIRECTIVES = "<!--{@template.comment}}-->\n"
+	                                         + "<!--{@template.delimiter.pair:\"()\"}}-->\n"
+	                                         + "<!--{@template.delimiter.pair:\"[]\"}}-->\n\n";
+
+	@RegisterExtension
+	final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/templates");  // Template files here
+
+	private Path templatesPath;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		templatesPath = files.path();
+		Files.createDirectory(templatesPath.resolve("fragments"));
+
+		Files.writeString(templatesPath.resolve("fragments").resolve("header.md"), "# {{title}}\n\nUndisputed works of {{author}}\n");
+		Files.writeString(templatesPath.resolve("fragments").resolve("references.md"), "* [{{references.*.title}}]({{references.*.link}})\n");
+	}
+
+	@Test
+	void testInclude() throws Exception {
+		Path templateFile = templatesPath.resolve("works.md");
+		Files.writeString(templateFile, DIRECTIVES
+		                                + "<!--{@template.include:\"fragments/header.md\"}}-->\n\n"
+		                                + "<!--{@template.include:\"fragments/references.md\"}}-->\n\n"
+		                                + "The above can be changed at any time.\n");
+
+		Path expectedTemplateFile = templatesPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", expectedTemplateFile);
+
+		assertEquals(render(expectedTemplateFile), render(templateFile));
+	}
+
+	@Test
+	void testIncludeInBlockWithOtherLines() throws Exception {
+		Path templateFile = templatesPath.resolve("works.md");
+		Files.writeString(templateFile, DIRECTIVES
+		                                + "# Sources\n"
+		                                + "<!--{@template.include:\"fragments/references.md\"}}-->\n"
+		                                + "The above can be changed at any time.\n");
+
+		// The lines before and after the include directive are kept as blocks of their own
+		Path expectedTemplateFile = templatesPath.resolve("expected.md");
+		Files.writeString(expectedTemplateFile, DIRECTIVES
+		                                        + "# Sources\n\n"
+		                                        + "* [{{references.*.title}}]({{references.*.link}})\n\n"
+		                                        + "The above can be changed at any time.\n");
+
+		assertEquals(render(expectedTemplateFile), render(templateFile));
+		assertTrue(render(templateFile).contains("# Sources"), render(templateFile));
+	}
+
+	@Test
+	void testSharedBetweenTemplates() throws Exception {
+		Path worksTemplate = templatesPath.resolve("works.md");
+		Files.writeString(worksTemplate, DIRECTIVES + "<!--{@template.include:\"fragments/header.md\"}}-->\n\nWorks\n");
+		Path referencesTemplate = templatesPath.resolve("references.md");
+		Files.writeString(referencesTemplate, DIRECTIVES + "References\n\n<!--{@template.include:\"fragments/header.md\"}}-->\n");
+
+		CompiledTemplate works = CompiledTemplate.compile(worksTemplate);
+		CompiledTemplate references = CompiledTemplate.compile(referencesTemplate);
+
+		assertEquals(4, works.blocks().size());
+		assertSame(works.blocks().get(1), references.blocks().get(2));
+		assertSame(works.blocks().get(2), references.blocks().get(3));
+	}
+
+	@Test
+	void testDifferentDelimiters() throws Exception {
+		Path markdownTemplate = templatesPath.resolve("works.md");
+		Files.writeString(markdownTemplate, DIRECTIVES + "<!--{@template.include:\"fragments/header.md\"}}-->\n");
+		Path asciiDocTemplate = templatesPath.resolve("works.adoc");
+		Files.writeString(asciiDocTemplate, "//{@template.comment}}\n\n//{@template.include:\"fragments/header.md\"}}\n");
+
+		CompiledTemplate markdown = CompiledTemplate.compile(markdownTemplate);
+		CompiledTemplate asciiDoc = CompiledTemplate.compile(asciiDocTemplate);
+
+		assertNotSame(markdown.blocks().get(1), asciiDoc.blocks().get(1));
+		assertTrue(render(asciiDocTemplate).contains("//{{title:pattern=\"# %s\"}}"), render(asciiDocTemplate));
+	}
+
+	@Test
+	void testFragmentChanged() throws Exception {
+		Path templateFile = templatesPath.resolve("works.md");
+		Files.writeString(templateFile, DIRECTIVES + "<!--{@template.include:\"fragments/header.md\"}}-->\n");
+		TemplateCache cache = TemplateCache.create(TemplateCache.DEFAULT_MAXIMUM_WEIGHT);
+
+		CompiledTemplate template = cache.get(templateFile);
+		assertSame(template, cache.get(templateFile));
+
+		Path fragmentFile = templatesPath.resolve("fragments").resolve("header.md");
+		Files.writeString(fragmentFile, "## {{title}}\n");
+		Files.setLastModifiedTime(fragmentFile, FileTime.fromMillis(0));
+
+		CompiledTemplate changed = cache.get(templateFile);
+		assertNotSame(template, changed);
+		assertEquals(2, cache.missCount());
+
+		StringWriter writer = new StringWriter();
+		SemanticWriter.with(TestUtilities.works(3)).usingTemplate(changed).write(writer);
+		assertTrue(writer.toString().contains("## The Works of Plato"), writer.toString());
+	}
+
+	@Test
+	void testNestedAndCyclicIncludes() throws Exception {
+		Path fragmentsPath = templatesPath.resolve("fragments");
+		Files.writeString(fragmentsPath.resolve("nested.md"), "<!--{@template.include:\"header.md\"}}-->\n");
+		Path templateFile = templatesPath.resolve("works.md");
+		Files.writeString(templateFile, DIRECTIVES + "<!--{@template.include:\"fragments/nested.md\"}}-->\n");
+		assertEquals(3, CompiledTemplate.compile(templateFile).blocks().size());
+
+		Files.writeString(fragmentsPath.resolve("a.md"), "<!--{@template.include:\"b.md\"}}-->\n");
+		Files.writeString(fragmentsPath.resolve("b.md"), "<!--{@template.include:\"a.md\"}}-->\n");
+		Path cyclicFile = templatesPath.resolve("cyclic.md");
+		Files.writeString(cyclicFile, DIRECTIVES + "<!--{@template.include:\"fragments/a.md\"}}-->\n");
+		assertThrows(ReadException.class, () -> CompiledTemplate.compile(cyclicFile));
+
+		Path missingFile = templatesPath.resolve("missing.md");
+		Files.writeString(missingFile, DIRECTIVES + "<!--{@template.include:\"fragments/missing.md\"}}-->\n");
+		assertThrows(ReadException.class, () -> CompiledTemplate.compile(missingFile));
+	}
+
+	@Test
+	void testIncludesOutsideTemplateDirectory() throws Exception {
+		Files.writeString(templatesPath.resolveSibling("secret.md"), "Not to be included\n");
+		Path fragmentsPath = templatesPath.resolve("fragments");
+		Files.writeString(templatesPath.resolve("top.md"), "Top\n");
+		Files.writeString(fragmentsPath.resolve("up.md"), "<!--{@template.include:\"../top.md\"}}-->\n");
+		Files.writeString(fragmentsPath.resolve("escape.md"), "<!--{@template.include:\"../../secret.md\"}}-->\n");
+
+		// Fragments may include fragments anywhere in the directory of the template
+		Path templateFile = templatesPath.resolve("works.md");
+		Files.writeString(templateFile, DIRECTIVES + "<!--{@template.include:\"fragments/up.md\"}}-->\n");
+		assertEquals(2, CompiledTemplate.compile(templateFile).blocks().size());
+
+		for (String include: new String[] {"../secret.md", "/secret.md", "fragments/escape.md"}) {
+			Files.writeString(templateFile, DIRECTIVES + "<!--{@template.include:\"" + include + "\"}}-->\n");
+			ReadException e = assertThrows(ReadException.class, () -> CompiledTemplate.compile(templateFile), include);
+			assertTrue(e.getMessage().contains("not in the directory of the template"), e.getMessage());
+		}
+
+		// The fragment included by up.md is outside the directory of a template in the subdirectory
+		Path nestedFile = fragmentsPath.resolve("nested.md");
+		Files.writeString(nestedFile, DIRECTIVES + "<!--{@template.include:\"up.md\"}}-->\n");
+		assertThrows(ReadException.class, () -> CompiledTemplate.compile(nestedFile));
+	}
+
+	private String render(Path templateFile) throws Exception {
+		StringWriter writer = new StringWriter();
+		SemanticWriter.with(TestUtilities.works(3)).usingTemplate(CompiledTemplate.compile(templateFile)).write(writer);
+		return writer.toString();
+	}
+
+}
@@ -4,7 +4,11 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.IOException;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -241,5 +245,67 @@ class TestSemanticWriter {
 		assertEquals(expectedContents, actualContents);
 	}
 	
+	@Test
+	void testWriteToWriter() throws Exception {
+		Path templateFile = rootPath.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templateFile);
+		
+		Works works = new Works();
+		works.setTitle("The Works of Plato");
+		works.setAuthor("Plato");
+		works.addReference(new Reference("Apology", new URL("https://en.wikisource.org/wiki/Apology_%28Plato%29")));
+		works.addReference(new Reference("Charmides", new URL("https://en.wikisource.org/wiki/Charmides_%28Plato%29")));
+		
+		Path outputFile = rootPath.resolve("list_actual.md");
+		SemanticWriter.with(works).usingTemplate(templateFile).write(outputFile);
+		String expectedContents = Files.readString(outputFile);
+		
+		StringWriter writer = new StringWriter();
+		SemanticWriter.with(works).usingTemplate(templateFile).write(writer);
+		assertEquals(expectedContents, writer.toString());
+		
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		SemanticWriter.with(works).usingTemplate(templateFile).write(outputStream, StandardCharsets.UTF_8);
+		assertEquals(expectedContents, outputStream.toString(StandardCharsets.UTF_8));
+		
+		ByteArrayOutputStream channelStream = new ByteArrayOutputStream();
+		SemanticWriter.with(works).usingTemplate(templateFile).write(Channels.newChannel(channelStream));
+		assertEquals(expectedContents, channelStream.toString(StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	void testUpdateToWriter() throws Exception {
+		Path sourceFile = rootPath.resolve("simple_expected.md");
+		TestUtilities.copyFromResource("simple_expected.md", sourceFile);
+		
+		Work updatedWork = new Work();
+		updatedWork.setAuthor("Plato The Fraudulant");
+		updatedWork.setTitle("The Dictatorship");
+		
+		Path outputFile = rootPath.resolve("simple_updated.md");
+		SemanticWriter.with(updatedWork).usingFile(sourceFile).write(outputFile);
+		
+		StringWriter writer = new StringWriter();
+		SemanticWriter.with(updatedWork).usingFile(sourceFile).write(writer);
+		
+		assertEquals(Files.readString(outputFile), writer.toString());
+	}
+	
+	@Test
+	void testUpdateInPlace() throws Exception {
+		Path sourceFile = rootPath.resolve("simple_expected.md");
+		TestUtilities.copyFromResource("simple_expected.md", sourceFile);
+		
+		Work updatedWork = new Work();
+		updatedWork.setAuthor("Plato The Fraudulant");
+		updatedWork.setTitle("The Dictatorship");
+		
+		Path outputFile = rootPath.resolve("simple_updated.md");
+		SemanticWriter.with(updatedWork).usingFile(sourceFile).write(outputFile);
+		
+		SemanticWriter.with(updatedWork).usingFile(sourceFile).write(sourceFile);
+		
+		assertEquals(Files.readString(outputFile), Files.readString(sourceFile));
+	}
 
 }
@@ -1,12 +1,26 @@
 package semplate;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
 
 public class TestUtilities {
 	
@@ -22,4 +36,76 @@ public class TestUtilities {
 		assertTrue(Files.exists(outputFile));
 	}
 
+	/** Asserts that the text has the same lines as the resource file, whatever line separators are used */
+	public static void assertEqualsResource(String resourceFileName, String actual) {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+		try (InputStream in  = classLoader.getResourceAsStream(resourceFileName)) {
+			assertNotNull(in, resourceFileName);
+			String expected = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			assertEquals(expected.lines().collect(Collectors.toList()), actual.lines().collect(Collectors.toList()), resourceFileName);
+		} catch (IOException e) {
+			fail(e.getMessage());
+		}
+	}
+
+	/** The resource file with the markdown written for {@link #works(int)} with the list template */
+	public static String worksExpected(int numberReferences) {
+		return "works_expected_" + numberReferences + ".md";
+	}
+
+	/** The works of Plato with the id 4711 and the references "Dialogue 0", "Dialogue 1", ... */
+	public static Works works(int numberReferences) {
+		Works works = new Works();
+		works.setId(4711);
+		works.setTitle("The Works of Plato");
+		works.setAuthor("Plato");
+		for (int i = 0; i < numberReferences; i++) {
+			works.addReference(reference(i));
+		}
+		return works;
+	}
+
+	/** The reference "Dialogue i" linking to its page on wikisource */
+	public static Reference reference(int i) {
+		try {
+			return new Reference("Dialogue " + i, new URL("https://en.wikisource.org/wiki/Dialogue_" + i));
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/** A directory in an in-memory file system that is created before and closed after each test. Register it with:
+	 * <p>
+	 * {@code
+	 *     @RegisterExtension
+	 *     final TestUtilities.MockDirectory files = new TestUtilities.MockDirectory("/files");
+	 * }
+	 */
+	public static class MockDirectory implements BeforeEachCallback, AfterEachCallback {
+		private final String directory;
+		private FileSystem fileSystem;
+		private Path path;
+
+		public MockDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		public void beforeEach(ExtensionContext context) throws IOException {
+			fileSystem = Jimfs.newFileSystem(Configuration.unix());
+			path = Files.createDirectories(fileSystem.getPath(directory));
+		}
+
+		@Override
+		public void afterEach(ExtensionContext context) throws IOException {
+			fileSystem.close();
+		}
+
+		/** The directory, which only exists while a test runs */
+		public Path path() {
+			return path;
+		}
+	}
+
 }
@@ -210,4 +210,22 @@ public class UpdateTests {
 		assertEquals(expectedContents, actualContents);
 	}
 
+
+	@Test
+	void testUpdateWithReplacementCharacters() throws Exception {
+		Path sourceFile = rootPath.resolve("simple_expected.md");
+		TestUtilities.copyFromResource("simple_expected.md", sourceFile);
+
+		Path outputFile = rootPath.resolve("simple_updated.md");
+
+		Work work = (Work) SemanticReader.with(Work.class).usingFile(sourceFile).read();
+		work.setTitle("The Republic for $1 \\ $2");
+
+		SemanticWriter.with(work).usingFile(sourceFile).write(outputFile);
+
+		assertTrue(Files.readAllLines(outputFile).contains("# The Republic for $1 \\ $2"));
+		Work updatedWork = (Work) SemanticReader.with(Work.class).usingFile(outputFile).read();
+		assertEquals("The Republic for $1 \\ $2", updatedWork.getTitle());
+	}
+
 }
@@ -867,6 +867,51 @@ class ValueMapTest {
 		assertThrows(ConversionException.class, () -> vm.toObject(Work.class));
 		
 	}
+	
+	@Test 
+	void testValueMapAsDataObject() throws Exception {
+		ValueMap vm = new ValueMap();
+		vm.put("title", "The Republic");
+		vm.put("references.0.title", "Plato");
+		
+		// The value map of the caller is copied, so that it is neither changed nor kept by the writers
+		ValueMap copy = ValueMap.from(vm);
+		assertNotSame(vm, copy);
+		assertEquals(vm.toString(), copy.toString());
+		copy.put("title", "The Laws");
+		copy.put("references.1.title", "Aristotle");
+		assertEquals("The Republic", vm.getValue("title").get());
+		assertEquals(Set.of("0"), vm.getValueMap("references").get().fieldNames());
+		
+		assertSame(vm, vm.toObject(ValueMap.class));
+	}
+
+	@Test
+	void testPutText() throws Exception {
+		StringBuilder text = new StringBuilder("Plato 427 2021-02-19");
+		ValueMap vm = new ValueMap();
+		vm.putText("str", text.subSequence(0, 5));
+		vm.putText("intPrimitive", java.nio.CharBuffer.wrap(text, 6, 9));
+		vm.putText("localDate", java.nio.CharBuffer.wrap(text, 10, 20));
+
+		// Text is kept when merged and converted when bound
+		AllTypes allTypes = (AllTypes) new ValueMap().merge(vm).toObject(AllTypes.class);
+		assertEquals("Plato", allTypes.getStr());
+		assertEquals(427, allTypes.getIntPrimitive());
+		assertEquals(LocalDate.of(2021, 2, 19), allTypes.getLocalDate());
+
+		// Text is converted when requested
+		assertEquals("427", vm.getValue("intPrimitive").get());
+		assertNotSame(vm.getValue("intPrimitive").get(), vm.getValue("intPrimitive").get());  // Reading does not change the value map
+		assertEquals("Apology", new ValueMap().putText("references.0.title", java.nio.CharBuffer.wrap("Apology")).getValue("references.0.title").get());
+		assertThrows(NullPointerException.class, () -> vm.putText("str", null));
+
+		// Converted text does not refer to the original text any more
+		StringBuilder changing = new StringBuilder("Apology");
+		ValueMap converted = new ValueMap().putText("references.0.title", java.nio.CharBuffer.wrap(changing)).convertText();
+		changing.replace(0, 7, "Crito");
+		assertEquals("Apology", converted.getValue("references.0.title").get());
+	}
 
 
 }
@@ -0,0 +1,154 @@
+package semplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ZipSinkTest {
+
+	private static final int[] NUMBER_REFERENCES = {0, 2, 3, 12};
+
+	@TempDir
+	Path tempDir;
+
+	private Path templatePath;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		templatePath = tempDir.resolve("list_template.md");
+		TestUtilities.copyFromResource("list_template.md", templatePath);
+	}
+
+	@Test
+	void testBatch() throws Exception {
+		List<Works> works = IntStream.range(0, 40).mapToObj(i -> TestUtilities.works(NUMBER_REFERENCES[i % NUMBER_REFERENCES.length])).collect(Collectors.toList());
+		for (int i = 0; i < works.size(); i++) works.get(i).setId(i);
+
+		ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+		BatchResult<Works> result;
+		try (ZipSink zip = ZipSink.create(zipBytes).compressionLevel(Deflater.BEST_SPEED)) {
+			result = SemanticBatchWriter.with(works)
+			                            .usingTemplate(templatePath)
+			                            .maxInFlight(3)
+			                            .write(zip, w -> "works/" + w.getId() + ".md");
+			assertEquals(40, zip.entryCount());
+		}
+
+		assertEquals(40, result.successCount());
+		assertEquals("works/7.md", result.items().get(7).entryName().get());
+
+		Map<String, String> entries = entries(zipBytes.toByteArray());
+		assertEquals(works.stream().map(w -> "works/" + w.getId() + ".md").collect(Collectors.toList()), new ArrayList<>(entries.keySet()));
+		for (Works w: works) {
+			TestUtilities.assertEqualsResource(TestUtilities.worksExpected(w.numberReferences()), entries.get("works/" + w.getId() + ".md"));
+		}
+	}
+
+	@Test
+	void testBatchFailures() throws Exception {
+		ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+		BatchResult<Works> result;
+		try (ZipSink zip = ZipSink.create(zipBytes)) {
+			result = SemanticBatchWriter.with(List.of(TestUtilities.works(1), TestUtilities.works(0), TestUtilities.works(2)))
+			                            .usingTemplate(templatePath)
+			                            .write(zip, w -> w.numberReferences() == 0 ? null : "works.md");
+		}
+
+		assertEquals(1, result.successCount());
+		assertEquals(2, result.failureCount());  // No entry name and a duplicate entry name
+		assertTrue(result.items().get(1).entryName().isEmpty());
+		assertEquals(1, entries(zipBytes.toByteArray()).size());
+	}
+
+	@Test
+	void testSingle() throws Exception {
+		ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+		try (ZipSink zip = ZipSink.create(zipBytes).compressionLevel(Deflater.NO_COMPRESSION)) {
+			SemanticWriter.with(TestUtilities.works(2)).usingTemplate(templatePath).write(zip, "a.md");
+			SemanticWriter.withTemplate(templatePath).write(TestUtilities.works(3), zip, "b.md");
+		}
+
+		Map<String, String> entries = entries(zipBytes.toByteArray());
+		TestUtilities.assertEqualsResource(TestUtilities.worksExpected(2), entries.get("a.md"));
+		TestUtilities.assertEqualsResource(TestUtilities.worksExpected(3), entries.get("b.md"));
+
+		assertThrows(IllegalArgumentException.class, () -> ZipSink.create(new ByteArrayOutputStream()).compressionLevel(10));
+	}
+
+	@Test
+	void testFailedEntry() throws Exception {
+		// The second entry of the list cannot be read, so the markdown is only generated in part
+		Iterator<Reference> references = new Iterator<>() {
+			int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < 3;
+			}
+
+			@Override
+			public Reference next() {
+				if (next++ > 0) throw new IllegalStateException("Reference not available");
+				return TestUtilities.works(1).getReference(0);
+			}
+		};
+
+		ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+		try (ZipSink zip = ZipSink.create(zipBytes)) {
+			SemanticTemplateWriter writer = SemanticWriter.with(TestUtilities.works(0)).usingTemplate(templatePath).withList("references", references);
+			assertThrows(IllegalStateException.class, () -> writer.write(zip, "failed.md"));
+			SemanticWriter.with(TestUtilities.works(2)).usingTemplate(templatePath).write(zip, "a.md");
+			assertEquals(1, zip.entryCount());
+		}
+
+		// No entry is added for markdown that could not be generated
+		assertEquals(List.of("a.md"), new ArrayList<>(entries(zipBytes.toByteArray()).keySet()));
+	}
+
+	@Test
+	void testZipFileSystem() throws Exception {
+		Path zipFile = tempDir.resolve("works.zip");
+		try (FileSystem zipFileSystem = FileSystems.newFileSystem(URI.create("jar:" + zipFile.toUri()), Map.of("create", "true"))) {
+			BatchResult<Works> result = SemanticBatchWriter.with(List.of(TestUtilities.works(1), TestUtilities.works(2)))
+			                                               .usingTemplate(templatePath)
+			                                               .write(w -> zipFileSystem.getPath("/" + w.numberReferences() + ".md"));
+			assertEquals(2, result.successCount());
+		}
+
+		Map<String, String> entries = entries(Files.readAllBytes(zipFile));
+		TestUtilities.assertEqualsResource(TestUtilities.worksExpected(2), entries.get("2.md"));
+	}
+
+	private Map<String, String> entries(byte[] zipBytes) throws Exception {
+		Map<String, String> entries = new LinkedHashMap<>();
+		try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+			ZipEntry entry;
+			while ((entry = zip.getNextEntry()) != null) {
+				entries.put(entry.getName().replaceFirst("^/", ""), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+			}
+		}
+		return entries;
+	}
+
+}
@@ -0,0 +1,467 @@
+package semplate.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.net.HostAndPort;
+import com.google.common.net.InetAddresses;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import semplate.CompiledTemplate;
+import semplate.ReadException;
+import semplate.SemanticReader;
+import semplate.SemanticTemplateWriter;
+import semplate.SemanticWriter;
+import semplate.TemplateCache;
+import semplate.WriteException;
+import semplate.valuemap.ValueMap;
+
+/** Serves the rendering, reading and updating of semantically annotated markdown over HTTP, so that tools
+ * not running on the JVM can use semplate without starting a JVM for each file.
+ * <p>
+ * The server uses the HTTP server built into the JDK. It is started with:
+ * <pre> <code>
+ *      RenderServer server = RenderServer.create(8080, rootDirectory).threads(4).queueCapacity(100).start();
+ * </code> </pre>
+ * ... or from the command line with <code>java semplate.server.RenderServer rootDirectory [port [threads [queueCapacity]]]</code>.
+ * By default the server only listens on the loopback address. Data is sent and returned in the properties
+ * format with the compound field names as keys, e.g. <code>references.0.title=Apology</code>. Files are specified
+ * by their path on the machine running the server, relative to the root directory of the server or absolute:
+ * <table>
+ * <caption>Endpoints</caption>
+ * <tr><th>Request</th><th>Body</th><th>Response</th></tr>
+ * <tr><td><code>POST /render?template=<i>path</i></code></td><td>Field values</td><td>The markdown generated with the template</td></tr>
+ * <tr><td><code>GET /read?file=<i>path</i></code></td><td></td><td>The field values read from the markdown file</td></tr>
+ * <tr><td><code>POST /update?file=<i>path</i></code></td><td>Field values</td><td>The markdown file updated with the values</td></tr>
+ * <tr><td><code>GET /stats</code></td><td></td><td>The statistics of the server (see {@link ServerStats})</td></tr>
+ * </table>
+ * With the additional parameter <code>output=<i>path</i></code>, <code>render</code> and <code>update</code> write the
+ * markdown to the file instead of returning it and respond with <code>204 No Content</code>. Invalid requests are
+ * answered with <code>400 Bad Request</code>, failed operations with <code>500 Internal Server Error</code> and the
+ * reason as text.
+ * <p>
+ * The server only reads and writes files in its root directory. Requests for files outside of the root directory,
+ * also through symbolic links, are answered with <code>403 Forbidden</code>. Templates cannot include fragments
+ * outside of their directory.
+ * As web pages opened in a browser can send requests to the loopback address, requests with an <code>Origin</code>
+ * header, i.e. requests sent by a browser on behalf of a web page, are answered with <code>403 Forbidden</code> as well.
+ * So are requests whose <code>Host</code> header names neither a loopback address, <code>localhost</code> nor the
+ * address the server listens on, which stops web pages reaching the server through a host name that is rebound
+ * to the loopback address.
+ * <p>
+ * Templates are compiled once and kept in a {@link TemplateCache}, so that a template file is only compiled again
+ * if it changes. Requests are handled by a fixed number of threads. Requests waiting for a thread are queued; if
+ * the queue is full, a request is handled by the thread accepting the requests, which delays further requests until
+ * it has been handled.
+ *
+ * @author Andrew Doble
+ *
+ */
+public final class RenderServer {
+	/** The default maximum number of requests waiting for a thread */
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+	private static final String TEXT = "text/plain; charset=UTF-8";
+	private static final String MARKDOWN = "text/markdown; charset=UTF-8";
+
+	private final InetSocketAddress address;
+
+	private final Path rootDirectory;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+	private TemplateCache templateCache = TemplateCache.shared();
+
+	private final ServerStats stats = new ServerStats();
+
+	private HttpServer server;
+
+	private ThreadPoolExecutor executor;
+
+	/* A request that is not allowed */
+	private static final class ForbiddenException extends RuntimeException {
+		private static final long serialVersionUID = 6473913650372961547L;
+
+		ForbiddenException(String message) {
+			super(message);
+		}
+	}
+
+	/* Handles the request for an operation */
+	@FunctionalInterface
+	private interface Operation {
+		void handle(HttpExchange exchange, Map<String, String> parameters) throws IOException, ReadException, WriteException;
+	}
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	private RenderServer(InetSocketAddress address, Path rootDirectory) {
+		this.address = address;
+		this.rootDirectory = rootDirectory;
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** Creates a server listening on a port of the loopback address.
+	 *
+	 * @param port The port or 0 to use any free port
+	 * @param rootDirectory The directory containing all files read and written by the server
+	 * @return The server, which has not yet been started
+	 * @throws IllegalArgumentException if the root directory is not a directory
+	 * @throws IOException if the real path of the root directory cannot be determined
+	 */
+	public static RenderServer create(int port, Path rootDirectory) throws IOException {
+		checkArgument(port >= 0 && port <= 0xFFFF, "Invalid port %s", port);
+		return create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), rootDirectory);
+	}
+
+	/** Creates a server listening on a socket address.
+	 *
+	 * @param address The socket address
+	 * @param rootDirectory The directory containing all files read and written by the server
+	 * @return The server, which has not yet been started
+	 * @throws IllegalArgumentException if the root directory is not a directory
+	 * @throws IOException if the real path of the root directory cannot be determined
+	 */
+	public static RenderServer create(InetSocketAddress address, Path rootDirectory) throws IOException {
+		checkNotNull(address, "The address cannot be null");
+		checkNotNull(rootDirectory, "The root directory cannot be null");
+		checkArgument(Files.isDirectory(rootDirectory), "The root directory %s is not a directory", rootDirectory);
+
+		return new RenderServer(address, rootDirectory.toRealPath());
+	}
+
+	/** Specifies the number of threads handling the requests. The default is the number of processors.
+	 *
+	 * @param threads The number of threads
+	 * @return This server
+	 * @throws IllegalArgumentException if the number of threads is less than 1
+	 */
+	public synchronized RenderServer threads(int threads) {
+		checkArgument(threads > 0, "At least one thread is needed (was %s)", threads);
+		checkState(server == null, "The server has already been started");
+		this.threads = threads;
+		return this;
+	}
+
+	/** Specifies the maximum number of requests waiting for a thread. The default is {@value #DEFAULT_QUEUE_CAPACITY}.
+	 *
+	 * @param queueCapacity The maximum number of waiting requests
+	 * @return This server
+	 * @throws IllegalArgumentException if the capacity is less than 1
+	 */
+	public synchronized RenderServer queueCapacity(int queueCapacity) {
+		checkArgument(queueCapacity > 0, "The queue capacity must be at least 1 (was %s)", queueCapacity);
+		checkState(server == null, "The server has already been started");
+		this.queueCapacity = queueCapacity;
+		return this;
+	}
+
+	/** Specifies the cache of the compiled templates. The default is {@link TemplateCache#shared()}.
+	 *
+	 * @param templateCache The template cache
+	 * @return This server
+	 */
+	public synchronized RenderServer templateCache(TemplateCache templateCache) {
+		checkState(server == null, "The server has already been started");
+		this.templateCache = checkNotNull(templateCache, "The template cache cannot be null");
+		return this;
+	}
+
+	/** Starts the server.
+	 *
+	 * @return This server
+	 * @throws IOException if the server cannot listen on its address
+	 */
+	public synchronized RenderServer start() throws IOException {
+		checkState(server == null, "The server has already been started");
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+				                          runnable -> {
+				                        	  Thread thread = new Thread(runnable, "semplate-server-" + threadNumber.incrementAndGet());
+				                        	  thread.setDaemon(true);
+				                        	  return thread;
+				                          },
+				                          (runnable, pool) -> {
+				                        	  // Handle the request in the accepting thread, so that no more requests are accepted meanwhile
+				                        	  stats.recordThrottled();
+				                        	  if (!pool.isShutdown()) runnable.run();
+				                          });
+
+		server = HttpServer.create(address, 0);
+		server.setExecutor(executor);
+		server.createContext("/render", exchange -> handle(exchange, ServerStats.RENDER, "POST", this::render));
+		server.createContext("/read", exchange -> handle(exchange, ServerStats.READ, "GET", this::read));
+		server.createContext("/update", exchange -> handle(exchange, ServerStats.UPDATE, "POST", this::update));
+		server.createContext("/stats", this::stats);
+		server.start();
+
+		return this;
+	}
+
+	/** Stops the server. Requests being handled are given up to a second to complete.
+	 */
+	public synchronized void stop() {
+		if (server == null) return;
+
+		server.stop(1);
+		executor.shutdown();
+	}
+
+	/** The address the server listens on. Once the server has been started this contains the actual port.
+	 *
+	 * @return The socket address
+	 */
+	public synchronized InetSocketAddress address() {
+		return server == null ? address : server.getAddress();
+	}
+
+	/** The statistics of the requests handled by this server.
+	 *
+	 * @return The statistics
+	 */
+	public ServerStats stats() {
+		return stats;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "RenderServer [address=" + address() + ", rootDirectory=" + rootDirectory + ", threads=" + threads + ", queueCapacity=" + queueCapacity + "]";
+	}
+
+	/** Starts a server listening on the loopback address.
+	 *
+	 * @param args The root directory, the optional port (default 8080), number of threads and queue capacity
+	 * @throws IOException if the server cannot be started
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: java semplate.server.RenderServer rootDirectory [port [threads [queueCapacity]]]");
+			System.exit(1);
+		}
+
+		RenderServer server = RenderServer.create(args.length > 1 ? Integer.parseInt(args[1]) : 8080, Path.of(args[0]));
+		if (args.length > 2) server.threads(Integer.parseInt(args[2]));
+		if (args.length > 3) server.queueCapacity(Integer.parseInt(args[3]));
+
+		server.start();
+		System.out.println("semplate server listening on " + server.address());
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/* Renders the template with the field values in the request */
+	private void render(HttpExchange exchange, Map<String, String> parameters) throws IOException, ReadException, WriteException {
+		CompiledTemplate template = templateCache.get(path(parameters, "template"));
+		ValueMap valueMap = values(exchange);
+		SemanticTemplateWriter writer = SemanticWriter.withTemplate(template);
+
+		if (parameters.containsKey("output")) {
+			writer.write(valueMap, path(parameters, "output"));
+			respond(exchange, 204, null, new byte[0]);
+		} else {
+			ByteArrayOutputStream markdown = new ByteArrayOutputStream();
+			writer.write(valueMap, markdown, StandardCharsets.UTF_8);
+			respond(exchange, 200, MARKDOWN, markdown.toByteArray());
+		}
+	}
+
+	/* Reads the field values from a markdown file */
+	private void read(HttpExchange exchange, Map<String, String> parameters) throws IOException, ReadException {
+		ValueMap valueMap = (ValueMap) SemanticReader.with(ValueMap.class).usingFile(path(parameters, "file")).read();
+
+		ByteArrayOutputStream properties = new ByteArrayOutputStream();
+		try (Writer writer = new OutputStreamWriter(properties, StandardCharsets.UTF_8)) {
+			Values.write(valueMap, writer);
+		}
+		respond(exchange, 200, TEXT, properties.toByteArray());
+	}
+
+	/* Updates a markdown file with the field values in the request */
+	private void update(HttpExchange exchange, Map<String, String> parameters) throws IOException, WriteException {
+		Path file = path(parameters, "file");
+		SemanticWriter writer = SemanticWriter.with(values(exchange)).usingFile(file);
+
+		if (parameters.containsKey("output")) {
+			writer.write(path(parameters, "output"));
+			respond(exchange, 204, null, new byte[0]);
+		} else {
+			ByteArrayOutputStream markdown = new ByteArrayOutputStream();
+			writer.write(markdown, StandardCharsets.UTF_8);
+			respond(exchange, 200, MARKDOWN, markdown.toByteArray());
+		}
+	}
+
+	/* Returns the statistics of the server and the template cache */
+	private void stats(HttpExchange exchange) throws IOException {
+		try {
+			checkBrowser(exchange);
+
+			Properties properties = new Properties();
+			stats.addTo(properties);
+			properties.setProperty("templates.size", String.valueOf(templateCache.size()));
+			properties.setProperty("templates.hits", String.valueOf(templateCache.hitCount()));
+			properties.setProperty("templates.misses", String.valueOf(templateCache.missCount()));
+			properties.setProperty("executor.active", String.valueOf(executor.getActiveCount()));
+			properties.setProperty("executor.queued", String.valueOf(executor.getQueue().size()));
+
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			try (Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8)) {
+				properties.store(writer, null);
+			}
+			respond(exchange, 200, TEXT, body.toByteArray());
+		} catch (ForbiddenException e) {
+			respond(exchange, 403, TEXT, message(e).getBytes(StandardCharsets.UTF_8));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/* Handles a request for an operation, recording its latency and answering errors */
+	private void handle(HttpExchange exchange, String operation, String method, Operation handler) throws IOException {
+		long start = System.nanoTime();
+		boolean failed = true;
+
+		try {
+			if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+				exchange.getResponseHeaders().set("Allow", method);
+				respond(exchange, 405, TEXT, ("Use " + method + " for " + operation).getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+
+			try {
+				checkBrowser(exchange);
+				handler.handle(exchange, parameters(exchange));
+				failed = false;
+			} catch (ForbiddenException e) {
+				respond(exchange, 403, TEXT, message(e).getBytes(StandardCharsets.UTF_8));
+			} catch (IllegalArgumentException e) {
+				respond(exchange, 400, TEXT, message(e).getBytes(StandardCharsets.UTF_8));
+			} catch (ReadException | WriteException | RuntimeException e) {
+				respond(exchange, 500, TEXT, message(e).getBytes(StandardCharsets.UTF_8));
+			}
+		} finally {
+			exchange.close();
+			stats.record(operation, System.nanoTime() - start, failed);
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		if (contentType != null) exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		if (body.length > 0) {
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+	}
+
+	/* The field values in the body of the request */
+	private static ValueMap values(HttpExchange exchange) throws IOException {
+		try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+			return Values.read(reader);
+		}
+	}
+
+	/* The decoded parameters of the query of the request */
+	private static Map<String, String> parameters(HttpExchange exchange) {
+		Map<String, String> parameters = new HashMap<>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query == null) return parameters;
+
+		for (String parameter: query.split("&")) {
+			if (parameter.isEmpty()) continue;
+			int equals = parameter.indexOf('=');
+			String name = equals < 0 ? parameter : parameter.substring(0, equals);
+			String value = equals < 0 ? "" : parameter.substring(equals + 1);
+			parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	/* The file in a parameter, which must be in the root directory */
+	private Path path(Map<String, String> parameters, String name) throws IOException {
+		String path = parameters.get(name);
+		checkArgument(path != null && !path.isEmpty(), "The parameter %s is missing", name);
+
+		Path file = rootDirectory.resolve(path).normalize();
+		if (!file.startsWith(rootDirectory) || file.equals(rootDirectory)) {
+			throw new ForbiddenException("The file " + path + " is not in the root directory of the server");
+		}
+
+		// Symbolic links must not lead out of the root directory
+		Path existing = file;
+		while (!Files.exists(existing)) {
+			existing = existing.getParent();
+		}
+		if (!existing.toRealPath().startsWith(rootDirectory)) {
+			throw new ForbiddenException("The file " + path + " is not in the root directory of the server");
+		}
+
+		return file;
+	}
+
+	/* Requests sent by browsers on behalf of web pages are not allowed */
+	private void checkBrowser(HttpExchange exchange) {
+		if (exchange.getRequestHeaders().containsKey("Origin")) {
+			throw new ForbiddenException("Requests from web pages are not allowed");
+		}
+
+		String host = exchange.getRequestHeaders().getFirst("Host");
+		if (host == null || !isServerHost(host)) {
+			throw new ForbiddenException("Requests for the host " + host + " are not allowed");
+		}
+	}
+
+	/* Does the host of a Host header name this server? Host names other than localhost could be rebound to the server. */
+	private boolean isServerHost(String host) {
+		String hostName;
+		try {
+			hostName = HostAndPort.fromString(host).getHost();
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+
+		if (hostName.equalsIgnoreCase("localhost")) return true;
+		if (!InetAddresses.isInetAddress(hostName)) return false;
+
+		InetAddress hostAddress = InetAddresses.forString(hostName);
+		return hostAddress.isLoopbackAddress() || hostAddress.equals(address.getAddress());
+	}
+
+	/* The message of an exception and its causes */
+	private static String message(Exception e) {
+		StringBuilder message = new StringBuilder(String.valueOf(e.getMessage()));
+		for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+			message.append(System.lineSeparator()).append("Caused by: ").append(cause);
+		}
+		return message.toString();
+	}
+
+}
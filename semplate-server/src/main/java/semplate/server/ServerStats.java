@@ -0,0 +1,165 @@
+package semplate.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.ImmutableMap;
+
+/** The latency and throughput of the operations served by a {@link RenderServer}.
+ * <p>
+ * For each operation (<code>render</code>, <code>read</code> and <code>update</code>) the number of requests, the number
+ * of failed requests and the mean and maximum time taken to handle a request are recorded. The throughput is the
+ * number of requests handled per second since the server was started. The statistics are returned by the
+ * <code>/stats</code> endpoint of the server and are updated concurrently by the request threads.
+ *
+ * @author Andrew Doble
+ *
+ */
+public final class ServerStats {
+	/** The operations of the server */
+	public static final String RENDER = "render";
+	public static final String READ = "read";
+	public static final String UPDATE = "update";
+
+	private final long startNanos = System.nanoTime();
+
+	private final Map<String, Operation> operations = ImmutableMap.of(RENDER, new Operation(), READ, new Operation(), UPDATE, new Operation());
+
+	/** The number of requests the dispatcher thread had to handle because all request threads were busy */
+	private final LongAdder throttled = new LongAdder();
+
+	/* The statistics of one operation */
+	private static final class Operation {
+		final LongAdder count = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder totalNanos = new LongAdder();
+		final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+	}
+
+	/* -------------------  CONSTRUCTORS----------------- */
+
+	ServerStats() {
+	}
+
+	/* -------------------  PUBLIC API ----------------- */
+
+	/** The number of requests for an operation.
+	 *
+	 * @param operation The operation, i.e. <code>render</code>, <code>read</code> or <code>update</code>
+	 * @return The number of requests
+	 * @throws IllegalArgumentException if the operation is unknown
+	 */
+	public long count(String operation) {
+		return operation(operation).count.sum();
+	}
+
+	/** The number of requests for an operation that failed.
+	 *
+	 * @param operation The operation
+	 * @return The number of failed requests
+	 * @throws IllegalArgumentException if the operation is unknown
+	 */
+	public long errorCount(String operation) {
+		return operation(operation).errors.sum();
+	}
+
+	/** The mean time taken to handle a request for an operation.
+	 *
+	 * @param operation The operation
+	 * @return The mean latency in milliseconds or 0 if there have been no requests
+	 * @throws IllegalArgumentException if the operation is unknown
+	 */
+	public double meanLatencyMillis(String operation) {
+		Operation op = operation(operation);
+		long count = op.count.sum();
+		return count == 0 ? 0 : op.totalNanos.sum() / (count * 1e6);
+	}
+
+	/** The maximum time taken to handle a request for an operation.
+	 *
+	 * @param operation The operation
+	 * @return The maximum latency in milliseconds
+	 * @throws IllegalArgumentException if the operation is unknown
+	 */
+	public double maxLatencyMillis(String operation) {
+		return operation(operation).maxNanos.get() / 1e6;
+	}
+
+	/** The number of requests for all operations handled per second since the server was started.
+	 *
+	 * @return The throughput in requests per second
+	 */
+	public double throughput() {
+		long requests = operations.values().stream().mapToLong(op -> op.count.sum()).sum();
+		double seconds = Math.max(1, System.nanoTime() - startNanos) / 1e9;
+		return requests / seconds;
+	}
+
+	/** The number of requests that were handled by the dispatcher thread of the server, and so delayed the
+	 * acceptance of further requests, because all request threads were busy and the request queue was full.
+	 *
+	 * @return The number of throttled requests
+	 */
+	public long throttledCount() {
+		return throttled.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "ServerStats [render=" + count(RENDER) + ", read=" + count(READ) + ", update=" + count(UPDATE)
+				+ ", throttled=" + throttledCount() + "]";
+	}
+
+	/* -------------------  SUPPORT FUNCTIONS ----------------- */
+
+	/** Records a request.
+	 *
+	 * @param operation The operation requested
+	 * @param nanos The time taken to handle the request in nanoseconds
+	 * @param failed True if the request failed
+	 */
+	void record(String operation, long nanos, boolean failed) {
+		Operation op = operation(operation);
+		op.count.increment();
+		op.totalNanos.add(nanos);
+		op.maxNanos.accumulate(nanos);
+		if (failed) op.errors.increment();
+	}
+
+	void recordThrottled() {
+		throttled.increment();
+	}
+
+	/** Adds the statistics to properties, e.g. <code>render.count</code> or <code>throughput</code>.
+	 *
+	 * @param properties The properties the statistics are added to
+	 */
+	void addTo(Properties properties) {
+		for (String operation: operations.keySet()) {
+			properties.setProperty(operation + ".count", String.valueOf(count(operation)));
+			properties.setProperty(operation + ".errors", String.valueOf(errorCount(operation)));
+			properties.setProperty(operation + ".meanLatencyMillis", format(meanLatencyMillis(operation)));
+			properties.setProperty(operation + ".maxLatencyMillis", format(maxLatencyMillis(operation)));
+		}
+		properties.setProperty("throughput", format(throughput()));
+		properties.setProperty("throttled", String.valueOf(throttledCount()));
+		properties.setProperty("uptimeSeconds", String.valueOf(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos)));
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	private Operation operation(String operation) {
+		Operation op = operations.get(operation);
+		checkArgument(op != null, "Unknown operation %s", operation);
+		return op;
+	}
+
+}
@@ -0,0 +1,71 @@
+package semplate.server;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Optional;
+import java.util.Properties;
+
+import semplate.valuemap.ValueMap;
+
+/** Converts between value maps and the properties format used in the requests and responses of the
+ * {@link RenderServer}.
+ * <p>
+ * Each field is one property with the compound field name as key, e.g.
+ * <pre>
+ *     title=The Works of Plato
+ *     references.0.title=Apology
+ *     references.0.link=https://en.wikisource.org/wiki/Apology_%28Plato%29
+ * </pre>
+ * The properties are read and written as described in {@link Properties#load(Reader)}.
+ *
+ * @author Andrew Doble
+ *
+ */
+final class Values {
+
+	private Values() {
+	}
+
+	/** Reads the fields of a value map in the properties format.
+	 *
+	 * @param reader The reader the properties are read from
+	 * @return The value map
+	 * @throws IOException if the properties cannot be read
+	 */
+	static ValueMap read(Reader reader) throws IOException {
+		Properties properties = new Properties();
+		properties.load(reader);
+
+		ValueMap valueMap = new ValueMap();
+		for (String fieldName: properties.stringPropertyNames()) {
+			valueMap.put(fieldName, properties.getProperty(fieldName));
+		}
+		return valueMap;
+	}
+
+	/** Writes the fields of a value map in the properties format.
+	 *
+	 * @param valueMap The value map
+	 * @param writer The writer the properties are written to. The writer is flushed, but not closed.
+	 * @throws IOException if the properties cannot be written
+	 */
+	static void write(ValueMap valueMap, Writer writer) throws IOException {
+		Properties properties = new Properties();
+		putAll(properties, "", valueMap);
+		properties.store(writer, null);
+	}
+
+	/* Adds the fields of a value map with their compound field names */
+	private static void putAll(Properties properties, String prefix, ValueMap valueMap) {
+		for (String fieldName: valueMap.fieldNames()) {
+			Optional<ValueMap> fieldValueMap = valueMap.getValueMap(fieldName);
+			if (fieldValueMap.isPresent()) {
+				putAll(properties, prefix + fieldName + ".", fieldValueMap.get());
+			} else {
+				valueMap.getValue(fieldName).ifPresent(value -> properties.setProperty(prefix + fieldName, value.toString()));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,286 @@
+package semplate.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import semplate.TemplateCache;
+
+class RenderServerTest {
+
+	private static final String TEMPLATE = String.join("\n",
+			"<!--{@template.comment}}-->",
+			"<!--{@template.delimiter.pair:\"()\"}}-->",
+			"<!--{@template.delimiter.pair:\"[]\"}}-->",
+			"",
+			"# {{title}}",
+			"",
+			"Undisputed works of {{author}}",
+			"",
+			"* [{{references.*.title}}]({{references.*.link}})",
+			"",
+			"The above can be changed at any time.",
+			"");
+
+	private static final String VALUES = String.join("\n",
+			"title=The Works of Plato",
+			"author=Plato",
+			"references.0.title=Apology",
+			"references.0.link=https://en.wikisource.org/wiki/Apology",
+			"references.1.title=Charmides",
+			"references.1.link=https://en.wikisource.org/wiki/Charmides",
+			"");
+
+	@TempDir
+	Path rootPath;
+
+	private Path templatePath;
+	private TemplateCache templateCache;
+	private RenderServer server;
+	private HttpClient client;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		templatePath = rootPath.resolve("list_template.md");
+		Files.writeString(templatePath, TEMPLATE);
+
+		templateCache = TemplateCache.create(TemplateCache.DEFAULT_MAXIMUM_WEIGHT);
+		server = RenderServer.create(0, rootPath).threads(2).queueCapacity(4).templateCache(templateCache).start();
+		client = HttpClient.newHttpClient();
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	void testRender() throws Exception {
+		HttpResponse<String> response = post("/render?template=" + encode(templatePath), VALUES);
+
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().contains("# The Works of Plato"));
+		assertTrue(response.body().contains("* [Charmides](https://en.wikisource.org/wiki/Charmides)"));
+		assertTrue(response.body().contains("<!--{{references.0.title:pattern=\"[%s]\"}}{{references.0.link:pattern=\"(%s)\"}}-->"));
+
+		// The template is compiled once
+		post("/render?template=" + encode(templatePath), VALUES);
+		assertEquals(1, templateCache.missCount());
+		assertEquals(1, templateCache.hitCount());
+		awaitRecorded(ServerStats.RENDER, 2);
+		assertEquals(2, server.stats().count(ServerStats.RENDER));
+	}
+
+	@Test
+	void testRenderToFileAndRead() throws Exception {
+		Path outputPath = rootPath.resolve("works.md");
+
+		HttpResponse<String> response = post("/render?template=" + encode(templatePath) + "&output=" + encode(outputPath), VALUES);
+		assertEquals(204, response.statusCode());
+		assertTrue(Files.exists(outputPath));
+
+		response = get("/read?file=" + encode(outputPath));
+		assertEquals(200, response.statusCode());
+		Properties read = properties(response.body());
+		assertEquals(properties(VALUES), read);
+	}
+
+	@Test
+	void testUpdate() throws Exception {
+		Path outputPath = rootPath.resolve("works.md");
+		post("/render?template=" + encode(templatePath) + "&output=" + encode(outputPath), VALUES);
+
+		HttpResponse<String> response = post("/update?file=" + encode(outputPath), VALUES.replace("Plato", "Aristotle"));
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().contains("# The Works of Aristotle"));
+		assertTrue(response.body().contains("* [Apology](https://en.wikisource.org/wiki/Apology)"));
+
+		response = post("/update?file=" + encode(outputPath) + "&output=" + encode(outputPath), VALUES.replace("Plato", "Aristotle"));
+		assertEquals(204, response.statusCode());
+		assertTrue(Files.readString(outputPath).contains("Undisputed works of Aristotle"));
+	}
+
+	@Test
+	void testErrors() throws Exception {
+		assertEquals(400, post("/render", VALUES).statusCode());
+		assertEquals(405, get("/render?template=" + encode(templatePath)).statusCode());
+
+		HttpResponse<String> response = post("/render?template=" + encode(rootPath.resolve("missing.md")), VALUES);
+		assertEquals(500, response.statusCode());
+		assertTrue(response.body().contains("missing.md"));
+
+		awaitRecorded(ServerStats.RENDER, 3);
+		assertEquals(3, server.stats().count(ServerStats.RENDER));
+		assertEquals(3, server.stats().errorCount(ServerStats.RENDER));
+	}
+
+	@Test
+	void testFilesOutsideRoot() throws Exception {
+		Path outsidePath = rootPath.resolveSibling(rootPath.getFileName() + "-outside.md");
+
+		assertEquals(403, post("/render?template=" + encode(templatePath) + "&output=" + encode(outsidePath), VALUES).statusCode());
+		assertEquals(403, post("/render?template=" + encode(templatePath) + "&output=..%2Fworks.md", VALUES).statusCode());
+		assertEquals(403, get("/read?file=" + encode(Path.of("/etc/passwd"))).statusCode());
+		assertEquals(403, post("/update?file=" + encode(templatePath) + "&output=" + encode(outsidePath), VALUES).statusCode());
+		assertFalse(Files.exists(outsidePath));
+
+		// Symbolic links must not lead out of the root directory
+		Path outsideDirectory = Files.createTempDirectory("outside");
+		try {
+			Path linkPath = Files.createSymbolicLink(rootPath.resolve("link"), outsideDirectory);
+			assertEquals(403, post("/render?template=" + encode(templatePath) + "&output=" + encode(linkPath.resolve("works.md")), VALUES).statusCode());
+			assertFalse(Files.exists(outsideDirectory.resolve("works.md")));
+		} finally {
+			Files.delete(outsideDirectory);
+		}
+
+		// Paths relative to the root directory
+		assertEquals(204, post("/render?template=list_template.md&output=works.md", VALUES).statusCode());
+		assertTrue(Files.exists(rootPath.resolve("works.md")));
+
+		awaitRecorded(ServerStats.RENDER, 4);
+		assertEquals(3, server.stats().errorCount(ServerStats.RENDER));
+	}
+
+	@Test
+	void testIncludesOutsideRoot() throws Exception {
+		Path outsidePath = rootPath.resolveSibling(rootPath.getFileName() + "-outside.md");
+		Files.writeString(outsidePath, "Not to be read\n");
+		try {
+			for (String include: List.of("../" + outsidePath.getFileName(), outsidePath.toString())) {
+				Files.writeString(templatePath, "<!--{@template.comment}}-->\n\n<!--{@template.include:\"" + include + "\"}}-->\n");
+
+				HttpResponse<String> response = post("/render?template=" + encode(templatePath), VALUES);
+				assertEquals(500, response.statusCode(), include);
+				assertFalse(response.body().contains("Not to be read"), include);
+				assertTrue(response.body().contains("is not in the directory of the template"), response.body());
+			}
+		} finally {
+			Files.delete(outsidePath);
+		}
+	}
+
+	@Test
+	void testRequestsFromWebPages() throws Exception {
+		Path outputPath = rootPath.resolve("works.md");
+
+		HttpResponse<String> response = client.send(request("/render?template=" + encode(templatePath) + "&output=" + encode(outputPath))
+				                                         .header("Origin", "https://example.com")
+				                                         .header("Content-Type", "text/plain")
+				                                         .POST(HttpRequest.BodyPublishers.ofString(VALUES)).build(),
+				                                     HttpResponse.BodyHandlers.ofString());
+		assertEquals(403, response.statusCode());
+		assertFalse(Files.exists(outputPath));
+
+		assertEquals(403, client.send(request("/stats").header("Origin", "null").GET().build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+
+		// Web pages can reach the server through a host name rebound to the loopback address
+		int port = server.address().getPort();
+		assertEquals(403, status("GET /read?file=list_template.md HTTP/1.1", "Host: rebound.example.com:" + port));
+		assertEquals(403, status("GET /stats HTTP/1.1", "Host: 192.168.1.1:" + port));
+		assertEquals(403, status("GET /stats HTTP/1.0"));
+		assertEquals(200, status("GET /stats HTTP/1.1", "Host: localhost:" + port));
+		assertEquals(200, status("GET /stats HTTP/1.1", "Host: 127.0.0.1:" + port));
+		assertEquals(200, status("GET /stats HTTP/1.1", "Host: [::1]:" + port));
+	}
+
+	@Test
+	void testConcurrentRequestsAndStats() throws Exception {
+		List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			responses.add(client.sendAsync(request("/render?template=" + encode(templatePath))
+					                               .POST(HttpRequest.BodyPublishers.ofString(VALUES)).build(),
+					                       HttpResponse.BodyHandlers.ofString()));
+		}
+		for (CompletableFuture<HttpResponse<String>> response: responses) {
+			assertEquals(200, response.get().statusCode());
+		}
+
+		awaitRecorded(ServerStats.RENDER, 50);
+		Properties stats = properties(get("/stats").body());
+		assertEquals("50", stats.getProperty("render.count"));
+		assertEquals("0", stats.getProperty("render.errors"));
+		assertEquals("1", stats.getProperty("templates.misses"));
+		assertNotNull(stats.getProperty("render.meanLatencyMillis"));
+		assertTrue(server.stats().throughput() > 0);
+		assertTrue(server.stats().maxLatencyMillis(ServerStats.RENDER) >= server.stats().meanLatencyMillis(ServerStats.RENDER));
+	}
+
+	@Test
+	void testInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> RenderServer.create(0, rootPath).threads(0));
+		assertThrows(IllegalArgumentException.class, () -> RenderServer.create(0, rootPath).queueCapacity(0));
+		assertThrows(IllegalArgumentException.class, () -> RenderServer.create(0, templatePath));
+		assertThrows(IllegalStateException.class, () -> server.threads(1));
+		assertThrows(IllegalArgumentException.class, () -> server.stats().count("delete"));
+	}
+
+	/* Requests are recorded once the response has been sent, so the client can see the response first */
+	private void awaitRecorded(String operation, long count) throws InterruptedException {
+		for (int i = 0; i < 500 && server.stats().count(operation) < count; i++) {
+			Thread.sleep(10);
+		}
+	}
+
+	private HttpResponse<String> get(String path) throws Exception {
+		return client.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private HttpResponse<String> post(String path, String body) throws Exception {
+		return client.send(request(path).POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	/* The status of a request sent with exactly the given request line and headers */
+	private int status(String requestLine, String... headers) throws Exception {
+		try (Socket socket = new Socket(server.address().getAddress(), server.address().getPort())) {
+			StringBuilder request = new StringBuilder(requestLine).append("\r\n");
+			for (String header: headers) {
+				request.append(header).append("\r\n");
+			}
+			request.append("Connection: close\r\n\r\n");
+
+			OutputStream out = socket.getOutputStream();
+			out.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			return Integer.parseInt(in.readLine().split(" ")[1]);
+		}
+	}
+
+	private HttpRequest.Builder request(String path) {
+		return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.address().getPort() + path));
+	}
+
+	private static String encode(Path path) {
+		return URLEncoder.encode(path.toString(), StandardCharsets.UTF_8);
+	}
+
+	private static Properties properties(String text) throws Exception {
+		Properties properties = new Properties();
+		properties.load(new StringReader(text));
+		return properties;
+	}
+
+}